@@ -0,0 +1,128 @@
+package com.gastonlesbegueris.caretemplate.data.local;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Migración completa desde el esquema publicado (v15: solo events y subjects) hasta la versión
+ * actual, validada contra el esquema exportado por Room.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AppDbMigrationTest {
+
+    private static final String DB = "migration-test.db";
+    private static final long DAY = 86_400_000L;
+
+    @Rule
+    public MigrationTestHelper helper = new MigrationTestHelper(
+            InstrumentationRegistry.getInstrumentation(), AppDb.class);
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB);
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(DB);
+    }
+
+    @Test
+    public void migrate15ToLatest() throws IOException {
+        createV15();
+
+        SupportSQLiteDatabase db = helper.runMigrationsAndValidate(DB, 25, true,
+                AppDb.MIGRATION_15_16,
+                AppDb.MIGRATION_16_17,
+                AppDb.MIGRATION_17_18,
+                AppDb.MIGRATION_18_19,
+                AppDb.MIGRATION_19_20,
+                AppDb.MIGRATION_20_21,
+                AppDb.MIGRATION_21_22,
+                AppDb.MIGRATION_22_23,
+                AppDb.MIGRATION_23_24,
+                AppDb.MIGRATION_24_25);
+
+        // Libro de gastos: solo el evento realizado con costo, enlazado por eventId
+        assertEquals(1, count(db, "SELECT COUNT(*) FROM expenses"));
+        try (Cursor c = db.query("SELECT eventId, amount, category FROM expenses")) {
+            assertTrue(c.moveToFirst());
+            assertEquals("e1", c.getString(0));
+            assertEquals(1500.0, c.getDouble(1), 0.0);
+            assertEquals("Vacuna anual", c.getString(2));
+        }
+
+        // Rollup: los dos eventos vivos
+        assertEquals(2, count(db, "SELECT SUM(eventCount) FROM day_totals WHERE appType = 'pets'"));
+        assertEquals(1500, count(db, "SELECT SUM(realizedSum) FROM day_totals WHERE appType = 'pets'"));
+
+        // Outbox: lo que estaba dirty quedó encolado
+        assertEquals(1, count(db, "SELECT COUNT(*) FROM sync_outbox WHERE entityId = 'e2'"));
+
+        // Base del merge: solo las filas que ya estaban sincronizadas
+        assertEquals(1, count(db, "SELECT COUNT(*) FROM events_base WHERE id = 'e1'"));
+        assertEquals(0, count(db, "SELECT COUNT(*) FROM events_base WHERE id = 'e2'"));
+
+        // Índice full-text lleno desde las filas existentes
+        assertEquals(1, count(db, "SELECT COUNT(*) FROM events_fts WHERE events_fts MATCH 'anu*'"));
+        assertEquals(1, count(db, "SELECT COUNT(*) FROM subjects_fts WHERE subjects_fts MATCH 'firu*'"));
+
+        // Los triggers quedaron activos: un cambio de costo llega al libro
+        db.execSQL("UPDATE events SET cost = 1800 WHERE id = 'e1'");
+        assertEquals(1800, count(db, "SELECT amount FROM expenses WHERE eventId = 'e1'"));
+        db.execSQL("UPDATE events SET deleted = 1 WHERE id = 'e1'");
+        assertEquals(0, count(db, "SELECT COUNT(*) FROM expenses"));
+    }
+
+    // Esquema v15 tal como lo creaba Room (exportSchema estaba apagado: no hay JSON de esa versión)
+    private void createV15() {
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(DB), null);
+        try {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `events` (`id` TEXT NOT NULL, `uid` TEXT, `appType` TEXT, `subjectId` TEXT, `title` TEXT, `note` TEXT, `dueAt` INTEGER NOT NULL, `realized` INTEGER NOT NULL, `realizedAt` INTEGER, `cost` REAL, `kilometersAtEvent` REAL, `repeatType` TEXT, `repeatInterval` INTEGER, `repeatEndDate` INTEGER, `repeatCount` INTEGER, `originalEventId` TEXT, `notificationMinutesBefore` INTEGER, `updatedAt` INTEGER NOT NULL, `deleted` INTEGER NOT NULL, `dirty` INTEGER NOT NULL, PRIMARY KEY(`id`))");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `subjects` (`id` TEXT NOT NULL, `uid` TEXT, `appType` TEXT, `name` TEXT, `birthDate` INTEGER, `currentMeasure` REAL, `notes` TEXT, `iconKey` TEXT, `colorHex` TEXT, `updatedAt` INTEGER NOT NULL, `deleted` INTEGER NOT NULL, `dirty` INTEGER NOT NULL, PRIMARY KEY(`id`))");
+
+            long t = 1_700_000_000_000L;
+            db.execSQL("INSERT INTO subjects (id, uid, appType, name, notes, iconKey, colorHex, updatedAt, deleted, dirty) "
+                    + "VALUES ('s1', 'u', 'pets', 'Firulais', 'perro', 'dog', '#03DAC5', ?, 0, 0)", new Object[]{ t });
+            // Realizado con costo: va al libro de gastos
+            db.execSQL("INSERT INTO events (id, uid, appType, subjectId, title, dueAt, realized, realizedAt, cost, updatedAt, deleted, dirty) "
+                    + "VALUES ('e1', 'u', 'pets', 's1', 'Vacuna anual', ?, 1, ?, 1500, ?, 0, 0)", new Object[]{ t, t + DAY, t });
+            // Pendiente y sin subir
+            db.execSQL("INSERT INTO events (id, uid, appType, subjectId, title, dueAt, realized, cost, updatedAt, deleted, dirty) "
+                    + "VALUES ('e2', 'u', 'pets', 's1', 'Baño', ?, 0, 200, ?, 0, 1)", new Object[]{ t + 5 * DAY, t });
+            // Borrado: no cuenta en ningún lado
+            db.execSQL("INSERT INTO events (id, uid, appType, subjectId, title, dueAt, realized, realizedAt, cost, updatedAt, deleted, dirty) "
+                    + "VALUES ('e3', 'u', 'pets', 's1', 'Vacuna vieja', ?, 1, ?, 900, ?, 1, 0)", new Object[]{ t, t, t });
+            db.setVersion(15);
+        } finally {
+            db.close();
+        }
+    }
+
+    private static long count(SupportSQLiteDatabase db, String sql) {
+        try (Cursor c = db.query(sql)) {
+            assertTrue(c.moveToFirst());
+            return c.getLong(0);
+        }
+    }
+}
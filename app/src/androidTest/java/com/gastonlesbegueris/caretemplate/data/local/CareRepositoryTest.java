@@ -0,0 +1,88 @@
+package com.gastonlesbegueris.caretemplate.data.local;
+
+import android.content.Context;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+import androidx.room.Room;
+import androidx.test.annotation.UiThreadTest;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.gastonlesbegueris.caretemplate.data.model.EventListItem;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Identidad de los streams compartidos: la misma clave da la misma instancia mientras tenga
+ * observers, y sin observers sale del mapa hasta que alguien vuelva a observarla. En el hilo
+ * principal, como las pantallas.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CareRepositoryTest {
+
+    private AppDb appDb;
+    private CareRepository repo;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        appDb = Room.inMemoryDatabaseBuilder(context, AppDb.class).allowMainThreadQueries().build();
+        repo = new CareRepository(appDb);
+    }
+
+    @After
+    public void tearDown() {
+        appDb.close();
+    }
+
+    @Test
+    @UiThreadTest
+    public void sameKeyGivesTheSameStream() {
+        LiveData<List<SubjectEntity>> a = repo.activeSubjects("pets");
+        assertSame(a, repo.activeSubjects("pets"));
+        assertNotSame(a, repo.activeSubjects("cars"));
+
+        LiveData<List<EventListItem>> page = repo.activeEventsPage("pets", 50);
+        assertSame(page, repo.activeEventsPage("pets", 50));
+        // Otra ventana es otra consulta
+        assertNotSame(page, repo.activeEventsPage("pets", 100));
+    }
+
+    @Test
+    @UiThreadTest
+    public void streamLeavesWithItsLastObserverAndComesBack() {
+        LiveData<List<SubjectEntity>> a = repo.activeSubjects("pets");
+        Observer<List<SubjectEntity>> first = list -> { };
+        Observer<List<SubjectEntity>> second = list -> { };
+        a.observeForever(first);
+        a.observeForever(second);
+        assertEquals(2, repo.activeObserverCount());
+        assertEquals(Integer.valueOf(2), repo.observerCounts().get("subjects.active|pets"));
+
+        a.removeObserver(first);
+        assertSame(a, repo.activeSubjects("pets"));
+        a.removeObserver(second);
+        assertEquals(0, repo.activeObserverCount());
+
+        // Sin observers salió del mapa: un pedido nuevo abre otro stream...
+        LiveData<List<SubjectEntity>> b = repo.activeSubjects("pets");
+        assertNotSame(a, b);
+        // ...salvo que el viejo (guardado en un ViewModel) vuelva a tener observers primero
+        LiveData<List<SubjectEntity>> c = repo.activeSubjects("cars");
+        c.observeForever(first);
+        c.removeObserver(first);
+        c.observeForever(first);
+        assertSame(c, repo.activeSubjects("cars"));
+        c.removeObserver(first);
+    }
+}
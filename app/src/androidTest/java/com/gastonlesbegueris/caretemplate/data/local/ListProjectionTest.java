@@ -0,0 +1,153 @@
+package com.gastonlesbegueris.caretemplate.data.local;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.gastonlesbegueris.caretemplate.data.model.EventListItem;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Proyección de lista (EventListItem): COLUMNS y los campos mapeados son los mismos, y una
+ * query de lista trae los mismos valores que la fila completa (o que EventListItem.of).
+ */
+@RunWith(AndroidJUnit4.class)
+public class ListProjectionTest {
+
+    private static final String APP = "pets";
+    private static final long T0 = 1_704_110_400_000L; // 2024-01-01 12:00 UTC
+
+    private AppDb appDb;
+    private EventDao dao;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        appDb = Room.inMemoryDatabaseBuilder(context, AppDb.class).allowMainThreadQueries().build();
+        dao = appDb.eventDao();
+    }
+
+    @After
+    public void tearDown() {
+        appDb.close();
+    }
+
+    @Test
+    public void columnsMatchTheMappedFields() {
+        // Las anotaciones de Room no llegan al runtime: en esta clase campo = columna, salvo occurrence
+        Set<String> fields = new HashSet<>();
+        for (Field f : EventListItem.class.getFields()) {
+            if (Modifier.isStatic(f.getModifiers()) || f.getName().equals("occurrence")) continue;
+            fields.add(f.getName());
+        }
+        Set<String> columns = new HashSet<>(Arrays.asList(EventListItem.COLUMNS.split(",\\s*")));
+        assertEquals(fields, columns);
+        // Y todas existen en events
+        try (Cursor c = appDb.query("SELECT " + EventListItem.COLUMNS + " FROM events LIMIT 0", null)) {
+            assertEquals(columns.size(), c.getColumnCount());
+        }
+    }
+
+    @Test
+    public void listQueryMapsEveryColumn() throws InterruptedException {
+        EventEntity full = event("e1", T0);
+        full.cost = 1500.5;
+        full.kilometersAtEvent = 42_000.5;
+        dao.insert(full);
+        EventEntity bare = event("e2", T0 + 1000);
+        dao.insert(bare);
+
+        List<EventListItem> page = await(dao.observeActivePage(APP, 10));
+        assertEquals(2, page.size());
+        assertSameRow(full, page.get(0));
+        assertSameRow(bare, page.get(1));
+        // Opcionales en null siguen en null (no 0)
+        assertNull(page.get(1).cost);
+        assertNull(page.get(1).kilometersAtEvent);
+        // Desde la base nunca es una ocurrencia virtual
+        assertNull(page.get(0).occurrence);
+    }
+
+    @Test
+    public void ofCopiesTheSameColumns() {
+        EventEntity e = event("e1", T0);
+        e.cost = 10.0;
+        assertSameRow(e, EventListItem.of(e));
+        assertNull(EventListItem.of(e).occurrence);
+
+        EventEntity virtual = event(Recurrence.occurrenceId("r1", T0), T0);
+        EventListItem item = EventListItem.of(virtual);
+        assertNotNull(item.occurrence);
+        assertSame(virtual, item.occurrence);
+    }
+
+    // ----------------------
+    // Helpers
+    // ----------------------
+
+    private static void assertSameRow(EventEntity e, EventListItem i) {
+        assertEquals(e.id, i.id);
+        assertEquals(e.subjectId, i.subjectId);
+        assertEquals(e.title, i.title);
+        assertEquals(e.dueAt, i.dueAt);
+        assertEquals(e.realized, i.realized);
+        assertEquals(e.cost, i.cost);
+        assertEquals(e.kilometersAtEvent, i.kilometersAtEvent);
+        assertEquals(e.updatedAt, i.updatedAt);
+    }
+
+    // Primer valor del LiveData de Room (la consulta corre en su executor y publica en el main)
+    private static <T> T await(LiveData<T> live) throws InterruptedException {
+        final List<T> out = new ArrayList<>(1);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Observer<T> observer = new Observer<T>() {
+            @Override
+            public void onChanged(T value) {
+                out.add(value);
+                live.removeObserver(this);
+                latch.countDown();
+            }
+        };
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> live.observeForever(observer));
+        assertTrue("sin emisión", latch.await(5, TimeUnit.SECONDS));
+        return out.get(0);
+    }
+
+    private static EventEntity event(String id, long dueAt) {
+        EventEntity e = new EventEntity();
+        e.id = id;
+        e.uid = "u";
+        e.appType = APP;
+        e.subjectId = "s1";
+        e.title = "Vacuna " + id;
+        e.note = "no va en la lista";
+        e.dueAt = dueAt;
+        e.updatedAt = T0 + 5;
+        return e;
+    }
+}
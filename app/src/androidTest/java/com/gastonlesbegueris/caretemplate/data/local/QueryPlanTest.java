@@ -0,0 +1,192 @@
+package com.gastonlesbegueris.caretemplate.data.local;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.gastonlesbegueris.caretemplate.data.model.EventListItem;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * Guardia de planes: las queries calientes de EventDao / ExpenseDao tienen que resolverse con
+ * sus índices (SEARCH ... USING INDEX), nunca recorriendo la tabla entera (SCAN events).
+ * El SQL es el mismo de las anotaciones @Query; si una query cambia, cambiarla también acá.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QueryPlanTest {
+
+    private static final String APP = "pets";
+    private static final long NOW = 1_700_000_000_000L;
+    private static final long DAY = 86_400_000L;
+
+    private AppDb appDb;
+    private SupportSQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        appDb = Room.inMemoryDatabaseBuilder(context, AppDb.class).allowMainThreadQueries().build();
+        db = appDb.getOpenHelper().getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        appDb.close();
+    }
+
+    @Test
+    public void observeActivePage() {
+        List<String> plan = plan("SELECT " + EventListItem.COLUMNS + " FROM events WHERE appType=? AND deleted=0 AND realized=0 ORDER BY dueAt ASC, id ASC LIMIT ?",
+                APP, 50);
+        assertNoScan(plan, "events");
+        assertUses(plan, "index_events_appType_deleted_realized_dueAt");
+    }
+
+    @Test
+    public void observeUpcomingPage() {
+        List<String> plan = plan("SELECT " + EventListItem.COLUMNS + " FROM events WHERE appType=? AND deleted=0 AND realized=0 AND dueAt >= ? ORDER BY dueAt ASC, id ASC LIMIT ?",
+                APP, NOW, 50);
+        assertNoScan(plan, "events");
+        assertUses(plan, "index_events_appType_deleted_realized_dueAt");
+    }
+
+    @Test
+    public void observeSearchPage() {
+        List<String> plan = plan("SELECT " + EventListItem.COLUMNS + " FROM events WHERE appType = ? AND deleted = 0"
+                        + " AND (rowid IN (SELECT docid FROM events_fts WHERE events_fts MATCH ?)"
+                        + " OR subjectId IN (SELECT s.id FROM subjects s JOIN subjects_fts ON s.rowid = subjects_fts.docid"
+                        + " WHERE subjects_fts MATCH ? AND s.appType = ? AND s.deleted = 0))"
+                        + " AND (? IS NULL OR subjectId = ?)"
+                        + " AND dueAt >= ? AND dueAt < ?"
+                        + " ORDER BY dueAt DESC, id DESC LIMIT ?",
+                APP, "vacu*", "vacu*", APP, null, null, 0L, Long.MAX_VALUE, 50);
+        // subjects es chica y sin índices propios: lo que importa es no recorrer events
+        assertNoScan(plan, "events");
+    }
+
+    @Test
+    public void observeSubjectHistory() {
+        List<String> plan = plan("SELECT * FROM events WHERE appType=? AND subjectId=? AND deleted=0 AND realized=1 ORDER BY dueAt DESC",
+                APP, "s1");
+        assertNoScan(plan, "events");
+        assertUses(plan, "index_events_appType_subjectId_deleted_realized_dueAt");
+    }
+
+    @Test
+    public void listSubjectStatuses() {
+        List<String> plan = plan("SELECT s.subjectId, s.nextDueAt, s.overdueCount, s.dueTodayCount,"
+                        + " (SELECT e.title FROM events e"
+                        + "  WHERE e.appType = ? AND e.subjectId = s.subjectId"
+                        + "    AND e.deleted = 0 AND e.realized = 0 AND e.dueAt = s.nextDueAt"
+                        + "  LIMIT 1) AS nextTitle"
+                        + " FROM ("
+                        + "  SELECT subjectId,"
+                        + "         MIN(CASE WHEN dueAt >= ? THEN dueAt END) AS nextDueAt,"
+                        + "         SUM(CASE WHEN dueAt < ? THEN 1 ELSE 0 END) AS overdueCount,"
+                        + "         SUM(CASE WHEN dueAt >= ? AND dueAt < ? THEN 1 ELSE 0 END) AS dueTodayCount"
+                        + "  FROM events"
+                        + "  WHERE appType = ? AND deleted = 0 AND realized = 0 AND subjectId IS NOT NULL"
+                        + "  GROUP BY subjectId"
+                        + " ) s",
+                APP, NOW, NOW, NOW - DAY, NOW, APP);
+        assertNoScan(plan, "events", "e");
+        // La subquery correlacionada (título del próximo) va por el índice por sujeto
+        assertUses(plan, "index_events_appType_subjectId_deleted_realized_dueAt");
+    }
+
+    @Test
+    public void listDueUnrealizedIds() {
+        List<String> plan = plan("SELECT id FROM events WHERE appType=? AND deleted=0 AND realized=0 AND dueAt <= ?",
+                APP, NOW);
+        assertNoScan(plan, "events");
+        assertUses(plan, "index_events_appType_deleted_realized_dueAt");
+    }
+
+    @Test
+    public void listUpcomingNotifiable() {
+        List<String> plan = plan("SELECT * FROM events WHERE appType=? AND deleted=0 AND realized=0 AND dueAt >= ? AND notificationMinutesBefore > 0 ORDER BY dueAt ASC LIMIT ?",
+                APP, NOW, 64);
+        assertNoScan(plan, "events");
+        assertUses(plan, "index_events_appType_deleted_realized_dueAt");
+    }
+
+    @Test
+    public void purgeTombstones() {
+        List<String> plan = plan("DELETE FROM events WHERE rowid IN (SELECT rowid FROM events e WHERE e.deleted=1 AND e.dirty=0 AND e.updatedAt < ? "
+                        + "AND (e.originalEventId IS NULL OR NOT EXISTS (SELECT 1 FROM events r WHERE r.id = e.originalEventId AND r.deleted=0)) "
+                        + "LIMIT ?)",
+                NOW, 500);
+        assertNoScan(plan, "events", "e", "r");
+    }
+
+    @Test
+    public void listRecurringRules() {
+        List<String> plan = plan("SELECT * FROM events r"
+                        + " WHERE r.appType = ? AND r.deleted = 0"
+                        + "   AND r.repeatType IS NOT NULL AND r.originalEventId IS NULL"
+                        + "   AND NOT EXISTS ("
+                        + "       SELECT 1 FROM events c"
+                        + "       WHERE c.originalEventId = r.id AND c.deleted = 0"
+                        + "         AND substr(c.id, 1, length(r.id) + 1) != (r.id || '@')"
+                        + "   )",
+                APP);
+        assertNoScan(plan, "events", "r", "c");
+        assertUses(plan, "index_events_originalEventId");
+    }
+
+    @Test
+    public void expenseListDays() {
+        List<String> plan = plan("SELECT day, COUNT(*) AS count, SUM(amount) AS total FROM expenses"
+                        + " WHERE appType = ? AND deleted = 0 AND day BETWEEN ? AND ? GROUP BY day ORDER BY day ASC",
+                APP, 19_000L, 19_030L);
+        assertNoScan(plan, "expenses");
+        assertUses(plan, "index_expenses_appType_deleted_day");
+    }
+
+    // ----------------------
+    // Helpers
+    // ----------------------
+
+    private List<String> plan(String sql, Object... args) {
+        List<String> out = new ArrayList<>();
+        try (Cursor c = db.query("EXPLAIN QUERY PLAN " + sql, args)) {
+            int detail = c.getColumnIndexOrThrow("detail");
+            while (c.moveToNext()) out.add(c.getString(detail));
+        }
+        assertFalse("plan vacío para " + sql, out.isEmpty());
+        return out;
+    }
+
+    // "SCAN events" / "SCAN TABLE events" (SQLite viejo); un SCAN de la tabla FTS o de una
+    // subquery materializada no cuenta
+    private static void assertNoScan(List<String> plan, String... tables) {
+        for (String t : tables) {
+            Pattern scan = Pattern.compile("^SCAN (TABLE )?" + Pattern.quote(t) + "( |$)");
+            for (String line : plan) {
+                assertFalse("recorre " + t + " entero: " + plan, scan.matcher(line).find());
+            }
+        }
+    }
+
+    private static void assertUses(List<String> plan, String index) {
+        for (String line : plan) {
+            if (line.contains("INDEX " + index + " ") || line.endsWith("INDEX " + index)) return;
+        }
+        fail("no usa " + index + ": " + plan);
+    }
+}
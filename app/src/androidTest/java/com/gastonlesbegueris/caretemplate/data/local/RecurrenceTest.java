@@ -0,0 +1,176 @@
+package com.gastonlesbegueris.caretemplate.data.local;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Cambios de calendario de una regla contra Room: una serie vieja (una fila por repetición,
+ * con UUID propio) pasa a virtual, y las excepciones de una serie virtual se mueven por lugar.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RecurrenceTest {
+
+    private static final String APP = "pets";
+    private static final long HOUR = 3_600_000L;
+    private static final long DAY = 24 * HOUR;
+    // Un día a las 12:00 UTC, lejos de cualquier cambio de horario en medio de la serie
+    private static final long T0 = 1_704_110_400_000L; // 2024-01-01 12:00 UTC
+
+    private AppDb appDb;
+    private EventDao dao;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        appDb = Room.inMemoryDatabaseBuilder(context, AppDb.class).allowMainThreadQueries().build();
+        dao = appDb.eventDao();
+    }
+
+    @After
+    public void tearDown() {
+        appDb.close();
+    }
+
+    @Test
+    public void legacySeriesTurnsVirtualWhenItsScheduleChanges() {
+        EventEntity rule = rule("r1", T0);
+        dao.insert(rule);
+        dao.insert(child("c1", "r1", T0 + DAY));
+        dao.insert(child("c2", "r1", T0 + 2 * DAY));
+        // Con repeticiones UUID vivas la regla no se expande (se duplicarían)
+        assertTrue(dao.listRecurringRules(APP).isEmpty());
+
+        EventEntity before = Recurrence.copy(rule);
+        rule.dueAt = T0 + HOUR;
+        rule.updatedAt = T0 + 10;
+        rule.dirty = 1;
+        dao.update(rule);
+        assertEquals(2, Recurrence.scheduleChanged(dao, before, rule, T0 + 10));
+
+        for (String id : Arrays.asList("c1", "c2")) {
+            EventEntity c = dao.findOne(id);
+            assertEquals(id, 1, c.deleted);
+            assertEquals(id, 1, c.dirty);
+        }
+        assertEquals(1, dao.listRecurringRules(APP).size());
+        List<Long> times = new ArrayList<>();
+        for (EventEntity o : Recurrence.loadRules(dao, APP).expandAll(T0, T0 + 3 * DAY)) {
+            assertEquals(Recurrence.occurrenceId("r1", o.dueAt), o.id);
+            times.add(o.dueAt);
+        }
+        assertEquals(Arrays.asList(T0 + HOUR + DAY, T0 + HOUR + 2 * DAY), times);
+    }
+
+    @Test
+    public void legacySeriesStaysWhenOnlyTheTitleChanges() {
+        EventEntity rule = rule("r1", T0);
+        dao.insert(rule);
+        dao.insert(child("c1", "r1", T0 + DAY));
+
+        EventEntity before = Recurrence.copy(rule);
+        rule.title = "Otro título";
+        dao.update(rule);
+        assertEquals(0, Recurrence.scheduleChanged(dao, before, rule, T0 + 10));
+
+        assertEquals(0, dao.findOne("c1").deleted);
+        assertTrue(dao.listRecurringRules(APP).isEmpty());
+    }
+
+    @Test
+    public void virtualExceptionsMoveByPlaceInTheSeries() {
+        EventEntity rule = rule("r1", T0);
+        dao.insert(rule);
+        // 1ª realizada (ya pasó), 3ª editada y 4ª borrada
+        EventEntity done = Recurrence.occurrence(rule, T0 + DAY);
+        done.realized = 1;
+        done.realizedAt = T0 + DAY;
+        dao.insert(done);
+        EventEntity edited = Recurrence.occurrence(rule, T0 + 3 * DAY);
+        edited.title = "Con turno";
+        dao.insert(edited);
+        EventEntity gone = Recurrence.occurrence(rule, T0 + 4 * DAY);
+        gone.deleted = 1;
+        dao.insert(gone);
+
+        EventEntity before = Recurrence.copy(rule);
+        rule.dueAt = T0 + HOUR;
+        dao.update(rule);
+        Recurrence.scheduleChanged(dao, before, rule, T0 + 2 * DAY);
+
+        // Las pasadas también: el historial se calcula con el calendario nuevo
+        EventEntity movedDone = dao.findOne(Recurrence.occurrenceId("r1", T0 + HOUR + DAY));
+        assertNotNull(movedDone);
+        assertEquals(1, movedDone.realized);
+        assertEquals(Long.valueOf(T0 + DAY), movedDone.realizedAt);
+        EventEntity moved = dao.findOne(Recurrence.occurrenceId("r1", T0 + HOUR + 3 * DAY));
+        assertNotNull(moved);
+        assertEquals("Con turno", moved.title);
+        assertEquals(T0 + HOUR + 3 * DAY, moved.dueAt);
+        assertEquals(1, dao.findOne(Recurrence.occurrenceId("r1", T0 + HOUR + 4 * DAY)).deleted);
+        // Las fechas viejas ya no se generan: quedan como tombstones sin regla
+        EventEntity old = dao.findOne(Recurrence.occurrenceId("r1", T0 + 3 * DAY));
+        assertEquals(1, old.deleted);
+        assertNull(old.originalEventId);
+    }
+
+    @Test
+    public void pastOccurrencesCountAsRealizedWithoutRows() {
+        dao.insert(rule("r1", T0));
+
+        List<EventEntity> occ = Recurrence.loadRules(dao, APP).expandAll(T0, T0 + 3 * DAY, T0 + 2 * DAY);
+        assertEquals(3, occ.size());
+        assertEquals(1, occ.get(0).realized);
+        assertEquals(Long.valueOf(T0 + DAY), occ.get(0).realizedAt);
+        assertEquals(1, occ.get(1).realized);
+        assertEquals(0, occ.get(2).realized);
+        assertNull(occ.get(2).realizedAt);
+        // Nada se guardó: solo la regla
+        assertEquals(1, dao.countEventsForApp(APP));
+    }
+
+    // ----------------------
+    // Helpers
+    // ----------------------
+
+    private static EventEntity rule(String id, long dueAt) {
+        EventEntity e = event(id, dueAt);
+        e.repeatType = "daily";
+        e.repeatInterval = 1;
+        return e;
+    }
+
+    private static EventEntity child(String id, String ruleId, long dueAt) {
+        EventEntity e = event(id, dueAt);
+        e.originalEventId = ruleId;
+        return e;
+    }
+
+    private static EventEntity event(String id, long dueAt) {
+        EventEntity e = new EventEntity();
+        e.id = id;
+        e.uid = "u";
+        e.appType = APP;
+        e.subjectId = "s1";
+        e.title = "Pastilla";
+        e.dueAt = dueAt;
+        e.updatedAt = T0;
+        return e;
+    }
+}
@@ -0,0 +1,151 @@
+package com.gastonlesbegueris.caretemplate.data.local;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Índices full-text contra Room: los triggers de events_fts y subjects_fts siguen a los upsert
+ * (alta y modificación), y después de VACUUM + rebuild los docid vuelven a apuntar a las filas
+ * correctas.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SearchIndexTest {
+
+    private static final String APP = "pets";
+
+    private AppDb appDb;
+    private EventDao dao;
+    private SubjectDao subjectDao;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        appDb = Room.inMemoryDatabaseBuilder(context, AppDb.class).allowMainThreadQueries().build();
+        dao = appDb.eventDao();
+        subjectDao = appDb.subjectDao();
+    }
+
+    @After
+    public void tearDown() {
+        appDb.close();
+    }
+
+    @Test
+    public void upsertKeepsTheEventIndexInStep() {
+        dao.insert(event("e1", "s1", "Vacuna anual", null));
+        assertEquals(Collections.singletonList("e1"), findEvents("vacu"));
+
+        // Upsert sobre la fila existente: sale el texto viejo, entra el nuevo
+        EventEntity e = dao.findOne("e1");
+        e.title = "Baño";
+        e.note = "con champú";
+        dao.insertAll(Collections.singletonList(e));
+        assertTrue(findEvents("vacu").isEmpty());
+        assertEquals(Collections.singletonList("e1"), findEvents("bano champu"));
+
+        // Alta por el mismo camino (pull)
+        dao.insertAll(Collections.singletonList(event("e2", "s1", "Vacuna triple", null)));
+        assertEquals(Collections.singletonList("e2"), findEvents("vacu"));
+    }
+
+    @Test
+    public void upsertKeepsTheSubjectIndexInStep() {
+        subjectDao.insert(subject("s1", "Firulais"));
+        assertEquals(Collections.singletonList("s1"), findSubjects("firu"));
+
+        SubjectEntity s = subject("s1", "Michi");
+        subjectDao.insertAll(Collections.singletonList(s));
+        assertTrue(findSubjects("firu").isEmpty());
+        assertEquals(Collections.singletonList("s1"), findSubjects("michi"));
+    }
+
+    @Test
+    public void vacuumAndRebuildKeepResultsOnTheRightRows() {
+        for (int i = 0; i < 20; i++) {
+            dao.insert(event("a" + i, "s0", "Paseo " + i, null));
+        }
+        dao.insert(event("b1", "s1", "Vacuna anual", null));
+        dao.insert(event("b2", "s1", "Desparasitar", "después de la vacuna"));
+        // Hueco de rowid antes de las filas que quedan: VACUUM puede renumerarlas
+        dao.deletePermanentlyEventsBySubjectId("s0");
+
+        SupportSQLiteDatabase sql = appDb.getOpenHelper().getWritableDatabase();
+        sql.execSQL("VACUUM");
+        SearchIndex.rebuild(sql); // como TombstoneCompactor
+
+        assertEquals(Arrays.asList("b1", "b2"), findEvents("vacuna"));
+        assertEquals(Collections.singletonList("b2"), findEvents("despara"));
+        assertTrue(findEvents("paseo").isEmpty());
+
+        // Los triggers siguen andando después del VACUUM
+        EventEntity e = dao.findOne("b1");
+        e.title = "Control";
+        dao.insert(e);
+        assertEquals(Collections.singletonList("b2"), findEvents("vacuna"));
+        assertEquals(Collections.singletonList("b1"), findEvents("control"));
+    }
+
+    // ----------------------
+    // Helpers
+    // ----------------------
+
+    // La misma subconsulta que EventDao.observeSearchPage, sin la parte de sujetos
+    private List<String> findEvents(String text) {
+        return ids("SELECT id FROM events WHERE rowid IN (SELECT docid FROM events_fts WHERE events_fts MATCH ?)"
+                + " ORDER BY id", SearchIndex.matchQuery(text));
+    }
+
+    private List<String> findSubjects(String text) {
+        return ids("SELECT s.id FROM subjects s JOIN subjects_fts ON s.rowid = subjects_fts.docid"
+                + " WHERE subjects_fts MATCH ? ORDER BY s.id", SearchIndex.matchQuery(text));
+    }
+
+    private List<String> ids(String query, String match) {
+        List<String> out = new ArrayList<>();
+        try (Cursor c = appDb.query(query, new Object[]{ match })) {
+            while (c.moveToNext()) out.add(c.getString(0));
+        }
+        return out;
+    }
+
+    private static EventEntity event(String id, String subjectId, String title, String note) {
+        EventEntity e = new EventEntity();
+        e.id = id;
+        e.uid = "u";
+        e.appType = APP;
+        e.subjectId = subjectId;
+        e.title = title;
+        e.note = note;
+        e.dueAt = 1_704_110_400_000L;
+        e.updatedAt = 1_704_110_400_000L;
+        return e;
+    }
+
+    private static SubjectEntity subject(String id, String name) {
+        SubjectEntity s = new SubjectEntity();
+        s.id = id;
+        s.uid = "u";
+        s.appType = APP;
+        s.name = name;
+        s.updatedAt = 1_704_110_400_000L;
+        return s;
+    }
+}
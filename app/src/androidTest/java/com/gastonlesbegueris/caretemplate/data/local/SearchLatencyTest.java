@@ -0,0 +1,156 @@
+package com.gastonlesbegueris.caretemplate.data.local;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.gastonlesbegueris.caretemplate.data.model.EventListItem;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Latencia de la búsqueda (la consulta de EventDao.observeSearchPage) con 100k events en la
+ * base. Loguea mediana y p90 en el dispositivo ("SearchLatency" en logcat); el límite del
+ * assert es holgado a propósito: solo tiene que saltar si la búsqueda vuelve a recorrer events.
+ * Larga (llena la base): se saltea con -e notAnnotation androidx.test.filters.LargeTest.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class SearchLatencyTest {
+
+    private static final String TAG = "SearchLatency";
+    private static final String APP = "pets";
+    private static final int EVENTS = 100_000;
+    private static final int SUBJECTS = 20;
+    private static final int PAGE = 50;
+    private static final int WARMUP = 3;
+    private static final int RUNS = 21;
+    private static final long MEDIAN_BUDGET_MS = 250;
+    private static final long T0 = 1_704_110_400_000L; // 2024-01-01 12:00 UTC
+    private static final String[] TITLES = {
+            "Vacuna", "Paseo", "Baño", "Control", "Desparasitar", "Peluquería", "Service", "Seguro"
+    };
+
+    // La misma consulta que EventDao.observeSearchPage (y que QueryPlanTest)
+    private static final String SEARCH = "SELECT " + EventListItem.COLUMNS + " FROM events WHERE appType = ? AND deleted = 0"
+            + " AND (rowid IN (SELECT docid FROM events_fts WHERE events_fts MATCH ?)"
+            + " OR subjectId IN (SELECT s.id FROM subjects s JOIN subjects_fts ON s.rowid = subjects_fts.docid"
+            + " WHERE subjects_fts MATCH ? AND s.appType = ? AND s.deleted = 0))"
+            + " AND (? IS NULL OR subjectId = ?)"
+            + " AND dueAt >= ? AND dueAt < ?"
+            + " ORDER BY dueAt DESC, id DESC LIMIT ?";
+
+    private AppDb appDb;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        appDb = Room.inMemoryDatabaseBuilder(context, AppDb.class).allowMainThreadQueries().build();
+        fill();
+    }
+
+    @After
+    public void tearDown() {
+        appDb.close();
+    }
+
+    @Test
+    public void searchPageOver100kEvents() {
+        long common = median("vacuna", null);       // 1 de cada 8 events
+        long rare = median("desparasitar 4212", null); // pocas filas
+        long subject = median("firulais", null);    // por nombre de sujeto
+        long filtered = median("control", "s3");    // texto + sujeto
+        Log.i(TAG, EVENTS + " events: vacuna=" + common + "ms, rara=" + rare + "ms, sujeto="
+                + subject + "ms, texto+sujeto=" + filtered + "ms (medianas de " + RUNS + ")");
+        for (long ms : new long[]{ common, rare, subject, filtered }) {
+            assertTrue(ms + "ms", ms < MEDIAN_BUDGET_MS);
+        }
+    }
+
+    // ----------------------
+    // Helpers
+    // ----------------------
+
+    private long median(String text, String subjectId) {
+        String match = SearchIndex.matchQuery(text);
+        Object[] args = { APP, match, match, APP, subjectId, subjectId, Long.MIN_VALUE, Long.MAX_VALUE, PAGE };
+        for (int i = 0; i < WARMUP; i++) run(args);
+        long[] ms = new long[RUNS];
+        int rows = 0;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            rows = run(args);
+            ms[i] = (System.nanoTime() - start) / 1_000_000L;
+        }
+        Arrays.sort(ms);
+        Log.i(TAG, "'" + text + "'" + (subjectId != null ? " en " + subjectId : "") + ": " + rows
+                + " filas, mediana " + ms[RUNS / 2] + "ms, p90 " + ms[RUNS * 9 / 10] + "ms");
+        assertTrue("'" + text + "' sin resultados", rows > 0);
+        return ms[RUNS / 2];
+    }
+
+    // Recorre el cursor entero, como Room al armar la lista
+    private int run(Object[] args) {
+        int n = 0;
+        try (Cursor c = appDb.query(SEARCH, args)) {
+            while (c.moveToNext()) {
+                c.getString(0);
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private void fill() {
+        List<SubjectEntity> subjects = new ArrayList<>(SUBJECTS);
+        for (int i = 0; i < SUBJECTS; i++) {
+            SubjectEntity s = new SubjectEntity();
+            s.id = "s" + i;
+            s.uid = "u";
+            s.appType = APP;
+            s.name = i == 0 ? "Firulais" : "Sujeto " + i;
+            s.updatedAt = T0;
+            subjects.add(s);
+        }
+        appDb.subjectDao().insertAll(subjects);
+
+        EventDao dao = appDb.eventDao();
+        appDb.runInTransaction(() -> {
+            List<EventEntity> batch = new ArrayList<>(1000);
+            for (int i = 0; i < EVENTS; i++) {
+                EventEntity e = new EventEntity();
+                e.id = "e" + i;
+                e.uid = "u";
+                e.appType = APP;
+                e.subjectId = "s" + (i % SUBJECTS);
+                e.title = TITLES[i % TITLES.length] + " " + i;
+                e.note = i % 10 == 0 ? "nota del evento " + i : null;
+                e.dueAt = T0 + (long) i * 3_600_000L;
+                e.realized = i % 3 == 0 ? 1 : 0;
+                e.updatedAt = T0;
+                batch.add(e);
+                if (batch.size() == 1000) {
+                    dao.insertAll(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) dao.insertAll(batch);
+        });
+        assertEquals(EVENTS, dao.countEventsForApp(APP));
+    }
+}
@@ -0,0 +1,107 @@
+package com.gastonlesbegueris.caretemplate.data.local;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Compactación de tombstones: se van los borrados ya subidos y viejos, salvo las excepciones
+ * borradas de una regla viva (ocultan su ocurrencia virtual).
+ */
+@RunWith(AndroidJUnit4.class)
+public class TombstoneCompactorTest {
+
+    private static final long DAY = 24 * 3_600_000L;
+    private static final long NOW = 1_704_110_400_000L; // 2024-01-01 12:00 UTC
+    private static final long OLD = NOW - TombstoneCompactor.RETENTION_MS - DAY;
+
+    private AppDb appDb;
+    private EventDao dao;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        appDb = Room.inMemoryDatabaseBuilder(context, AppDb.class).allowMainThreadQueries().build();
+        dao = appDb.eventDao();
+    }
+
+    @After
+    public void tearDown() {
+        appDb.close();
+    }
+
+    @Test
+    public void deletedExceptionsOfALiveRuleAreKept() {
+        dao.insert(rule("live", 0));
+        dao.insert(rule("gone", 1));
+        String hidden = Recurrence.occurrenceId("live", OLD);
+        dao.insert(tombstone(hidden, "live", OLD, 0));
+        String orphan = Recurrence.occurrenceId("gone", OLD);
+        dao.insert(tombstone(orphan, "gone", OLD, 0));
+        dao.insert(tombstone("plain", null, OLD, 0));
+
+        int purged = TombstoneCompactor.run(appDb, NOW).purgedEvents;
+
+        // La excepción sigue ocultando la ocurrencia de la regla viva
+        assertNotNull(dao.findOne(hidden));
+        assertNull(dao.findOne(orphan));
+        assertNull(dao.findOne("plain"));
+        // La regla borrada (ya subida y vieja) también es un tombstone
+        assertNull(dao.findOne("gone"));
+        assertEquals(3, purged);
+        assertNotNull(dao.findOne("live"));
+    }
+
+    @Test
+    public void pendingOrRecentTombstonesAreKept() {
+        dao.insert(tombstone("dirty", null, OLD, 1));
+        dao.insert(tombstone("recent", null, NOW - DAY, 0));
+
+        assertEquals(0, TombstoneCompactor.run(appDb, NOW).purgedEvents);
+        assertNotNull(dao.findOne("dirty"));
+        assertNotNull(dao.findOne("recent"));
+    }
+
+    // ----------------------
+    // Helpers
+    // ----------------------
+
+    private static EventEntity rule(String id, int deleted) {
+        EventEntity e = event(id, OLD);
+        e.repeatType = "daily";
+        e.repeatInterval = 1;
+        e.deleted = deleted;
+        return e;
+    }
+
+    private static EventEntity tombstone(String id, String ruleId, long updatedAt, int dirty) {
+        EventEntity e = event(id, updatedAt);
+        e.originalEventId = ruleId;
+        e.deleted = 1;
+        e.dirty = dirty;
+        return e;
+    }
+
+    private static EventEntity event(String id, long updatedAt) {
+        EventEntity e = new EventEntity();
+        e.id = id;
+        e.uid = "u";
+        e.appType = "pets";
+        e.subjectId = "s1";
+        e.title = "Pastilla";
+        e.dueAt = OLD;
+        e.updatedAt = updatedAt;
+        return e;
+    }
+}
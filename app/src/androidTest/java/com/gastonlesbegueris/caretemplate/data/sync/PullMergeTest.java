@@ -0,0 +1,191 @@
+package com.gastonlesbegueris.caretemplate.data.sync;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.gastonlesbegueris.caretemplate.data.local.AppDb;
+import com.gastonlesbegueris.caretemplate.data.local.ConflictDao;
+import com.gastonlesbegueris.caretemplate.data.local.ConflictEntity;
+import com.gastonlesbegueris.caretemplate.data.local.EventBase;
+import com.gastonlesbegueris.caretemplate.data.local.EventDao;
+import com.gastonlesbegueris.caretemplate.data.local.EventEntity;
+import com.gastonlesbegueris.caretemplate.data.local.EventFields;
+import com.gastonlesbegueris.caretemplate.data.local.OutboxEntity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Merge de tres vías del pull contra Room: campos que cambió solo lo local, solo lo remoto o
+ * los dos, y la base (events_base) que queda para el próximo pull cuando la fila sigue dirty.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PullMergeTest {
+
+    private static final long T0 = 1_704_110_400_000L; // 2024-01-01 12:00 UTC
+
+    private AppDb appDb;
+    private EventDao dao;
+    private ConflictDao conflicts;
+    private PullMerge merge;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        appDb = Room.inMemoryDatabaseBuilder(context, AppDb.class).allowMainThreadQueries().build();
+        // AppDb.get los instala en onOpen; acá solo hacen falta los de la base
+        EventBase.createTriggers(appDb.getOpenHelper().getWritableDatabase());
+        dao = appDb.eventDao();
+        conflicts = appDb.conflictDao();
+        merge = new PullMerge(dao, appDb.subjectDao(), conflicts);
+    }
+
+    @After
+    public void tearDown() {
+        appDb.close();
+    }
+
+    @Test
+    public void localOnlyAndRemoteOnlyFieldsAreBothKept() {
+        synced();
+        editLocally("Vacuna + desparasitar", T0 + 10);
+        EventEntity r = remote(T0 + 20);
+        r.cost = 900.0;
+        assertEquals(1, merge.applyEvents(Collections.singletonList(r)));
+
+        EventEntity row = dao.findOne("e1");
+        assertEquals("Vacuna + desparasitar", row.title); // solo lo local
+        assertEquals(Double.valueOf(900.0), row.cost);    // solo lo remoto
+        assertEquals(1, row.dirty);
+        assertEquals(EventFields.TITLE, row.dirtyFields);
+        assertEquals(T0 + 20, row.updatedAt);
+        assertTrue(conflicts.listFor(OutboxEntity.KIND_EVENT, "e1").isEmpty());
+
+        // La base pasó a ser la remota aunque la fila siga dirty
+        EventEntity base = base();
+        assertEquals(Double.valueOf(900.0), base.cost);
+        assertEquals("Vacuna", base.title);
+        assertEquals(T0 + 20, base.updatedAt);
+    }
+
+    @Test
+    public void remoteOnlyChangeOfAnUntouchedRowIsApplied() {
+        synced();
+        EventEntity r = remote(T0 + 20);
+        r.note = "traer libreta";
+        assertEquals(1, merge.applyEvents(Collections.singletonList(r)));
+
+        EventEntity row = dao.findOne("e1");
+        assertEquals("traer libreta", row.note);
+        assertEquals(0, row.dirty);
+        assertEquals("traer libreta", base().note);
+    }
+
+    @Test
+    public void sameVersionIsNotWrittenAgain() {
+        synced();
+        // La misma página otra vez (re-enganche del listener, pull repetido): nada que escribir
+        assertEquals(0, merge.applyEvents(Collections.singletonList(remote(T0))));
+        // Una versión nueva sí, aunque venga en la misma página que la repetida
+        EventEntity r = remote(T0 + 20);
+        r.id = "e2";
+        assertEquals(1, merge.applyEvents(Arrays.asList(remote(T0), r)));
+        assertEquals(T0, dao.findOne("e1").updatedAt);
+    }
+
+    @Test
+    public void bothChangedNewerLocalWinsAndLogsTheRemote() {
+        synced();
+        editLocally("Vacuna local", T0 + 30);
+        EventEntity r = remote(T0 + 20);
+        r.title = "Vacuna remota";
+        merge.applyEvents(Collections.singletonList(r));
+
+        EventEntity row = dao.findOne("e1");
+        assertEquals("Vacuna local", row.title);
+        assertEquals(1, row.dirty);
+        List<ConflictEntity> logged = conflicts.listFor(OutboxEntity.KIND_EVENT, "e1");
+        assertEquals(1, logged.size());
+        assertEquals(ConflictEntity.LOSER_REMOTE, logged.get(0).loser);
+        assertEquals(EventFields.TITLE, logged.get(0).fields);
+        assertEquals("Vacuna remota", base().title);
+
+        // Otro cambio remoto que no toca el título: contra la base nueva no vuelve a ser conflicto
+        EventEntity r2 = remote(T0 + 40);
+        r2.title = "Vacuna remota";
+        r2.note = "en ayunas";
+        merge.applyEvents(Collections.singletonList(r2));
+
+        row = dao.findOne("e1");
+        assertEquals("Vacuna local", row.title);
+        assertEquals("en ayunas", row.note);
+        assertEquals(1, conflicts.listFor(OutboxEntity.KIND_EVENT, "e1").size());
+    }
+
+    @Test
+    public void bothChangedNewerRemoteWinsAndLogsTheLocal() {
+        synced();
+        editLocally("Vacuna local", T0 + 10);
+        EventEntity r = remote(T0 + 20);
+        r.title = "Vacuna remota";
+        merge.applyEvents(Collections.singletonList(r));
+
+        EventEntity row = dao.findOne("e1");
+        assertEquals("Vacuna remota", row.title);
+        assertEquals(0, row.dirty);
+        List<ConflictEntity> logged = conflicts.listFor(OutboxEntity.KIND_EVENT, "e1");
+        assertEquals(1, logged.size());
+        assertEquals(ConflictEntity.LOSER_LOCAL, logged.get(0).loser);
+    }
+
+    // ----------------------
+    // Helpers
+    // ----------------------
+
+    // Fila ya sincronizada: limpia, con su base
+    private void synced() {
+        dao.insert(remote(T0));
+        assertEquals("Vacuna", base().title);
+    }
+
+    private void editLocally(String title, long at) {
+        EventEntity l = dao.findOne("e1");
+        l.title = title;
+        l.updatedAt = at;
+        l.dirty = 1;
+        l.dirtyFields = EventFields.TITLE;
+        dao.insertAll(Collections.singletonList(l));
+    }
+
+    private EventEntity base() {
+        List<? extends EventEntity> bases = dao.listBasesByIds(Collections.singletonList("e1"));
+        assertEquals(1, bases.size());
+        return bases.get(0);
+    }
+
+    // Como la baja CloudSync: limpia
+    private static EventEntity remote(long updatedAt) {
+        EventEntity e = new EventEntity();
+        e.id = "e1";
+        e.uid = "u";
+        e.appType = "pets";
+        e.subjectId = "s1";
+        e.title = "Vacuna";
+        e.dueAt = T0 + 24 * 3_600_000L;
+        e.cost = 1500.0;
+        e.updatedAt = updatedAt;
+        return e;
+    }
+}
@@ -5,17 +5,157 @@ import android.content.Context;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
+import com.gastonlesbegueris.caretemplate.data.local.ConflictDao;
+import com.gastonlesbegueris.caretemplate.data.local.ConflictEntity;
+import com.gastonlesbegueris.caretemplate.data.local.DayTotalDao;
+import com.gastonlesbegueris.caretemplate.data.local.DayTotalEntity;
 import com.gastonlesbegueris.caretemplate.data.local.EventDao;
 import com.gastonlesbegueris.caretemplate.data.local.EventEntity;
+import com.gastonlesbegueris.caretemplate.data.local.OutboxDao;
+import com.gastonlesbegueris.caretemplate.data.local.OutboxEntity;
 import com.gastonlesbegueris.caretemplate.data.local.SubjectDao;
 import com.gastonlesbegueris.caretemplate.data.local.SubjectEntity;
+import com.gastonlesbegueris.caretemplate.data.local.SyncStateDao;
+import com.gastonlesbegueris.caretemplate.data.local.SyncStateEntity;
+import com.gastonlesbegueris.caretemplate.data.local.ZoneOffsetEntity;
 
-@Database(entities = { EventEntity.class, SubjectEntity.class }, version = 15, exportSchema = false)
+@Database(entities = { EventEntity.class, SubjectEntity.class, SyncStateEntity.class, DayTotalEntity.class, ZoneOffsetEntity.class, OutboxEntity.class, ConflictEntity.class, EventFtsEntity.class, SubjectFtsEntity.class, ExpenseEntity.class, EventBaseEntity.class }, version = 25, exportSchema = true)
 public abstract class AppDb extends RoomDatabase {
     private static volatile AppDb I;
     public abstract EventDao eventDao();
     public abstract SubjectDao subjectDao();
+    public abstract SyncStateDao syncStateDao();
+    public abstract DayTotalDao dayTotalDao();
+    public abstract OutboxDao outboxDao();
+    public abstract ConflictDao conflictDao();
+    public abstract ExpenseDao expenseDao();
+
+    // 15→16: índices compuestos sobre events (ver EventEntity). Solo agrega índices, no toca datos.
+    static final Migration MIGRATION_15_16 = new Migration(15, 16) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_events_appType_deleted_realized_dueAt` ON `events` (`appType`, `deleted`, `realized`, `dueAt`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_events_appType_deleted_dueAt` ON `events` (`appType`, `deleted`, `dueAt`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_events_appType_deleted_realized_realizedAt` ON `events` (`appType`, `deleted`, `realized`, `realizedAt`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_events_appType_subjectId_deleted_realized_dueAt` ON `events` (`appType`, `subjectId`, `deleted`, `realized`, `dueAt`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_events_subjectId_deleted_dueAt` ON `events` (`subjectId`, `deleted`, `dueAt`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_events_originalEventId` ON `events` (`originalEventId`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_events_dirty` ON `events` (`dirty`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_events_appType_updatedAt` ON `events` (`appType`, `updatedAt`)");
+            // Que el planner tenga estadísticas de los índices nuevos
+            db.execSQL("ANALYZE");
+        }
+    };
+
+    // 16→17: tabla sync_state con el cursor del pull paginado (ver CloudSync).
+    static final Migration MIGRATION_16_17 = new Migration(16, 17) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `sync_state` (`syncKey` TEXT NOT NULL, `cursorUpdatedAt` INTEGER NOT NULL, `cursorDocId` TEXT, `updatedAt` INTEGER NOT NULL, PRIMARY KEY(`syncKey`))");
+        }
+    };
+
+    // 17→18: rollup diario day_totals (ver DayTotals). Los triggers y el recálculo los hace 18→19,
+    // que siempre corre a continuación: el SQL de los triggers ya depende de zone_offsets.
+    // Crea la tabla con el esquema actual (sin spentCount/spentSum, ver 23→24).
+    static final Migration MIGRATION_17_18 = new Migration(17, 18) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `day_totals` (`appType` TEXT NOT NULL, `subjectId` TEXT NOT NULL, `day` INTEGER NOT NULL, `eventCount` INTEGER NOT NULL, `realizedCount` INTEGER NOT NULL, `plannedSum` REAL NOT NULL, `realizedSum` REAL NOT NULL, PRIMARY KEY(`appType`, `subjectId`, `day`))");
+        }
+    };
+
+    // 18→19: zone_offsets (offsets de DayBuckets en SQL); los triggers pasan a usarla y se recalcula el rollup.
+    static final Migration MIGRATION_18_19 = new Migration(18, 19) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `zone_offsets` (`startAt` INTEGER NOT NULL, `offsetMs` INTEGER NOT NULL, PRIMARY KEY(`startAt`))");
+            DayTotals.dropTriggers(db);
+            DayTotals.createTriggers(db);
+            DayTotals.syncZoneBeforeLedger(db);
+        }
+    };
+
+    // 19→20: events.dirtyFields (push por campos, ver EventFields). Lo pendiente de antes sube completo.
+    static final Migration MIGRATION_19_20 = new Migration(19, 20) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `events` ADD COLUMN `dirtyFields` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("UPDATE `events` SET `dirtyFields` = " + EventFields.ALL + " WHERE `dirty` = 1");
+        }
+    };
+
+    // 20→21: outbox persistente del push (ver OutboxTriggers / SyncOutbox). Encola lo que ya estaba dirty.
+    static final Migration MIGRATION_20_21 = new Migration(20, 21) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `sync_outbox` (`kind` TEXT NOT NULL, `entityId` TEXT NOT NULL, `enqueuedAt` INTEGER NOT NULL, `attempts` INTEGER NOT NULL, `nextAttemptAt` INTEGER NOT NULL, `lastError` TEXT, PRIMARY KEY(`kind`, `entityId`))");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_sync_outbox_nextAttemptAt` ON `sync_outbox` (`nextAttemptAt`)");
+            OutboxTriggers.createTriggers(db);
+            OutboxTriggers.backfill(db);
+        }
+    };
+
+    // 21→22: registro de conflictos del merge del pull (ver PullMerge). Solo crea la tabla.
+    static final Migration MIGRATION_21_22 = new Migration(21, 22) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `sync_conflicts` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `kind` TEXT NOT NULL, `entityId` TEXT NOT NULL, `loser` TEXT NOT NULL, `fields` INTEGER NOT NULL, `localUpdatedAt` INTEGER NOT NULL, `remoteUpdatedAt` INTEGER NOT NULL, `payload` TEXT, `loggedAt` INTEGER NOT NULL)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_sync_conflicts_kind_entityId` ON `sync_conflicts` (`kind`, `entityId`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_sync_conflicts_loggedAt` ON `sync_conflicts` (`loggedAt`)");
+        }
+    };
+
+    // 22→23: índices full-text de events y subjects (ver SearchIndex). Se llenan con rebuild.
+    static final Migration MIGRATION_22_23 = new Migration(22, 23) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            SearchIndex.create(db);
+        }
+    };
+
+    // 23→24: libro de gastos expenses (ver ExpenseLedger), con los costos realizados que ya había en events;
+    // day_totals se rearma sin las columnas de gastos.
+    static final Migration MIGRATION_23_24 = new Migration(23, 24) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            // Nunca tuvo DAO: si quedó de una versión vieja está vacía y con otro esquema
+            db.execSQL("DROP TABLE IF EXISTS `expenses`");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `expenses` (`id` TEXT NOT NULL, `appType` TEXT, `subjectId` TEXT, `amount` REAL NOT NULL, `currency` TEXT, `category` TEXT, `note` TEXT, `atDate` INTEGER NOT NULL, `updatedAt` INTEGER NOT NULL, `deleted` INTEGER NOT NULL, `dirty` INTEGER NOT NULL, `eventId` TEXT, `day` INTEGER NOT NULL, PRIMARY KEY(`id`))");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_expenses_eventId` ON `expenses` (`eventId`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_expenses_appType_deleted_day` ON `expenses` (`appType`, `deleted`, `day`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_expenses_appType_deleted_atDate` ON `expenses` (`appType`, `deleted`, `atDate`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_expenses_appType_subjectId_deleted_atDate` ON `expenses` (`appType`, `subjectId`, `deleted`, `atDate`)");
+            ExpenseLedger.createTriggers(db);
+            ExpenseLedger.rebuild(db);
+
+            // Los gastos por realizedAt ya salen de expenses: day_totals pierde spentCount/spentSum
+            // (y su parte de los triggers). Las bases que pasaron por 17→18 antes los tienen
+            DayTotals.dropTriggers(db);
+            db.execSQL("DROP TABLE IF EXISTS `day_totals`");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `day_totals` (`appType` TEXT NOT NULL, `subjectId` TEXT NOT NULL, `day` INTEGER NOT NULL, `eventCount` INTEGER NOT NULL, `realizedCount` INTEGER NOT NULL, `plannedSum` REAL NOT NULL, `realizedSum` REAL NOT NULL, PRIMARY KEY(`appType`, `subjectId`, `day`))");
+            DayTotals.createTriggers(db);
+            DayTotals.rebuild(db);
+        }
+    };
+
+    // 24→25: events_base, última versión sincronizada de cada event (ver EventBase / PullMerge).
+    static final Migration MIGRATION_24_25 = new Migration(24, 25) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `events_base` (`id` TEXT NOT NULL, `uid` TEXT, `appType` TEXT, `subjectId` TEXT, `title` TEXT, `note` TEXT, `dueAt` INTEGER NOT NULL, `realized` INTEGER NOT NULL, `realizedAt` INTEGER, `cost` REAL, `kilometersAtEvent` REAL, `repeatType` TEXT, `repeatInterval` INTEGER, `repeatEndDate` INTEGER, `repeatCount` INTEGER, `originalEventId` TEXT, `notificationMinutesBefore` INTEGER, `updatedAt` INTEGER NOT NULL, `deleted` INTEGER NOT NULL, `dirty` INTEGER NOT NULL, `dirtyFields` INTEGER NOT NULL DEFAULT 0, PRIMARY KEY(`id`))");
+            EventBase.createTriggers(db);
+            EventBase.backfill(db);
+        }
+    };
+
+    /** Alinea el rollup con la zona horaria actual (no-op si no cambió). Hilo de fondo. */
+    public void syncDayTotalsZone() {
+        DayTotals.syncZone(getOpenHelper().getWritableDatabase());
+    }
 
     @SuppressWarnings("deprecation")
     public static AppDb get(Context c) {
@@ -32,8 +172,30 @@ public abstract class AppDb extends RoomDatabase {
                                     Migrations.MIGRATION_12_14,   // 12→14 (salto directo)
                                     Migrations.MIGRATION_11_15,   // 11→15 (salto directo)
                                     Migrations.MIGRATION_12_15,   // 12→15 (salto directo)
-                                    Migrations.MIGRATION_13_15    // 13→15 (salto directo)
+                                    Migrations.MIGRATION_13_15,   // 13→15 (salto directo)
+                                    MIGRATION_15_16,              // 15→16 (índices de events)
+                                    MIGRATION_16_17,              // 16→17 (cursor de sync)
+                                    MIGRATION_17_18,              // 17→18 (rollup day_totals)
+                                    MIGRATION_18_19,              // 18→19 (zone_offsets)
+                                    MIGRATION_19_20,              // 19→20 (events.dirtyFields)
+                                    MIGRATION_20_21,              // 20→21 (sync_outbox)
+                                    MIGRATION_21_22,              // 21→22 (sync_conflicts)
+                                    MIGRATION_22_23,              // 22→23 (events_fts, subjects_fts)
+                                    MIGRATION_23_24,              // 23→24 (libro de gastos expenses)
+                                    MIGRATION_24_25               // 24→25 (events_base)
                             )
+                            .addCallback(new RoomDatabase.Callback() {
+                                @Override
+                                public void onOpen(SupportSQLiteDatabase db) {
+                                    // Instalaciones nuevas o recreadas: Room crea las tablas pero no los triggers
+                                    DayTotals.createTriggers(db);
+                                    OutboxTriggers.createTriggers(db);
+                                    ExpenseLedger.createTriggers(db);
+                                    EventBase.createTriggers(db);
+                                    // Primera apertura o la zona cambió con la app cerrada
+                                    DayTotals.syncZone(db);
+                                }
+                            })
                             .fallbackToDestructiveMigration()   // Fallback solo si falla la migración
                             .build();
                 }
@@ -0,0 +1,163 @@
+package com.gastonlesbegueris.caretemplate.data.local;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
+import androidx.lifecycle.Observer;
+
+import com.gastonlesbegueris.caretemplate.data.model.EventListItem;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streams LiveData de Room compartidos entre pantallas: uno solo por (query, argumentos).
+ *
+ * Cada LiveData de un DAO corre su propia consulta en cada invalidación; si dos pantallas (o
+ * dos observe() de la misma) piden observeActive por separado, un cambio se consulta dos
+ * veces. Acá el stream se crea la primera vez que se pide y los siguientes pedidos con la
+ * misma clave reciben la misma instancia. Cuando se va el último observer sale del mapa (el
+ * ViewModel que lo guarda lo vuelve a registrar si se observa de nuevo, p. ej. tras rotar).
+ *
+ * Todo en el hilo principal, como LiveData.observe.
+ */
+public final class CareRepository {
+
+    private static final String TAG = "CareRepository";
+
+    private static volatile CareRepository I;
+
+    public static CareRepository get(Context c) {
+        if (I == null) {
+            synchronized (CareRepository.class) {
+                if (I == null) I = new CareRepository(AppDb.get(c.getApplicationContext()));
+            }
+        }
+        return I;
+    }
+
+    private final EventDao eventDao;
+    private final SubjectDao subjectDao;
+    // clave → stream con observers (hilo principal)
+    private final Map<String, Stream<?>> streams = new LinkedHashMap<>();
+
+    // Paquete: los tests la arman sobre una base en memoria
+    CareRepository(AppDb db) {
+        this.eventDao = db.eventDao();
+        this.subjectDao = db.subjectDao();
+    }
+
+    // ----------------------
+    // Streams
+    // ----------------------
+
+    @MainThread
+    public LiveData<List<SubjectEntity>> activeSubjects(String appType) {
+        return shared("subjects.active|" + appType, () -> subjectDao.observeActive(appType));
+    }
+
+    @MainThread
+    public LiveData<List<EventListItem>> activeEventsPage(String appType, int limit) {
+        return shared("events.activePage|" + appType + "|" + limit,
+                () -> eventDao.observeActivePage(appType, limit));
+    }
+
+    @MainThread
+    public LiveData<List<EventListItem>> upcomingEventsPage(String appType, long now, int limit) {
+        return shared("events.upcomingPage|" + appType + "|" + now + "|" + limit,
+                () -> eventDao.observeUpcomingPage(appType, now, limit));
+    }
+
+    @MainThread
+    public LiveData<List<EventListItem>> searchEventsPage(String appType, SearchIndex.Filter f, int limit) {
+        return shared("events.search|" + appType + "|" + f.match + "|" + f.subjectId + "|" + f.from
+                        + "|" + f.to + "|" + limit,
+                () -> eventDao.observeSearchPage(appType, f.match, f.subjectId, f.from, f.to, limit));
+    }
+
+    // ----------------------
+    // Diagnóstico
+    // ----------------------
+
+    /** Observers registrados en total, sumando todos los streams. */
+    @MainThread
+    public int activeObserverCount() {
+        int n = 0;
+        for (Stream<?> s : streams.values()) n += s.observers.size();
+        return n;
+    }
+
+    /** Observers por clave de stream (copia, para log o pantalla de debug). */
+    @MainThread
+    public Map<String, Integer> observerCounts() {
+        Map<String, Integer> out = new LinkedHashMap<>();
+        for (Map.Entry<String, Stream<?>> e : streams.entrySet()) {
+            out.put(e.getKey(), e.getValue().observers.size());
+        }
+        return out;
+    }
+
+    // ----------------------
+    // Helpers
+    // ----------------------
+
+    private interface Source<T> { LiveData<T> open(); }
+
+    @SuppressWarnings("unchecked")
+    private <T> LiveData<T> shared(String key, Source<T> source) {
+        Stream<T> s = (Stream<T>) streams.get(key);
+        if (s == null) {
+            s = new Stream<>(key, source.open());
+            streams.put(key, s);
+        }
+        return s;
+    }
+
+    /** Envuelve el LiveData de Room y lleva la cuenta de sus observers. */
+    private final class Stream<T> extends MediatorLiveData<T> {
+        final String key;
+        final Set<Observer<? super T>> observers = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        Stream(String key, LiveData<T> source) {
+            this.key = key;
+            addSource(source, this::setValue);
+        }
+
+        @Override
+        public void observe(@NonNull LifecycleOwner owner, @NonNull Observer<? super T> observer) {
+            // LiveData ignora los owners ya destruidos: no contarlos
+            if (owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) return;
+            super.observe(owner, observer);
+            added(observer);
+        }
+
+        @Override
+        public void observeForever(@NonNull Observer<? super T> observer) {
+            super.observeForever(observer);
+            added(observer);
+        }
+
+        @Override
+        public void removeObserver(@NonNull Observer<? super T> observer) {
+            super.removeObserver(observer);
+            if (observers.remove(observer) && observers.isEmpty()) streams.remove(key, this);
+        }
+
+        private void added(Observer<? super T> observer) {
+            if (!observers.add(observer)) return;
+            // Volvió a tener observers (p. ej. desde un ViewModel tras rotar): registrarlo de nuevo
+            if (streams.get(key) == null) streams.put(key, this);
+            if (observers.size() > 1) Log.d(TAG, key + ": " + observers.size() + " observers");
+        }
+    }
+}
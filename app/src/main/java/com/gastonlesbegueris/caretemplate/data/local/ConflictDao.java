@@ -0,0 +1,25 @@
+package com.gastonlesbegueris.caretemplate.data.local;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface ConflictDao {
+
+    @Insert
+    void insertAll(List<ConflictEntity> list);
+
+    // Últimos conflictos, los más nuevos primero
+    @Query("SELECT * FROM sync_conflicts ORDER BY loggedAt DESC LIMIT :limit")
+    List<ConflictEntity> listRecent(int limit);
+
+    @Query("SELECT * FROM sync_conflicts WHERE kind = :kind AND entityId = :entityId ORDER BY loggedAt DESC")
+    List<ConflictEntity> listFor(String kind, String entityId);
+
+    // El registro no crece sin límite: se descarta lo anterior a :before
+    @Query("DELETE FROM sync_conflicts WHERE loggedAt < :before")
+    int prune(long before);
+}
@@ -0,0 +1,33 @@
+package com.gastonlesbegueris.caretemplate.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+// Registro de conflictos del pull: la versión que perdió el merge (local o remota), solo con
+// los campos en disputa y sus valores en JSON. No se usa para sincronizar: es para poder
+// revisar o recuperar a mano lo que se descartó. Ver PullMerge.
+@Entity(
+        tableName = "sync_conflicts",
+        indices = { @Index({"kind", "entityId"}), @Index({"loggedAt"}) }
+)
+public class ConflictEntity {
+
+    public static final String LOSER_LOCAL = "local";
+    public static final String LOSER_REMOTE = "remote";
+
+    @PrimaryKey(autoGenerate = true)
+    public long id;
+
+    @NonNull @ColumnInfo(name = "kind")     public String kind = OutboxEntity.KIND_EVENT; // "event" | "subject"
+    @NonNull @ColumnInfo(name = "entityId") public String entityId = "";
+    @NonNull @ColumnInfo(name = "loser")    public String loser = LOSER_LOCAL;            // "local" | "remote"
+
+    @ColumnInfo(name = "fields")          public int    fields;          // grupos de EventFields en disputa (0 en subjects)
+    @ColumnInfo(name = "localUpdatedAt")  public long   localUpdatedAt;
+    @ColumnInfo(name = "remoteUpdatedAt") public long   remoteUpdatedAt;
+    @ColumnInfo(name = "payload")         public String payload;         // valores perdedores, JSON
+    @ColumnInfo(name = "loggedAt")        public long   loggedAt;
+}
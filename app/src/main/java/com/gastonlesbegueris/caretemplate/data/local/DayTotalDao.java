@@ -0,0 +1,29 @@
+package com.gastonlesbegueris.caretemplate.data.local;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import com.gastonlesbegueris.caretemplate.data.model.DayTotal;
+
+import java.util.List;
+
+// Lecturas del rollup day_totals: O(días) en lugar de O(eventos)
+@Dao
+public interface DayTotalDao {
+
+    // (Los totales por mes de gastos están en ExpenseDao.listMonthTotals)
+
+    // Totales por día (por dueAt) de todos los sujetos en [fromDay, toDay]
+    @Query("""
+           SELECT day,
+                  SUM(eventCount) AS eventCount,
+                  SUM(realizedCount) AS realizedCount,
+                  SUM(plannedSum) AS plannedSum,
+                  SUM(realizedSum) AS realizedSum
+           FROM day_totals
+           WHERE appType = :appType AND day BETWEEN :fromDay AND :toDay AND eventCount > 0
+           GROUP BY day
+           ORDER BY day ASC
+           """)
+    List<DayTotal> listDays(String appType, long fromDay, long toDay);
+}
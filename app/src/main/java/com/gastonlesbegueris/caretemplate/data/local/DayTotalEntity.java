@@ -0,0 +1,22 @@
+package com.gastonlesbegueris.caretemplate.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+
+// Rollup diario de events por (appType, subjectId, día local). Lo mantienen los triggers de
+// DayTotals: no se escribe desde la app. "day" es el día local en días desde 1970-01-01.
+//  - eventCount / realizedCount / plannedSum / realizedSum: eventos no borrados agrupados por dueAt
+// Los gastos por fecha de realización salen del libro expenses (ver ExpenseLedger).
+@Entity(tableName = "day_totals", primaryKeys = { "appType", "subjectId", "day" })
+public class DayTotalEntity {
+
+    @NonNull @ColumnInfo(name = "appType")   public String appType = "";
+    @NonNull @ColumnInfo(name = "subjectId") public String subjectId = "";   // '' = sin sujeto
+    @ColumnInfo(name = "day")                public long   day;
+
+    @ColumnInfo(name = "eventCount")    public int    eventCount;
+    @ColumnInfo(name = "realizedCount") public int    realizedCount;
+    @ColumnInfo(name = "plannedSum")    public double plannedSum;    // costo de los no realizados
+    @ColumnInfo(name = "realizedSum")   public double realizedSum;   // costo de los realizados (por dueAt)
+}
@@ -0,0 +1,177 @@
+package com.gastonlesbegueris.caretemplate.data.local;
+
+import android.database.Cursor;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.gastonlesbegueris.caretemplate.util.DayBuckets;
+
+/**
+ * SQL del rollup day_totals (ver DayTotalEntity).
+ *
+ * Tres triggers sobre events aplican el delta de cada fila: se resta la contribución de OLD
+ * y se suma la de NEW. Así insert, setCost, markRealizedOne, markUnrealizedOne, softDelete,
+ * el pull y los borrados físicos lo mantienen al día sin tocar los DAOs.
+ * Los triggers solo ven INSERT/UPDATE/DELETE reales: por eso EventDao.insert/insertAll son
+ * @Upsert y no REPLACE (REPLACE borra la fila vieja sin disparar el trigger de DELETE).
+ *
+ * El día local sale de zone_offsets, la copia en SQL de la tabla de transiciones de DayBuckets:
+ * el rollup y la UI agrupan con los mismos offsets. Si la zona cambia, syncZone reemplaza la
+ * tabla y recalcula el rollup (y el día de los gastos, ver ExpenseLedger).
+ */
+public final class DayTotals {
+
+    private DayTotals() {}
+
+    // Zona ya verificada contra zone_offsets en este proceso (evita la query en cada lectura)
+    private static volatile String syncedZone;
+
+    private static final String COLUMNS =
+            "appType, subjectId, day, eventCount, realizedCount, plannedSum, realizedSum";
+
+    /**
+     * Día local (días desde 1970-01-01) de una columna en milisegundos; igual que DayBuckets.dayKey.
+     * El / de SQLite trunca hacia cero: se resta antes el módulo positivo para que sea un piso
+     * (Math.floorDiv) también con fechas anteriores a 1970.
+     */
+    static String localDay(String millisExpr) {
+        String local = "(" + millisExpr + " + IFNULL((SELECT offsetMs FROM zone_offsets WHERE startAt <= " + millisExpr
+                + " ORDER BY startAt DESC LIMIT 1), 0))";
+        long d = DayBuckets.DAY_MS;
+        return "CAST((" + local + " - ((" + local + " % " + d + ") + " + d + ") % " + d + ") / " + d + " AS INTEGER)";
+    }
+
+    // ----------------------
+    // Triggers
+    // ----------------------
+
+    /** Crea los triggers si no existen (migración y onOpen, para instalaciones nuevas). */
+    public static void createTriggers(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS day_totals_events_insert AFTER INSERT ON events BEGIN "
+                + add("NEW")
+                + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS day_totals_events_delete AFTER DELETE ON events BEGIN "
+                + subtract("OLD") + cleanup("OLD")
+                + "END");
+        // Solo las columnas que cambian el rollup: markClean, títulos, notas, etc. no lo disparan
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS day_totals_events_update "
+                + "AFTER UPDATE OF appType, subjectId, dueAt, realized, cost, deleted ON events BEGIN "
+                + subtract("OLD") + add("NEW") + cleanup("OLD")
+                + "END");
+    }
+
+    /** Borra los triggers (cuando cambia su SQL en una migración). */
+    static void dropTriggers(SupportSQLiteDatabase db) {
+        db.execSQL("DROP TRIGGER IF EXISTS day_totals_events_insert");
+        db.execSQL("DROP TRIGGER IF EXISTS day_totals_events_delete");
+        db.execSQL("DROP TRIGGER IF EXISTS day_totals_events_update");
+    }
+
+    private static String key(String x, String dayExpr) {
+        return "appType = " + x + ".appType AND subjectId = IFNULL(" + x + ".subjectId, '') AND day = " + dayExpr;
+    }
+
+    private static String add(String x) {
+        String due = localDay(x + ".dueAt");
+        return "INSERT OR IGNORE INTO day_totals (" + COLUMNS + ") "
+                + "SELECT " + x + ".appType, IFNULL(" + x + ".subjectId, ''), " + due + ", 0, 0, 0, 0 "
+                + "WHERE " + x + ".deleted = 0 AND " + x + ".appType IS NOT NULL; "
+                + "UPDATE day_totals SET eventCount = eventCount + 1, "
+                + "realizedCount = realizedCount + (" + x + ".realized = 1), "
+                + "plannedSum = plannedSum + (CASE WHEN " + x + ".realized = 1 THEN 0 ELSE IFNULL(" + x + ".cost, 0) END), "
+                + "realizedSum = realizedSum + (CASE WHEN " + x + ".realized = 1 THEN IFNULL(" + x + ".cost, 0) ELSE 0 END) "
+                + "WHERE " + x + ".deleted = 0 AND " + key(x, due) + "; ";
+    }
+
+    private static String subtract(String x) {
+        String due = localDay(x + ".dueAt");
+        return "UPDATE day_totals SET eventCount = eventCount - 1, "
+                + "realizedCount = realizedCount - (" + x + ".realized = 1), "
+                + "plannedSum = plannedSum - (CASE WHEN " + x + ".realized = 1 THEN 0 ELSE IFNULL(" + x + ".cost, 0) END), "
+                + "realizedSum = realizedSum - (CASE WHEN " + x + ".realized = 1 THEN IFNULL(" + x + ".cost, 0) ELSE 0 END) "
+                + "WHERE " + x + ".deleted = 0 AND " + key(x, due) + "; ";
+    }
+
+    // Filas que quedaron vacías (el día se movió o se borró el último evento)
+    private static String cleanup(String x) {
+        return "DELETE FROM day_totals WHERE appType = " + x + ".appType "
+                + "AND subjectId = IFNULL(" + x + ".subjectId, '') "
+                + "AND day = " + localDay(x + ".dueAt") + " "
+                + "AND eventCount <= 0; ";
+    }
+
+    // ----------------------
+    // Recalculo completo
+    // ----------------------
+
+    /**
+     * Recalcula day_totals desde events (migración o cuando cambia la zona horaria).
+     * Llamar dentro de una transacción.
+     */
+    public static void rebuild(SupportSQLiteDatabase db) {
+        db.execSQL("DELETE FROM day_totals");
+        db.execSQL("INSERT INTO day_totals (" + COLUMNS + ") "
+                + "SELECT appType, IFNULL(subjectId, ''), " + localDay("dueAt") + ", "
+                + "COUNT(*), SUM(realized = 1), "
+                + "SUM(CASE WHEN realized = 1 THEN 0 ELSE IFNULL(cost, 0) END), "
+                + "SUM(CASE WHEN realized = 1 THEN IFNULL(cost, 0) ELSE 0 END) "
+                + "FROM events WHERE deleted = 0 AND appType IS NOT NULL "
+                + "GROUP BY 1, 2, 3");
+    }
+
+    // ----------------------
+    // Zona horaria
+    // ----------------------
+
+    /**
+     * Deja zone_offsets igual a la tabla de DayBuckets para la zona actual. Si difería (primera
+     * vez o cambió la zona), la reemplaza y recalcula day_totals en la misma transacción.
+     * Devuelve true si hubo que recalcular. Llamar desde un hilo de fondo.
+     */
+    public static boolean syncZone(SupportSQLiteDatabase db) {
+        return syncZone(db, true);
+    }
+
+    /**
+     * syncZone para MIGRATION_18_19: ahí expenses todavía no existe (la crea 23→24, que ya
+     * calcula el día de cada gasto con los offsets que deja esta llamada).
+     */
+    static boolean syncZoneBeforeLedger(SupportSQLiteDatabase db) {
+        return syncZone(db, false);
+    }
+
+    private static boolean syncZone(SupportSQLiteDatabase db, boolean ledger) {
+        DayBuckets buckets = DayBuckets.current();
+        if (buckets.zoneId().equals(syncedZone)) return false;
+        boolean changed = false;
+        if (!matches(db, buckets)) {
+            db.beginTransaction();
+            try {
+                db.execSQL("DELETE FROM zone_offsets");
+                for (int i = 0; i < buckets.size(); i++) {
+                    db.execSQL("INSERT INTO zone_offsets (startAt, offsetMs) VALUES (?, ?)",
+                            new Object[]{ buckets.startAt(i), buckets.offsetOf(i) });
+                }
+                rebuild(db);
+                // El día de cada gasto también sale de zone_offsets
+                if (ledger) ExpenseLedger.syncDays(db);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            changed = true;
+        }
+        syncedZone = buckets.zoneId();
+        return changed;
+    }
+
+    private static boolean matches(SupportSQLiteDatabase db, DayBuckets buckets) {
+        try (Cursor c = db.query("SELECT startAt, offsetMs FROM zone_offsets ORDER BY startAt")) {
+            if (c.getCount() != buckets.size()) return false;
+            for (int i = 0; c.moveToNext(); i++) {
+                if (c.getLong(0) != buckets.startAt(i) || c.getInt(1) != buckets.offsetOf(i)) return false;
+            }
+            return true;
+        }
+    }
+}
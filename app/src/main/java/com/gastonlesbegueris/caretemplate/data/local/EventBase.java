@@ -0,0 +1,68 @@
+package com.gastonlesbegueris.caretemplate.data.local;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * Triggers que guardan en events_base (ver EventBaseEntity) la fila de events cada vez que
+ * queda limpia: la baja el pull (dirty=0) o el push la confirma (markClean). Mientras la fila
+ * tiene cambios locales la base no se mueve, así PullMerge puede ver qué cambió cada lado
+ * desde la última sincronización. Cuando el merge del pull deja la fila dirty (sobreviven
+ * cambios locales) el trigger no corre: PullMerge guarda la versión remota con of().
+ */
+public final class EventBase {
+
+    private EventBase() {}
+
+    private static final String COLUMNS =
+            "id, uid, appType, subjectId, title, note, dueAt, realized, realizedAt, cost, kilometersAtEvent, "
+            + "repeatType, repeatInterval, repeatEndDate, repeatCount, originalEventId, notificationMinutesBefore, "
+            + "updatedAt, deleted, dirty, dirtyFields";
+
+    /** Crea los triggers si no existen (migración y onOpen). */
+    public static void createTriggers(SupportSQLiteDatabase db) {
+        String copy = "INSERT OR REPLACE INTO events_base (" + COLUMNS + ") SELECT " + prefixed("NEW") + "; ";
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS events_base_insert AFTER INSERT ON events"
+                + " WHEN NEW.dirty = 0 BEGIN " + copy + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS events_base_clean AFTER UPDATE ON events"
+                + " WHEN NEW.dirty = 0 BEGIN " + copy + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS events_base_delete AFTER DELETE ON events"
+                + " BEGIN DELETE FROM events_base WHERE id = OLD.id; END");
+    }
+
+    /** Base de las filas que ya estaban limpias antes de que existieran los triggers. */
+    public static void backfill(SupportSQLiteDatabase db) {
+        db.execSQL("INSERT OR REPLACE INTO events_base (" + COLUMNS + ") SELECT " + COLUMNS
+                + " FROM events WHERE dirty = 0");
+    }
+
+    /** La versión remota de un event como base (limpia). */
+    public static EventBaseEntity of(EventEntity e) {
+        EventBaseEntity b = new EventBaseEntity();
+        b.id = e.id;
+        b.uid = e.uid;
+        b.appType = e.appType;
+        b.subjectId = e.subjectId;
+        b.title = e.title;
+        b.note = e.note;
+        b.dueAt = e.dueAt;
+        b.realized = e.realized;
+        b.realizedAt = e.realizedAt;
+        b.cost = e.cost;
+        b.kilometersAtEvent = e.kilometersAtEvent;
+        b.repeatType = e.repeatType;
+        b.repeatInterval = e.repeatInterval;
+        b.repeatEndDate = e.repeatEndDate;
+        b.repeatCount = e.repeatCount;
+        b.originalEventId = e.originalEventId;
+        b.notificationMinutesBefore = e.notificationMinutesBefore;
+        b.updatedAt = e.updatedAt;
+        b.deleted = e.deleted;
+        b.dirty = 0;
+        b.dirtyFields = 0;
+        return b;
+    }
+
+    private static String prefixed(String row) {
+        return row + "." + COLUMNS.replace(", ", ", " + row + ".");
+    }
+}
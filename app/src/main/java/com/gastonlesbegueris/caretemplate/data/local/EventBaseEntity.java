@@ -0,0 +1,12 @@
+package com.gastonlesbegueris.caretemplate.data.local;
+
+import androidx.room.Entity;
+import androidx.room.RoomWarnings;
+
+// Última versión sincronizada de cada event (la base del merge de tres vías de PullMerge).
+// Mismas columnas que events, sin índices: solo se lee por id. La mantienen los triggers de
+// EventBase; desde la app solo la escribe PullMerge cuando el merge deja la fila dirty.
+@SuppressWarnings(RoomWarnings.INDEX_FROM_PARENT_IS_DROPPED)
+@Entity(tableName = "events_base")
+public class EventBaseEntity extends EventEntity {
+}
@@ -4,22 +4,34 @@ import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Insert;
 import androidx.room.Query;
+import androidx.room.Transaction;
 import androidx.room.Update;
-import static androidx.room.OnConflictStrategy.REPLACE;
+import androidx.room.Upsert;
+import static androidx.room.OnConflictStrategy.IGNORE;
 import com.gastonlesbegueris.caretemplate.data.model.MonthTotal;
+import com.gastonlesbegueris.caretemplate.data.model.EventListItem;
+import com.gastonlesbegueris.caretemplate.data.model.RowVersion;
 
 import java.util.List;
 
 @Dao
 public interface EventDao {
 
-    @Insert(onConflict = REPLACE)
+    // Upsert (INSERT o UPDATE) y no REPLACE: los triggers de day_totals necesitan ver el UPDATE
+    @Upsert
     void insert(EventEntity e);
 
     @Update
-    void update(EventEntity e);
+    void updateRow(EventEntity e);
 
-    @Query("UPDATE events SET deleted=1, updatedAt=:now, dirty=1 WHERE id=:id")
+    // Update de la fila completa: si es un cambio local (dirty=1) registra qué campos cambiaron
+    @Transaction
+    default void update(EventEntity e) {
+        trackDirtyFields(e);
+        updateRow(e);
+    }
+
+    @Query("UPDATE events SET deleted=1, updatedAt=:now, dirty=1, dirtyFields = dirtyFields | " + EventFields.DELETED + " WHERE id=:id")
     void softDelete(String id, long now);
 
     @Query("SELECT * FROM events WHERE appType=:appType AND deleted=0 AND realized=0 ORDER BY dueAt ASC")
@@ -28,6 +40,28 @@ public interface EventDao {
     // Próximos eventos de todos los sujetos (futuros, no realizados) ordenados del más cercano al más lejano
     @Query("SELECT * FROM events WHERE appType=:appType AND deleted=0 AND realized=0 AND dueAt >= :now ORDER BY dueAt ASC")
     LiveData<List<EventEntity>> observeUpcomingOrdered(String appType, long now);
+
+    // Variantes paginadas (ventana con LIMIT que crece al scrollear, ver ui.PagedWindow).
+    // id como desempate para que el orden sea estable entre páginas. Devuelven la proyección
+    // de lista (EventListItem), no la fila completa
+    @Query("SELECT " + EventListItem.COLUMNS + " FROM events WHERE appType=:appType AND deleted=0 AND realized=0 ORDER BY dueAt ASC, id ASC LIMIT :limit")
+    LiveData<List<EventListItem>> observeActivePage(String appType, int limit);
+
+    @Query("SELECT " + EventListItem.COLUMNS + " FROM events WHERE appType=:appType AND deleted=0 AND realized=0 AND dueAt >= :now ORDER BY dueAt ASC, id ASC LIMIT :limit")
+    LiveData<List<EventListItem>> observeUpcomingPage(String appType, long now, int limit);
+
+    // Búsqueda full-text (ver SearchIndex): events cuyo título/nota, o el nombre/notas de su
+    // sujeto, coinciden con :match. Pendientes y realizados, los más recientes primero, paginada
+    // como las anteriores. subjectId null = todos; dueAt en [from, to).
+    @Query("SELECT " + EventListItem.COLUMNS + " FROM events WHERE appType = :appType AND deleted = 0"
+            + " AND (rowid IN (SELECT docid FROM events_fts WHERE events_fts MATCH :match)"
+            + " OR subjectId IN (SELECT s.id FROM subjects s JOIN subjects_fts ON s.rowid = subjects_fts.docid"
+            + " WHERE subjects_fts MATCH :match AND s.appType = :appType AND s.deleted = 0))"
+            + " AND (:subjectId IS NULL OR subjectId = :subjectId)"
+            + " AND dueAt >= :from AND dueAt < :to"
+            + " ORDER BY dueAt DESC, id DESC LIMIT :limit")
+    LiveData<List<EventListItem>> observeSearchPage(String appType, String match, String subjectId,
+                                                   long from, long to, int limit);
     
     // Historial de eventos de un sujeto (realizados)
     @Query("SELECT * FROM events WHERE appType=:appType AND subjectId=:subjectId AND deleted=0 AND realized=1 ORDER BY dueAt DESC")
@@ -62,6 +96,28 @@ public interface EventDao {
            """)
     List<EventEntity> nextEventsForAllSubjects(String appType, long from);
 
+    // Estado de cada sujeto en una sola pasada: próximo vencimiento, vencidos y de hoy.
+    // Solo lee pendientes (realized=0) vía el índice (appType, subjectId, deleted, realized, dueAt).
+    @Query("""
+           SELECT s.subjectId, s.nextDueAt, s.overdueCount, s.dueTodayCount,
+                  (SELECT e.title FROM events e
+                   WHERE e.appType = :appType AND e.subjectId = s.subjectId
+                     AND e.deleted = 0 AND e.realized = 0 AND e.dueAt = s.nextDueAt
+                   LIMIT 1) AS nextTitle
+           FROM (
+               SELECT subjectId,
+                      MIN(CASE WHEN dueAt >= :now THEN dueAt END) AS nextDueAt,
+                      SUM(CASE WHEN dueAt < :now THEN 1 ELSE 0 END) AS overdueCount,
+                      SUM(CASE WHEN dueAt >= :dayStart AND dueAt < :dayEnd THEN 1 ELSE 0 END) AS dueTodayCount
+               FROM events
+               WHERE appType = :appType AND deleted = 0 AND realized = 0 AND subjectId IS NOT NULL
+               GROUP BY subjectId
+           ) s
+           """)
+    List<com.gastonlesbegueris.caretemplate.data.model.SubjectEventStatus> listSubjectStatuses(
+            String appType, long now, long dayStart, long dayEnd
+    );
+
     // ====== NUEVOS, usados por Agenda & Expenses ======
 // EventDao.java  (dentro de la interface)
     @Query("SELECT COUNT(*) FROM events WHERE appType = :app AND deleted = 0")
@@ -72,17 +128,25 @@ public interface EventDao {
 
 
     // Helpers de toggle
-    @Query("UPDATE events SET realized=1, realizedAt=:now, updatedAt=:now, dirty=1 WHERE id IN (:ids)")
+    @Query("UPDATE events SET realized=1, realizedAt=:now, updatedAt=:now, dirty=1, dirtyFields = dirtyFields | " + EventFields.REALIZED + " WHERE id IN (:ids)")
     void markRealized(List<String> ids, long now);
 
 
     @Query("SELECT * FROM events WHERE appType=:appType AND deleted=0 AND realized=0 AND dueAt <= :now ORDER BY dueAt ASC")
     List<EventEntity> listDueUnrealized(String appType, long now);
 
+    // Solo los ids (para markRealized): no hace falta traer las filas
+    @Query("SELECT id FROM events WHERE appType=:appType AND deleted=0 AND realized=0 AND dueAt <= :now")
+    List<String> listDueUnrealizedIds(String appType, long now);
+
     // Obtener todos los eventos pendientes (futuros) para reprogramar notificaciones
     @Query("SELECT * FROM events WHERE appType=:appType AND deleted=0 AND realized=0 AND dueAt >= :now ORDER BY dueAt ASC")
     List<EventEntity> listPendingEvents(String appType, long now);
 
+    // Próximos :limit pendientes con notificación, por dueAt (ventana de alarmas, ver NotificationWindow)
+    @Query("SELECT * FROM events WHERE appType=:appType AND deleted=0 AND realized=0 AND dueAt >= :now AND notificationMinutesBefore > 0 ORDER BY dueAt ASC LIMIT :limit")
+    List<EventEntity> listUpcomingNotifiable(String appType, long now, int limit);
+
     // ====== Agendas por día ======
 
 
@@ -106,17 +170,7 @@ public interface EventDao {
             String appType, long from, long to
     );
 
-    // Listado con totales por mes (solo gastos realizados, del presente hacia atrás)
-    @Query("""
-           SELECT strftime('%Y-%m-01', datetime(realizedAt/1000,'unixepoch')) AS monthStart,
-                  0.0 AS plannedSum,
-                  SUM(COALESCE(cost,0)) AS realizedSum
-           FROM events
-           WHERE appType = :appType AND deleted = 0 AND realized = 1 AND realizedAt IS NOT NULL
-           GROUP BY monthStart
-           ORDER BY monthStart DESC
-           """)
-    List<com.gastonlesbegueris.caretemplate.data.model.MonthTotal> listMonthTotals(String appType);
+    // Totales por mes: ver ExpenseDao.listMonthTotals (libro de gastos expenses)
 
     // Para ExpensesActivity (si querés listar eventos en rango)
     @Query("SELECT * FROM events WHERE appType=:appType AND deleted=0 AND dueAt BETWEEN :from AND :to ORDER BY dueAt ASC")
@@ -152,13 +206,13 @@ public interface EventDao {
     LiveData<List<EventEntity>> observeByDay(String appType, long from, long to);
 
     // Helpers de toggle
-    @Query("UPDATE events SET realized=1, realizedAt=:ts, updatedAt=:ts, dirty=1 WHERE id=:id")
+    @Query("UPDATE events SET realized=1, realizedAt=:ts, updatedAt=:ts, dirty=1, dirtyFields = dirtyFields | " + EventFields.REALIZED + " WHERE id=:id")
     void markRealizedOne(String id, long ts);
 
-    @Query("UPDATE events SET realized=0, realizedAt=NULL, updatedAt=:ts, dirty=1 WHERE id=:id")
+    @Query("UPDATE events SET realized=0, realizedAt=NULL, updatedAt=:ts, dirty=1, dirtyFields = dirtyFields | " + EventFields.REALIZED + " WHERE id=:id")
     void markUnrealizedOne(String id, long ts);
 
-    @Query("UPDATE events SET cost=:cost, updatedAt=:ts, dirty=1 WHERE id=:id")
+    @Query("UPDATE events SET cost=:cost, updatedAt=:ts, dirty=1, dirtyFields = dirtyFields | " + EventFields.COST + " WHERE id=:id")
     void setCost(String id, Double cost, long ts);
     // =========== 🔴 MÉTODOS PARA SYNC (lo que te falta) ===========
     // 1) listar registros "sucios" (a subir)
@@ -166,17 +220,43 @@ public interface EventDao {
     List<EventEntity> listDirty();
 
     // 2) marcarlos como limpios luego del push OK
-    @Query("UPDATE events SET dirty=0 WHERE id IN (:ids)")
+    @Query("UPDATE events SET dirty=0, dirtyFields=0 WHERE id IN (:ids)")
     void markClean(List<String> ids);
 
+    // 2b) limpiar solo si la fila no cambió desde que se leyó para el push: si se editó en el
+    //     medio sigue dirty (y en el outbox) y sube en la próxima pasada
+    @Query("UPDATE events SET dirty=0, dirtyFields=0 WHERE id=:id AND updatedAt=:updatedAt")
+    void markCleanAt(String id, long updatedAt);
+
+    @Transaction
+    default void markPushed(List<EventEntity> pushed) {
+        for (EventEntity e : pushed) markCleanAt(e.id, e.updatedAt);
+    }
+
     // 3) último updated local por app (para usar en pull)
     @Query("SELECT IFNULL(MAX(updatedAt), 0) FROM events WHERE appType = :app")
     long lastUpdatedForApp(String app);
 
-    // 4) inserción masiva desde la nube (pull)
-    @Insert(onConflict = REPLACE)
+    // 4) inserción masiva desde la nube (pull). Upsert por los triggers de day_totals
+    @Upsert
     void insertAll(List<EventEntity> list);
 
+    // 4b) filas con cambios sin subir entre ciertos ids (entradas del outbox)
+    @Query("SELECT * FROM events WHERE dirty=1 AND id IN (:ids)")
+    List<EventEntity> listDirtyByIds(List<String> ids);
+
+    // 4b') última versión sincronizada de esos ids (base del merge, ver EventBase)
+    @Query("SELECT * FROM events_base WHERE id IN (:ids)")
+    List<EventBaseEntity> listBasesByIds(List<String> ids);
+
+    // 4b'') nueva base cuando el merge deja la fila dirty (el trigger de EventBase no corre)
+    @Upsert
+    void putBases(List<EventBaseEntity> bases);
+
+    // 4c) versión local (updatedAt, dirty) de los ids de una página del pull (ver PullMerge)
+    @Query("SELECT id, updatedAt, dirty FROM events WHERE id IN (:ids)")
+    List<RowVersion> listVersions(List<String> ids);
+
     // 5) obtener un evento por ID
     @Query("SELECT * FROM events WHERE id=:id")
     EventEntity findOne(String id);
@@ -190,19 +270,93 @@ public interface EventDao {
     List<EventEntity> findRepeatedEvents(String originalEventId);
 
     // 8) eliminar (soft delete) todos los eventos repetidos de un original
-    @Query("UPDATE events SET deleted=1, updatedAt=:now, dirty=1 WHERE originalEventId=:originalEventId AND deleted=0")
+    @Query("UPDATE events SET deleted=1, updatedAt=:now, dirty=1, dirtyFields = dirtyFields | " + EventFields.DELETED + " WHERE originalEventId=:originalEventId AND deleted=0")
     void softDeleteRepeatedEvents(String originalEventId, long now);
 
     // 9) eliminar (soft delete) todos los eventos de un sujeto
-    @Query("UPDATE events SET deleted=1, updatedAt=:now, dirty=1 WHERE subjectId=:subjectId AND deleted=0")
+    @Query("UPDATE events SET deleted=1, updatedAt=:now, dirty=1, dirtyFields = dirtyFields | " + EventFields.DELETED + " WHERE subjectId=:subjectId AND deleted=0")
     void softDeleteEventsBySubjectId(String subjectId, long now);
 
     // 10) eliminar permanentemente todos los eventos de un sujeto
     @Query("DELETE FROM events WHERE subjectId=:subjectId")
     void deletePermanentlyEventsBySubjectId(String subjectId);
 
-}
+    // 10b) compactación: borrar de a :limit los tombstones ya subidos (dirty=0) anteriores a :before
+    //      (ver TombstoneCompactor). Devuelve cuántos borró. Las excepciones borradas de una regla
+    //      viva se quedan: son las que ocultan la ocurrencia virtual (ver Recurrence.loadRules),
+    //      y el pull por cursor no las vuelve a traer
+    @Query("DELETE FROM events WHERE rowid IN (SELECT rowid FROM events e WHERE e.deleted=1 AND e.dirty=0 AND e.updatedAt < :before " +
+            "AND (e.originalEventId IS NULL OR NOT EXISTS (SELECT 1 FROM events r WHERE r.id = e.originalEventId AND r.deleted=0)) " +
+            "LIMIT :limit)")
+    int purgeTombstones(long before, int limit);
+
+    // ====== Repetición virtual (ver Recurrence) ======
+
+    // 11) reglas de repetición activas. Se excluyen las series viejas que ya tienen sus
+    //     repeticiones materializadas con UUID propio (si no, se duplicarían)
+    @Query("""
+           SELECT * FROM events r
+           WHERE r.appType = :appType AND r.deleted = 0
+             AND r.repeatType IS NOT NULL AND r.originalEventId IS NULL
+             AND NOT EXISTS (
+                 SELECT 1 FROM events c
+                 WHERE c.originalEventId = r.id AND c.deleted = 0
+                   AND substr(c.id, 1, length(r.id) + 1) != (r.id || '@')
+             )
+           """)
+    List<EventEntity> listRecurringRules(String appType);
+
+    // 12) ids de las ocurrencias ya materializadas (editadas, realizadas o borradas) de esas reglas
+    @Query("SELECT id FROM events WHERE originalEventId IN (:ruleIds)")
+    List<String> listOccurrenceExceptionIds(List<String> ruleIds);
+
+    // 13) guardar una ocurrencia como excepción sin pisar una ya existente
+    @Insert(onConflict = IGNORE)
+    void insertIfAbsent(EventEntity e);
 
+    // 13c) todas las excepciones de una regla, borradas incluidas (ver Recurrence.rekeyExceptions)
+    @Query("SELECT * FROM events WHERE originalEventId=:ruleId")
+    List<EventEntity> listOccurrenceExceptions(String ruleId);
 
+    // 13d) serie vieja: borrar las repeticiones guardadas con UUID propio (id sin "ruleId@"),
+    //      para que la regla pase a expandirse virtual (ver Recurrence.scheduleChanged)
+    @Query("UPDATE events SET deleted=1, updatedAt=:now, dirty=1, dirtyFields = dirtyFields | " + EventFields.DELETED
+            + " WHERE originalEventId=:ruleId AND deleted=0 AND substr(id, 1, length(:ruleId) + 1) != (:ruleId || '@')")
+    int softDeleteLegacyOccurrences(String ruleId, long now);
 
+    // ====== Escrituras en lote ======
 
+    // 14) actualizar varias filas en una sola transacción (un solo fsync del journal)
+    @Update
+    void updateRows(List<EventEntity> list);
+
+    @Transaction
+    default void updateAll(List<EventEntity> list) {
+        for (EventEntity e : list) trackDirtyFields(e);
+        updateRows(list);
+    }
+
+    // 14b) marca en e.dirtyFields los campos que difieren de la fila guardada (más los que ya
+    //      estaban pendientes). Solo para cambios locales: lo que viene del pull queda en 0
+    default void trackDirtyFields(EventEntity e) {
+        if (e.dirty == 0) {
+            e.dirtyFields = 0;
+            return;
+        }
+        EventEntity stored = findOne(e.id);
+        e.dirtyFields = stored == null
+                ? EventFields.ALL
+                : stored.dirtyFields | EventFields.diff(stored, e);
+    }
+
+    // 15) alta de una serie completa (regla + excepciones ya generadas) en una sola transacción.
+    //     Devuelve los ids insertados, para programar notificaciones y contar en LimitGuard de una vez
+    @Transaction
+    default List<String> insertSeries(List<EventEntity> rows) {
+        List<String> ids = new java.util.ArrayList<>(rows.size());
+        for (EventEntity e : rows) ids.add(e.id);
+        insertAll(rows);
+        return ids;
+    }
+
+}
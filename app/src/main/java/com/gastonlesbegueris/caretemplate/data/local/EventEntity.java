@@ -2,10 +2,35 @@ package com.gastonlesbegueris.caretemplate.data.local;
 
 import androidx.annotation.NonNull;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 import androidx.room.ColumnInfo;
 
-@Entity(tableName = "events")
+// Índices compuestos: cada query caliente de EventDao filtra por appType/deleted/realized
+// y ordena o filtra por rango en dueAt o realizedAt. Los nombres son los que genera Room
+// por defecto y deben coincidir con los CREATE INDEX de AppDb.MIGRATION_15_16.
+@Entity(
+        tableName = "events",
+        indices = {
+                // observeActive, observeUpcomingOrdered, listDueUnrealized, listPendingEvents,
+                // listRealizedInRange, sumPlannedCostInRange, nextEventsForAllSubjects
+                @Index({"appType", "deleted", "realized", "dueAt"}),
+                // listInRange, observeByDay, nextEvent, countEventsForApp
+                @Index({"appType", "deleted", "dueAt"}),
+                // sumRealizedCostInRange, listRealizedByRealizedAtInRange
+                @Index({"appType", "deleted", "realized", "realizedAt"}),
+                // observeSubjectHistory, observeSubjectUpcoming, listAllForSubject
+                @Index({"appType", "subjectId", "deleted", "realized", "dueAt"}),
+                // listAllForSubjectAnyApp, softDelete/delete por subjectId
+                @Index({"subjectId", "deleted", "dueAt"}),
+                // findRepeatedEvents, softDeleteRepeatedEvents
+                @Index({"originalEventId"}),
+                // listDirty (sync)
+                @Index({"dirty"}),
+                // lastUpdatedForApp (sync incremental)
+                @Index({"appType", "updatedAt"})
+        }
+)
 public class EventEntity {
 
     @PrimaryKey @NonNull
@@ -41,4 +66,9 @@ public class EventEntity {
     @ColumnInfo(name = "updatedAt")  public long   updatedAt;
     @ColumnInfo(name = "deleted")    public int    deleted;        // 0/1
     @ColumnInfo(name = "dirty")      public int    dirty;          // 0/1
+
+    // Grupos de campos cambiados desde el último push (bits de EventFields). Arranca en 0 como
+    // la columna: las altas locales lo ponen en ALL (documento completo) al crear la fila; el
+    // pull y markClean lo dejan en 0.
+    @ColumnInfo(name = "dirtyFields", defaultValue = "0") public int dirtyFields = 0;
 }
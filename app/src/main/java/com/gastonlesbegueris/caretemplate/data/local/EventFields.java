@@ -0,0 +1,56 @@
+package com.gastonlesbegueris.caretemplate.data.local;
+
+import java.util.Objects;
+
+/**
+ * Bits de events.dirtyFields: qué grupos de campos cambiaron desde el último push.
+ *
+ * Con ALL el push escribe el documento completo (alta, o no se sabe qué cambió); con un
+ * subconjunto escribe solo esos campos con merge. Los UPDATE parciales de EventDao suman su
+ * bit con "dirtyFields = dirtyFields | BIT"; update/updateAll calculan el diff contra la fila
+ * guardada (ver EventDao.trackDirtyFields).
+ */
+public final class EventFields {
+
+    private EventFields() {}
+
+    public static final int IDENTITY     = 1;        // uid, appType
+    public static final int SUBJECT      = 1 << 1;
+    public static final int TITLE        = 1 << 2;
+    public static final int NOTE         = 1 << 3;
+    public static final int DUE_AT       = 1 << 4;
+    public static final int REALIZED     = 1 << 5;   // realized + realizedAt
+    public static final int COST         = 1 << 6;
+    public static final int KM           = 1 << 7;
+    public static final int REPEAT       = 1 << 8;   // repeatType/Interval/EndDate/Count, originalEventId
+    public static final int NOTIFICATION = 1 << 9;
+    public static final int DELETED      = 1 << 10;
+
+    public static final int ALL = (1 << 11) - 1;
+
+    /** Documento completo (set sin merge)? También si no hay detalle: dirty sin bits. */
+    public static boolean isFull(int bits) {
+        return bits == 0 || (bits & ALL) == ALL;
+    }
+
+    /** Grupos de campos que difieren entre dos versiones de la misma fila. */
+    public static int diff(EventEntity a, EventEntity b) {
+        int bits = 0;
+        if (!Objects.equals(a.uid, b.uid) || !Objects.equals(a.appType, b.appType)) bits |= IDENTITY;
+        if (!Objects.equals(a.subjectId, b.subjectId)) bits |= SUBJECT;
+        if (!Objects.equals(a.title, b.title)) bits |= TITLE;
+        if (!Objects.equals(a.note, b.note)) bits |= NOTE;
+        if (a.dueAt != b.dueAt) bits |= DUE_AT;
+        if (a.realized != b.realized || !Objects.equals(a.realizedAt, b.realizedAt)) bits |= REALIZED;
+        if (!Objects.equals(a.cost, b.cost)) bits |= COST;
+        if (!Objects.equals(a.kilometersAtEvent, b.kilometersAtEvent)) bits |= KM;
+        if (!Objects.equals(a.repeatType, b.repeatType)
+                || !Objects.equals(a.repeatInterval, b.repeatInterval)
+                || !Objects.equals(a.repeatEndDate, b.repeatEndDate)
+                || !Objects.equals(a.repeatCount, b.repeatCount)
+                || !Objects.equals(a.originalEventId, b.originalEventId)) bits |= REPEAT;
+        if (!Objects.equals(a.notificationMinutesBefore, b.notificationMinutesBefore)) bits |= NOTIFICATION;
+        if (a.deleted != b.deleted) bits |= DELETED;
+        return bits;
+    }
+}
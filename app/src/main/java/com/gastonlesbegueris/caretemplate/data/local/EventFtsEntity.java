@@ -0,0 +1,21 @@
+package com.gastonlesbegueris.caretemplate.data.local;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+import androidx.room.PrimaryKey;
+
+// Índice full-text de events (título y nota). Tabla FTS4 de contenido externo: no guarda
+// copia del texto, solo los tokens; docid = rowid de events. Room mantiene el índice con
+// triggers sobre events (ver SearchIndex para los de la migración).
+@Fts4(contentEntity = EventEntity.class, tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "events_fts")
+public class EventFtsEntity {
+
+    @PrimaryKey
+    @ColumnInfo(name = "rowid") public int rowid;
+
+    @ColumnInfo(name = "title") public String title;
+    @ColumnInfo(name = "note")  public String note;
+}
@@ -0,0 +1,66 @@
+package com.gastonlesbegueris.caretemplate.data.local;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import com.gastonlesbegueris.caretemplate.data.model.ExpenseDayTotal;
+import com.gastonlesbegueris.caretemplate.data.model.ExpenseTotal;
+import com.gastonlesbegueris.caretemplate.data.model.MonthTotal;
+
+import java.util.List;
+
+// Lecturas del libro de gastos expenses: una fila por gasto, no por evento
+@Dao
+public interface ExpenseDao {
+
+    // Totales por mes (por fecha del gasto, en hora local)
+    @Query("""
+           SELECT strftime('%Y-%m-01', day * 86400, 'unixepoch') AS monthStart,
+                  0.0 AS plannedSum,
+                  SUM(amount) AS realizedSum
+           FROM expenses
+           WHERE appType = :appType AND deleted = 0
+           GROUP BY monthStart
+           ORDER BY monthStart DESC
+           """)
+    List<MonthTotal> listMonthTotals(String appType);
+
+    // Totales por día local en [fromDay, toDay]
+    @Query("""
+           SELECT day, COUNT(*) AS count, SUM(amount) AS total
+           FROM expenses
+           WHERE appType = :appType AND deleted = 0 AND day BETWEEN :fromDay AND :toDay
+           GROUP BY day
+           ORDER BY day ASC
+           """)
+    List<ExpenseDayTotal> listDays(String appType, long fromDay, long toDay);
+
+    @Query("SELECT SUM(amount) FROM expenses WHERE appType = :appType AND deleted = 0 AND atDate BETWEEN :from AND :to")
+    Double sumInRange(String appType, long from, long to);
+
+    @Query("SELECT SUM(amount) FROM expenses WHERE appType = :appType AND subjectId = :subjectId AND deleted = 0 AND atDate BETWEEN :from AND :to")
+    Double sumForSubject(String appType, String subjectId, long from, long to);
+
+    // Por categoría, de mayor a menor
+    @Query("""
+           SELECT category AS `key`, COUNT(*) AS count, SUM(amount) AS total
+           FROM expenses
+           WHERE appType = :appType AND deleted = 0 AND atDate BETWEEN :from AND :to
+           GROUP BY category
+           ORDER BY total DESC
+           """)
+    List<ExpenseTotal> listCategoryTotals(String appType, long from, long to);
+
+    // Por sujeto, de mayor a menor
+    @Query("""
+           SELECT subjectId AS `key`, COUNT(*) AS count, SUM(amount) AS total
+           FROM expenses
+           WHERE appType = :appType AND deleted = 0 AND atDate BETWEEN :from AND :to
+           GROUP BY subjectId
+           ORDER BY total DESC
+           """)
+    List<ExpenseTotal> listSubjectTotals(String appType, long from, long to);
+
+    @Query("SELECT * FROM expenses WHERE appType = :appType AND deleted = 0 AND atDate BETWEEN :from AND :to ORDER BY atDate DESC")
+    List<ExpenseEntity> listInRange(String appType, long from, long to);
+}
@@ -2,19 +2,37 @@ package com.gastonlesbegueris.caretemplate.data.local;
 
 import androidx.annotation.NonNull;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-@Entity(tableName = "expenses")
+// Libro de gastos (ver ExpenseLedger). Los gastos de eventos realizados con costo los mantienen
+// triggers sobre events (id = eventId); las lecturas de gastos van acá y no a events.
+// Los nombres de índice son los que genera Room y deben coincidir con AppDb.MIGRATION_23_24.
+@Entity(
+        tableName = "expenses",
+        indices = {
+                // fila del evento (triggers)
+                @Index(value = {"eventId"}, unique = true),
+                // listMonthTotals, listDays
+                @Index({"appType", "deleted", "day"}),
+                // sumInRange, listInRange, listCategoryTotals, listSubjectTotals
+                @Index({"appType", "deleted", "atDate"}),
+                // sumForSubject
+                @Index({"appType", "subjectId", "deleted", "atDate"})
+        }
+)
 public class ExpenseEntity {
-    @PrimaryKey @NonNull public String id;  // UUID
+    @PrimaryKey @NonNull public String id;  // UUID (o el id del evento, ver eventId)
     public String appType;
     public String subjectId;
     public double amount;
-    public String currency;  // "USD", "ARS", etc.
-    public String category;  // "Vet", "Service", "Food", etc.
+    public String currency;  // "USD", "ARS", etc. (null = moneda local)
+    public String category;  // "Vet", "Service", "Food", etc. (de un evento: su título)
     public String note;
     public long   atDate;    // fecha del gasto
     public long   updatedAt;
     public int    deleted;
     public int    dirty;
+    public String eventId;   // evento del que sale el gasto (null = gasto suelto)
+    public long   day;       // día local de atDate (ver DayTotals.localDay)
 }
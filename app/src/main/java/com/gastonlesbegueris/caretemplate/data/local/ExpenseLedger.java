@@ -0,0 +1,75 @@
+package com.gastonlesbegueris.caretemplate.data.local;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * SQL del libro de gastos expenses (ver ExpenseEntity).
+ *
+ * Cada evento realizado con costo (deleted=0, realized=1, realizedAt y cost no nulos) tiene
+ * una fila en expenses con id = eventId: monto = cost, fecha = realizedAt, categoría = título.
+ * Tres triggers sobre events la crean, la reescriben o la borran, así setCost,
+ * markRealizedOne, markUnrealizedOne, softDelete, el pull y la purga de tombstones la
+ * mantienen sin tocar los DAOs (igual que DayTotals). Las filas sin eventId (gastos sueltos)
+ * no las tocan los triggers.
+ *
+ * day es el día local de atDate con zone_offsets: si cambia la zona, DayTotals.syncZone
+ * llama a syncDays.
+ */
+public final class ExpenseLedger {
+
+    private ExpenseLedger() {}
+
+    private static final String COLUMNS =
+            "id, appType, subjectId, amount, currency, category, note, atDate, updatedAt, deleted, dirty, eventId, day";
+
+    // ----------------------
+    // Triggers
+    // ----------------------
+
+    /** Crea los triggers si no existen (migración y onOpen, para instalaciones nuevas). */
+    public static void createTriggers(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS expenses_events_insert AFTER INSERT ON events BEGIN "
+                + upsert("NEW")
+                + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS expenses_events_delete AFTER DELETE ON events BEGIN "
+                + "DELETE FROM expenses WHERE eventId = OLD.id; "
+                + "END");
+        // Solo las columnas que cambian el gasto: markClean, notas, notificaciones, etc. no lo disparan
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS expenses_events_update "
+                + "AFTER UPDATE OF appType, subjectId, title, realized, realizedAt, cost, deleted ON events BEGIN "
+                + "DELETE FROM expenses WHERE eventId = OLD.id; "
+                + upsert("NEW")
+                + "END");
+    }
+
+    private static String cond(String x) {
+        return x + ".deleted = 0 AND " + x + ".realized = 1 AND " + x + ".realizedAt IS NOT NULL AND "
+                + x + ".cost IS NOT NULL AND " + x + ".appType IS NOT NULL";
+    }
+
+    private static String select(String x) {
+        return "SELECT " + x + ".id, " + x + ".appType, " + x + ".subjectId, " + x + ".cost, NULL, "
+                + x + ".title, NULL, " + x + ".realizedAt, " + x + ".updatedAt, 0, 0, " + x + ".id, "
+                + DayTotals.localDay(x + ".realizedAt") + " ";
+    }
+
+    private static String upsert(String x) {
+        return "INSERT OR REPLACE INTO expenses (" + COLUMNS + ") " + select(x) + "WHERE " + cond(x) + "; ";
+    }
+
+    // ----------------------
+    // Recalculo
+    // ----------------------
+
+    /** Rearma las filas de eventos desde events (migración). Los gastos sueltos quedan. */
+    public static void rebuild(SupportSQLiteDatabase db) {
+        db.execSQL("DELETE FROM expenses WHERE eventId IS NOT NULL");
+        db.execSQL("INSERT OR REPLACE INTO expenses (" + COLUMNS + ") "
+                + select("events") + "FROM events WHERE " + cond("events"));
+    }
+
+    /** Recalcula day con los offsets actuales (cuando cambia la zona horaria). */
+    static void syncDays(SupportSQLiteDatabase db) {
+        db.execSQL("UPDATE expenses SET day = " + DayTotals.localDay("atDate"));
+    }
+}
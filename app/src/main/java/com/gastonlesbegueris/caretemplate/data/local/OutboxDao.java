@@ -0,0 +1,30 @@
+package com.gastonlesbegueris.caretemplate.data.local;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface OutboxDao {
+
+    // Pendientes cuyo backoff ya venció, los más viejos primero
+    @Query("SELECT * FROM sync_outbox WHERE nextAttemptAt <= :now ORDER BY nextAttemptAt ASC, enqueuedAt ASC LIMIT :limit")
+    List<OutboxEntity> listDue(long now, int limit);
+
+    // Próximo reintento programado (null = outbox vacío)
+    @Query("SELECT MIN(nextAttemptAt) FROM sync_outbox")
+    Long nextAttemptAt();
+
+    @Query("SELECT COUNT(*) FROM sync_outbox")
+    int count();
+
+    // Fallo de un envío: se cuenta el intento y el próximo se corre con backoff exponencial
+    // (baseMs, 2×, 4×... hasta maxMs) a partir de :now
+    @Query("UPDATE sync_outbox SET nextAttemptAt = :now + MIN(:maxMs, :baseMs << MIN(attempts, 16)), attempts = attempts + 1, lastError = :error WHERE kind = :kind AND entityId = :entityId")
+    void backoff(String kind, String entityId, long now, long baseMs, long maxMs, String error);
+
+    // Entradas cuya fila ya no está dirty (la limpió otro camino) o ya no existe
+    @Query("DELETE FROM sync_outbox WHERE kind = :kind AND entityId IN (:ids)")
+    void delete(String kind, List<String> ids);
+}
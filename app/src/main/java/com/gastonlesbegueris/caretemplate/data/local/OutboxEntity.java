@@ -0,0 +1,28 @@
+package com.gastonlesbegueris.caretemplate.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+
+// Outbox persistente del push: una fila por entidad con cambios sin subir (dirty=1).
+// La llenan los triggers de OutboxTriggers; como la clave es (kind, entityId), varias
+// ediciones del mismo registro quedan en una sola fila. SyncOutbox la drena en segundo plano.
+@Entity(
+        tableName = "sync_outbox",
+        primaryKeys = { "kind", "entityId" },
+        indices = { @Index({"nextAttemptAt"}) }
+)
+public class OutboxEntity {
+
+    public static final String KIND_EVENT = "event";
+    public static final String KIND_SUBJECT = "subject";
+
+    @NonNull @ColumnInfo(name = "kind")     public String kind = KIND_EVENT;   // "event" | "subject"
+    @NonNull @ColumnInfo(name = "entityId") public String entityId = "";
+
+    @ColumnInfo(name = "enqueuedAt")    public long   enqueuedAt;    // primera vez que quedó pendiente
+    @ColumnInfo(name = "attempts")      public int    attempts;      // intentos fallidos seguidos
+    @ColumnInfo(name = "nextAttemptAt") public long   nextAttemptAt; // no reintentar antes de esto (0 = ya)
+    @ColumnInfo(name = "lastError")     public String lastError;
+}
@@ -0,0 +1,47 @@
+package com.gastonlesbegueris.caretemplate.data.local;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * Triggers que derivan sync_outbox (ver OutboxEntity) del flag dirty de events y subjects.
+ *
+ * - dirty pasa a (o se escribe con) 1: se encola la entidad; si ya estaba, no cambia nada
+ *   (las ediciones repetidas se coalescen y se respeta el backoff en curso).
+ * - dirty pasa a 0 (push confirmado o pull que la pisó) o se borra la fila: se desencola.
+ *
+ * Así ningún camino de escritura tiene que acordarse del outbox.
+ */
+public final class OutboxTriggers {
+
+    private OutboxTriggers() {}
+
+    private static final String NOW_MS = "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)";
+
+    /** Crea los triggers si no existen (migración y onOpen). */
+    public static void createTriggers(SupportSQLiteDatabase db) {
+        create(db, "events", OutboxEntity.KIND_EVENT);
+        create(db, "subjects", OutboxEntity.KIND_SUBJECT);
+    }
+
+    private static void create(SupportSQLiteDatabase db, String table, String kind) {
+        String enqueue = "INSERT OR IGNORE INTO sync_outbox (kind, entityId, enqueuedAt, attempts, nextAttemptAt, lastError) "
+                + "VALUES ('" + kind + "', NEW.id, " + NOW_MS + ", 0, 0, NULL); ";
+        String dequeue = "DELETE FROM sync_outbox WHERE kind = '" + kind + "' AND entityId = ";
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS outbox_" + table + "_insert AFTER INSERT ON " + table
+                + " WHEN NEW.dirty = 1 BEGIN " + enqueue + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS outbox_" + table + "_dirty AFTER UPDATE OF dirty ON " + table
+                + " WHEN NEW.dirty = 1 BEGIN " + enqueue + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS outbox_" + table + "_clean AFTER UPDATE OF dirty ON " + table
+                + " WHEN NEW.dirty = 0 BEGIN " + dequeue + "NEW.id; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS outbox_" + table + "_delete AFTER DELETE ON " + table
+                + " BEGIN " + dequeue + "OLD.id; END");
+    }
+
+    /** Encola lo que ya estaba dirty antes de que existieran los triggers. */
+    public static void backfill(SupportSQLiteDatabase db) {
+        db.execSQL("INSERT OR IGNORE INTO sync_outbox (kind, entityId, enqueuedAt, attempts, nextAttemptAt, lastError) "
+                + "SELECT '" + OutboxEntity.KIND_EVENT + "', id, updatedAt, 0, 0, NULL FROM events WHERE dirty = 1");
+        db.execSQL("INSERT OR IGNORE INTO sync_outbox (kind, entityId, enqueuedAt, attempts, nextAttemptAt, lastError) "
+                + "SELECT '" + OutboxEntity.KIND_SUBJECT + "', id, updatedAt, 0, 0, NULL FROM subjects WHERE dirty = 1");
+    }
+}
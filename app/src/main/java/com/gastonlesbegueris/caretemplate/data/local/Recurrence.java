@@ -0,0 +1,427 @@
+package com.gastonlesbegueris.caretemplate.data.local;
+
+import com.gastonlesbegueris.caretemplate.data.model.EventListItem;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Motor de repetición virtual.
+ *
+ * Un evento con repeatType (y sin originalEventId) es la "regla": solo se guarda esa fila.
+ * Las ocurrencias se calculan al vuelo para la ventana [from,to] que se consulta y se
+ * identifican con un id determinístico ruleId@dueAt. Solo se persiste una ocurrencia
+ * cuando el usuario la edita, la realiza, le pone costo o la borra (fila "excepción" con
+ * ese mismo id y originalEventId = ruleId); a partir de ahí la fila guardada reemplaza a
+ * la virtual.
+ *
+ * Las ocurrencias que ya pasaron (dueAt <= now) y no tienen fila cuentan como realizadas,
+ * igual que autoRealizePastEvents marcaba cada repetición cuando era una fila, pero sin
+ * guardarlas: el historial las calcula desde la regla (Rules.expandAll con now). Si cambia
+ * el calendario de la regla, la serie entera se recalcula y las excepciones se mueven a su
+ * nueva fecha (rekeyExceptions) para no quedar huérfanas con un id que ya no se genera; una
+ * serie vieja, con una fila por repetición, pasa a virtual en ese mismo momento
+ * (scheduleChanged).
+ */
+public final class Recurrence {
+
+    private Recurrence() {}
+
+    /** Ventana por defecto hacia adelante para las listas de pendientes (60 días). */
+    public static final long DEFAULT_HORIZON_MS = 60L * 24 * 60 * 60 * 1000;
+
+    /** Tope de ocurrencias por regla dentro de una misma ventana (una "hourly" en 60 días = 1440). */
+    public static final int MAX_OCCURRENCES_PER_RULE = 500;
+
+    private static final char SEP = '@';
+    private static final long HOUR_MS = 60L * 60 * 1000;
+    private static final long DAY_MS = 24 * HOUR_MS;
+    // SQLite admite hasta 999 parámetros por sentencia
+    private static final int MAX_SQL_ARGS = 900;
+
+    // ----------------------
+    // Ids
+    // ----------------------
+
+    public static String occurrenceId(String ruleId, long dueAt) {
+        return ruleId + SEP + dueAt;
+    }
+
+    /** true si el id corresponde a una ocurrencia (virtual o ya materializada) de una regla. */
+    public static boolean isOccurrenceId(String id) {
+        return id != null && id.indexOf(SEP) > 0;
+    }
+
+    /** Fecha de la ocurrencia codificada en el id, o null si no es un id de ocurrencia. */
+    public static Long occurrenceTime(String id) {
+        if (!isOccurrenceId(id)) return null;
+        try {
+            return Long.parseLong(id.substring(id.lastIndexOf(SEP) + 1));
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    /** true si el evento es una regla de repetición (la fila original). */
+    public static boolean isRule(EventEntity e) {
+        return e != null && e.repeatType != null && e.originalEventId == null
+                && e.repeatInterval != null && e.repeatInterval > 0;
+    }
+
+    // ----------------------
+    // Expansión
+    // ----------------------
+
+    /**
+     * Fechas de las ocurrencias de la regla dentro de [from,to], sin contar la propia fila
+     * original (índice 0). Respeta repeatCount (el total incluye al original, igual que antes)
+     * y repeatEndDate. Sin límite, la serie es infinita: el tope lo pone la ventana.
+     */
+    public static List<Long> occurrenceTimes(EventEntity rule, long from, long to, int max) {
+        List<Long> out = new ArrayList<>();
+        if (!isRule(rule) || to < from || max <= 0) return out;
+
+        final int interval = rule.repeatInterval;
+        final Calendar cal = Calendar.getInstance();
+        long t = rule.dueAt;
+        int index = 0;
+
+        // Saltar directo cerca de "from" en reglas de paso fijo, sin iterar años de historia
+        if (from > t) {
+            long stepMs = 0;
+            if ("hourly".equals(rule.repeatType)) stepMs = interval * HOUR_MS;
+            else if ("daily".equals(rule.repeatType)) stepMs = interval * DAY_MS;
+            if (stepMs > 0) {
+                long skip = (from - t) / stepMs - 1; // -1: margen por cambios de horario
+                if (skip > 0) {
+                    if (rule.repeatCount != null && skip >= rule.repeatCount) return out;
+                    cal.setTimeInMillis(t);
+                    if ("hourly".equals(rule.repeatType)) {
+                        t += skip * stepMs;
+                    } else {
+                        cal.add(Calendar.DAY_OF_MONTH, (int) (skip * interval));
+                        t = cal.getTimeInMillis();
+                    }
+                    index = (int) skip;
+                }
+            }
+        }
+
+        while (out.size() < max) {
+            t = next(rule.repeatType, interval, t, cal);
+            index++;
+            if (rule.repeatEndDate != null && t > rule.repeatEndDate) break;
+            if (rule.repeatCount != null && index >= rule.repeatCount) break;
+            if (t > to) break;
+            if (t >= from) out.add(t);
+        }
+        return out;
+    }
+
+    /** Siguiente fecha según el tipo de repetición (misma aritmética de Calendar que antes). */
+    static long next(String repeatType, int interval, long from, Calendar cal) {
+        cal.setTimeInMillis(from);
+        switch (repeatType) {
+            case "hourly":
+                cal.add(Calendar.HOUR_OF_DAY, interval);
+                break;
+            case "daily":
+                cal.add(Calendar.DAY_OF_MONTH, interval);
+                break;
+            case "monthly":
+                cal.add(Calendar.MONTH, interval);
+                break;
+            case "yearly":
+                cal.add(Calendar.YEAR, interval);
+                break;
+            default:
+                // Tipo desconocido: cortar la serie
+                return Long.MAX_VALUE;
+        }
+        return cal.getTimeInMillis();
+    }
+
+    /** Ocurrencias virtuales de la regla en [from,to] que no tienen fila excepción. */
+    public static List<EventEntity> expand(EventEntity rule, long from, long to, Set<String> exceptionIds) {
+        List<EventEntity> out = new ArrayList<>();
+        for (long t : occurrenceTimes(rule, from, to, MAX_OCCURRENCES_PER_RULE)) {
+            String id = occurrenceId(rule.id, t);
+            if (exceptionIds != null && exceptionIds.contains(id)) continue;
+            out.add(occurrence(rule, t));
+        }
+        return out;
+    }
+
+    /** Construye la ocurrencia virtual de la regla para la fecha dada. */
+    public static EventEntity occurrence(EventEntity rule, long dueAt) {
+        EventEntity o = new EventEntity();
+        o.id = occurrenceId(rule.id, dueAt);
+        o.uid = rule.uid;
+        o.appType = rule.appType;
+        o.subjectId = rule.subjectId;
+        o.title = rule.title;
+        o.note = rule.note;
+        o.cost = null;               // las repeticiones no tienen costo hasta que se realizan
+        o.kilometersAtEvent = null;
+        o.realized = 0;
+        o.realizedAt = null;
+        o.dueAt = dueAt;
+        o.updatedAt = rule.updatedAt;
+        o.deleted = 0;
+        o.dirty = 0;                 // no existe en la base todavía
+        o.repeatType = null;
+        o.repeatInterval = null;
+        o.repeatEndDate = null;
+        o.repeatCount = null;
+        o.originalEventId = rule.id;
+        o.notificationMinutesBefore = rule.notificationMinutesBefore;
+        return o;
+    }
+
+    // ----------------------
+    // Integración con EventDao (llamar desde un hilo de fondo)
+    // ----------------------
+
+    /** Reglas activas del appType e ids de sus excepciones (incluye borradas = tombstones). */
+    public static final class Rules {
+        public final List<EventEntity> rules;
+        public final Set<String> exceptionIds;
+
+        Rules(List<EventEntity> rules, Set<String> exceptionIds) {
+            this.rules = rules;
+            this.exceptionIds = exceptionIds;
+        }
+
+        public boolean isEmpty() { return rules.isEmpty(); }
+
+        /** Todas las ocurrencias virtuales en [from,to], sin ordenar. */
+        public List<EventEntity> expandAll(long from, long to) {
+            List<EventEntity> out = new ArrayList<>();
+            for (EventEntity r : rules) out.addAll(expand(r, from, to, exceptionIds));
+            return out;
+        }
+
+        /**
+         * Igual que expandAll, con las que ya pasaron (dueAt <= now) como realizadas en su
+         * fecha: para historial y totales, sin guardar una fila por ocurrencia.
+         */
+        public List<EventEntity> expandAll(long from, long to, long now) {
+            List<EventEntity> out = expandAll(from, to);
+            for (EventEntity o : out) {
+                if (o.dueAt > now) continue;
+                o.realized = 1;
+                o.realizedAt = o.dueAt;
+            }
+            return out;
+        }
+
+        /** Primera ocurrencia virtual >= from de la regla, o null. */
+        public EventEntity firstAtOrAfter(EventEntity rule, long from, long horizonMs) {
+            List<EventEntity> occ = expand(rule, from, from + horizonMs, exceptionIds);
+            return occ.isEmpty() ? null : occ.get(0);
+        }
+    }
+
+    public static Rules loadRules(EventDao dao, String appType) {
+        List<EventEntity> rules = dao.listRecurringRules(appType);
+        if (rules == null || rules.isEmpty()) {
+            return new Rules(Collections.emptyList(), Collections.emptySet());
+        }
+        List<String> ruleIds = new ArrayList<>(rules.size());
+        for (EventEntity r : rules) ruleIds.add(r.id);
+        Set<String> exceptionIds = new HashSet<>();
+        for (int i = 0; i < ruleIds.size(); i += MAX_SQL_ARGS) {
+            List<String> ids = dao.listOccurrenceExceptionIds(
+                    ruleIds.subList(i, Math.min(ruleIds.size(), i + MAX_SQL_ARGS)));
+            if (ids != null) exceptionIds.addAll(ids);
+        }
+        return new Rules(rules, exceptionIds);
+    }
+
+    /**
+     * Mezcla las filas guardadas con las ocurrencias virtuales del rango [from,to] y
+     * devuelve la lista ordenada por dueAt. "stored" no se modifica.
+     */
+    public static List<EventEntity> withOccurrences(EventDao dao, String appType,
+                                                    List<EventEntity> stored, long from, long to) {
+        Rules rules = loadRules(dao, appType);
+        if (rules.isEmpty()) return stored != null ? stored : new ArrayList<>();
+        List<EventEntity> merged = new ArrayList<>();
+        if (stored != null) merged.addAll(stored);
+        merged.addAll(rules.expandAll(from, to));
+        Collections.sort(merged, (a, b) -> Long.compare(a.dueAt, b.dueAt));
+        return merged;
+    }
+
+    /**
+     * Igual que withOccurrences para la proyección de lista: las ocurrencias virtuales se
+     * agregan como EventListItem (con la fila virtual en occurrence, para editarla). Las
+     * reglas vienen ya leídas (ver RuleCache).
+     */
+    public static List<EventListItem> withOccurrenceItems(Rules rules, List<EventListItem> stored,
+                                                          long from, long to) {
+        if (rules.isEmpty()) return stored != null ? stored : new ArrayList<>();
+        List<EventListItem> merged = new ArrayList<>();
+        if (stored != null) merged.addAll(stored);
+        for (EventEntity o : rules.expandAll(from, to)) merged.add(EventListItem.of(o));
+        Collections.sort(merged, (a, b) -> Long.compare(a.dueAt, b.dueAt));
+        return merged;
+    }
+
+    /**
+     * Si e es una ocurrencia virtual, la guarda como fila excepción (si aún no existe) para
+     * que los UPDATE por id (realizar, costo, borrar) tengan sobre qué actuar.
+     */
+    public static void materialize(EventDao dao, EventEntity e) {
+        if (e == null || !isOccurrenceId(e.id)) return;
+        EventEntity row = copy(e);
+        row.updatedAt = System.currentTimeMillis();
+        row.dirty = 1;
+        row.dirtyFields = EventFields.ALL; // documento nuevo en Firestore
+        dao.insertIfAbsent(row);
+    }
+
+    /**
+     * Llamar después de guardar una regla editada (before = copia antes del cambio). Si cambió
+     * el calendario: una serie vieja (repeticiones con UUID propio, que listRecurringRules
+     * excluye) borra esas filas y pasa a expandirse virtual, y las excepciones de una serie
+     * virtual se mueven a su nueva fecha (rekeyExceptions). Devuelve cuántas filas tocó.
+     */
+    public static int scheduleChanged(EventDao dao, EventEntity before, EventEntity after, long now) {
+        if (!isRule(before) || !isRule(after) || sameSchedule(before, after)) return 0;
+        int legacy = dao.softDeleteLegacyOccurrences(after.id, now);
+        return legacy + rekeyExceptions(dao, before, after, now);
+    }
+
+    /**
+     * Después de cambiar el calendario de una regla (dueAt, repeatType, repeatInterval,
+     * repeatEndDate o repeatCount), mueve sus excepciones a la ocurrencia que
+     * ocupa el mismo lugar en la serie nueva: la 5ª repetición sigue siendo la 5ª.
+     * Sin esto el id ruleId@dueAt viejo ya no se genera y la excepción queda huérfana (la
+     * ocurrencia nueva aparece sin la edición, el costo o el borrado). Van también las
+     * pasadas: el historial de la regla sale de su calendario actual (Rules.expandAll con
+     * now), así que una excepción que quedara en la fecha vieja se contaría dos veces.
+     * before es una copia de la regla antes del cambio y after la regla ya guardada; now es
+     * el updatedAt de las filas que escribe. Las que quedan fuera de una serie más corta se
+     * borran. Devuelve cuántas movió.
+     */
+    static int rekeyExceptions(EventDao dao, EventEntity before, EventEntity after, long now) {
+        if (!isRule(before) || !isRule(after) || sameSchedule(before, after)) return 0;
+        List<EventEntity> exceptions = dao.listOccurrenceExceptions(after.id);
+        if (exceptions == null || exceptions.isEmpty()) return 0;
+
+        // Hasta dónde hay que expandir las dos series
+        List<EventEntity> keyed = new ArrayList<>();
+        long lastOld = Long.MIN_VALUE;
+        for (EventEntity e : exceptions) {
+            Long t = occurrenceTime(e.id);
+            // Las de una serie vieja (UUID) no tienen fecha en el id: las borra scheduleChanged
+            if (t == null) continue;
+            keyed.add(e);
+            lastOld = Math.max(lastOld, t);
+        }
+        if (keyed.isEmpty()) return 0;
+
+        // Lugar de cada fecha en la serie vieja (0 = primera repetición después del original)
+        List<Long> oldTimes = occurrenceTimes(before, Long.MIN_VALUE, lastOld, Integer.MAX_VALUE);
+        Map<Long, Integer> oldIndex = new HashMap<>(oldTimes.size() * 2);
+        for (int i = 0; i < oldTimes.size(); i++) oldIndex.put(oldTimes.get(i), i);
+        // La serie nueva hasta el mismo lugar y, al menos, hasta la misma fecha
+        List<Long> newTimes = occurrenceTimes(after, Long.MIN_VALUE, lastOld, Integer.MAX_VALUE);
+        if (newTimes.size() < oldTimes.size()) {
+            newTimes = occurrenceTimes(after, Long.MIN_VALUE, Long.MAX_VALUE, oldTimes.size());
+        }
+        Set<Long> newSlots = new HashSet<>(newTimes);
+
+        List<EventEntity> moved = new ArrayList<>();
+        Set<String> targets = new HashSet<>();
+        List<EventEntity> vacated = new ArrayList<>();
+        for (EventEntity e : keyed) {
+            long oldT = occurrenceTime(e.id);
+            Integer k = oldIndex.get(oldT);
+            if (k == null) continue; // no es una fecha de la serie vieja: se deja como está
+            if (k >= newTimes.size()) {
+                // La serie nueva termina antes: esa ocurrencia ya no existe
+                vacated.add(e);
+                continue;
+            }
+            long newT = newTimes.get(k);
+            if (newT == oldT) continue;
+
+            EventEntity m = copy(e);
+            m.id = occurrenceId(after.id, newT);
+            if (e.dueAt == oldT) m.dueAt = newT; // si la excepción tenía fecha propia, se respeta
+            moved.add(m);
+            targets.add(m.id);
+            vacated.add(e);
+        }
+        if (vacated.isEmpty()) return 0;
+
+        List<EventEntity> rows = new ArrayList<>(moved);
+        for (EventEntity e : vacated) {
+            if (targets.contains(e.id)) continue; // la pisa la excepción que se movió ahí
+            long oldT = occurrenceTime(e.id);
+            EventEntity v;
+            if (newSlots.contains(oldT)) {
+                // El id viejo sigue siendo una fecha del calendario nuevo: vuelve a ser una
+                // ocurrencia normal (sin la edición que se llevó la otra)
+                v = occurrence(after, oldT);
+            } else {
+                // Tombstone sin regla: ya no oculta nada y la compactación lo puede purgar
+                v = copy(e);
+                v.deleted = 1;
+                v.originalEventId = null;
+            }
+            rows.add(v);
+        }
+        for (EventEntity r : rows) {
+            r.updatedAt = now;
+            r.dirty = 1;
+            r.dirtyFields = EventFields.ALL;
+        }
+        dao.insertAll(rows);
+        return moved.size();
+    }
+
+    private static boolean sameSchedule(EventEntity a, EventEntity b) {
+        return a.dueAt == b.dueAt
+                && Objects.equals(a.repeatType, b.repeatType)
+                && Objects.equals(a.repeatInterval, b.repeatInterval)
+                && Objects.equals(a.repeatEndDate, b.repeatEndDate)
+                && Objects.equals(a.repeatCount, b.repeatCount);
+    }
+
+    /** Copia de la fila (p. ej. la regla antes de editarla, para scheduleChanged). */
+    public static EventEntity copy(EventEntity e) {
+        EventEntity c = new EventEntity();
+        c.id = e.id;
+        c.uid = e.uid;
+        c.appType = e.appType;
+        c.subjectId = e.subjectId;
+        c.title = e.title;
+        c.note = e.note;
+        c.dueAt = e.dueAt;
+        c.realized = e.realized;
+        c.realizedAt = e.realizedAt;
+        c.cost = e.cost;
+        c.kilometersAtEvent = e.kilometersAtEvent;
+        c.repeatType = e.repeatType;
+        c.repeatInterval = e.repeatInterval;
+        c.repeatEndDate = e.repeatEndDate;
+        c.repeatCount = e.repeatCount;
+        c.originalEventId = e.originalEventId;
+        c.notificationMinutesBefore = e.notificationMinutesBefore;
+        c.updatedAt = e.updatedAt;
+        c.deleted = e.deleted;
+        c.dirty = e.dirty;
+        c.dirtyFields = e.dirtyFields;
+        return c;
+    }
+}
@@ -0,0 +1,72 @@
+package com.gastonlesbegueris.caretemplate.data.local;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reglas de repetición (Recurrence.Rules) de cada appType, en memoria.
+ *
+ * Las listas suman las ocurrencias virtuales en cada emisión de su página, y muchas emisiones
+ * no vienen de un cambio en events (crece la ventana, se rota la pantalla, otra pantalla
+ * observa lo mismo): volver a leer las reglas y los ids de sus excepciones en cada una sobra.
+ * Cada cambio en events (Room avisa por InvalidationTracker) sube la versión y rules() solo
+ * vuelve a leer si lo guardado es de una versión anterior.
+ *
+ * El aviso del tracker llega después del commit: quien escribe y lee las reglas en la misma
+ * tarea (NotificationWindow.reconcile tras una edición) sigue usando Recurrence.loadRules.
+ */
+public final class RuleCache {
+
+    private static volatile RuleCache I;
+
+    public static RuleCache get(Context c) {
+        if (I == null) {
+            synchronized (RuleCache.class) {
+                if (I == null) I = new RuleCache(AppDb.get(c.getApplicationContext()));
+            }
+        }
+        return I;
+    }
+
+    private static final class Entry {
+        final long version;
+        final Recurrence.Rules rules;
+
+        Entry(long version, Recurrence.Rules rules) {
+            this.version = version;
+            this.rules = rules;
+        }
+    }
+
+    private final EventDao dao;
+    private final AtomicLong version = new AtomicLong();
+    private final Map<String, Entry> byApp = new ConcurrentHashMap<>();
+
+    private RuleCache(AppDb db) {
+        this.dao = db.eventDao();
+        db.getInvalidationTracker().addObserver(new InvalidationTracker.Observer("events") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                version.incrementAndGet();
+            }
+        });
+    }
+
+    /** Reglas vigentes del appType. Hilo de fondo. */
+    public Recurrence.Rules rules(String appType) {
+        long v = version.get();
+        Entry e = byApp.get(appType);
+        if (e != null && e.version == v) return e.rules;
+        Recurrence.Rules rules = Recurrence.loadRules(dao, appType);
+        // Una lectura vieja que termina tarde no pisa a una más nueva
+        byApp.merge(appType, new Entry(v, rules), (old, next) -> next.version >= old.version ? next : old);
+        return rules;
+    }
+}
@@ -0,0 +1,116 @@
+package com.gastonlesbegueris.caretemplate.data.local;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Búsqueda full-text sobre events (título, nota) y subjects (nombre, notas).
+ *
+ * events_fts y subjects_fts son tablas FTS4 de contenido externo (ver EventFtsEntity y
+ * SubjectFtsEntity): Room las mantiene con triggers BEFORE/AFTER sobre la tabla de contenido,
+ * así que cualquier INSERT/UPDATE/DELETE real las actualiza. REPLACE no sirve (borra la fila
+ * sin disparar el trigger de DELETE): por eso las escrituras de events y subjects son @Upsert.
+ *
+ * El docid es el rowid de la tabla de contenido. VACUUM puede renumerar los rowid de tablas
+ * sin INTEGER PRIMARY KEY (events y subjects usan id TEXT): después de un VACUUM hay que
+ * llamar a rebuild (ver TombstoneCompactor).
+ */
+public final class SearchIndex {
+
+    private SearchIndex() {}
+
+    // Como mucho estos términos por búsqueda (el resto se ignora)
+    private static final int MAX_TERMS = 8;
+
+    /** Filtro de una búsqueda de events; from/to acotan dueAt (to exclusivo). */
+    public static final class Filter {
+        public final String text;
+        public final String match;     // expresión MATCH ya armada (ver matchQuery)
+        public final String subjectId; // null = todos los sujetos
+        public final long from;
+        public final long to;
+
+        public Filter(String text, String subjectId, long from, long to) {
+            this.text = text;
+            this.match = matchQuery(text);
+            this.subjectId = subjectId;
+            this.from = from;
+            this.to = to;
+        }
+
+        /** Solo texto, sin filtro de sujeto ni de fechas. */
+        public static Filter of(String text) {
+            return new Filter(text, null, Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+
+        /** false si el texto no tiene ningún término buscable. */
+        public boolean isValid() {
+            return match != null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Filter)) return false;
+            Filter f = (Filter) o;
+            return from == f.from && to == f.to
+                    && Objects.equals(match, f.match) && Objects.equals(subjectId, f.subjectId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(match, subjectId, from, to);
+        }
+    }
+
+    /**
+     * Arma la expresión MATCH: cada palabra como prefijo ("vacu" encuentra "vacuna"), todas
+     * obligatorias. Se descarta la puntuación y los operadores de FTS, así el texto del usuario
+     * nunca da un error de sintaxis. null si no queda ningún término.
+     */
+    public static String matchQuery(String text) {
+        if (text == null) return null;
+        StringBuilder sb = new StringBuilder();
+        int terms = 0;
+        for (String t : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (t.isEmpty()) continue;
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(t).append('*');
+            if (++terms == MAX_TERMS) break;
+        }
+        return terms == 0 ? null : sb.toString();
+    }
+
+    // ----------------------
+    // Migración y mantenimiento
+    // ----------------------
+
+    /** Crea las tablas, los triggers (mismo SQL que genera Room) y llena el índice. */
+    static void create(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `events_fts` USING FTS4(`title` TEXT, `note` TEXT, tokenize=unicode61, content=`events`)");
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `subjects_fts` USING FTS4(`name` TEXT, `notes` TEXT, tokenize=unicode61, content=`subjects`)");
+        createTriggers(db, "events", "events_fts", "title", "note");
+        createTriggers(db, "subjects", "subjects_fts", "name", "notes");
+        rebuild(db);
+    }
+
+    /** Rearma los dos índices desde las tablas de contenido. */
+    public static void rebuild(SupportSQLiteDatabase db) {
+        db.execSQL("INSERT INTO `events_fts`(`events_fts`) VALUES('rebuild')");
+        db.execSQL("INSERT INTO `subjects_fts`(`subjects_fts`) VALUES('rebuild')");
+    }
+
+    private static void createTriggers(SupportSQLiteDatabase db, String content, String fts,
+                                       String col1, String col2) {
+        String prefix = "CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_" + fts + "_";
+        String delete = "DELETE FROM `" + fts + "` WHERE `docid`=OLD.`rowid`; END";
+        String insert = "INSERT INTO `" + fts + "`(`docid`, `" + col1 + "`, `" + col2 + "`) VALUES (NEW.`rowid`, NEW.`"
+                + col1 + "`, NEW.`" + col2 + "`); END";
+        db.execSQL(prefix + "BEFORE_UPDATE BEFORE UPDATE ON `" + content + "` BEGIN " + delete);
+        db.execSQL(prefix + "BEFORE_DELETE BEFORE DELETE ON `" + content + "` BEGIN " + delete);
+        db.execSQL(prefix + "AFTER_UPDATE AFTER UPDATE ON `" + content + "` BEGIN " + insert);
+        db.execSQL(prefix + "AFTER_INSERT AFTER INSERT ON `" + content + "` BEGIN " + insert);
+    }
+}
@@ -3,14 +3,20 @@ package com.gastonlesbegueris.caretemplate.data.local;
 import androidx.lifecycle.LiveData;
 import androidx.room.*;
 
+import com.gastonlesbegueris.caretemplate.data.model.RowVersion;
+
 import java.util.List;
 
 @Dao
 public interface SubjectDao {
 
-    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    // Upsert y no REPLACE: los triggers de subjects_fts (ver SearchIndex) necesitan ver el UPDATE
+    @Upsert
     void insert(SubjectEntity s);
 
+    @Upsert
+    void insertAll(List<SubjectEntity> list);
+
     @Update
     void update(SubjectEntity s);
     // --- Soporte de Sync con filtro por appType ---
@@ -42,6 +48,15 @@ public interface SubjectDao {
     @Query("UPDATE subjects SET dirty = 0 WHERE id IN (:ids)")
     void markClean(List<String> ids);
 
+    // Limpiar solo si no cambió desde que se leyó para el push (ver EventDao.markCleanAt)
+    @Query("UPDATE subjects SET dirty = 0 WHERE id = :id AND updatedAt = :updatedAt")
+    void markCleanAt(String id, long updatedAt);
+
+    @Transaction
+    default void markPushed(List<SubjectEntity> pushed) {
+        for (SubjectEntity s : pushed) markCleanAt(s.id, s.updatedAt);
+    }
+
     @Query("DELETE FROM subjects WHERE id = :id")
     void deletePermanently(String id);
 
@@ -55,4 +70,12 @@ public interface SubjectDao {
     // Contar sujetos sin uid
     @Query("SELECT COUNT(*) FROM subjects WHERE (uid IS NULL OR uid = '') AND appType = :appType AND deleted = 0")
     int countSubjectsWithoutUid(String appType);
+
+    // Sujetos con cambios sin subir entre ciertos ids (entradas del outbox)
+    @Query("SELECT * FROM subjects WHERE dirty = 1 AND id IN (:ids)")
+    List<SubjectEntity> listDirtyByIds(List<String> ids);
+
+    // Versión local (updatedAt, dirty) de los ids de una página del pull (ver RowVersion)
+    @Query("SELECT id, updatedAt, dirty FROM subjects WHERE id IN (:ids)")
+    List<RowVersion> listVersions(List<String> ids);
 }
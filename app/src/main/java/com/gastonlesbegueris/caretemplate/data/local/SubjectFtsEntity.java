@@ -0,0 +1,20 @@
+package com.gastonlesbegueris.caretemplate.data.local;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+import androidx.room.PrimaryKey;
+
+// Índice full-text de subjects (nombre y notas), igual que EventFtsEntity: contenido
+// externo, docid = rowid de subjects.
+@Fts4(contentEntity = SubjectEntity.class, tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "subjects_fts")
+public class SubjectFtsEntity {
+
+    @PrimaryKey
+    @ColumnInfo(name = "rowid") public int rowid;
+
+    @ColumnInfo(name = "name")  public String name;
+    @ColumnInfo(name = "notes") public String notes;
+}
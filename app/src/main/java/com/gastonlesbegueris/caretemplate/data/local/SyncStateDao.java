@@ -0,0 +1,19 @@
+package com.gastonlesbegueris.caretemplate.data.local;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+@Dao
+public interface SyncStateDao {
+
+    @Query("SELECT * FROM sync_state WHERE syncKey = :syncKey LIMIT 1")
+    SyncStateEntity find(String syncKey);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void put(SyncStateEntity s);
+
+    @Query("DELETE FROM sync_state WHERE syncKey = :syncKey")
+    void clear(String syncKey);
+}
@@ -0,0 +1,19 @@
+package com.gastonlesbegueris.caretemplate.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+// Cursor persistido del pull paginado de CloudSync: última posición (updatedAt, id de documento)
+// ya guardada localmente para cada colección/usuario/appType.
+@Entity(tableName = "sync_state")
+public class SyncStateEntity {
+
+    @PrimaryKey @NonNull
+    @ColumnInfo(name = "syncKey")         public String syncKey;          // "uid/app/events/appType"
+
+    @ColumnInfo(name = "cursorUpdatedAt") public long   cursorUpdatedAt;  // updatedAt del último doc aplicado
+    @ColumnInfo(name = "cursorDocId")     public String cursorDocId;      // id del último doc aplicado (desempate)
+    @ColumnInfo(name = "updatedAt")       public long   updatedAt;        // cuándo se guardó el cursor
+}
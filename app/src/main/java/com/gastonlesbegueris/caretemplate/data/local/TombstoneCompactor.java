@@ -0,0 +1,116 @@
+package com.gastonlesbegueris.caretemplate.data.local;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.gastonlesbegueris.caretemplate.util.TaskScheduler;
+
+/**
+ * Compactación de events borrados (deleted=1).
+ *
+ * softDelete y compañía solo marcan la fila: el borrado tiene que llegar a la nube y a los
+ * otros dispositivos. Una vez subido (dirty=0, el push lo confirmó) y pasada la retención, el
+ * tombstone ya no sirve localmente: el documento remoto conserva deleted=1 y el pull no vuelve
+ * a crear filas locales para documentos borrados (ver PullMerge). Excepción: las ocurrencias
+ * borradas de una regla que sigue viva son las que ocultan esa ocurrencia virtual, así que se
+ * conservan mientras viva la regla. Se borra de a lotes cortos para no retener el lock de
+ * escritura.
+ *
+ * Después, si las páginas libres superan el umbral, se devuelven al sistema: con auto_vacuum
+ * INCREMENTAL alcanza un incremental_vacuum; si no, un VACUUM único que además deja la base
+ * en modo incremental para las próximas veces.
+ *
+ * Corre como mucho una vez por día, en el hilo de sync (en serie con push/pull).
+ */
+public final class TombstoneCompactor {
+
+    private static final String TAG = "TombstoneCompactor";
+    private static final String PREFS = "prefs";
+    private static final String KEY_LAST_RUN = "tombstones_compacted_at";
+
+    // Tiempo que un tombstone ya subido se conserva localmente
+    static final long RETENTION_MS = 30L * 24 * 60 * 60 * 1000;
+    private static final long MIN_INTERVAL_MS = 24L * 60 * 60 * 1000;
+    private static final int DELETE_BATCH = 500;
+    // Vacuum solo si hay al menos 256 páginas libres (1 MB con páginas de 4 KB) y son el 20% de la base
+    private static final long FREE_PAGES_MIN = 256;
+    private static final double FREE_RATIO_MIN = 0.20;
+
+    private TombstoneCompactor() {}
+
+    /** Resultado de una pasada (para el log). */
+    public static final class Report {
+        public int purgedEvents;
+        public long pageCount;
+        public long freePagesBefore;
+        public long freePagesAfter;
+        public boolean vacuumed;
+
+        @Override
+        public String toString() {
+            return "purgados=" + purgedEvents + ", páginas=" + pageCount + ", libres=" + freePagesBefore
+                    + "→" + freePagesAfter + (vacuumed ? " (vacuum)" : "");
+        }
+    }
+
+    /** Agenda una pasada si la última fue hace más de un día. */
+    public static void schedule(Context c) {
+        final Context app = c.getApplicationContext();
+        TaskScheduler.get().sync(() -> {
+            SharedPreferences prefs = app.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+            long now = System.currentTimeMillis();
+            if (now - prefs.getLong(KEY_LAST_RUN, 0L) < MIN_INTERVAL_MS) return;
+            try {
+                Report r = run(AppDb.get(app), now);
+                Log.d(TAG, "Compactación: " + r);
+                prefs.edit().putLong(KEY_LAST_RUN, now).apply();
+            } catch (Exception e) {
+                Log.w(TAG, "Compactación falló", e);
+            }
+        });
+    }
+
+    /** Una pasada completa. Hilo de fondo, fuera de cualquier transacción (VACUUM no puede). */
+    public static Report run(AppDb db, long now) {
+        Report r = new Report();
+        EventDao dao = db.eventDao();
+        long before = now - RETENTION_MS;
+        int n;
+        do {
+            n = dao.purgeTombstones(before, DELETE_BATCH);
+            r.purgedEvents += n;
+        } while (n == DELETE_BATCH);
+
+        SupportSQLiteDatabase sql = db.getOpenHelper().getWritableDatabase();
+        r.pageCount = pragma(sql, "page_count");
+        r.freePagesBefore = pragma(sql, "freelist_count");
+        r.freePagesAfter = r.freePagesBefore;
+        if (r.freePagesBefore >= FREE_PAGES_MIN && r.freePagesBefore >= r.pageCount * FREE_RATIO_MIN) {
+            if (pragma(sql, "auto_vacuum") == 2) {
+                // incremental_vacuum devuelve una fila por página liberada: hay que recorrer el cursor
+                try (Cursor c = sql.query("PRAGMA incremental_vacuum")) {
+                    while (c.moveToNext()) { /* nada */ }
+                }
+            } else {
+                // El cambio de auto_vacuum recién se aplica con este VACUUM
+                sql.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+                sql.execSQL("VACUUM");
+                // VACUUM puede renumerar los rowid de events/subjects: los docid de FTS quedan viejos
+                SearchIndex.rebuild(sql);
+            }
+            r.vacuumed = true;
+            r.freePagesAfter = pragma(sql, "freelist_count");
+        }
+        return r;
+    }
+
+    private static long pragma(SupportSQLiteDatabase sql, String name) {
+        try (Cursor c = sql.query("PRAGMA " + name)) {
+            return c.moveToFirst() ? c.getLong(0) : 0L;
+        }
+    }
+}
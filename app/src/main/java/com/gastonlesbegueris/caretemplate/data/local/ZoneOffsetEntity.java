@@ -0,0 +1,15 @@
+package com.gastonlesbegueris.caretemplate.data.local;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+// Copia de la tabla de transiciones de DayBuckets para la zona actual: desde startAt (UTC, ms)
+// rige offsetMs. La primera fila tiene startAt = Long.MIN_VALUE. La escribe DayTotals.syncZone.
+@Entity(tableName = "zone_offsets")
+public class ZoneOffsetEntity {
+
+    @PrimaryKey
+    @ColumnInfo(name = "startAt")  public long startAt;
+    @ColumnInfo(name = "offsetMs") public int  offsetMs;
+}
@@ -0,0 +1,12 @@
+package com.gastonlesbegueris.caretemplate.data.model;
+
+import androidx.room.ColumnInfo;
+
+/** Totales de un día (todos los sujetos) leídos de day_totals. */
+public class DayTotal {
+    @ColumnInfo(name = "day")           public long   day;           // día local (días desde 1970-01-01)
+    @ColumnInfo(name = "eventCount")    public int    eventCount;
+    @ColumnInfo(name = "realizedCount") public int    realizedCount;
+    @ColumnInfo(name = "plannedSum")    public double plannedSum;
+    @ColumnInfo(name = "realizedSum")   public double realizedSum;
+}
@@ -0,0 +1,63 @@
+package com.gastonlesbegueris.caretemplate.data.model;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Ignore;
+
+import com.gastonlesbegueris.caretemplate.data.local.EventEntity;
+import com.gastonlesbegueris.caretemplate.data.local.Recurrence;
+
+/**
+ * Fila de evento para las listas (Home, Agenda, búsqueda): solo las columnas que se muestran
+ * o que usa el diff. Las listas largas no cargan notas, datos de repetición ni sync, y las
+ * columnas NOT NULL van como primitivos. Para editar se busca la fila completa por id.
+ */
+public class EventListItem {
+
+    /** Columnas del SELECT de las queries de lista (EventDao). */
+    public static final String COLUMNS = "id, subjectId, title, dueAt, realized, cost, kilometersAtEvent, updatedAt";
+
+    @NonNull
+    @ColumnInfo(name = "id")
+    public String id = "";
+
+    @ColumnInfo(name = "subjectId")
+    public String subjectId;
+
+    @ColumnInfo(name = "title")
+    public String title;
+
+    @ColumnInfo(name = "dueAt")
+    public long dueAt;
+
+    @ColumnInfo(name = "realized")
+    public int realized;               // 0/1
+
+    @ColumnInfo(name = "cost")
+    public Double cost;                // null = sin costo
+
+    @ColumnInfo(name = "kilometersAtEvent")
+    public Double kilometersAtEvent;   // null = sin km
+
+    @ColumnInfo(name = "updatedAt")
+    public long updatedAt;
+
+    // Ocurrencia virtual de una regla (no existe en la base): se edita a partir de esta
+    @Ignore
+    public EventEntity occurrence;
+
+    /** Item a partir de una fila completa (p. ej. ocurrencias virtuales de Recurrence). */
+    public static EventListItem of(EventEntity e) {
+        EventListItem i = new EventListItem();
+        i.id = e.id;
+        i.subjectId = e.subjectId;
+        i.title = e.title;
+        i.dueAt = e.dueAt;
+        i.realized = e.realized;
+        i.cost = e.cost;
+        i.kilometersAtEvent = e.kilometersAtEvent;
+        i.updatedAt = e.updatedAt;
+        if (Recurrence.isOccurrenceId(e.id)) i.occurrence = e;
+        return i;
+    }
+}
@@ -0,0 +1,10 @@
+package com.gastonlesbegueris.caretemplate.data.model;
+
+import androidx.room.ColumnInfo;
+
+/** Gastos de un día (todos los sujetos) leídos de expenses. */
+public class ExpenseDayTotal {
+    @ColumnInfo(name = "day")   public long   day;   // día local (días desde 1970-01-01)
+    @ColumnInfo(name = "count") public int    count;
+    @ColumnInfo(name = "total") public double total;
+}
@@ -0,0 +1,10 @@
+package com.gastonlesbegueris.caretemplate.data.model;
+
+import androidx.room.ColumnInfo;
+
+/** Total de gastos agrupado por categoría o por sujeto (ver ExpenseDao). */
+public class ExpenseTotal {
+    @ColumnInfo(name = "key")   public String key;    // categoría o subjectId (puede ser null)
+    @ColumnInfo(name = "count") public int    count;
+    @ColumnInfo(name = "total") public double total;
+}
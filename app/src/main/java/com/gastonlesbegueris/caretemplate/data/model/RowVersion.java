@@ -0,0 +1,20 @@
+package com.gastonlesbegueris.caretemplate.data.model;
+
+import androidx.room.ColumnInfo;
+
+/** Versión local de una fila (para decidir en el pull si la versión remota hace falta). */
+public class RowVersion {
+    @ColumnInfo(name = "id")        public String id;
+    @ColumnInfo(name = "updatedAt") public long   updatedAt;
+    @ColumnInfo(name = "dirty")     public int    dirty;
+
+    /**
+     * true si la versión remota (updatedAt) debe escribirse sobre esta fila: no cuando es la
+     * misma versión ya guardada (reescribirla solo invalida las consultas observadas), ni
+     * cuando hay un cambio local pendiente igual o más nuevo.
+     */
+    public boolean shouldApply(long remoteUpdatedAt) {
+        if (dirty == 1) return remoteUpdatedAt > updatedAt;
+        return remoteUpdatedAt != updatedAt;
+    }
+}
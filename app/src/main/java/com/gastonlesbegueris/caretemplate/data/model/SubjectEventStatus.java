@@ -0,0 +1,21 @@
+package com.gastonlesbegueris.caretemplate.data.model;
+
+import androidx.room.ColumnInfo;
+
+/** Estado agregado de los eventos pendientes de un sujeto (una fila por subjectId). */
+public class SubjectEventStatus {
+    @ColumnInfo(name = "subjectId")
+    public String subjectId;
+
+    @ColumnInfo(name = "nextDueAt")
+    public Long nextDueAt;         // próximo evento pendiente (>= now), null si no hay
+
+    @ColumnInfo(name = "nextTitle")
+    public String nextTitle;       // título del próximo evento (puede ser null)
+
+    @ColumnInfo(name = "overdueCount")
+    public int overdueCount;       // pendientes con dueAt < now
+
+    @ColumnInfo(name = "dueTodayCount")
+    public int dueTodayCount;      // pendientes dentro de [dayStart, dayEnd)
+}
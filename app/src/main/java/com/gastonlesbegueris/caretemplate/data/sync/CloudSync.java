@@ -4,21 +4,32 @@ import android.util.Log;
 
 import androidx.annotation.Nullable;
 
+import com.gastonlesbegueris.caretemplate.data.local.AppDb;
 import com.gastonlesbegueris.caretemplate.data.local.EventDao;
 import com.gastonlesbegueris.caretemplate.data.local.EventEntity;
+import com.gastonlesbegueris.caretemplate.data.local.EventFields;
+import com.gastonlesbegueris.caretemplate.data.local.OutboxDao;
+import com.gastonlesbegueris.caretemplate.data.local.OutboxEntity;
 import com.gastonlesbegueris.caretemplate.data.local.SubjectDao;
 import com.gastonlesbegueris.caretemplate.data.local.SubjectEntity;
+import com.gastonlesbegueris.caretemplate.data.local.SyncStateDao;
+import com.gastonlesbegueris.caretemplate.data.local.SyncStateEntity;
+import com.gastonlesbegueris.caretemplate.util.TaskScheduler;
 import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
 
 public class CloudSync {
 
@@ -26,21 +37,43 @@ public class CloudSync {
     public interface Ok  { void run(); }
     public interface Err { void run(Exception e); }
 
+    // Firestore admite hasta 500 operaciones por WriteBatch
+    private static final int MAX_BATCH_OPS = 500;
+    private static final int MAX_BATCH_RETRIES = 3;
+    private static final long RETRY_BASE_DELAY_MS = 1000L;
+    // Documentos por página del pull (una transacción local por página)
+    private static final int PULL_PAGE_SIZE = 300;
+    // Backoff por documento del outbox: 15 s, 30 s, 1 min... hasta 1 h
+    private static final long OUTBOX_BACKOFF_BASE_MS = 15_000L;
+    private static final long OUTBOX_BACKOFF_MAX_MS = 60 * 60 * 1000L;
+
+    // Una sola subida a la vez en todo el proceso (push manual o drain del outbox): juntas
+    // tomarían las mismas filas dirty y las subirían dos veces. Solo desde el hilo de sync
+    private static boolean uploading;
+    private static final ArrayDeque<Upload> waitingUploads = new ArrayDeque<>();
+
+    private final AppDb db;
     private final EventDao eventDao;
     private final SubjectDao subjectDao;
+    private final SyncStateDao syncStateDao;
+    private final OutboxDao outboxDao;
+    private final PullMerge merge;
     private final FirebaseFirestore fs;
     private final String uid;      // dueño de los datos en Firestore
     private final String app;      // identificador de la app/espacio (por ej. "CareTemplate")
     private final String appType;  // flavor actual: "pets" | "cars" | "family" | "house"
 
-    public CloudSync(EventDao eventDao,
-                     SubjectDao subjectDao,
+    public CloudSync(AppDb db,
                      FirebaseFirestore fs,
                      String uid,
                      String app,
                      String appType) {
-        this.eventDao = eventDao;
-        this.subjectDao = subjectDao;
+        this.db = db;
+        this.eventDao = db.eventDao();
+        this.subjectDao = db.subjectDao();
+        this.syncStateDao = db.syncStateDao();
+        this.outboxDao = db.outboxDao();
+        this.merge = new PullMerge(eventDao, subjectDao, db.conflictDao());
         this.fs = fs;
         this.uid = uid;
         this.app = app;
@@ -68,431 +101,145 @@ public class CloudSync {
 
     /** Sube a Firestore todos los subjects con dirty=1 del appType actual. */
     public void pushSubjects(Ok ok, @Nullable Err err) {
-        new Thread(() -> {
+        TaskScheduler.get().sync(() -> upload(release -> {
             try {
                 final List<SubjectEntity> dirty = subjectDao.listDirty(appType);
                 if (dirty == null || dirty.isEmpty()) {
+                    release.run();
                     if (ok != null) ok.run();
                     return;
                 }
 
-                final AtomicInteger left = new AtomicInteger(dirty.size());
-                final List<String> cleaned = Collections.synchronizedList(new ArrayList<>());
-
-                final List<String> toDelete = Collections.synchronizedList(new ArrayList<>());
-                
-                for (final SubjectEntity s : dirty) {
-                    // Si el sujeto no tiene uid, asignarle el uid del usuario actual
-                    if (s.uid == null || s.uid.isEmpty()) {
-                        s.uid = uid;
-                        s.dirty = 1; // Mantener dirty para que se sincronice
-                        subjectDao.update(s);
-                    }
-                    final Map<String, Object> data = new HashMap<>();
-                    data.put("id", s.id);
-                    data.put("uid", s.uid != null ? s.uid : uid); // Incluir uid del sujeto
-                    data.put("appType", s.appType);
-                    data.put("name", s.name);
-                    data.put("birthDate", s.birthDate);
-                    data.put("currentMeasure", s.currentMeasure);
-                    data.put("notes", s.notes);
-                    data.put("iconKey", s.iconKey);
-                    data.put("colorHex", s.colorHex);
-                    data.put("updatedAt", s.updatedAt);
-                    data.put("deleted", s.deleted);
-
-                    // Si el sujeto está borrado, marcarlo para eliminación física después de sincronizar
-                    if (s.deleted == 1) {
-                        toDelete.add(s.id);
-                    }
-
-                    subjectsCol().document(s.id).set(data)
-                            .addOnSuccessListener(a -> {
-                                cleaned.add(s.id);
-                                if (left.decrementAndGet() == 0) {
-                                    new Thread(() -> {
-                                        subjectDao.markClean(cleaned);
-                                        // Eliminar físicamente los sujetos borrados después de sincronizar exitosamente
-                                        for (String idToDelete : toDelete) {
-                                            // Eliminar también los eventos relacionados
-                                            eventDao.deletePermanentlyEventsBySubjectId(idToDelete);
-                                            subjectDao.deletePermanently(idToDelete);
-                                            Log.d("CloudSync", "Sujeto y eventos relacionados eliminados físicamente después de sync: " + idToDelete);
-                                        }
-                                        if (ok != null) ok.run();
-                                    }).start();
-                                }
-                            })
-                            .addOnFailureListener(e -> {
-                                // Verificar si es un error de permisos que podemos ignorar
-                                String errorMsg = e != null ? e.getMessage() : "null";
-                                if (errorMsg != null) {
-                                    String errorMsgLower = errorMsg.toLowerCase();
-                                    boolean isPermissionError = 
-                                        (errorMsgLower.contains("permission") && (errorMsgLower.contains("denied") || errorMsgLower.contains("missing"))) ||
-                                        errorMsgLower.contains("permission_denied") ||
-                                        errorMsgLower.contains("permission denied") ||
-                                        errorMsg.contains("PERMISSION_DENIED") ||
-                                        errorMsgLower.contains("missing permission") ||
-                                        errorMsgLower.contains("missing_permission");
-                                    
-                                    if (isPermissionError) {
-                                        Log.d("CloudSync", "Error de permisos en pushSubjects (puede ser normal): " + errorMsg);
-                                        // Continuar como si fuera exitoso para no bloquear la sincronización
-                                        cleaned.add(s.id);
-                                        if (left.decrementAndGet() == 0) {
-                                            new Thread(() -> {
-                                                subjectDao.markClean(cleaned);
-                                                // Eliminar físicamente los sujetos borrados después de sincronizar exitosamente
-                                                for (String idToDelete : toDelete) {
-                                                    // Eliminar también los eventos relacionados
-                                                    eventDao.deletePermanentlyEventsBySubjectId(idToDelete);
-                                                    subjectDao.deletePermanently(idToDelete);
-                                                    Log.d("CloudSync", "Sujeto y eventos relacionados eliminados físicamente después de sync: " + idToDelete);
-                                                }
-                                                if (ok != null) ok.run();
-                                            }).start();
-                                        }
-                                        return;
-                                    }
-                                }
-                                // Verificar si es error de permisos antes de propagar
-                                String finalErrorMsg = e != null ? e.getMessage() : "null";
-                                String finalErrorMsgLower = finalErrorMsg != null ? finalErrorMsg.toLowerCase() : "";
-                                boolean isPermissionError = 
-                                    (finalErrorMsgLower.contains("permission") && (finalErrorMsgLower.contains("denied") || finalErrorMsgLower.contains("missing"))) ||
-                                    finalErrorMsgLower.contains("permission_denied") ||
-                                    finalErrorMsgLower.contains("permission denied") ||
-                                    finalErrorMsg.contains("PERMISSION_DENIED") ||
-                                    finalErrorMsgLower.contains("missing permission") ||
-                                    finalErrorMsgLower.contains("missing_permission");
-                                
-                                if (isPermissionError) {
-                                    Log.d("CloudSync", "Error de permisos en pushSubjects (silenciado): " + finalErrorMsg);
-                                    // Continuar como si fuera exitoso
-                                    cleaned.add(s.id);
-                                    if (left.decrementAndGet() == 0) {
-                                        new Thread(() -> {
-                                            subjectDao.markClean(cleaned);
-                                            for (String idToDelete : toDelete) {
-                                                // Eliminar también los eventos relacionados
-                                                eventDao.deletePermanentlyEventsBySubjectId(idToDelete);
-                                                subjectDao.deletePermanently(idToDelete);
-                                                Log.d("CloudSync", "Sujeto y eventos relacionados eliminados físicamente después de sync: " + idToDelete);
-                                            }
-                                            if (ok != null) ok.run();
-                                        }).start();
-                                    }
-                                } else {
-                                    if (err != null) err.run(e);
-                                }
-                            });
-                }
+                pushSubjectRows(dirty, () -> {
+                    release.run();
+                    if (ok != null) ok.run();
+                });
             } catch (Exception e) {
-                // Verificar si es error de permisos antes de propagar
-                String errorMsg = e != null ? e.getMessage() : "null";
-                String errorMsgLower = errorMsg != null ? errorMsg.toLowerCase() : "";
-                boolean isPermissionError = 
-                    (errorMsgLower.contains("permission") && (errorMsgLower.contains("denied") || errorMsgLower.contains("missing"))) ||
-                    errorMsgLower.contains("permission_denied") ||
-                    errorMsgLower.contains("permission denied") ||
-                    errorMsg.contains("PERMISSION_DENIED") ||
-                    errorMsgLower.contains("missing permission") ||
-                    errorMsgLower.contains("missing_permission");
-                
-                if (isPermissionError) {
-                    Log.d("CloudSync", "Error de permisos en pushSubjects catch (silenciado): " + errorMsg);
+                release.run();
+                if (isPermissionError(e)) {
+                    Log.d("CloudSync", "Error de permisos en pushSubjects catch (silenciado): " + e.getMessage());
                     if (ok != null) ok.run();
                 } else {
                     if (err != null) err.run(e);
                 }
             }
-        }).start();
+        }));
+    }
+
+    /**
+     * Sube los subjects dados en lotes de hasta MAX_BATCH_OPS escrituras (un solo commit por
+     * lote en lugar de un set() por documento). Un documento que falla queda en el outbox con
+     * backoff y no frena al resto. Corre en el hilo de sync.
+     */
+    private void pushSubjectRows(List<SubjectEntity> rows, @Nullable Ok done) {
+        for (final SubjectEntity s : rows) {
+            // Si el sujeto no tiene uid, asignarle el uid del usuario actual
+            if (s.uid == null || s.uid.isEmpty()) {
+                s.uid = uid;
+                s.dirty = 1; // Mantener dirty para que se sincronice
+                subjectDao.update(s);
+            }
+        }
+        pushSubjectChunk(chunk(rows), 0, done);
     }
 
-    /** Baja de Firestore los subjects con updatedAt > lastLocalUpdated. */
+    /** Sube el lote index de subjects; limpia lo confirmado y sigue con el próximo. */
+    private void pushSubjectChunk(List<List<SubjectEntity>> chunks, int index, @Nullable Ok done) {
+        if (index >= chunks.size()) {
+            if (done != null) done.run();
+            return;
+        }
+        commitIsolated(OutboxEntity.KIND_SUBJECT, chunks.get(index), s -> s.id, (b, s) -> {
+            final Map<String, Object> data = FirestoreCodec.SUBJECTS.encode(s);
+            if (s.uid == null) data.put("uid", uid); // Incluir uid del sujeto
+            b.set(subjectsCol().document(s.id), data);
+        }, committed -> {
+            // Marcar limpio solo lo confirmado en Firestore
+            subjectDao.markPushed(committed);
+            // Eliminar físicamente los sujetos borrados de este lote (y sus eventos)
+            for (SubjectEntity s : committed) {
+                if (s.deleted == 1) {
+                    eventDao.deletePermanentlyEventsBySubjectId(s.id);
+                    subjectDao.deletePermanently(s.id);
+                    Log.d("CloudSync", "Sujeto y eventos relacionados eliminados físicamente después de sync: " + s.id);
+                }
+            }
+            pushSubjectChunk(chunks, index + 1, done);
+        });
+    }
+
+    /**
+     * Baja de Firestore los subjects modificados desde el último cursor, de a páginas de
+     * PULL_PAGE_SIZE (orderBy updatedAt + id de documento). Cada página se guarda en una
+     * transacción junto con el cursor, así una primera sincronización interrumpida sigue
+     * desde donde quedó.
+     */
     public void pullSubjects(Ok ok, @Nullable Err err) {
-        new Thread(() -> {
-            Long lastLong = subjectDao.lastUpdatedForApp(appType);
-            final long last = (lastLong != null ? lastLong : 0L);
-            Log.d("CloudSync", "pullSubjects: uid=" + uid + ", app=" + app + ", appType=" + appType + ", last=" + last);
-            
-            // Primero, asegurar que el documento padre existe
-            fs.collection("users").document(uid)
-                    .collection("apps").document(app)
-                    .set(Collections.singletonMap("createdAt", System.currentTimeMillis()), SetOptions.merge())
-                    .addOnSuccessListener(a -> {
-                        Log.d("CloudSync", "Documento padre creado/actualizado: users/" + uid + "/apps/" + app);
-                        // Si es la primera sincronización (last = 0), traer todos los sujetos sin filtro de updatedAt
-                        // para asegurar que se importen todos los datos
-                        if (last == 0L) {
-                            Log.d("CloudSync", "Primera sincronización (last=0), trayendo todos los sujetos sin filtro de updatedAt");
-                            subjectsCol()
-                                    .whereEqualTo("appType", appType)
-                                    .get()
-                                    .addOnSuccessListener(qs -> {
-                                        Log.d("CloudSync", "✅ Query exitosa: " + qs.size() + " sujetos encontrados");
-                                        new Thread(() -> {
-                                            int importedCount = 0;
-                                            for (QueryDocumentSnapshot doc : qs) {
-                                                Long del = doc.getLong("deleted");
-                                                int deleted = (del == null ? 0 : del.intValue());
-                                                
-                                                // Si el sujeto está borrado en Firebase, eliminarlo físicamente de la base local
-                                                if (deleted == 1) {
-                                                    String subjectId = doc.getString("id");
-                                                    if (subjectId != null) {
-                                                        // Eliminar también los eventos relacionados
-                                                        eventDao.deletePermanentlyEventsBySubjectId(subjectId);
-                                                        subjectDao.deletePermanently(subjectId);
-                                                        Log.d("CloudSync", "Sujeto y eventos relacionados eliminados físicamente: " + subjectId);
-                                                    }
-                                                } else {
-                                                    // Si no está borrado, actualizar/insertar normalmente
-                                                    SubjectEntity s = new SubjectEntity();
-                                                    s.id = doc.getString("id");
-                                                    // Leer uid del documento, si no existe usar el uid del sync
-                                                    String subjectUid = doc.getString("uid");
-                                                    s.uid = (subjectUid != null && !subjectUid.isEmpty()) ? subjectUid : uid;
-                                                    s.appType = doc.getString("appType");
-                                                    s.name = doc.getString("name");
-
-                                                    Long bd = doc.getLong("birthDate");
-                                                    s.birthDate = (bd == null ? null : bd);
-
-                                                    Double cm = doc.getDouble("currentMeasure");
-                                                    s.currentMeasure = (cm == null ? null : cm);
-
-                                                    s.notes = doc.getString("notes");
-                                                    s.iconKey = doc.getString("iconKey");
-                                                    s.colorHex = doc.getString("colorHex");
-
-                                                    Long up = doc.getLong("updatedAt");
-                                                    s.updatedAt = (up == null ? 0L : up);
-
-                                                    s.deleted = 0;
-                                                    s.dirty = 0; // limpio al bajar del cloud
-                                                    subjectDao.insert(s);
-                                                    importedCount++;
-                                                    Log.d("CloudSync", "✅ Sujeto importado: " + s.name + " (ID: " + s.id + ")");
-                                                }
-                                            }
-                                            Log.d("CloudSync", "✅ Total sujetos importados: " + importedCount + " de " + qs.size());
-                                            if (ok != null) ok.run();
-                                        }).start();
-                                    })
-                                    .addOnFailureListener(e -> {
-                                        Log.e("CloudSync", "❌ Error en pullSubjects (primera sincronización): " + e.getMessage(), e);
-                                        if (err != null) err.run(e);
-                                    });
-                            return;
-                        }
-                        
-                        // Para sincronizaciones posteriores, usar el filtro de updatedAt
-                        // Ahora hacer la consulta
-                        subjectsCol()
-                                .whereEqualTo("appType", appType)
-                                .whereGreaterThan("updatedAt", last)
-                                .get()
-                                .addOnSuccessListener(qs -> {
-                                    new Thread(() -> {
-                                        for (QueryDocumentSnapshot doc : qs) {
-                                            Long del = doc.getLong("deleted");
-                                            int deleted = (del == null ? 0 : del.intValue());
-                                            
-                                            // Si el sujeto está borrado en Firebase, eliminarlo físicamente de la base local
-                                            if (deleted == 1) {
-                                                String subjectId = doc.getString("id");
-                                                if (subjectId != null) {
-                                                    // Eliminar también los eventos relacionados
-                                                    eventDao.deletePermanentlyEventsBySubjectId(subjectId);
-                                                    subjectDao.deletePermanently(subjectId);
-                                                    Log.d("CloudSync", "Sujeto y eventos relacionados eliminados físicamente: " + subjectId);
-                                                }
-                                            } else {
-                                                // Si no está borrado, actualizar/insertar normalmente
-                                                SubjectEntity s = new SubjectEntity();
-                                                s.id = doc.getString("id");
-                                                // Leer uid del documento, si no existe usar el uid del sync
-                                                String subjectUid = doc.getString("uid");
-                                                s.uid = (subjectUid != null && !subjectUid.isEmpty()) ? subjectUid : uid;
-                                                s.appType = doc.getString("appType");
-                                                s.name = doc.getString("name");
-
-                                                Long bd = doc.getLong("birthDate");
-                                                s.birthDate = (bd == null ? null : bd);
-
-                                                Double cm = doc.getDouble("currentMeasure");
-                                                s.currentMeasure = (cm == null ? null : cm);
-
-                                                s.notes = doc.getString("notes");
-                                                s.iconKey = doc.getString("iconKey");
-                                                s.colorHex = doc.getString("colorHex");
-
-                                                Long up = doc.getLong("updatedAt");
-                                                s.updatedAt = (up == null ? 0L : up);
-
-                                                s.deleted = 0;
-                                                s.dirty = 0; // limpio al bajar del cloud
-                                                subjectDao.insert(s);
-                                            }
-                                        }
-                                        if (ok != null) ok.run();
-                                    }).start();
-                                })
-                                .addOnFailureListener(e -> { 
-                                    // Si falla, intentar sin el filtro de updatedAt (primera vez)
-                                    String errorMsg = e != null ? e.getMessage() : "null";
-                                    Log.w("CloudSync", "Error en pullSubjects (con whereGreaterThan): " + errorMsg, e);
-                                    // PERMISSION_DENIED y failed_precondition son normales cuando no hay datos
-                                    if (errorMsg != null && (errorMsg.contains("failed_precondition") || 
-                                                             errorMsg.contains("FAILED_PRECONDITION") ||
-                                                             errorMsg.contains("permission_denied") ||
-                                                             errorMsg.contains("PERMISSION_DENIED"))) {
-                                        Log.d("CloudSync", "Intentando consulta sin whereGreaterThan...");
-                                        // Intentar consulta más simple sin whereGreaterThan
-                                        subjectsCol()
-                                                .whereEqualTo("appType", appType)
-                                                .get()
-                                                .addOnSuccessListener(qs -> {
-                                                    new Thread(() -> {
-                                                        for (QueryDocumentSnapshot doc : qs) {
-                                                            Long del = doc.getLong("deleted");
-                                                            int deleted = (del == null ? 0 : del.intValue());
-                                                            
-                                                            // Si el sujeto está borrado en Firebase, eliminarlo físicamente de la base local
-                                                            if (deleted == 1) {
-                                                                String subjectId = doc.getString("id");
-                                                                if (subjectId != null) {
-                                                                    // Eliminar también los eventos relacionados
-                                                                    eventDao.deletePermanentlyEventsBySubjectId(subjectId);
-                                                                    subjectDao.deletePermanently(subjectId);
-                                                                    Log.d("CloudSync", "Sujeto y eventos relacionados eliminados físicamente (fallback): " + subjectId);
-                                                                }
-                                                            } else {
-                                                                // Si no está borrado, actualizar/insertar normalmente
-                                                                SubjectEntity s = new SubjectEntity();
-                                                                s.id = doc.getString("id");
-                                                                // Leer uid del documento, si no existe usar el uid del sync
-                                                                String subjectUid = doc.getString("uid");
-                                                                s.uid = (subjectUid != null && !subjectUid.isEmpty()) ? subjectUid : uid;
-                                                                s.appType = doc.getString("appType");
-                                                                s.name = doc.getString("name");
-
-                                                                Long bd = doc.getLong("birthDate");
-                                                                s.birthDate = (bd == null ? null : bd);
-
-                                                                Double cm = doc.getDouble("currentMeasure");
-                                                                s.currentMeasure = (cm == null ? null : cm);
-
-                                                                s.notes = doc.getString("notes");
-                                                                s.iconKey = doc.getString("iconKey");
-                                                                s.colorHex = doc.getString("colorHex");
-
-                                                                Long up = doc.getLong("updatedAt");
-                                                                s.updatedAt = (up == null ? 0L : up);
-
-                                                                s.deleted = 0;
-                                                                s.dirty = 0;
-                                                                subjectDao.insert(s);
-                                                            }
-                                                        }
-                                                        if (ok != null) ok.run();
-                                                    }).start();
-                                                })
-                                                .addOnFailureListener(e2 -> { 
-                                                    Log.w("CloudSync", "Error en pullSubjects (sin whereGreaterThan): " + e2.getMessage(), e2);
-                                                    String errorMsg2 = e2.getMessage();
-                                                    
-                                                    // Si el error es failed_precondition o permission_denied, puede ser que no haya datos aún
-                                                    // o que las reglas no permitan la consulta. Intentar consulta sin filtros.
-                                                    String errorMsg2Lower = errorMsg2 != null ? errorMsg2.toLowerCase() : "";
-                                                    boolean isPermissionError2 = 
-                                                        (errorMsg2Lower.contains("permission") && (errorMsg2Lower.contains("denied") || errorMsg2Lower.contains("missing"))) ||
-                                                        errorMsg2Lower.contains("permission_denied") ||
-                                                        errorMsg2Lower.contains("permission denied") ||
-                                                        errorMsg2.contains("PERMISSION_DENIED") ||
-                                                        errorMsg2Lower.contains("missing permission") ||
-                                                        errorMsg2Lower.contains("missing_permission");
-                                                    
-                                                    if (errorMsg2 != null && (errorMsg2.contains("failed_precondition") || 
-                                                                              errorMsg2.contains("FAILED_PRECONDITION") ||
-                                                                              isPermissionError2)) {
-                                                        Log.d("CloudSync", "Intentando consulta sin filtros para verificar acceso...");
-                                                        subjectsCol().limit(1).get()
-                                                                .addOnSuccessListener(qs -> {
-                                                                    Log.d("CloudSync", "Acceso verificado. Continuando sin datos (primera sincronización o sin datos)");
-                                                                    // Si esto funciona, el problema es el índice o no hay datos
-                                                                    // Continuar sin datos (primera sincronización)
-                                                                    if (ok != null) ok.run();
-                                                                })
-                                                                .addOnFailureListener(e3 -> {
-                                                                    String errorMsg3 = e3 != null ? e3.getMessage() : "null";
-                                                                    // PERMISSION_DENIED y missing permission son normales cuando no hay datos - no mostrar error
-                                                                    String errorMsg3Lower = errorMsg3 != null ? errorMsg3.toLowerCase() : "";
-                                                                    boolean isPermissionError3 = 
-                                                                        (errorMsg3Lower.contains("permission") && (errorMsg3Lower.contains("denied") || errorMsg3Lower.contains("missing"))) ||
-                                                                        errorMsg3Lower.contains("permission_denied") ||
-                                                                        errorMsg3Lower.contains("permission denied") ||
-                                                                        errorMsg3.contains("PERMISSION_DENIED") ||
-                                                                        errorMsg3Lower.contains("missing permission") ||
-                                                                        errorMsg3Lower.contains("missing_permission");
-                                                                    
-                                                                    if (errorMsg3 != null && isPermissionError3) {
-                                                                        Log.d("CloudSync", "Error de permisos durante pullSubjects (sin datos). Continuando sin error.");
-                                                                        // Continuar sin error - es normal cuando no hay datos
-                                                                        if (ok != null) ok.run();
-                                                                    } else {
-                                                                        // Si es failed_precondition, probablemente no hay datos o falta índice
-                                                                        // Continuar sin error (primera sincronización)
-                                                                        Log.d("CloudSync", "No hay datos para bajar o falta índice. Continuando sin error.");
-                                                                        if (ok != null) ok.run();
-                                                                    }
-                                                                });
-                                                    } else {
-                                                        // Si el error NO es failed_precondition ni permission_denied, puede ser otro problema
-                                                        // Pero si la sincronización está funcionando (push OK), probablemente es solo que no hay datos
-                                                        Log.d("CloudSync", "Error en fallback pero continuando (puede ser que no haya datos): " + errorMsg2);
-                                                        // Continuar sin error si la sincronización está funcionando
-                                                        if (ok != null) ok.run();
-                                                    }
-                                                });
-                                    } else {
-                                        // Si NO es failed_precondition, puede ser otro error real
-                                        // Pero verificar si es un error que podemos ignorar
-                                        String errorMsgLower = errorMsg != null ? errorMsg.toLowerCase() : "";
-                                        boolean isPermissionError = 
-                                            (errorMsgLower.contains("permission") && (errorMsgLower.contains("denied") || errorMsgLower.contains("missing"))) ||
-                                            errorMsgLower.contains("permission_denied") ||
-                                            errorMsgLower.contains("permission denied") ||
-                                            errorMsg.contains("PERMISSION_DENIED") ||
-                                            errorMsgLower.contains("missing permission") ||
-                                            errorMsgLower.contains("missing_permission");
-                                        
-                                        if (errorMsg != null && isPermissionError) {
-                                            // PERMISSION_DENIED es normal cuando no hay datos - no mostrar error
-                                            Log.d("CloudSync", "PERMISSION_DENIED durante pullSubjects (sin datos). Continuando sin error.");
-                                            if (ok != null) ok.run();
-                                        } else {
-                                            // Otros errores - loguear pero continuar (puede ser que no haya datos)
-                                            Log.d("CloudSync", "Error en pullSubjects pero continuando: " + errorMsg);
-                                            if (ok != null) ok.run();
-                                        }
-                                    }
-                                });
-                    })
-                    .addOnFailureListener(e -> { 
-                        // Verificar si es PERMISSION_DENIED antes de propagar el error
-                        String errorMsg = e != null ? e.getMessage() : "null";
-                        if (errorMsg != null && (errorMsg.contains("permission_denied") || 
-                                                 errorMsg.contains("PERMISSION_DENIED"))) {
-                            Log.d("CloudSync", "PERMISSION_DENIED en pullSubjects (fallback final, sin datos). Continuando sin error.");
-                            if (ok != null) ok.run();
-                        } else {
-                            if (err != null) err.run(e);
-                        }
+        TaskScheduler.get().sync(() -> {
+            final String key = syncKey("subjects");
+            final PullCursor start = startCursor(key, subjectDao.lastUpdatedForApp(appType));
+            Log.d("CloudSync", "pullSubjects: uid=" + uid + ", app=" + app + ", appType=" + appType + ", cursor=" + start);
+            ensureParentDoc(() -> pullSubjectPage(key, start, 0, ok, err), ok, err);
+        });
+    }
+
+    private void pullSubjectPage(String key, PullCursor cursor, int imported, Ok ok, @Nullable Err err) {
+        pageQuery(subjectsCol(), cursor).get()
+                .addOnSuccessListener(qs -> TaskScheduler.get().sync(() -> {
+                    List<DocumentSnapshot> docs = qs.getDocuments();
+                    PullCursor next = docs.isEmpty() ? cursor : PullCursor.after(docs.get(docs.size() - 1));
+                    // Página y cursor en la misma transacción: si se corta, se reanuda desde acá
+                    int applied = db.runInTransaction(() -> {
+                        int n = applySubjectDocs(docs);
+                        saveCursor(key, next);
+                        return n;
                     });
-        }).start();
+                    int total = imported + applied;
+                    if (docs.size() < PULL_PAGE_SIZE) {
+                        Log.d("CloudSync", "✅ pullSubjects terminado: " + total + " sujetos aplicados");
+                        if (ok != null) ok.run();
+                    } else {
+                        pullSubjectPage(key, next, total, ok, err);
+                    }
+                }))
+                .addOnFailureListener(e -> onPageFailure("pullSubjects", e, cursor,
+                        () -> pullAllFallback(subjectsCol(), this::applySubjectDocs, "pullSubjects", cursor, ok, err),
+                        ok, err));
+    }
+
+    /**
+     * Guarda una página de subjects: los borrados en la nube se eliminan físicamente (con sus
+     * eventos); el resto pasa por el merge con lo local (ver PullMerge).
+     * Corre dentro de la transacción de la página.
+     */
+    private int applySubjectDocs(List<DocumentSnapshot> docs) {
+        List<SubjectEntity> rows = new ArrayList<>(docs.size());
+        List<SubjectEntity> deleted = new ArrayList<>();
+        for (DocumentSnapshot doc : docs) {
+            SubjectEntity s = toSubjectEntity(doc);
+            if (s.deleted == 1) deleted.add(s); else rows.add(s);
+        }
+        if (!deleted.isEmpty()) {
+            // Cambios locales sin subir de un sujeto borrado en la nube: quedan en el registro
+            merge.logDiscardedSubjects(deleted);
+            for (SubjectEntity s : deleted) {
+                // Si el sujeto está borrado en Firebase, eliminarlo físicamente de la base local
+                eventDao.deletePermanentlyEventsBySubjectId(s.id);
+                subjectDao.deletePermanently(s.id);
+                Log.d("CloudSync", "Sujeto y eventos relacionados eliminados físicamente: " + s.id);
+            }
+        }
+        return merge.applySubjects(rows);
+    }
+
+    private SubjectEntity toSubjectEntity(DocumentSnapshot doc) {
+        SubjectEntity s = new SubjectEntity();
+        FirestoreCodec.SUBJECTS.decode(doc.getData(), s);
+        if (s.id == null) s.id = doc.getId();
+        // Si el documento no trae uid, usar el uid del sync
+        if (s.uid == null || s.uid.isEmpty()) s.uid = uid;
+        s.dirty = 0; // limpio al bajar del cloud
+        return s;
     }
 
     // ======================
@@ -501,389 +248,511 @@ public class CloudSync {
 
     /** Sube a Firestore todos los events con dirty=1 del appType actual. */
     public void push(Ok ok, @Nullable Err err) {
-        new Thread(() -> {
+        TaskScheduler.get().sync(() -> upload(release -> {
             try {
                 final List<EventEntity> dirty = eventDao.listDirty();
                 if (dirty == null || dirty.isEmpty()) {
+                    release.run();
                     if (ok != null) ok.run();
                     return;
                 }
-
-                final AtomicInteger left = new AtomicInteger(dirty.size());
-                final List<String> cleaned = Collections.synchronizedList(new ArrayList<>());
-
-                for (final EventEntity e : dirty) {
-                    final Map<String, Object> data = new HashMap<>();
-                    data.put("id", e.id);
-                    data.put("uid", e.uid);
-                    data.put("appType", e.appType);
-                    data.put("subjectId", e.subjectId);
-                    data.put("title", e.title);
-                    data.put("note", e.note);
-                    data.put("dueAt", e.dueAt);
-                    data.put("updatedAt", e.updatedAt);
-                    data.put("deleted", e.deleted);
-                    if (e.cost != null) data.put("cost", e.cost);
-                    if (e.kilometersAtEvent != null) data.put("kilometersAtEvent", e.kilometersAtEvent);
-                    data.put("realized", e.realized);
-                    if (e.realizedAt != null) data.put("realizedAt", e.realizedAt);
-                    
-                    // Campos de repetición (opcionales)
-                    if (e.repeatType != null) data.put("repeatType", e.repeatType);
-                    if (e.repeatInterval != null) data.put("repeatInterval", e.repeatInterval);
-                    if (e.repeatEndDate != null) data.put("repeatEndDate", e.repeatEndDate);
-                    if (e.repeatCount != null) data.put("repeatCount", e.repeatCount);
-                    if (e.originalEventId != null) data.put("originalEventId", e.originalEventId);
-                    
-                    // Campo de notificación (opcional)
-                    if (e.notificationMinutesBefore != null) data.put("notificationMinutesBefore", e.notificationMinutesBefore);
-
-                    eventsCol().document(e.id).set(data)
-                            .addOnSuccessListener(a -> {
-                                cleaned.add(e.id);
-                                if (left.decrementAndGet() == 0) {
-                                    new Thread(() -> {
-                                        eventDao.markClean(cleaned);
-                                        if (ok != null) ok.run();
-                                    }).start();
-                                }
-                            })
-                            .addOnFailureListener(ex -> { 
-                                // Verificar si es error de permisos antes de propagar
-                                String errorMsg = ex != null ? ex.getMessage() : "null";
-                                String errorMsgLower = errorMsg != null ? errorMsg.toLowerCase() : "";
-                                boolean isPermissionError = 
-                                    (errorMsgLower.contains("permission") && (errorMsgLower.contains("denied") || errorMsgLower.contains("missing"))) ||
-                                    errorMsgLower.contains("permission_denied") ||
-                                    errorMsgLower.contains("permission denied") ||
-                                    errorMsg.contains("PERMISSION_DENIED") ||
-                                    errorMsgLower.contains("missing permission") ||
-                                    errorMsgLower.contains("missing_permission");
-                                
-                                if (isPermissionError) {
-                                    Log.d("CloudSync", "Error de permisos en push events (silenciado): " + errorMsg);
-                                    // Continuar como si fuera exitoso
-                                    cleaned.add(e.id);
-                                    if (left.decrementAndGet() == 0) {
-                                        new Thread(() -> {
-                                            eventDao.markClean(cleaned);
-                                            if (ok != null) ok.run();
-                                        }).start();
-                                    }
-                                } else {
-                                    if (err != null) err.run(ex);
-                                }
-                            });
-                }
+                pushEventRows(dirty, () -> {
+                    release.run();
+                    if (ok != null) ok.run();
+                });
             } catch (Exception ex) {
-                // Verificar si es error de permisos antes de propagar
-                String errorMsg = ex != null ? ex.getMessage() : "null";
-                String errorMsgLower = errorMsg != null ? errorMsg.toLowerCase() : "";
-                boolean isPermissionError = 
-                    (errorMsgLower.contains("permission") && (errorMsgLower.contains("denied") || errorMsgLower.contains("missing"))) ||
-                    errorMsgLower.contains("permission_denied") ||
-                    errorMsgLower.contains("permission denied") ||
-                    errorMsg.contains("PERMISSION_DENIED") ||
-                    errorMsgLower.contains("missing permission") ||
-                    errorMsgLower.contains("missing_permission");
-                
-                if (isPermissionError) {
-                    Log.d("CloudSync", "Error de permisos en push catch (silenciado): " + errorMsg);
+                release.run();
+                if (isPermissionError(ex)) {
+                    Log.d("CloudSync", "Error de permisos en push catch (silenciado): " + ex.getMessage());
                     if (ok != null) ok.run();
                 } else {
                     if (err != null) err.run(ex);
                 }
             }
-        }).start();
+        }));
+    }
+
+    /** Sube los events dados por lotes de hasta MAX_BATCH_OPS (ver pushSubjectRows). */
+    private void pushEventRows(List<EventEntity> rows, @Nullable Ok done) {
+        pushEventChunk(chunk(rows), 0, done);
+    }
+
+    /** Sube el lote index de events; limpia lo confirmado y sigue con el próximo. */
+    private void pushEventChunk(List<List<EventEntity>> chunks, int index, @Nullable Ok done) {
+        if (index >= chunks.size()) {
+            if (done != null) done.run();
+            return;
+        }
+        commitIsolated(OutboxEntity.KIND_EVENT, chunks.get(index), e -> e.id, (b, e) -> {
+            if (EventFields.isFull(e.dirtyFields)) {
+                b.set(eventsCol().document(e.id), FirestoreCodec.EVENTS.encode(e));
+            } else {
+                // Solo los campos que cambiaron (marcar realizado, costo, borrar...): merge.
+                // Los opcionales que pasaron a null se borran del documento
+                b.set(eventsCol().document(e.id),
+                        FirestoreCodec.EVENTS.encodeDelta(e, e.dirtyFields), SetOptions.merge());
+            }
+        }, committed -> {
+            // Marcar limpio solo lo que efectivamente se escribió (y no cambió mientras tanto)
+            eventDao.markPushed(committed);
+            pushEventChunk(chunks, index + 1, done);
+        });
+    }
+
+    // ======================
+    //       OUTBOX
+    // ======================
+
+    /** Resultado de drainOutbox: cuándo vence el próximo reintento (Long.MAX_VALUE = outbox vacío). */
+    public interface Drained { void run(long nextAttemptAt); }
+
+    /**
+     * Drena sync_outbox: sube lo pendiente cuyo backoff ya venció (subjects antes que events),
+     * de a MAX_BATCH_OPS entradas, hasta que no quede nada vencido. Si hay un push manual en
+     * curso espera a que termine (lo que ese push dejó limpio ya no se vuelve a subir).
+     */
+    public void drainOutbox(Drained done) {
+        TaskScheduler.get().sync(() -> upload(release -> drainStep(next -> {
+            release.run();
+            done.run(next);
+        })));
+    }
+
+    private void drainStep(Drained done) {
+        try {
+            drainDue(done);
+        } catch (Exception e) {
+            // Error local (DB): se reintenta más tarde sin perder lo encolado
+            Log.w("CloudSync", "drainOutbox falló", e);
+            done.run(System.currentTimeMillis() + OUTBOX_BACKOFF_BASE_MS);
+        }
+    }
+
+    private void drainDue(Drained done) {
+        final List<OutboxEntity> due = outboxDao.listDue(System.currentTimeMillis(), MAX_BATCH_OPS);
+        if (due.isEmpty()) {
+            Long next = outboxDao.nextAttemptAt();
+            done.run(next == null ? Long.MAX_VALUE : next);
+            return;
+        }
+        final List<String> subjectIds = new ArrayList<>();
+        final List<String> eventIds = new ArrayList<>();
+        for (OutboxEntity o : due) {
+            if (OutboxEntity.KIND_SUBJECT.equals(o.kind)) subjectIds.add(o.entityId);
+            else eventIds.add(o.entityId);
+        }
+        final List<SubjectEntity> subjects = subjectIds.isEmpty()
+                ? Collections.emptyList() : subjectDao.listDirtyByIds(subjectIds);
+        final List<EventEntity> events = eventIds.isEmpty()
+                ? Collections.emptyList() : eventDao.listDirtyByIds(eventIds);
+
+        // Entradas cuya fila ya no está dirty o no existe: nada que subir
+        List<String> staleSubjects = new ArrayList<>(subjectIds);
+        for (SubjectEntity s : subjects) staleSubjects.remove(s.id);
+        if (!staleSubjects.isEmpty()) outboxDao.delete(OutboxEntity.KIND_SUBJECT, staleSubjects);
+        List<String> staleEvents = new ArrayList<>(eventIds);
+        for (EventEntity e : events) staleEvents.remove(e.id);
+        if (!staleEvents.isEmpty()) outboxDao.delete(OutboxEntity.KIND_EVENT, staleEvents);
+
+        Log.d("CloudSync", "drainOutbox: " + subjects.size() + " subjects, " + events.size() + " events");
+        pushSubjectRows(subjects, () -> pushEventRows(events, () -> drainStep(done)));
+    }
+
+    // ----------------------
+    // Turno de subida
+    // ----------------------
+
+    /** Una subida; release libera el turno al terminar (una vez, en el hilo de sync). */
+    private interface Upload { void run(Runnable release); }
+
+    /** Corre u si no hay otra subida en curso; si no, queda en fila. Hilo de sync. */
+    private static void upload(Upload u) {
+        if (uploading) {
+            waitingUploads.add(u);
+            return;
+        }
+        uploading = true;
+        final boolean[] released = { false };
+        u.run(() -> {
+            if (released[0]) return;
+            released[0] = true;
+            // Después de los callbacks de quien termina, no en medio de ellos
+            TaskScheduler.get().sync(CloudSync::nextUpload);
+        });
+    }
+
+    private static void nextUpload() {
+        uploading = false;
+        Upload next = waitingUploads.poll();
+        if (next != null) upload(next);
+    }
+
+    // ----------------------
+    // Helpers de escritura por lotes
+    // ----------------------
+
+    /** Llena un WriteBatch; se vuelve a invocar en cada reintento (un WriteBatch no se puede recommitear). */
+    private interface BatchFill { void fill(WriteBatch b); }
+
+    /** Parte la lista en sublistas de a lo sumo MAX_BATCH_OPS elementos. */
+    private static <T> List<List<T>> chunk(List<T> items) {
+        return chunk(items, MAX_BATCH_OPS);
+    }
+
+    private static <T> List<List<T>> chunk(List<T> items, int size) {
+        final List<List<T>> out = new ArrayList<>((items.size() + size - 1) / size);
+        for (int i = 0; i < items.size(); i += size) {
+            out.add(items.subList(i, Math.min(items.size(), i + size)));
+        }
+        return out;
+    }
+
+    /**
+     * Commitea un lote y corre onCommitted en el hilo de sync (TaskScheduler).
+     * Si falla se reintenta solo ese lote con backoff exponencial; los lotes ya confirmados
+     * quedaron marcados limpios, así que un fallo no obliga a resubir todo.
+     * Los errores de permisos se tratan como éxito (igual que antes) para no bloquear el sync.
+     */
+    private void commitBatch(BatchFill fill, int attempt, Runnable onCommitted, @Nullable Err err) {
+        final WriteBatch b = fs.batch();
+        fill.fill(b);
+        b.commit()
+                .addOnSuccessListener(a -> TaskScheduler.get().sync(onCommitted))
+                .addOnFailureListener(e -> {
+                    if (isPermissionError(e)) {
+                        Log.d("CloudSync", "Error de permisos en commit de lote (silenciado): " + e.getMessage());
+                        TaskScheduler.get().sync(onCommitted);
+                    } else if (attempt < MAX_BATCH_RETRIES) {
+                        long delay = RETRY_BASE_DELAY_MS << attempt;
+                        Log.w("CloudSync", "Commit de lote falló, reintento " + (attempt + 1) + " en " + delay + "ms", e);
+                        TaskScheduler.get().syncDelayed(() -> commitBatch(fill, attempt + 1, onCommitted, err), delay);
+                    } else {
+                        if (err != null) err.run(e);
+                    }
+                });
+    }
+
+    private interface Writer<T> { void write(WriteBatch b, T row); }
+
+    private interface KeyOf<T> { String of(T row); }
+
+    private interface Committed<T> { void run(List<T> committed); }
+
+    /**
+     * Escribe items en un solo lote (con los reintentos de commitBatch). Si el lote sigue
+     * fallando, prueba cada documento por separado: los que fallan quedan en el outbox con
+     * backoff y el resto se confirma igual, así un documento roto no frena a los demás.
+     * onDone recibe lo confirmado, en el hilo de sync.
+     */
+    private <T> void commitIsolated(String kind, List<T> items, KeyOf<T> key, Writer<T> writer,
+                                    Committed<T> onDone) {
+        commitBatch(b -> {
+            for (T item : items) writer.write(b, item);
+        }, 0, () -> onDone.run(items), e -> TaskScheduler.get().sync(() -> {
+            Log.w("CloudSync", "Lote de " + items.size() + " " + kind + " falló; se reintenta documento por documento", e);
+            commitOneByOne(kind, items, 0, new ArrayList<>(items.size()), key, writer, onDone);
+        }));
     }
 
-    /** Baja de Firestore los events con updatedAt > lastLocalUpdated. */
+    private <T> void commitOneByOne(String kind, List<T> items, int index, List<T> committed,
+                                    KeyOf<T> key, Writer<T> writer, Committed<T> onDone) {
+        if (index >= items.size()) {
+            onDone.run(committed);
+            return;
+        }
+        final T item = items.get(index);
+        final WriteBatch b = fs.batch();
+        writer.write(b, item);
+        b.commit()
+                .addOnSuccessListener(a -> TaskScheduler.get().sync(() -> {
+                    committed.add(item);
+                    commitOneByOne(kind, items, index + 1, committed, key, writer, onDone);
+                }))
+                .addOnFailureListener(e -> TaskScheduler.get().sync(() -> {
+                    if (isPermissionError(e)) {
+                        committed.add(item); // igual que commitBatch: se silencia
+                    } else {
+                        Log.w("CloudSync", "No se pudo subir " + kind + " " + key.of(item) + ", queda en el outbox", e);
+                        outboxDao.backoff(kind, key.of(item), System.currentTimeMillis(),
+                                OUTBOX_BACKOFF_BASE_MS, OUTBOX_BACKOFF_MAX_MS, String.valueOf(e.getMessage()));
+                    }
+                    commitOneByOne(kind, items, index + 1, committed, key, writer, onDone);
+                }));
+    }
+
+    /** true si el error es de permisos de Firestore (se silencia para no bloquear la sincronización). */
+    private static boolean isPermissionError(@Nullable Exception e) {
+        String errorMsg = e != null ? e.getMessage() : null;
+        if (errorMsg == null) return false;
+        String errorMsgLower = errorMsg.toLowerCase();
+        return (errorMsgLower.contains("permission") && (errorMsgLower.contains("denied") || errorMsgLower.contains("missing"))) ||
+                errorMsgLower.contains("permission_denied") ||
+                errorMsgLower.contains("missing_permission");
+    }
+
+    /**
+     * Baja de Firestore los events modificados desde el último cursor, de a páginas de
+     * PULL_PAGE_SIZE. Cada página pasa por PullMerge y se guarda con el cursor en la
+     * misma transacción.
+     */
     public void pull(Ok ok, @Nullable Err err) {
-        new Thread(() -> {
-            Long lastLong = eventDao.lastUpdatedForApp(appType);
-            final long last = (lastLong != null ? lastLong : 0L);
-            Log.d("CloudSync", "pull events: uid=" + uid + ", app=" + app + ", appType=" + appType + ", last=" + last);
-            
-            // Primero, asegurar que el documento padre existe
-            fs.collection("users").document(uid)
-                    .collection("apps").document(app)
-                    .set(Collections.singletonMap("createdAt", System.currentTimeMillis()), SetOptions.merge())
-                    .addOnSuccessListener(a -> {
-                        // Si es la primera sincronización (last = 0), traer todos los eventos sin filtro de updatedAt
-                        // para asegurar que se importen todos los datos
-                        if (last == 0L) {
-                            Log.d("CloudSync", "Primera sincronización (last=0), trayendo todos los eventos sin filtro de updatedAt");
-                            eventsCol()
-                                    .whereEqualTo("appType", appType)
-                                    .get()
-                                    .addOnSuccessListener(qs -> {
-                                        Log.d("CloudSync", "✅ Query eventos exitosa: " + qs.size() + " eventos encontrados");
-                                        new Thread(() -> {
-                                            int importedCount = 0;
-                                            for (QueryDocumentSnapshot doc : qs) {
-                                                EventEntity e = new EventEntity();
-                                                e.id = doc.getString("id");
-                                                e.uid = doc.getString("uid");
-                                                e.appType = doc.getString("appType");
-                                                e.subjectId = doc.getString("subjectId");
-                                                e.title = doc.getString("title");
-                                                e.note = doc.getString("note");
-
-                                                Long due = doc.getLong("dueAt");
-                                                e.dueAt = (due == null ? 0L : due);
-
-                                                Long up = doc.getLong("updatedAt");
-                                                e.updatedAt = (up == null ? 0L : up);
-
-                                                Long del = doc.getLong("deleted");
-                                                e.deleted = (del == null ? 0 : del.intValue());
-
-                                                Double cost = doc.getDouble("cost");
-                                                e.cost = cost;
-
-                                                Double kilometersAtEvent = doc.getDouble("kilometersAtEvent");
-                                                e.kilometersAtEvent = kilometersAtEvent;
-
-                                                Long realized = doc.getLong("realized");
-                                                e.realized = (realized == null ? 0 : realized.intValue());
-                                                
-                                                Long realizedAt = doc.getLong("realizedAt");
-                                                e.realizedAt = realizedAt;
-                                                
-                                                // Campos de repetición (opcionales)
-                                                e.repeatType = doc.getString("repeatType");
-                                                Long repeatInterval = doc.getLong("repeatInterval");
-                                                e.repeatInterval = (repeatInterval == null ? null : repeatInterval.intValue());
-                                                Long repeatEndDate = doc.getLong("repeatEndDate");
-                                                e.repeatEndDate = (repeatEndDate == null ? null : repeatEndDate);
-                                                Long repeatCount = doc.getLong("repeatCount");
-                                                e.repeatCount = (repeatCount == null ? null : repeatCount.intValue());
-                                                e.originalEventId = doc.getString("originalEventId");
-                                                
-                                                // Campo de notificación (opcional)
-                                                Long notificationMinutesBefore = doc.getLong("notificationMinutesBefore");
-                                                e.notificationMinutesBefore = (notificationMinutesBefore == null ? null : notificationMinutesBefore.intValue());
-
-                                                e.dirty = 0; // limpio al bajar del cloud
-                                                eventDao.insert(e);
-                                                importedCount++;
-                                            }
-                                            Log.d("CloudSync", "✅ Total eventos importados: " + importedCount + " de " + qs.size());
-                                            if (ok != null) ok.run();
-                                        }).start();
-                                    })
-                                    .addOnFailureListener(e -> {
-                                        Log.e("CloudSync", "❌ Error en pull events (primera sincronización): " + e.getMessage(), e);
-                                        if (err != null) err.run(e);
-                                    });
-                            return;
-                        }
-                        
-                        // Para sincronizaciones posteriores, usar el filtro de updatedAt
-                        // Ahora hacer la consulta
-                        eventsCol()
-                                .whereEqualTo("appType", appType)
-                                .whereGreaterThan("updatedAt", last)
-                                .get()
-                                .addOnSuccessListener(qs -> {
-                                    new Thread(() -> {
-                                        for (QueryDocumentSnapshot doc : qs) {
-                                            EventEntity e = new EventEntity();
-                                            e.id = doc.getString("id");
-                                            e.uid = doc.getString("uid");
-                                            e.appType = doc.getString("appType");
-                                            e.subjectId = doc.getString("subjectId");
-                                            e.title = doc.getString("title");
-                                            e.note = doc.getString("note");
-
-                                            Long due = doc.getLong("dueAt");
-                                            e.dueAt = (due == null ? 0L : due);
-
-                                            Long up = doc.getLong("updatedAt");
-                                            e.updatedAt = (up == null ? 0L : up);
-
-                                            Long del = doc.getLong("deleted");
-                                            e.deleted = (del == null ? 0 : del.intValue());
-
-                                            Double cost = doc.getDouble("cost");
-                                            e.cost = cost;
-
-                                            Double kilometersAtEvent = doc.getDouble("kilometersAtEvent");
-                                            e.kilometersAtEvent = kilometersAtEvent;
-
-                                            Long realized = doc.getLong("realized");
-                                            e.realized = (realized == null ? 0 : realized.intValue());
-                                            
-                                            Long realizedAt = doc.getLong("realizedAt");
-                                            e.realizedAt = realizedAt;
-                                            
-                                            // Campos de repetición (opcionales)
-                                            e.repeatType = doc.getString("repeatType");
-                                            Long repeatInterval = doc.getLong("repeatInterval");
-                                            e.repeatInterval = (repeatInterval == null ? null : repeatInterval.intValue());
-                                            Long repeatEndDate = doc.getLong("repeatEndDate");
-                                            e.repeatEndDate = (repeatEndDate == null ? null : repeatEndDate);
-                                            Long repeatCount = doc.getLong("repeatCount");
-                                            e.repeatCount = (repeatCount == null ? null : repeatCount.intValue());
-                                            e.originalEventId = doc.getString("originalEventId");
-                                            
-                                            // Campo de notificación (opcional)
-                                            Long notificationMinutesBefore = doc.getLong("notificationMinutesBefore");
-                                            e.notificationMinutesBefore = (notificationMinutesBefore == null ? null : notificationMinutesBefore.intValue());
-
-                                            e.dirty = 0; // limpio al bajar del cloud
-                                            // Usar insert que ahora tiene REPLACE para evitar duplicados
-                                            eventDao.insert(e);
-                                        }
-                                        if (ok != null) ok.run();
-                                    }).start();
-                                })
-                                .addOnFailureListener(ex -> { 
-                                    String errorMsg = ex != null ? ex.getMessage() : "null";
-                                    Log.w("CloudSync", "Error en pull: " + errorMsg, ex);
-                                    
-                                    // Si falla, intentar sin el filtro de updatedAt (primera vez)
-                                    // PERMISSION_DENIED y failed_precondition son normales cuando no hay datos
-                                    // Verificar si es un error que podemos ignorar antes de intentar el fallback
-                                    if (errorMsg != null && (errorMsg.contains("permission_denied") || 
-                                                             errorMsg.contains("PERMISSION_DENIED"))) {
-                                        // PERMISSION_DENIED es normal cuando no hay datos - no mostrar error
-                                        Log.d("CloudSync", "PERMISSION_DENIED durante pull (sin datos). Continuando sin error.");
-                                        if (ok != null) ok.run();
-                                    } else {
-                                        // Intentar consulta sin whereGreaterThan
-                                        eventsCol()
-                                                .whereEqualTo("appType", appType)
-                                                .get()
-                                                .addOnSuccessListener(qs -> {
-                                                    new Thread(() -> {
-                                                        for (QueryDocumentSnapshot doc : qs) {
-                                                            EventEntity event = new EventEntity();
-                                                            event.id = doc.getString("id");
-                                                            event.uid = doc.getString("uid");
-                                                            event.appType = doc.getString("appType");
-                                                            event.subjectId = doc.getString("subjectId");
-                                                            event.title = doc.getString("title");
-                                                            event.note = doc.getString("note");
-
-                                                            Long due = doc.getLong("dueAt");
-                                                            event.dueAt = (due == null ? 0L : due);
-
-                                                            Long up = doc.getLong("updatedAt");
-                                                            event.updatedAt = (up == null ? 0L : up);
-
-                                                            Long del = doc.getLong("deleted");
-                                                            event.deleted = (del == null ? 0 : del.intValue());
-
-                                                            Double cost = doc.getDouble("cost");
-                                                            event.cost = cost;
-
-                                                            Double kilometersAtEvent = doc.getDouble("kilometersAtEvent");
-                                                            event.kilometersAtEvent = kilometersAtEvent;
-
-                                                            Long realized = doc.getLong("realized");
-                                                            event.realized = (realized == null ? 0 : realized.intValue());
-                                                            
-                                                            Long realizedAt = doc.getLong("realizedAt");
-                                                            event.realizedAt = realizedAt;
-                                                            
-                                                            // Campos de repetición (opcionales)
-                                                            event.repeatType = doc.getString("repeatType");
-                                                            Long repeatInterval = doc.getLong("repeatInterval");
-                                                            event.repeatInterval = (repeatInterval == null ? null : repeatInterval.intValue());
-                                                            Long repeatEndDate = doc.getLong("repeatEndDate");
-                                                            event.repeatEndDate = (repeatEndDate == null ? null : repeatEndDate);
-                                                            Long repeatCount = doc.getLong("repeatCount");
-                                                            event.repeatCount = (repeatCount == null ? null : repeatCount.intValue());
-                                                            event.originalEventId = doc.getString("originalEventId");
-                                                            
-                                                            // Campo de notificación (opcional)
-                                                            Long notificationMinutesBefore = doc.getLong("notificationMinutesBefore");
-                                                            event.notificationMinutesBefore = (notificationMinutesBefore == null ? null : notificationMinutesBefore.intValue());
-
-                                                            event.dirty = 0;
-                                                            eventDao.insert(event);
-                                                        }
-                                                        if (ok != null) ok.run();
-                                                    }).start();
-                                                })
-                                                .addOnFailureListener(e2 -> { 
-                                                    Log.w("CloudSync", "Error en pull (sin whereGreaterThan): " + e2.getMessage(), e2);
-                                                    String errorMsg2 = e2 != null ? e2.getMessage() : "null";
-                                                    
-                                                    // Si el error es failed_precondition o permission_denied, puede ser que no haya datos aún
-                                                    String errorMsg2Lower = errorMsg2 != null ? errorMsg2.toLowerCase() : "";
-                                                    boolean isPermissionError2 = 
-                                                        (errorMsg2Lower.contains("permission") && (errorMsg2Lower.contains("denied") || errorMsg2Lower.contains("missing"))) ||
-                                                        errorMsg2Lower.contains("permission_denied") ||
-                                                        errorMsg2Lower.contains("permission denied") ||
-                                                        errorMsg2.contains("PERMISSION_DENIED") ||
-                                                        errorMsg2Lower.contains("missing permission") ||
-                                                        errorMsg2Lower.contains("missing_permission");
-                                                    
-                                                    if (errorMsg2 != null && (errorMsg2.contains("failed_precondition") || 
-                                                                              errorMsg2.contains("FAILED_PRECONDITION") ||
-                                                                              isPermissionError2)) {
-                                                        Log.d("CloudSync", "Intentando consulta sin filtros para verificar acceso...");
-                                                        eventsCol().limit(1).get()
-                                                                .addOnSuccessListener(qs -> {
-                                                                    Log.d("CloudSync", "Acceso verificado. Continuando sin datos (primera sincronización o sin datos)");
-                                                                    if (ok != null) ok.run();
-                                                                })
-                                                                .addOnFailureListener(e3 -> {
-                                                                    String errorMsg3 = e3 != null ? e3.getMessage() : "null";
-                                                                    // PERMISSION_DENIED y missing permission son normales cuando no hay datos - no mostrar error
-                                                                    String errorMsg3Lower = errorMsg3 != null ? errorMsg3.toLowerCase() : "";
-                                                                    boolean isPermissionError3 = 
-                                                                        (errorMsg3Lower.contains("permission") && (errorMsg3Lower.contains("denied") || errorMsg3Lower.contains("missing"))) ||
-                                                                        errorMsg3Lower.contains("permission_denied") ||
-                                                                        errorMsg3Lower.contains("permission denied") ||
-                                                                        errorMsg3.contains("PERMISSION_DENIED") ||
-                                                                        errorMsg3Lower.contains("missing permission") ||
-                                                                        errorMsg3Lower.contains("missing_permission");
-                                                                    
-                                                                    if (errorMsg3 != null && isPermissionError3) {
-                                                                        Log.d("CloudSync", "PERMISSION_DENIED durante pull (sin datos). Continuando sin error.");
-                                                                        // Continuar sin error - es normal cuando no hay datos
-                                                                        if (ok != null) ok.run();
-                                                                    } else {
-                                                                        // Si es failed_precondition, probablemente no hay datos
-                                                                        Log.d("CloudSync", "No hay datos para bajar o falta índice. Continuando sin error.");
-                                                                        if (ok != null) ok.run();
-                                                                    }
-                                                                });
-                                                    } else {
-                                                        // Si el error NO es failed_precondition ni permission_denied, puede ser otro problema
-                                                        // Pero si la sincronización está funcionando (push OK), probablemente es solo que no hay datos
-                                                        Log.d("CloudSync", "Error en fallback de pull pero continuando (puede ser que no haya datos): " + errorMsg2);
-                                                        // Continuar sin error si la sincronización está funcionando
-                                                        if (ok != null) ok.run();
-                                                    }
-                                                });
-                                    }
-                                });
-                    })
-                    .addOnFailureListener(e -> { 
-                        String errorMsg = e != null ? e.getMessage() : "null";
-                        Log.w("CloudSync", "Error al crear documento padre en pull: " + errorMsg, e);
-                        // Verificar si es PERMISSION_DENIED antes de propagar el error
-                        String errorMsgLower = errorMsg != null ? errorMsg.toLowerCase() : "";
-                        boolean isPermissionError = 
-                            (errorMsgLower.contains("permission") && (errorMsgLower.contains("denied") || errorMsgLower.contains("missing"))) ||
-                            errorMsgLower.contains("permission_denied") ||
-                            errorMsgLower.contains("permission denied") ||
-                            errorMsg.contains("PERMISSION_DENIED") ||
-                            errorMsgLower.contains("missing permission") ||
-                            errorMsgLower.contains("missing_permission");
-                        
-                        if (isPermissionError) {
-                            Log.d("CloudSync", "PERMISSION_DENIED al crear documento padre (sin datos). Continuando sin error.");
-                            if (ok != null) ok.run();
-                        } else {
-                            if (err != null) err.run(e);
-                        }
+        TaskScheduler.get().sync(() -> {
+            final String key = syncKey("events");
+            final PullCursor start = startCursor(key, eventDao.lastUpdatedForApp(appType));
+            Log.d("CloudSync", "pull events: uid=" + uid + ", app=" + app + ", appType=" + appType + ", cursor=" + start);
+            ensureParentDoc(() -> pullEventPage(key, start, 0, ok, err), ok, err);
+        });
+    }
+
+    private void pullEventPage(String key, PullCursor cursor, int imported, Ok ok, @Nullable Err err) {
+        pageQuery(eventsCol(), cursor).get()
+                .addOnSuccessListener(qs -> TaskScheduler.get().sync(() -> {
+                    List<DocumentSnapshot> docs = qs.getDocuments();
+                    PullCursor next = docs.isEmpty() ? cursor : PullCursor.after(docs.get(docs.size() - 1));
+                    // Página y cursor en la misma transacción: si se corta, se reanuda desde acá
+                    int applied = db.runInTransaction(() -> {
+                        int n = applyEventDocs(docs);
+                        saveCursor(key, next);
+                        return n;
                     });
-        }).start();
+                    int total = imported + applied;
+                    if (docs.size() < PULL_PAGE_SIZE) {
+                        Log.d("CloudSync", "✅ pull events terminado: " + total + " eventos aplicados");
+                        if (ok != null) ok.run();
+                    } else {
+                        pullEventPage(key, next, total, ok, err);
+                    }
+                }))
+                .addOnFailureListener(e -> onPageFailure("pull", e, cursor,
+                        () -> pullAllFallback(eventsCol(), this::applyEventDocs, "pull", cursor, ok, err),
+                        ok, err));
     }
-}
 
+    private int applyEventDocs(List<DocumentSnapshot> docs) {
+        List<EventEntity> rows = new ArrayList<>(docs.size());
+        for (DocumentSnapshot doc : docs) rows.add(toEventEntity(doc));
+        return merge.applyEvents(rows);
+    }
+
+    private static EventEntity toEventEntity(DocumentSnapshot doc) {
+        EventEntity e = new EventEntity();
+        FirestoreCodec.EVENTS.decode(doc.getData(), e);
+        if (e.id == null) e.id = doc.getId();
+        e.dirty = 0; // limpio al bajar del cloud
+        e.dirtyFields = 0;
+        return e;
+    }
+
+    // ======================
+    //       LIVE
+    // ======================
+
+    /**
+     * Snapshot listener sobre los subjects del appType modificados después del cursor de
+     * pullSubjects. Cada snapshot aplica solo sus docChanges, en una transacción, en el hilo
+     * de sync, y adelanta ese mismo cursor: al volver a enganchar (o en el próximo pull) no se
+     * relee lo que ya bajó el listener. Llamar desde el hilo de sync (lee el cursor de Room).
+     */
+    public ListenerRegistration listenSubjects(@Nullable Err err) {
+        String key = syncKey("subjects");
+        return listen(subjectsCol(), key, startCursor(key, subjectDao.lastUpdatedForApp(appType)),
+                "subjects", this::applySubjectDocs, null, err);
+    }
+
+    /**
+     * Igual que listenSubjects, para events (cursor de pull). onApplied corre en el hilo de
+     * sync después de cada snapshot que escribió algo.
+     */
+    public ListenerRegistration listenEvents(@Nullable Ok onApplied, @Nullable Err err) {
+        String key = syncKey("events");
+        return listen(eventsCol(), key, startCursor(key, eventDao.lastUpdatedForApp(appType)),
+                "events", this::applyEventDocs, onApplied, err);
+    }
+
+    private ListenerRegistration listen(CollectionReference col, String key, PullCursor start, String what,
+                                        DocApplier applier, @Nullable Ok onApplied, @Nullable Err err) {
+        Query q = col.whereEqualTo("appType", appType);
+        // Solo lo posterior a lo ya bajado: el snapshot inicial no relee toda la colección.
+        // Con docId en el cursor puede haber otros docs con el mismo updatedAt todavía sin
+        // bajar: se incluye ese updatedAt (los ya guardados se saltean como sin cambios)
+        if (start.docId != null) q = q.whereGreaterThanOrEqualTo("updatedAt", start.updatedAt);
+        else if (start.updatedAt > 0L) q = q.whereGreaterThan("updatedAt", start.updatedAt);
+        Log.d("CloudSync", "listen " + what + ": uid=" + uid + ", appType=" + appType + ", cursor=" + start);
+        // Mayor (updatedAt, docId) aplicado por este listener; solo lo toca el hilo de sync
+        final PullCursor[] seen = { start };
+        return q.addSnapshotListener(TaskScheduler.get().syncExecutor(), (qs, e) -> {
+            if (e != null) {
+                Log.w("CloudSync", "Error en listener de " + what + ": " + e.getMessage(), e);
+                if (err != null && !isPermissionError(e)) err.run(e);
+                return;
+            }
+            if (qs == null) return;
+            List<DocumentChange> changes = qs.getDocumentChanges();
+            List<DocumentSnapshot> docs = new ArrayList<>(changes.size());
+            for (DocumentChange dc : changes) {
+                // REMOVED = salió de la consulta (los borrados llegan como deleted=1, MODIFIED)
+                if (dc.getType() == DocumentChange.Type.REMOVED) continue;
+                // Eco de una escritura propia todavía no confirmada: ya está en Room
+                if (dc.getDocument().getMetadata().hasPendingWrites()) continue;
+                docs.add(dc.getDocument());
+                PullCursor c = PullCursor.after(dc.getDocument());
+                if (c.isAfter(seen[0])) seen[0] = c;
+            }
+            if (docs.isEmpty()) return;
+            int total = 0;
+            for (List<DocumentSnapshot> page : chunk(docs, PULL_PAGE_SIZE)) {
+                total += db.runInTransaction(() -> applier.apply(page));
+            }
+            // Un snapshot de caché puede no tener todavía docs del servidor con updatedAt menor:
+            // el cursor avanza solo con uno del servidor (para entonces ya llegó todo lo anterior)
+            if (!qs.getMetadata().isFromCache()) advanceCursor(key, seen[0]);
+            Log.d("CloudSync", "listen " + what + ": " + total + " de " + docs.size() + " cambios aplicados");
+            if (total > 0 && onApplied != null) onApplied.run();
+        });
+    }
+
+    // ----------------------
+    // Pull paginado (común a subjects y events)
+    // ----------------------
+
+    /** Posición del pull: (updatedAt, id de documento) del último doc ya guardado. */
+    static final class PullCursor {
+        final long updatedAt;
+        @Nullable final String docId; // null = solo filtro updatedAt > updatedAt
+
+        PullCursor(long updatedAt, @Nullable String docId) {
+            this.updatedAt = updatedAt;
+            this.docId = docId;
+        }
+
+        static PullCursor after(DocumentSnapshot doc) {
+            Long up = doc.getLong("updatedAt");
+            return new PullCursor(up == null ? 0L : up, doc.getId());
+        }
+
+        boolean isInitial() { return updatedAt == 0L && docId == null; }
+
+        /** Orden del pull: updatedAt y, si empatan, id de documento (null va antes). */
+        boolean isAfter(PullCursor o) {
+            if (updatedAt != o.updatedAt) return updatedAt > o.updatedAt;
+            if (docId == null) return false;
+            return o.docId == null || docId.compareTo(o.docId) > 0;
+        }
+
+        @Override public String toString() { return updatedAt + "/" + docId; }
+    }
+
+    private String syncKey(String collection) {
+        return uid + "/" + app + "/" + collection + "/" + appType;
+    }
+
+    /**
+     * Cursor guardado; si no hay (instalaciones previas al pull paginado), arrancar desde el
+     * último updatedAt local como hacía el pull anterior.
+     */
+    private PullCursor startCursor(String key, @Nullable Long lastLocalUpdated) {
+        SyncStateEntity s = syncStateDao.find(key);
+        if (s != null) return new PullCursor(s.cursorUpdatedAt, s.cursorDocId);
+        return new PullCursor(lastLocalUpdated != null ? lastLocalUpdated : 0L, null);
+    }
+
+    private void saveCursor(String key, PullCursor cursor) {
+        SyncStateEntity s = new SyncStateEntity();
+        s.syncKey = key;
+        s.cursorUpdatedAt = cursor.updatedAt;
+        s.cursorDocId = cursor.docId;
+        s.updatedAt = System.currentTimeMillis();
+        syncStateDao.put(s);
+    }
+
+    /** Guarda el cursor solo si queda después del guardado (el pull puede haber ido más lejos). */
+    private void advanceCursor(String key, PullCursor cursor) {
+        db.runInTransaction(() -> {
+            if (cursor.isAfter(startCursor(key, null))) saveCursor(key, cursor);
+        });
+    }
+
+    private Query pageQuery(CollectionReference col, PullCursor cursor) {
+        Query q = col.whereEqualTo("appType", appType);
+        if (cursor.docId == null && cursor.updatedAt > 0L) {
+            q = q.whereGreaterThan("updatedAt", cursor.updatedAt);
+        }
+        q = q.orderBy("updatedAt").orderBy(FieldPath.documentId());
+        if (cursor.docId != null) q = q.startAfter(cursor.updatedAt, cursor.docId);
+        return q.limit(PULL_PAGE_SIZE);
+    }
+
+    /** Crea el documento padre users/{uid}/apps/{app} (si no existe) antes de consultar. */
+    private void ensureParentDoc(Runnable then, Ok ok, @Nullable Err err) {
+        fs.collection("users").document(uid)
+                .collection("apps").document(app)
+                .set(Collections.singletonMap("createdAt", System.currentTimeMillis()), SetOptions.merge())
+                .addOnSuccessListener(a -> then.run())
+                .addOnFailureListener(e -> {
+                    Log.w("CloudSync", "Error al crear documento padre: " + (e != null ? e.getMessage() : "null"), e);
+                    if (isPermissionError(e)) {
+                        // PERMISSION_DENIED es normal cuando no hay datos - no mostrar error
+                        Log.d("CloudSync", "PERMISSION_DENIED al crear documento padre (sin datos). Continuando sin error.");
+                        if (ok != null) ok.run();
+                    } else {
+                        if (err != null) err.run(e);
+                    }
+                });
+    }
+
+    private interface DocApplier { int apply(List<DocumentSnapshot> docs); }
+
+    /**
+     * Falla de una página. Permisos: se sigue sin error (no hay datos). FAILED_PRECONDITION
+     * (falta el índice compuesto appType+updatedAt en Firestore): se cae a la consulta sin
+     * orden, como antes. Otros errores cortan solo en la primera sincronización.
+     */
+    private void onPageFailure(String what, Exception e, PullCursor cursor, Runnable fallback,
+                               Ok ok, @Nullable Err err) {
+        String errorMsg = e != null ? e.getMessage() : "null";
+        Log.w("CloudSync", "Error en " + what + " (página): " + errorMsg, e);
+        if (isPermissionError(e)) {
+            Log.d("CloudSync", "PERMISSION_DENIED durante " + what + " (sin datos). Continuando sin error.");
+            if (ok != null) ok.run();
+        } else if (errorMsg != null && errorMsg.toUpperCase().contains("FAILED_PRECONDITION")) {
+            Log.d("CloudSync", "Falta índice para " + what + " paginado, usando consulta sin orden");
+            fallback.run();
+        } else if (cursor.isInitial()) {
+            if (err != null) err.run(e);
+        } else {
+            Log.d("CloudSync", "Error en " + what + " pero continuando: " + errorMsg);
+            if (ok != null) ok.run();
+        }
+    }
+
+    /**
+     * Consulta de respaldo sin índice: trae lo del appType (filtrando updatedAt en memoria)
+     * y lo guarda igual de a PULL_PAGE_SIZE por transacción. No avanza el cursor.
+     */
+    private void pullAllFallback(CollectionReference col, DocApplier applier, String what,
+                                 PullCursor cursor, Ok ok, @Nullable Err err) {
+        col.whereEqualTo("appType", appType).get()
+                .addOnSuccessListener(qs -> TaskScheduler.get().sync(() -> {
+                    List<DocumentSnapshot> docs = new ArrayList<>();
+                    for (DocumentSnapshot doc : qs.getDocuments()) {
+                        Long up = doc.getLong("updatedAt");
+                        if (up == null || up >= cursor.updatedAt) docs.add(doc);
+                    }
+                    int total = 0;
+                    for (List<DocumentSnapshot> page : chunk(docs, PULL_PAGE_SIZE)) {
+                        total += db.runInTransaction(() -> applier.apply(page));
+                    }
+                    Log.d("CloudSync", "✅ " + what + " (sin índice): " + total + " de " + docs.size() + " aplicados");
+                    if (ok != null) ok.run();
+                }))
+                .addOnFailureListener(e2 -> {
+                    Log.w("CloudSync", "Error en " + what + " (sin índice): " + e2.getMessage(), e2);
+                    if (isPermissionError(e2) || !cursor.isInitial()) {
+                        // Normal cuando todavía no hay datos
+                        if (ok != null) ok.run();
+                    } else {
+                        if (err != null) err.run(e2);
+                    }
+                });
+    }
+}
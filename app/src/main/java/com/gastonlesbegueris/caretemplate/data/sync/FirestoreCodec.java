@@ -0,0 +1,209 @@
+package com.gastonlesbegueris.caretemplate.data.sync;
+
+import androidx.annotation.Nullable;
+
+import com.gastonlesbegueris.caretemplate.data.local.EventEntity;
+import com.gastonlesbegueris.caretemplate.data.local.EventFields;
+import com.gastonlesbegueris.caretemplate.data.local.SubjectEntity;
+import com.google.firebase.firestore.FieldValue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Conversión entidad <-> documento de Firestore, con la lista de campos escrita una sola vez.
+ *
+ * Cada campo declara su nombre, el grupo de EventFields al que pertenece (para el push por
+ * campos) y si es opcional (no se escribe cuando es null). encode, encodeDelta y decode
+ * recorren la misma tabla: agregar una columna es agregar una línea acá.
+ *
+ * decode trabaja sobre doc.getData() (un solo mapa por documento) en lugar de un
+ * getLong/getString por campo, y los mapas de salida se crean con la capacidad justa.
+ */
+final class FirestoreCodec<T> {
+
+    /** Grupo de los campos que se escriben siempre (id, updatedAt). */
+    static final int ALWAYS = 0;
+    /** Para differing: todos los campos, sin importar el grupo. */
+    static final int ANY_GROUP = -1;
+
+    interface Getter<T> { Object get(T row); }
+
+    interface Setter<T> { void set(T row, @Nullable Object value); }
+
+    private static final class Field<T> {
+        final String name;
+        final int group;
+        final boolean optional;
+        final Getter<T> getter;
+        final Setter<T> setter;
+
+        Field(String name, int group, boolean optional, Getter<T> getter, Setter<T> setter) {
+            this.name = name;
+            this.group = group;
+            this.optional = optional;
+            this.getter = getter;
+            this.setter = setter;
+        }
+    }
+
+    private final List<Field<T>> fields;
+    private final int capacity;
+
+    private FirestoreCodec(List<Field<T>> fields) {
+        this.fields = fields;
+        this.capacity = (int) (fields.size() / 0.75f) + 1; // sin rehash aunque vayan todos
+    }
+
+    /** Documento completo (set sin merge). Los opcionales en null no se escriben. */
+    Map<String, Object> encode(T row) {
+        Map<String, Object> data = new HashMap<>(capacity);
+        for (int i = 0, n = fields.size(); i < n; i++) {
+            Field<T> f = fields.get(i);
+            Object v = f.getter.get(row);
+            if (v != null || !f.optional) data.put(f.name, v);
+        }
+        return data;
+    }
+
+    /**
+     * Solo los campos de los grupos indicados (más los ALWAYS), para set(merge). Los opcionales
+     * que quedaron en null se borran del documento.
+     */
+    Map<String, Object> encodeDelta(T row, int groups) {
+        Map<String, Object> data = new HashMap<>(capacity);
+        for (int i = 0, n = fields.size(); i < n; i++) {
+            Field<T> f = fields.get(i);
+            if (f.group != ALWAYS && (f.group & groups) == 0) continue;
+            Object v = f.getter.get(row);
+            data.put(f.name, v != null || !f.optional ? v : FieldValue.delete());
+        }
+        return data;
+    }
+
+    /** Copia los campos del documento a la entidad (los que faltan quedan en null / 0). */
+    void decode(@Nullable Map<String, Object> data, T into) {
+        for (int i = 0, n = fields.size(); i < n; i++) {
+            Field<T> f = fields.get(i);
+            f.setter.set(into, data != null ? data.get(f.name) : null);
+        }
+    }
+
+    /** Copia de from a into los campos de los grupos indicados (los ALWAYS no se tocan). */
+    void copyGroups(T from, T into, int groups) {
+        for (int i = 0, n = fields.size(); i < n; i++) {
+            Field<T> f = fields.get(i);
+            if ((f.group & groups) != 0) f.setter.set(into, f.getter.get(from));
+        }
+    }
+
+    /**
+     * Campos de a que difieren de b, con el valor de a (null incluido), para el registro de
+     * conflictos. groups = ANY_GROUP compara todos; updatedAt no cuenta (es la versión).
+     */
+    Map<String, Object> differing(T a, T b, int groups) {
+        Map<String, Object> out = new HashMap<>(capacity);
+        for (int i = 0, n = fields.size(); i < n; i++) {
+            Field<T> f = fields.get(i);
+            if (groups != ANY_GROUP && (f.group & groups) == 0) continue;
+            if ("updatedAt".equals(f.name)) continue;
+            Object va = f.getter.get(a);
+            if (!Objects.equals(va, f.getter.get(b))) out.put(f.name, va);
+        }
+        return out;
+    }
+
+    // ----------------------
+    // Definición
+    // ----------------------
+
+    private static final class Builder<T> {
+        private final List<Field<T>> fields = new ArrayList<>();
+
+        /** Se escribe siempre, aunque sea null. */
+        Builder<T> field(String name, int group, Getter<T> getter, Setter<T> setter) {
+            fields.add(new Field<>(name, group, false, getter, setter));
+            return this;
+        }
+
+        /** No se escribe si es null (y en un delta se borra). */
+        Builder<T> optional(String name, int group, Getter<T> getter, Setter<T> setter) {
+            fields.add(new Field<>(name, group, true, getter, setter));
+            return this;
+        }
+
+        FirestoreCodec<T> build() {
+            return new FirestoreCodec<>(fields);
+        }
+    }
+
+    static final FirestoreCodec<EventEntity> EVENTS = new Builder<EventEntity>()
+            .field("id", ALWAYS, e -> e.id, (e, v) -> e.id = str(v))
+            .field("uid", EventFields.IDENTITY, e -> e.uid, (e, v) -> e.uid = str(v))
+            .field("appType", EventFields.IDENTITY, e -> e.appType, (e, v) -> e.appType = str(v))
+            .field("subjectId", EventFields.SUBJECT, e -> e.subjectId, (e, v) -> e.subjectId = str(v))
+            .field("title", EventFields.TITLE, e -> e.title, (e, v) -> e.title = str(v))
+            .field("note", EventFields.NOTE, e -> e.note, (e, v) -> e.note = str(v))
+            .field("dueAt", EventFields.DUE_AT, e -> e.dueAt, (e, v) -> e.dueAt = long0(v))
+            .field("updatedAt", ALWAYS, e -> e.updatedAt, (e, v) -> e.updatedAt = long0(v))
+            .field("deleted", EventFields.DELETED, e -> e.deleted, (e, v) -> e.deleted = int0(v))
+            .optional("cost", EventFields.COST, e -> e.cost, (e, v) -> e.cost = dbl(v))
+            .optional("kilometersAtEvent", EventFields.KM, e -> e.kilometersAtEvent, (e, v) -> e.kilometersAtEvent = dbl(v))
+            .field("realized", EventFields.REALIZED, e -> e.realized, (e, v) -> e.realized = int0(v))
+            .optional("realizedAt", EventFields.REALIZED, e -> e.realizedAt, (e, v) -> e.realizedAt = lng(v))
+            // Repetición (opcionales)
+            .optional("repeatType", EventFields.REPEAT, e -> e.repeatType, (e, v) -> e.repeatType = str(v))
+            .optional("repeatInterval", EventFields.REPEAT, e -> e.repeatInterval, (e, v) -> e.repeatInterval = integer(v))
+            .optional("repeatEndDate", EventFields.REPEAT, e -> e.repeatEndDate, (e, v) -> e.repeatEndDate = lng(v))
+            .optional("repeatCount", EventFields.REPEAT, e -> e.repeatCount, (e, v) -> e.repeatCount = integer(v))
+            .optional("originalEventId", EventFields.REPEAT, e -> e.originalEventId, (e, v) -> e.originalEventId = str(v))
+            // Notificación (opcional)
+            .optional("notificationMinutesBefore", EventFields.NOTIFICATION,
+                    e -> e.notificationMinutesBefore, (e, v) -> e.notificationMinutesBefore = integer(v))
+            .build();
+
+    static final FirestoreCodec<SubjectEntity> SUBJECTS = new Builder<SubjectEntity>()
+            .field("id", ALWAYS, s -> s.id, (s, v) -> s.id = str(v))
+            .field("uid", ALWAYS, s -> s.uid, (s, v) -> s.uid = str(v))
+            .field("appType", ALWAYS, s -> s.appType, (s, v) -> s.appType = str(v))
+            .field("name", ALWAYS, s -> s.name, (s, v) -> s.name = str(v))
+            .field("birthDate", ALWAYS, s -> s.birthDate, (s, v) -> s.birthDate = lng(v))
+            .field("currentMeasure", ALWAYS, s -> s.currentMeasure, (s, v) -> s.currentMeasure = dbl(v))
+            .field("notes", ALWAYS, s -> s.notes, (s, v) -> s.notes = str(v))
+            .field("iconKey", ALWAYS, s -> s.iconKey, (s, v) -> s.iconKey = str(v))
+            .field("colorHex", ALWAYS, s -> s.colorHex, (s, v) -> s.colorHex = str(v))
+            .field("updatedAt", ALWAYS, s -> s.updatedAt, (s, v) -> s.updatedAt = long0(v))
+            .field("deleted", ALWAYS, s -> s.deleted, (s, v) -> s.deleted = int0(v))
+            .build();
+
+    // ----------------------
+    // Valores (Firestore devuelve Long o Double para los números)
+    // ----------------------
+
+    static String str(@Nullable Object v) {
+        return v instanceof String ? (String) v : null;
+    }
+
+    static Long lng(@Nullable Object v) {
+        return v instanceof Number ? ((Number) v).longValue() : null;
+    }
+
+    static long long0(@Nullable Object v) {
+        return v instanceof Number ? ((Number) v).longValue() : 0L;
+    }
+
+    static Integer integer(@Nullable Object v) {
+        return v instanceof Number ? ((Number) v).intValue() : null;
+    }
+
+    static int int0(@Nullable Object v) {
+        return v instanceof Number ? ((Number) v).intValue() : 0;
+    }
+
+    static Double dbl(@Nullable Object v) {
+        return v instanceof Number ? ((Number) v).doubleValue() : null;
+    }
+}
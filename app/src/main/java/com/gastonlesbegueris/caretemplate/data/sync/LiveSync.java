@@ -0,0 +1,169 @@
+package com.gastonlesbegueris.caretemplate.data.sync;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.os.Bundle;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.gastonlesbegueris.caretemplate.R;
+import com.gastonlesbegueris.caretemplate.data.local.AppDb;
+import com.gastonlesbegueris.caretemplate.util.NotificationWindow;
+import com.gastonlesbegueris.caretemplate.util.TaskScheduler;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+
+import java.util.concurrent.Future;
+
+/**
+ * Sincronización en vivo: mientras la app está en primer plano hay un snapshot listener por
+ * colección (subjects y events del uid + appType) que baja a Room solo los docChanges.
+ * Otro dispositivo del hogar ve los cambios en segundos, sin releer colecciones enteras.
+ *
+ * Primer plano = alguna Activity iniciada (se cuentan con ActivityLifecycleCallbacks). Al
+ * pasar a segundo plano los listeners se sueltan tras un margen corto, para no cortar y
+ * reabrir en cada cambio de pantalla. Los listeners adelantan el mismo cursor que el pull.
+ * Si un listener falla se sueltan los dos y se vuelven a enganchar con espera creciente.
+ */
+public final class LiveSync {
+
+    private static final String TAG = "LiveSync";
+    // Margen antes de soltar los listeners al quedar sin Activities visibles
+    private static final long DETACH_DELAY_MS = 5000L;
+    // Reintento tras un error del listener: 5 s, 10 s, 20 s... hasta 5 minutos
+    private static final long RETRY_BASE_MS = 5000L;
+    private static final long RETRY_MAX_MS = 5 * 60 * 1000L;
+
+    private static volatile LiveSync I;
+
+    public static LiveSync get(Context c) {
+        if (I == null) {
+            synchronized (LiveSync.class) {
+                if (I == null) I = new LiveSync(c.getApplicationContext());
+            }
+        }
+        return I;
+    }
+
+    private final Context app;
+    private final AppDb db;
+    private final String appType;
+
+    // Hilo principal
+    private int startedActivities;
+    private boolean registered;
+
+    // Hilo de sync
+    private ListenerRegistration subjectsReg;
+    private ListenerRegistration eventsReg;
+    private String attachedUid;
+    private Future<?> pendingDetach;
+    private Future<?> pendingRetry;
+    private int retryAttempt;
+    private long attachedAt;
+
+    private LiveSync(Context app) {
+        this.app = app;
+        this.db = AppDb.get(app);
+        this.appType = app.getString(R.string.app_type);
+    }
+
+    /**
+     * Empieza a seguir el primer plano de la app. Lo llama SyncStartup al crearse el proceso
+     * (hilo principal); se puede llamar más de una vez.
+     */
+    public void start() {
+        if (registered) return;
+        registered = true;
+        ((Application) app).registerActivityLifecycleCallbacks(new Application.ActivityLifecycleCallbacks() {
+            @Override
+            public void onActivityStarted(@NonNull Activity activity) {
+                if (startedActivities++ == 0) TaskScheduler.get().sync(LiveSync.this::attach);
+            }
+
+            @Override
+            public void onActivityStopped(@NonNull Activity activity) {
+                if (startedActivities > 0 && --startedActivities == 0) {
+                    TaskScheduler.get().sync(LiveSync.this::scheduleDetach);
+                }
+            }
+
+            @Override public void onActivityCreated(@NonNull Activity activity, @Nullable Bundle b) {}
+            @Override public void onActivityResumed(@NonNull Activity activity) {}
+            @Override public void onActivityPaused(@NonNull Activity activity) {}
+            @Override public void onActivitySaveInstanceState(@NonNull Activity activity, @NonNull Bundle b) {}
+            @Override public void onActivityDestroyed(@NonNull Activity activity) {}
+        });
+    }
+
+    /** Vuelve a enganchar los listeners (p. ej. después de recuperar la cuenta con otro uid). */
+    public void restart() {
+        final boolean foreground = startedActivities > 0;
+        TaskScheduler.get().sync(() -> {
+            detach();
+            if (foreground) attach();
+        });
+    }
+
+    private void attach() {
+        if (pendingDetach != null) {
+            pendingDetach.cancel(false);
+            pendingDetach = null;
+        }
+        cancelRetry();
+        final String uid = SyncOutbox.currentUid(app);
+        if (uid == null) return; // todavía sin usuario: el sync manual lo resuelve
+        if (uid.equals(attachedUid) && subjectsReg != null) return;
+        detach();
+        CloudSync sync = new CloudSync(db, FirebaseFirestore.getInstance(), uid, "CareTemplate", appType);
+        CloudSync.Err onError = e -> TaskScheduler.get().sync(this::retryAfterError);
+        subjectsReg = sync.listenSubjects(onError);
+        // Events de otro dispositivo pueden traer notificaciones: rearmar la ventana de alarmas
+        eventsReg = sync.listenEvents(() -> NotificationWindow.reconcile(app), onError);
+        attachedUid = uid;
+        attachedAt = System.currentTimeMillis();
+        Log.d(TAG, "Listeners enganchados para uid=" + uid + ", appType=" + appType);
+    }
+
+    /**
+     * Un listener falló (Firestore no lo reintenta): soltar los dos y volver a enganchar más
+     * tarde. Si venían andando más que la espera máxima, se vuelve a empezar desde la mínima.
+     */
+    private void retryAfterError() {
+        if (attachedUid == null) return; // ya suelto: el otro listener avisó primero, o segundo plano
+        boolean leaving = pendingDetach != null; // ya se iba a soltar por pasar a segundo plano
+        detach();
+        if (leaving) return;
+        if (System.currentTimeMillis() - attachedAt > RETRY_MAX_MS) retryAttempt = 0;
+        long delay = Math.min(RETRY_MAX_MS, RETRY_BASE_MS << Math.min(retryAttempt, 6));
+        retryAttempt++;
+        Log.d(TAG, "Reintento de listeners en " + delay + " ms (intento " + retryAttempt + ")");
+        pendingRetry = TaskScheduler.get().syncDelayed(this::attach, delay);
+    }
+
+    private void cancelRetry() {
+        if (pendingRetry != null) pendingRetry.cancel(false);
+        pendingRetry = null;
+    }
+
+    private void scheduleDetach() {
+        // En segundo plano no se reintenta: vuelve a enganchar el próximo onActivityStarted
+        cancelRetry();
+        retryAttempt = 0;
+        if (pendingDetach != null) pendingDetach.cancel(false);
+        pendingDetach = TaskScheduler.get().syncDelayed(this::detach, DETACH_DELAY_MS);
+    }
+
+    private void detach() {
+        pendingDetach = null;
+        if (subjectsReg != null) subjectsReg.remove();
+        if (eventsReg != null) eventsReg.remove();
+        if (subjectsReg != null || eventsReg != null) Log.d(TAG, "Listeners sueltos");
+        subjectsReg = null;
+        eventsReg = null;
+        attachedUid = null;
+    }
+}
@@ -0,0 +1,237 @@
+package com.gastonlesbegueris.caretemplate.data.sync;
+
+import android.util.Log;
+
+import com.gastonlesbegueris.caretemplate.data.local.ConflictDao;
+import com.gastonlesbegueris.caretemplate.data.local.ConflictEntity;
+import com.gastonlesbegueris.caretemplate.data.local.EventBase;
+import com.gastonlesbegueris.caretemplate.data.local.EventBaseEntity;
+import com.gastonlesbegueris.caretemplate.data.local.EventDao;
+import com.gastonlesbegueris.caretemplate.data.local.EventEntity;
+import com.gastonlesbegueris.caretemplate.data.local.EventFields;
+import com.gastonlesbegueris.caretemplate.data.local.OutboxEntity;
+import com.gastonlesbegueris.caretemplate.data.local.SubjectDao;
+import com.gastonlesbegueris.caretemplate.data.local.SubjectEntity;
+import com.gastonlesbegueris.caretemplate.data.model.RowVersion;
+
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merge de una página del pull contra Room, en lugar de pisar la fila local.
+ *
+ * Por página: una consulta con la versión (updatedAt, dirty) de todos los ids, otra con las
+ * filas completas de los que tienen cambios sin subir, un insertAll con el resultado y un
+ * insertAll al registro de conflictos. Nada de búsquedas fila por fila.
+ *
+ * Filas limpias: gana la remota (si es otra versión). Un event borrado en la nube sin fila
+ * local no se inserta (no resucita tombstones compactados, ver TombstoneCompactor).
+ * Events con cambios locales: merge de tres vías por grupo de campos (EventFields). Lo local
+ * cambiado son los bits de dirtyFields; lo remoto cambiado es el diff contra events_base, la
+ * última versión sincronizada (ver EventBase). Los grupos que solo cambió un lado se quedan con
+ * ese valor; los que cambiaron los dos se resuelven por updatedAt (último en escribir gana,
+ * empate para lo local) y la versión perdedora de esos campos va a sync_conflicts. Sin base
+ * (fila creada acá y nunca sincronizada) se compara contra la fila local. Si sobreviven campos
+ * locales la fila sigue dirty solo con esos grupos, y el push los sube con merge; la base pasa
+ * a ser la remota (el trigger de EventBase solo la mueve con filas limpias).
+ * Subjects no tienen detalle por campo: el mismo criterio, a nivel fila.
+ *
+ * Llamar dentro de la transacción de la página.
+ */
+final class PullMerge {
+
+    // El registro de conflictos guarda 90 días
+    private static final long CONFLICT_TTL_MS = 90L * 24 * 60 * 60 * 1000;
+
+    private final EventDao eventDao;
+    private final SubjectDao subjectDao;
+    private final ConflictDao conflictDao;
+
+    PullMerge(EventDao eventDao, SubjectDao subjectDao, ConflictDao conflictDao) {
+        this.eventDao = eventDao;
+        this.subjectDao = subjectDao;
+        this.conflictDao = conflictDao;
+    }
+
+    // ----------------------
+    // Events
+    // ----------------------
+
+    /** Aplica una página de events remotos; devuelve cuántas filas se escribieron. */
+    int applyEvents(List<EventEntity> remote) {
+        if (remote == null || remote.isEmpty()) return 0;
+        Map<String, RowVersion> versions = versions(eventDao.listVersions(ids(remote, e -> e.id)));
+        Map<String, EventEntity> dirty = new HashMap<>();
+        Map<String, EventEntity> bases = new HashMap<>();
+        List<String> dirtyIds = dirtyIds(versions);
+        if (!dirtyIds.isEmpty()) {
+            for (EventEntity l : eventDao.listDirtyByIds(dirtyIds)) dirty.put(l.id, l);
+            for (EventEntity b : eventDao.listBasesByIds(dirtyIds)) bases.put(b.id, b);
+        }
+
+        final long now = System.currentTimeMillis();
+        List<EventEntity> apply = new ArrayList<>(remote.size());
+        List<ConflictEntity> conflicts = new ArrayList<>();
+        List<EventBaseEntity> newBases = new ArrayList<>();
+        for (EventEntity r : remote) {
+            RowVersion v = versions.get(r.id);
+            EventEntity l = dirty.get(r.id);
+            if (l == null) {
+                // Borrado en la nube y sin fila local (nunca bajó, o ya se compactó): nada que guardar
+                if (v == null && r.deleted == 1) continue;
+                if (v == null || v.shouldApply(r.updatedAt)) apply.add(r);
+                continue;
+            }
+            EventBaseEntity remoteBase = EventBase.of(r); // antes del merge, que escribe sobre r
+            EventEntity merged = mergeEvent(l, bases.get(r.id), r, now, conflicts);
+            if (merged != null) apply.add(merged);
+            // Sigue dirty: lo remoto ya se vio, el próximo merge compara contra esta versión
+            if (merged == null || merged.dirty == 1) newBases.add(remoteBase);
+        }
+        if (!apply.isEmpty()) eventDao.insertAll(apply);
+        if (!newBases.isEmpty()) eventDao.putBases(newBases);
+        logConflicts(conflicts, now);
+        return apply.size();
+    }
+
+    /**
+     * Merge de una fila con cambios locales contra su base (null = sin base); null si la fila
+     * local ya es el resultado.
+     */
+    private static EventEntity mergeEvent(EventEntity l, EventEntity base, EventEntity r, long now,
+                                          List<ConflictEntity> conflicts) {
+        int pending = EventFields.isFull(l.dirtyFields) ? EventFields.ALL : l.dirtyFields;
+        // Lo que cambió la remota desde la última sincronización
+        int remoteChanged = EventFields.diff(base != null ? base : l, r);
+        int contested = pending & remoteChanged;
+        boolean localWins = l.updatedAt >= r.updatedAt;
+        if (contested != 0) {
+            conflicts.add(localWins
+                    ? conflict(OutboxEntity.KIND_EVENT, l.id, ConflictEntity.LOSER_REMOTE, contested,
+                            l.updatedAt, r.updatedAt, FirestoreCodec.EVENTS.differing(r, l, contested), now)
+                    : conflict(OutboxEntity.KIND_EVENT, l.id, ConflictEntity.LOSER_LOCAL, contested,
+                            l.updatedAt, r.updatedAt, FirestoreCodec.EVENTS.differing(l, r, contested), now));
+        }
+        // Grupos locales que sobreviven: los no disputados, y los disputados si gana lo local
+        int keep = localWins ? pending : pending & ~contested;
+        if (keep == 0) return r; // todo lo local perdió: queda la remota, limpia
+        if ((EventFields.diff(l, r) & ~keep) == 0) return null; // nada nuevo de la remota
+        FirestoreCodec.EVENTS.copyGroups(l, r, keep);
+        r.updatedAt = Math.max(l.updatedAt, r.updatedAt);
+        r.dirty = 1;
+        r.dirtyFields = keep == pending ? l.dirtyFields : keep;
+        return r;
+    }
+
+    // ----------------------
+    // Subjects
+    // ----------------------
+
+    /**
+     * Aplica una página de subjects remotos no borrados (los borrados los resuelve CloudSync).
+     * Devuelve cuántas filas se escribieron.
+     */
+    int applySubjects(List<SubjectEntity> remote) {
+        if (remote == null || remote.isEmpty()) return 0;
+        Map<String, RowVersion> versions = versions(subjectDao.listVersions(ids(remote, s -> s.id)));
+        Map<String, SubjectEntity> dirty = new HashMap<>();
+        List<String> dirtyIds = dirtyIds(versions);
+        if (!dirtyIds.isEmpty()) {
+            for (SubjectEntity l : subjectDao.listDirtyByIds(dirtyIds)) dirty.put(l.id, l);
+        }
+
+        final long now = System.currentTimeMillis();
+        List<SubjectEntity> apply = new ArrayList<>(remote.size());
+        List<ConflictEntity> conflicts = new ArrayList<>();
+        for (SubjectEntity r : remote) {
+            RowVersion v = versions.get(r.id);
+            SubjectEntity l = dirty.get(r.id);
+            if (l == null) {
+                if (v == null || v.shouldApply(r.updatedAt)) apply.add(r);
+                continue;
+            }
+            boolean localWins = l.updatedAt >= r.updatedAt;
+            SubjectEntity loser = localWins ? r : l;
+            Map<String, Object> lost = FirestoreCodec.SUBJECTS.differing(loser, localWins ? l : r,
+                    FirestoreCodec.ANY_GROUP);
+            if (!lost.isEmpty()) {
+                conflicts.add(conflict(OutboxEntity.KIND_SUBJECT, l.id,
+                        localWins ? ConflictEntity.LOSER_REMOTE : ConflictEntity.LOSER_LOCAL, 0,
+                        l.updatedAt, r.updatedAt, lost, now));
+            }
+            if (!localWins) apply.add(r);
+        }
+        if (!apply.isEmpty()) subjectDao.insertAll(apply);
+        logConflicts(conflicts, now);
+        return apply.size();
+    }
+
+    /** Un subject borrado en la nube se borra acá aunque tenga cambios: se registran los perdidos. */
+    void logDiscardedSubjects(List<SubjectEntity> deletedRemote) {
+        if (deletedRemote.isEmpty()) return;
+        List<String> ids = ids(deletedRemote, s -> s.id);
+        List<SubjectEntity> dirty = subjectDao.listDirtyByIds(ids);
+        if (dirty.isEmpty()) return;
+        Map<String, SubjectEntity> byId = new HashMap<>();
+        for (SubjectEntity r : deletedRemote) byId.put(r.id, r);
+        final long now = System.currentTimeMillis();
+        List<ConflictEntity> conflicts = new ArrayList<>(dirty.size());
+        for (SubjectEntity l : dirty) {
+            SubjectEntity r = byId.get(l.id);
+            conflicts.add(conflict(OutboxEntity.KIND_SUBJECT, l.id, ConflictEntity.LOSER_LOCAL, 0,
+                    l.updatedAt, r.updatedAt,
+                    FirestoreCodec.SUBJECTS.differing(l, r, FirestoreCodec.ANY_GROUP), now));
+        }
+        logConflicts(conflicts, now);
+    }
+
+    // ----------------------
+    // Helpers
+    // ----------------------
+
+    private interface IdOf<T> { String of(T row); }
+
+    private static <T> List<String> ids(List<T> rows, IdOf<T> id) {
+        List<String> ids = new ArrayList<>(rows.size());
+        for (T row : rows) ids.add(id.of(row));
+        return ids;
+    }
+
+    private static Map<String, RowVersion> versions(List<RowVersion> list) {
+        Map<String, RowVersion> map = new HashMap<>(list.size() * 2);
+        for (RowVersion v : list) map.put(v.id, v);
+        return map;
+    }
+
+    private static List<String> dirtyIds(Map<String, RowVersion> versions) {
+        List<String> ids = new ArrayList<>();
+        for (RowVersion v : versions.values()) if (v.dirty == 1) ids.add(v.id);
+        return ids;
+    }
+
+    private static ConflictEntity conflict(String kind, String id, String loser, int fields,
+                                           long localUpdatedAt, long remoteUpdatedAt,
+                                           Map<String, Object> lost, long now) {
+        ConflictEntity c = new ConflictEntity();
+        c.kind = kind;
+        c.entityId = id;
+        c.loser = loser;
+        c.fields = fields;
+        c.localUpdatedAt = localUpdatedAt;
+        c.remoteUpdatedAt = remoteUpdatedAt;
+        c.payload = new JSONObject(lost).toString();
+        c.loggedAt = now;
+        return c;
+    }
+
+    private void logConflicts(List<ConflictEntity> conflicts, long now) {
+        if (conflicts.isEmpty()) return;
+        conflictDao.insertAll(conflicts);
+        conflictDao.prune(now - CONFLICT_TTL_MS);
+        Log.d("CloudSync", "Merge del pull: " + conflicts.size() + " conflictos registrados");
+    }
+}
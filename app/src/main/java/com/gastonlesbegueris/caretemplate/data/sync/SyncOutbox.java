@@ -0,0 +1,132 @@
+package com.gastonlesbegueris.caretemplate.data.sync;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+
+import com.gastonlesbegueris.caretemplate.R;
+import com.gastonlesbegueris.caretemplate.data.local.AppDb;
+import com.gastonlesbegueris.caretemplate.util.TaskScheduler;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.util.Set;
+import java.util.concurrent.Future;
+
+/**
+ * Drena sync_outbox en segundo plano, sin esperar a que el usuario toque "sincronizar".
+ *
+ * Cualquier escritura que deja una fila dirty la encola por trigger (ver OutboxTriggers);
+ * Room avisa el cambio de tabla y acá se agenda un drain con un pequeño debounce, así una
+ * ráfaga de ediciones sale en un solo lote. Si algo falla, cada entrada guarda su propio
+ * backoff y el próximo drain se agenda para cuando venza; al volver la red se reintenta ya.
+ * Todo corre en el hilo de sync de TaskScheduler; un drain y un push manual no suben a la vez
+ * (CloudSync les da turno). Lo arranca SyncStartup al crearse el proceso.
+ */
+public final class SyncOutbox {
+
+    private static final String TAG = "SyncOutbox";
+    // Espera tras un cambio antes de subir (junta varias ediciones en un lote)
+    private static final long DEBOUNCE_MS = 2000L;
+
+    private static volatile SyncOutbox I;
+
+    public static SyncOutbox get(Context c) {
+        if (I == null) {
+            synchronized (SyncOutbox.class) {
+                if (I == null) I = new SyncOutbox(c.getApplicationContext());
+            }
+        }
+        return I;
+    }
+
+    private final Context app;
+    private final AppDb db;
+    private final String appType;
+
+    // Estado del hilo de sync (solo se toca desde ahí)
+    private Future<?> scheduled;
+    private long scheduledAt = Long.MAX_VALUE;
+    private boolean draining;
+    private boolean started;
+
+    private SyncOutbox(Context app) {
+        this.app = app;
+        this.db = AppDb.get(app);
+        this.appType = app.getString(R.string.app_type);
+    }
+
+    /** Empieza a escuchar el outbox y la red. Se puede llamar más de una vez. */
+    public void start() {
+        TaskScheduler.get().sync(() -> {
+            if (started) return;
+            started = true;
+            db.getInvalidationTracker().addObserver(new InvalidationTracker.Observer("sync_outbox") {
+                @Override
+                public void onInvalidated(@NonNull Set<String> tables) {
+                    kick();
+                }
+            });
+            ConnectivityManager cm = (ConnectivityManager) app.getSystemService(Context.CONNECTIVITY_SERVICE);
+            if (cm != null) {
+                try {
+                    cm.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+                        @Override
+                        public void onAvailable(@NonNull Network network) {
+                            // Volvió la red: lo que estaba esperando backoff se intenta ya
+                            TaskScheduler.get().sync(() -> scheduleAt(System.currentTimeMillis()));
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    Log.w(TAG, "No se pudo registrar el callback de red", e);
+                }
+            }
+            scheduleAt(System.currentTimeMillis());
+        });
+    }
+
+    /** Hubo cambios locales: drenar después del debounce. */
+    public void kick() {
+        TaskScheduler.get().sync(() -> scheduleAt(System.currentTimeMillis() + DEBOUNCE_MS));
+    }
+
+    // Deja agendado un único drain, para el instante más cercano pedido
+    private void scheduleAt(long at) {
+        if (scheduled != null && !scheduled.isDone() && scheduledAt <= at) return;
+        if (scheduled != null) scheduled.cancel(false);
+        scheduledAt = at;
+        long delay = Math.max(0L, at - System.currentTimeMillis());
+        scheduled = TaskScheduler.get().syncDelayed(this::drain, delay);
+    }
+
+    private void drain() {
+        scheduled = null;
+        scheduledAt = Long.MAX_VALUE;
+        if (draining) return; // el drain en curso vuelve a mirar el outbox al terminar
+        final String uid = currentUid(app);
+        if (uid == null) return; // sin usuario no hay a dónde subir; el sync manual lo resuelve
+        draining = true;
+        CloudSync sync = new CloudSync(db, FirebaseFirestore.getInstance(), uid, "CareTemplate", appType);
+        sync.drainOutbox(next -> {
+            draining = false;
+            if (next != Long.MAX_VALUE) {
+                Log.d(TAG, "Quedan pendientes, próximo intento en " + (next - System.currentTimeMillis()) + "ms");
+                scheduleAt(next);
+            }
+        });
+    }
+
+    /** uid con el que se sincroniza (el guardado por MainActivity, o el de FirebaseAuth). */
+    static String currentUid(Context app) {
+        String uid = app.getSharedPreferences("user_prefs", Context.MODE_PRIVATE)
+                .getString("firebase_uid", null);
+        if (uid != null && !uid.isEmpty()) return uid;
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        return user != null ? user.getUid() : null;
+    }
+}
@@ -0,0 +1,60 @@
+package com.gastonlesbegueris.caretemplate.data.sync;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Arranca el drain del outbox y el seguimiento del primer plano (LiveSync) al crearse el
+ * proceso, sea por la Activity que sea o por un receiver (boot, notificación, relleno de
+ * alarmas). Un ContentProvider se crea antes que cualquier otro componente; el de Firebase
+ * (initOrder más alto) ya corrió, así que FirebaseAuth está listo.
+ */
+public final class SyncStartup extends ContentProvider {
+
+    @Override
+    public boolean onCreate() {
+        Context app = getContext();
+        if (app == null) return false;
+        SyncOutbox.get(app).start();
+        LiveSync.get(app).start();
+        return true;
+    }
+
+    // No expone datos
+
+    @Nullable
+    @Override
+    public Cursor query(@NonNull Uri uri, @Nullable String[] projection, @Nullable String selection,
+                        @Nullable String[] selectionArgs, @Nullable String sortOrder) {
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public String getType(@NonNull Uri uri) {
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public Uri insert(@NonNull Uri uri, @Nullable ContentValues values) {
+        return null;
+    }
+
+    @Override
+    public int delete(@NonNull Uri uri, @Nullable String selection, @Nullable String[] selectionArgs) {
+        return 0;
+    }
+
+    @Override
+    public int update(@NonNull Uri uri, @Nullable ContentValues values, @Nullable String selection,
+                      @Nullable String[] selectionArgs) {
+        return 0;
+    }
+}
@@ -6,6 +6,7 @@ import android.view.MenuItem;
 import android.view.View;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.LiveData;
 import androidx.lifecycle.Observer;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
@@ -14,13 +15,15 @@ import com.gastonlesbegueris.caretemplate.R;
 import com.gastonlesbegueris.caretemplate.data.local.AppDb;
 import com.gastonlesbegueris.caretemplate.data.local.EventDao;
 import com.gastonlesbegueris.caretemplate.data.local.EventEntity;
-import com.gastonlesbegueris.caretemplate.data.local.SubjectDao;
-import com.gastonlesbegueris.caretemplate.data.local.SubjectEntity;
+import com.gastonlesbegueris.caretemplate.data.local.Recurrence;
+import com.gastonlesbegueris.caretemplate.data.local.RuleCache;
+import com.gastonlesbegueris.caretemplate.data.model.EventListItem;
 import com.google.android.material.appbar.MaterialToolbar;
 import com.gastonlesbegueris.caretemplate.util.FabHelper;
+import com.gastonlesbegueris.caretemplate.util.SeriesNotifications;
+import com.gastonlesbegueris.caretemplate.util.DayBuckets;
+import com.gastonlesbegueris.caretemplate.util.TaskScheduler;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.List;
 import java.util.Calendar;
 import java.util.ArrayList;
@@ -31,8 +34,12 @@ public class AgendaActivity extends AppCompatActivity {
 
     private String appType;
     private EventDao dao;
-    private SubjectDao subjectDao;
     private AgendaAdapter adapter;
+    // Streams de la pantalla (sobreviven a la rotación, ver CareViewModel)
+    private CareViewModel vm;
+    // Último pedido de la lista (sube en el hilo principal): un merge del pool que termina tarde
+    // no pisa la lista de un pedido más nuevo
+    private volatile int listGeneration;
     private com.gastonlesbegueris.caretemplate.util.MenuHelper menuHelper;
     private final SimpleDateFormat dayFmt = new SimpleDateFormat("EEE dd/MM", Locale.getDefault());
 
@@ -43,7 +50,7 @@ public class AgendaActivity extends AppCompatActivity {
         appType = getString(R.string.app_type);
         AppDb db = AppDb.get(this);
         dao = db.eventDao();
-        subjectDao = db.subjectDao();
+        vm = new androidx.lifecycle.ViewModelProvider(this).get(CareViewModel.class);
         menuHelper = new com.gastonlesbegueris.caretemplate.util.MenuHelper(this, appType);
 
         MaterialToolbar tb = findViewById(R.id.toolbarAgenda);
@@ -61,16 +68,22 @@ public class AgendaActivity extends AppCompatActivity {
         RecyclerView rv = findViewById(R.id.rvAgenda);
         rv.setLayoutManager(new LinearLayoutManager(this));
         adapter = new AgendaAdapter(new AgendaAdapter.OnEventClick() {
-            @Override public void onEdit(EventEntity e) { showEditDialog(e); }
-            @Override public void onDelete(EventEntity e) { softDelete(e.id); }
+            // La lista trae solo la proyección: la fila completa se carga al tocar (ver FullEvent)
+            @Override public void onEdit(EventListItem item) {
+                FullEvent.load(AgendaActivity.this, dao, item, e -> showEditDialog(e));
+            }
+            @Override public void onDelete(EventListItem item) {
+                FullEvent.load(AgendaActivity.this, dao, item, e -> softDelete(e));
+            }
             
             @Override
-            public void onToggleRealized(EventEntity e, boolean realized) {
-                setRealized(e.id, realized);
+            public void onToggleRealized(EventListItem item, boolean realized) {
+                FullEvent.load(AgendaActivity.this, dao, item, e -> setRealized(e, realized));
             }
         });
         adapter.setAppType(appType); // Pasar el appType para mostrar kilómetros si es un auto
         rv.setAdapter(adapter);
+        vm.window.attach(rv); // pedir la página siguiente al acercarse al final
 
         observeUpcoming();
         observeSubjectsForAdapter();
@@ -109,49 +122,52 @@ public class AgendaActivity extends AppCompatActivity {
     }
 
     private void observeUpcoming() {
-        long now = System.currentTimeMillis();
-        dao.observeUpcomingOrdered(appType, now).observe(this, new Observer<List<EventEntity>>() {
-            @Override public void onChanged(List<EventEntity> events) {
-                adapter.submit(groupByDay(events));
+        // Lista paginada: solo la ventana cargada (crece al scrollear), no todos los pendientes
+        LiveData<List<EventListItem>> page = vm.upcomingEventsPage();
+        final long now = vm.upcomingFrom();
+        page.observe(this, new Observer<List<EventListItem>>() {
+            @Override public void onChanged(List<EventListItem> events) {
+                vm.window.onLoaded(events);
+                final boolean hasMore = vm.window.hasMore();
+                final int generation = ++listGeneration;
+                // Sumar las ocurrencias virtuales de las reglas de repetición (próximos 60 días)
+                TaskScheduler.get().db(AgendaActivity.this, () -> {
+                    if (generation != listGeneration) return; // ya hay un pedido más nuevo
+                    long to = now + Recurrence.DEFAULT_HORIZON_MS;
+                    if (hasMore && events != null && !events.isEmpty()) {
+                        // Hay más páginas: no adelantar ocurrencias más allá de la última fila cargada
+                        to = Math.min(to, events.get(events.size() - 1).dueAt);
+                    }
+                    List<EventListItem> merged = Recurrence.withOccurrenceItems(
+                            RuleCache.get(AgendaActivity.this).rules(appType), events, now, to);
+                    List<AgendaAdapter.Row> rows = groupByDay(merged);
+                    runOnUiThread(() -> {
+                        if (generation == listGeneration) adapter.submit(rows);
+                    });
+                });
             }
         });
     }
 
     private void observeSubjectsForAdapter() {
-        if (subjectDao == null) return;
-        subjectDao.observeActive(appType).observe(this, subjects -> {
-            Map<String, String> nameMap = new HashMap<>();
-            Map<String, String> iconKeyMap = new HashMap<>();
-            Map<String, String> colorHexMap = new HashMap<>();
-            if (subjects != null) {
-                for (SubjectEntity s : subjects) {
-                    nameMap.put(s.id, s.name);
-                    if (s.iconKey != null) iconKeyMap.put(s.id, s.iconKey);
-                    if (s.colorHex != null) colorHexMap.put(s.id, s.colorHex);
-                }
-            }
-            adapter.setSubjectsMap(nameMap);
-            adapter.setSubjectIconKeys(iconKeyMap);
-            adapter.setSubjectColorHex(colorHexMap);
-        });
+        // Snapshot compartido de la metadata de sujetos: solo emite cuando cambia la tabla
+        com.gastonlesbegueris.caretemplate.util.SubjectMetaCache.get(this).live()
+                .observe(this, adapter::setSubjectMeta);
     }
 
-    private List<AgendaAdapter.Row> groupByDay(List<EventEntity> events) {
+    private List<AgendaAdapter.Row> groupByDay(List<EventListItem> events) {
         List<AgendaAdapter.Row> rows = new ArrayList<>();
         if (events == null || events.isEmpty()) return rows;
 
-        Calendar cal = Calendar.getInstance();
-        long currentDayStart = -1;
-        for (EventEntity e : events) {
-            cal.setTimeInMillis(e.dueAt);
-            cal.set(Calendar.HOUR_OF_DAY, 0);
-            cal.set(Calendar.MINUTE, 0);
-            cal.set(Calendar.SECOND, 0);
-            cal.set(Calendar.MILLISECOND, 0);
-            long dayStart = cal.getTimeInMillis();
-            if (dayStart != currentDayStart) {
-                currentDayStart = dayStart;
-                rows.add(AgendaAdapter.Row.header(dayFmt.format(cal.getTime())));
+        // Un bucket por día local: búsqueda binaria + aritmética, sin Calendar por evento
+        DayBuckets buckets = DayBuckets.current();
+        long currentDay = Long.MIN_VALUE;
+        for (EventListItem e : events) {
+            long day = buckets.dayKey(e.dueAt);
+            if (day != currentDay) {
+                currentDay = day;
+                long dayStart = buckets.startOfDay(day);
+                rows.add(AgendaAdapter.Row.header(dayStart, dayFmt.format(new java.util.Date(dayStart))));
             }
             rows.add(AgendaAdapter.Row.event(e));
         }
@@ -202,7 +218,7 @@ public class AgendaActivity extends AppCompatActivity {
         // Si es un evento repetido, necesitamos obtener el original en un hilo de fondo
         if (e.originalEventId != null) {
             // Buscar el original en un hilo de fondo antes de mostrar el diálogo
-            new Thread(() -> {
+            TaskScheduler.get().db(AgendaActivity.this, () -> {
                 try {
                     EventEntity original = dao.findOriginalEvent(e.originalEventId);
                     runOnUiThread(() -> {
@@ -219,7 +235,7 @@ public class AgendaActivity extends AppCompatActivity {
                         }
                     });
                 }
-            }).start();
+            });
             return;
         }
         
@@ -496,7 +512,7 @@ public class AgendaActivity extends AppCompatActivity {
         if (ibDelete != null) {
             ibDelete.setOnClickListener(v -> {
                 dialog.dismiss();
-                softDelete(e.id);
+                softDelete(e);
             });
         }
         
@@ -684,13 +700,15 @@ public class AgendaActivity extends AppCompatActivity {
     private void updateLocal(EventEntity e, String title, Double cost, long dueAt, 
                              String repeatType, Integer repeatInterval, Long repeatEndDate, Integer repeatCount,
                              Integer notificationMinutesBefore) {
-        new Thread(() -> {
+        TaskScheduler.get().db(() -> {
             try {
                 // Determinar si es evento original o repetido
                 EventEntity originalEvent = e;
                 boolean isRepeatedEvent = e.originalEventId != null;
                 
                 if (isRepeatedEvent) {
+                    // Si es una ocurrencia virtual, guardarla como excepción antes de editarla
+                    Recurrence.materialize(dao, e);
                     // Si es un evento repetido, obtener el original
                     originalEvent = dao.findOriginalEvent(e.originalEventId);
                     if (originalEvent == null) {
@@ -713,9 +731,23 @@ public class AgendaActivity extends AppCompatActivity {
                 } else {
                     // Si el evento original tiene repetición, actualizar todas las repeticiones
                     if (originalEvent.repeatType != null) {
-                        // Actualizar el evento original
-                        updateSingleEvent(originalEvent, title, cost, dueAt, repeatType, repeatInterval, 
-                                        repeatEndDate, repeatCount, notificationMinutesBefore);
+                        if (isRepeatedEvent) {
+                            // Se editó una ocurrencia: título y notificación van a toda la serie (regla),
+                            // fecha y costo solo a esta ocurrencia (ya guardada como excepción)
+                            SeriesNotifications.cancelUpcoming(getApplicationContext(), originalEvent);
+                            originalEvent.title = title;
+                            originalEvent.notificationMinutesBefore = notificationMinutesBefore;
+                            originalEvent.updatedAt = System.currentTimeMillis();
+                            originalEvent.dirty = 1;
+                            dao.update(originalEvent);
+                            SeriesNotifications.scheduleUpcoming(getApplicationContext(), originalEvent);
+                        } else {
+                            // Actualizar el evento original
+                            SeriesNotifications.cancelUpcoming(getApplicationContext(), originalEvent);
+                            updateSingleEvent(originalEvent, title, cost, dueAt, repeatType, repeatInterval, 
+                                            repeatEndDate, repeatCount, notificationMinutesBefore);
+                            SeriesNotifications.scheduleUpcoming(getApplicationContext(), originalEvent);
+                        }
                         
                         // Actualizar todas las repeticiones (título y notificación, pero mantener fechas y costo)
                         List<EventEntity> repeatedEvents = dao.findRepeatedEvents(originalEvent.id);
@@ -727,14 +759,22 @@ public class AgendaActivity extends AppCompatActivity {
                                 repeated.notificationMinutesBefore = notificationMinutesBefore;
                                 repeated.updatedAt = System.currentTimeMillis();
                                 repeated.dirty = 1;
-                                dao.update(repeated);
                             }
+                            // Toda la serie en una sola transacción
+                            dao.updateAll(repeatedEvents);
+                        }
+                        if (isRepeatedEvent) {
+                            // Fecha y costo propios de la ocurrencia editada
+                            EventEntity occurrence = dao.findOne(e.id);
+                            updateSingleEvent(occurrence != null ? occurrence : e, title, cost, dueAt,
+                                    null, null, null, null, notificationMinutesBefore);
+                        } else {
+                            TaskScheduler.get().ui(AgendaActivity.this, () -> {
+                                if (!isFinishing() && !isDestroyed()) {
+                                    android.widget.Toast.makeText(this, "Evento y todas sus repeticiones actualizadas ✅", android.widget.Toast.LENGTH_SHORT).show();
+                                }
+                            });
                         }
-                        runOnUiThread(() -> {
-                            if (!isFinishing() && !isDestroyed()) {
-                                android.widget.Toast.makeText(this, "Evento y todas sus repeticiones actualizadas ✅", android.widget.Toast.LENGTH_SHORT).show();
-                            }
-                        });
                     } else {
                         // No tiene repetición, actualizar solo el evento individual
                         if (isRepeatedEvent) {
@@ -749,13 +789,13 @@ public class AgendaActivity extends AppCompatActivity {
                 }
             } catch (Exception ex) {
                 android.util.Log.e("AgendaActivity", "Error al actualizar evento", ex);
-                runOnUiThread(() -> {
+                TaskScheduler.get().ui(AgendaActivity.this, () -> {
                     if (!isFinishing() && !isDestroyed()) {
                         android.widget.Toast.makeText(this, "Error al actualizar evento: " + ex.getMessage(), android.widget.Toast.LENGTH_LONG).show();
                     }
                 });
             }
-        }).start();
+        });
     }
     
     private void updateSingleEvent(EventEntity e, String title, Double cost, long dueAt,
@@ -772,6 +812,7 @@ public class AgendaActivity extends AppCompatActivity {
                 android.util.Log.w("AgendaActivity", "Error al cancelar notificación anterior (no crítico)", notifEx);
             }
             
+            EventEntity ruleBefore = Recurrence.isRule(e) ? Recurrence.copy(e) : null;
             e.title = title;
             e.cost = cost;
             e.dueAt = dueAt;
@@ -786,25 +827,27 @@ public class AgendaActivity extends AppCompatActivity {
             e.updatedAt = System.currentTimeMillis();
             e.dirty = 1;
             dao.update(e);
+            if (ruleBefore != null) {
+                // Si se movió el ancla de la regla, sus excepciones futuras van a su nueva fecha
+                Recurrence.scheduleChanged(dao, ruleBefore, e, e.updatedAt);
+            }
             updateSuccess[0] = true;
             
-            // Programar nueva notificación si es necesario (no crítico si falla)
+            // Rearmar la ventana de alarmas (entra este evento si le toca; no crítico si falla)
             try {
-                if (notificationMinutesBefore != null && notificationMinutesBefore > 0) {
-                    com.gastonlesbegueris.caretemplate.util.NotificationHelper.scheduleNotification(getApplicationContext(), e);
-                }
+                com.gastonlesbegueris.caretemplate.util.NotificationWindow.reconcile(getApplicationContext());
             } catch (Exception notifEx) {
                 android.util.Log.w("AgendaActivity", "Error al programar notificación (no crítico)", notifEx);
             }
             
-            runOnUiThread(() -> {
+            TaskScheduler.get().ui(AgendaActivity.this, () -> {
                 if (!isFinishing() && !isDestroyed()) {
                     android.widget.Toast.makeText(this, getString(R.string.event_updated), android.widget.Toast.LENGTH_SHORT).show();
                 }
             });
         } catch (Exception ex) {
             android.util.Log.e("AgendaActivity", "Error al actualizar evento individual: " + ex.getMessage(), ex);
-            runOnUiThread(() -> {
+            TaskScheduler.get().ui(AgendaActivity.this, () -> {
                 if (!isFinishing() && !isDestroyed()) {
                     if (updateSuccess[0]) {
                         // Si la actualización fue exitosa pero hubo un error menor, mostrar éxito
@@ -830,6 +873,8 @@ public class AgendaActivity extends AppCompatActivity {
                         com.gastonlesbegueris.caretemplate.util.NotificationHelper.cancelNotification(getApplicationContext(), repeated.id);
                     }
                 }
+                // Y las de las ocurrencias virtuales de la regla anterior
+                SeriesNotifications.cancelUpcoming(getApplicationContext(), originalEvent);
             } catch (Exception notifEx) {
                 android.util.Log.w("AgendaActivity", "Error al cancelar notificaciones repetidas (no crítico)", notifEx);
             }
@@ -843,9 +888,12 @@ public class AgendaActivity extends AppCompatActivity {
                 android.util.Log.w("AgendaActivity", "Error al cancelar notificación original (no crítico)", notifEx);
             }
             
-            // Eliminar eventos repetidos existentes
             long now = System.currentTimeMillis();
-            dao.softDeleteRepeatedEvents(originalEvent.id, now);
+            EventEntity ruleBefore = Recurrence.copy(originalEvent);
+            if (repeatType == null) {
+                // Sin repetición: la serie deja de existir junto con sus excepciones
+                dao.softDeleteRepeatedEvents(originalEvent.id, now);
+            }
             
             // Actualizar el evento original
             originalEvent.title = title;
@@ -859,27 +907,20 @@ public class AgendaActivity extends AppCompatActivity {
             originalEvent.updatedAt = now;
             originalEvent.dirty = 1;
             dao.update(originalEvent);
+            // Las excepciones futuras (editadas, realizadas o borradas) pasan al calendario nuevo;
+            // si era una serie vieja (una fila por repetición) esas filas se borran y pasa a virtual
+            Recurrence.scheduleChanged(dao, ruleBefore, originalEvent, now);
             updateSuccess[0] = true;
             
-            // Programar notificación para el original (no crítico si falla)
+            // Las repeticiones ya no se guardan como filas: se calculan desde la regla (Recurrence).
+            // El original y sus próximas ocurrencias entran a la ventana de alarmas (no crítico si falla)
             try {
-                if (notificationMinutesBefore != null && notificationMinutesBefore > 0) {
-                    com.gastonlesbegueris.caretemplate.util.NotificationHelper.scheduleNotification(getApplicationContext(), originalEvent);
-                }
+                com.gastonlesbegueris.caretemplate.util.NotificationWindow.reconcile(getApplicationContext());
             } catch (Exception notifEx) {
-                android.util.Log.w("AgendaActivity", "Error al programar notificación original (no crítico)", notifEx);
-            }
-            
-            // Si hay repetición, crear nuevos eventos repetidos (no crítico si falla parcialmente)
-            try {
-                if (repeatType != null && repeatInterval != null && repeatInterval > 0) {
-                    createRepeatedEvents(originalEvent, repeatType, repeatInterval, repeatEndDate, repeatCount, notificationMinutesBefore);
-                }
-            } catch (Exception repeatEx) {
-                android.util.Log.w("AgendaActivity", "Error al crear eventos repetidos (no crítico)", repeatEx);
+                android.util.Log.w("AgendaActivity", "Error al programar notificaciones (no crítico)", notifEx);
             }
             
-            runOnUiThread(() -> {
+            TaskScheduler.get().ui(AgendaActivity.this, () -> {
                 if (!isFinishing() && !isDestroyed()) {
                     String message = getString(R.string.event_updated);
                     if (repeatType != null) {
@@ -890,7 +931,7 @@ public class AgendaActivity extends AppCompatActivity {
             });
         } catch (Exception ex) {
             android.util.Log.e("AgendaActivity", "Error al actualizar evento con repetición: " + ex.getMessage(), ex);
-            runOnUiThread(() -> {
+            TaskScheduler.get().ui(AgendaActivity.this, () -> {
                 if (!isFinishing() && !isDestroyed()) {
                     if (updateSuccess[0]) {
                         // Si la actualización fue exitosa pero hubo un error menor, mostrar éxito
@@ -907,103 +948,31 @@ public class AgendaActivity extends AppCompatActivity {
         }
     }
     
-    private void createRepeatedEvents(EventEntity originalEvent, String repeatType, Integer repeatInterval,
-                                     Long repeatEndDate, Integer repeatCount, Integer notificationMinutesBefore) {
-        try {
-            long dueAt = originalEvent.dueAt;
-            java.util.Calendar cal = java.util.Calendar.getInstance();
-            cal.setTimeInMillis(dueAt);
-            
-            int eventsCreated = 1; // Ya contamos el original
-            long nextDueAt = dueAt;
-            
-            while (true) {
-                java.util.Calendar nextCal = java.util.Calendar.getInstance();
-                nextCal.setTimeInMillis(nextDueAt);
-                
-                switch (repeatType) {
-                    case "hourly":
-                        nextCal.add(java.util.Calendar.HOUR_OF_DAY, repeatInterval);
-                        break;
-                    case "daily":
-                        nextCal.add(java.util.Calendar.DAY_OF_MONTH, repeatInterval);
-                        break;
-                    case "monthly":
-                        nextCal.add(java.util.Calendar.MONTH, repeatInterval);
-                        break;
-                    case "yearly":
-                        nextCal.add(java.util.Calendar.YEAR, repeatInterval);
-                        break;
-                }
-                
-                nextDueAt = nextCal.getTimeInMillis();
-                
-                boolean shouldStop = false;
-                if (repeatEndDate != null && nextDueAt > repeatEndDate) {
-                    shouldStop = true;
-                } else if (repeatCount != null && eventsCreated >= repeatCount) {
-                    shouldStop = true;
-                } else if (repeatEndDate == null && repeatCount == null) {
-                    // Si no hay límite, crear eventos por 10 años por defecto (prácticamente sin límite)
-                    java.util.Calendar limitCal = java.util.Calendar.getInstance();
-                    limitCal.setTimeInMillis(dueAt);
-                    limitCal.add(java.util.Calendar.YEAR, 10);
-                    if (nextDueAt > limitCal.getTimeInMillis()) {
-                        shouldStop = true;
-                    }
-                }
-                
-                if (shouldStop) break;
-                
-                // Crear evento repetido
-                EventEntity repeatedEvent = new EventEntity();
-                repeatedEvent.id = java.util.UUID.randomUUID().toString();
-                repeatedEvent.uid = originalEvent.uid;
-                repeatedEvent.appType = originalEvent.appType;
-                repeatedEvent.subjectId = originalEvent.subjectId;
-                repeatedEvent.title = originalEvent.title;
-                repeatedEvent.note = originalEvent.note;
-                repeatedEvent.cost = null;
-                repeatedEvent.kilometersAtEvent = null;
-                repeatedEvent.realized = 0;
-                repeatedEvent.dueAt = nextDueAt;
-                repeatedEvent.updatedAt = System.currentTimeMillis();
-                repeatedEvent.deleted = 0;
-                repeatedEvent.dirty = 1;
-                repeatedEvent.repeatType = null;
-                repeatedEvent.repeatInterval = null;
-                repeatedEvent.repeatEndDate = null;
-                repeatedEvent.repeatCount = null;
-                repeatedEvent.originalEventId = originalEvent.id;
-                repeatedEvent.notificationMinutesBefore = notificationMinutesBefore;
-                
-                dao.insert(repeatedEvent);
-                
-                if (notificationMinutesBefore != null && notificationMinutesBefore > 0) {
-                    com.gastonlesbegueris.caretemplate.util.NotificationHelper.scheduleNotification(getApplicationContext(), repeatedEvent);
-                }
-                
-                eventsCreated++;
-            }
-        } catch (Exception ex) {
-            android.util.Log.e("AgendaActivity", "Error al crear eventos repetidos", ex);
-        }
-    }
-
-    private void softDelete(String id) {
-        new Thread(() -> {
+    private void softDelete(EventEntity e) {
+        final String id = e.id;
+        TaskScheduler.get().db(() -> {
+            long now = System.currentTimeMillis();
+            // Una ocurrencia virtual se guarda como excepción borrada (tombstone) para que no reaparezca
+            Recurrence.materialize(dao, e);
             EventEntity event = dao.findOne(id);
             if (event != null && event.notificationMinutesBefore != null && event.notificationMinutesBefore > 0) {
                 com.gastonlesbegueris.caretemplate.util.NotificationHelper.cancelNotification(this, id);
             }
-            dao.softDelete(id, System.currentTimeMillis());
-            runOnUiThread(() -> android.widget.Toast.makeText(this, getString(R.string.event_deleted), android.widget.Toast.LENGTH_SHORT).show());
-        }).start();
+            if (Recurrence.isRule(event)) {
+                // Borrar la regla borra la serie completa (sus excepciones y alarmas)
+                SeriesNotifications.cancelUpcoming(getApplicationContext(), event);
+                dao.softDeleteRepeatedEvents(id, now);
+            }
+            dao.softDelete(id, now);
+            TaskScheduler.get().ui(AgendaActivity.this, () -> android.widget.Toast.makeText(this, getString(R.string.event_deleted), android.widget.Toast.LENGTH_SHORT).show());
+        });
     }
     
-    private void setRealized(String id, boolean realized) {
-        new Thread(() -> {
+    private void setRealized(EventEntity e, boolean realized) {
+        final String id = e.id;
+        TaskScheduler.get().db(() -> {
             long now = System.currentTimeMillis();
+            Recurrence.materialize(dao, e);
             if (realized) {
                 // Cancelar todas las alarmas programadas para este evento
                 com.gastonlesbegueris.caretemplate.util.NotificationHelper.cancelNotification(this, id);
@@ -1011,11 +980,11 @@ public class AgendaActivity extends AppCompatActivity {
             } else {
                 dao.markUnrealizedOne(id, now);
             }
-            runOnUiThread(() -> {
+            TaskScheduler.get().ui(AgendaActivity.this, () -> {
                 String msg = realized ? getString(R.string.event_marked_realized) : getString(R.string.event_marked_pending);
                 android.widget.Toast.makeText(this, msg, android.widget.Toast.LENGTH_SHORT).show();
             });
-        }).start();
+        });
     }
 
 }
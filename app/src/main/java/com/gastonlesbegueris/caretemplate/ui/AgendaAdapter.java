@@ -1,29 +1,29 @@
 package com.gastonlesbegueris.caretemplate.ui;
 
 import android.annotation.SuppressLint;
+import android.content.res.Resources;
 import android.graphics.Color;
 import android.graphics.PorterDuff;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.CheckBox;
+import android.widget.CompoundButton;
 import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
-import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.gastonlesbegueris.caretemplate.R;
-import com.gastonlesbegueris.caretemplate.data.local.EventEntity;
+import com.gastonlesbegueris.caretemplate.data.model.EventListItem;
+import com.gastonlesbegueris.caretemplate.util.TaskScheduler;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
-import java.util.Map;
+import java.util.Objects;
 
 /**
  * Adapter para Agenda con cabeceras de día y eventos dentro de cada día.
@@ -31,57 +31,94 @@ import java.util.Map;
 public class AgendaAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
 
     public interface OnEventClick {
-        void onEdit(EventEntity e);
-        void onDelete(EventEntity e);
-        default void onToggleRealized(EventEntity e, boolean realized) {}
+        void onEdit(EventListItem e);
+        void onDelete(EventListItem e);
+        default void onToggleRealized(EventListItem e, boolean realized) {}
     }
 
     private static final int TYPE_HEADER = 0;
     private static final int TYPE_EVENT = 1;
 
-    private final List<Row> rows = new ArrayList<>();
-    private final HashMap<String, String> subjectNames = new HashMap<>();
-    private final HashMap<String, String> subjectIconKeys = new HashMap<>();
-    private final HashMap<String, String> subjectColorHex = new HashMap<>();
-    private final OnEventClick listener;
-    private String appType;
+    private static final DiffUtil.ItemCallback<Row> DIFF = new DiffUtil.ItemCallback<Row>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Row a, @NonNull Row b) {
+            return a.key.equals(b.key);
+        }
 
-    private final SimpleDateFormat timeFmt = new SimpleDateFormat("HH:mm", Locale.getDefault());
+        @Override
+        public boolean areContentsTheSame(@NonNull Row a, @NonNull Row b) {
+            if (a.isHeader) return Objects.equals(a.dayLabel, b.dayLabel);
+            return EventRow.sameContent(a.view, b.view);
+        }
+    };
 
-    public AgendaAdapter(OnEventClick l) { this.listener = l; }
+    // Diff en segundo plano: submit() ya no redibuja toda la lista
+    private final AsyncListDiffer<Row> differ = new AsyncListDiffer<>(this, DIFF);
+    private final StableIds stableIds = new StableIds();
+    private final SubjectBadges badges =
+            new SubjectBadges(this::adjustColorForTheme);
+    private final OnEventClick listener;
+    private String appType;
+    private List<Row> source = new ArrayList<>();
+    // Recursos para los textos de costo/km (se toman al engancharse al RecyclerView)
+    private Resources res;
+    // Descarta lotes armados en segundo plano que ya quedaron viejos
+    private int submitGeneration = 0;
+
+    public AgendaAdapter(OnEventClick l) {
+        this.listener = l;
+        setHasStableIds(true);
+    }
 
     public void setAppType(String appType) {
+        if (Objects.equals(this.appType, appType)) return;
         this.appType = appType;
-        notifyDataSetChanged();
-    }
-
-    public void setSubjectsMap(Map<String, String> map) {
-        subjectNames.clear();
-        if (map != null) subjectNames.putAll(map);
-        notifyDataSetChanged();
+        // Los km se muestran o no según el appType: rearmar las filas
+        submit(source);
     }
 
-    public void setSubjectIconKeys(Map<String, String> map) {
-        subjectIconKeys.clear();
-        if (map != null) subjectIconKeys.putAll(map);
-        notifyDataSetChanged();
+    /**
+     * Nombre, ícono y color de cada sujeto (Snapshot de SubjectMetaCache): un solo rebind
+     * parcial (payload) de las filas de evento, y nada si es el mismo Snapshot.
+     */
+    public void setSubjectMeta(com.gastonlesbegueris.caretemplate.util.SubjectMetaCache.Snapshot meta) {
+        if (!badges.update(meta)) return;
+        notifyItemRangeChanged(0, getItemCount(), EventDiff.PAYLOAD_SUBJECT);
     }
 
-    public void setSubjectColorHex(Map<String, String> map) {
-        subjectColorHex.clear();
-        if (map != null) subjectColorHex.putAll(map);
-        notifyDataSetChanged();
+    /** Arma la presentación de cada fila de evento en segundo plano y la entrega al differ. */
+    public void submit(List<Row> data) {
+        final List<Row> copy = data != null ? new ArrayList<>(data) : new ArrayList<>();
+        source = copy;
+        final int generation = ++submitGeneration;
+        final Resources r = res;
+        if (r == null) return; // se arma en onAttachedToRecyclerView
+        final boolean showKm = "cars".equals(appType);
+        TaskScheduler.get().db(() -> {
+            EventRow.Builder builder = new EventRow.Builder("HH:mm", new EventRow.Texts() {
+                @Override public String cost(double cost) { return r.getString(R.string.event_cost_format, cost); }
+                @Override public String km(long km) { return r.getString(R.string.event_kilometers, km); }
+            }, showKm);
+            List<Row> rows = new ArrayList<>(copy.size());
+            for (Row row : copy) rows.add(row.isHeader ? row : row.withView(builder.build(row.event)));
+            TaskScheduler.get().main(() -> {
+                if (generation == submitGeneration) differ.submitList(rows);
+            });
+        });
     }
 
-    public void submit(List<Row> data) {
-        rows.clear();
-        if (data != null) rows.addAll(data);
-        notifyDataSetChanged();
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        if (res == null) {
+            res = recyclerView.getContext().getApplicationContext().getResources();
+            if (!source.isEmpty()) submit(source);
+        }
     }
 
     @Override
     public int getItemViewType(int position) {
-        return rows.get(position).isHeader ? TYPE_HEADER : TYPE_EVENT;
+        return differ.getCurrentList().get(position).isHeader ? TYPE_HEADER : TYPE_EVENT;
     }
 
     @NonNull @Override
@@ -93,178 +130,111 @@ public class AgendaAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
         }
         View v = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.item_event, parent, false);
-        return new EventVH(v);
+        EventVH h = new EventVH(v);
+
+        // Listeners una sola vez por ViewHolder: leen el evento enlazado en h.bound
+        h.onChecked = (btn, checked) -> {
+            if (listener != null && h.bound != null) listener.onToggleRealized(h.bound, checked);
+        };
+        h.itemView.setOnClickListener(view -> {
+            if (listener != null && h.bound != null) listener.onEdit(h.bound);
+        });
+        h.btnEdit.setOnClickListener(view -> {
+            if (listener != null && h.bound != null) listener.onEdit(h.bound);
+        });
+        h.btnDelete.setOnClickListener(view -> {
+            if (listener != null && h.bound != null) listener.onDelete(h.bound);
+        });
+        View.OnTouchListener consumeTouch = (view, event) -> {
+            if (event.getAction() == android.view.MotionEvent.ACTION_UP) {
+                view.performClick();
+            }
+            return true;
+        };
+        h.btnEdit.setOnTouchListener(consumeTouch);
+        h.btnDelete.setOnTouchListener(consumeTouch);
+        return h;
     }
 
     @SuppressLint("SetTextI18n")
     @Override
     public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
-        Row row = rows.get(position);
+        Row row = differ.getCurrentList().get(position);
         if (row.isHeader) {
             ((HeaderVH) holder).bind(row.dayLabel);
             return;
         }
 
         EventVH h = (EventVH) holder;
-        EventEntity e = row.event;
-        String subjName = subjectNames.getOrDefault(e.subjectId, "—");
-        String iconKey = subjectIconKeys.getOrDefault(e.subjectId, null);
+        EventRow view = row.view;
+        EventListItem e = view.event;
+        h.bound = e;
 
         h.tvTitle.setText(e.title);
-        h.tvSubjectName.setText(subjName);
-
-        int iconRes = getIconResForSubject(iconKey);
+        bindSubject(h, e);
+        h.tvWhen.setText(view.when);
 
-        String hex = subjectColorHex.getOrDefault(e.subjectId, "#03DAC5");
-        int color;
-        try {
-            color = Color.parseColor(hex);
-        } catch (Exception ex) {
-            color = Color.parseColor("#03DAC5");
-        }
-
-        color = adjustColorForTheme(h.ivSubjectIcon.getContext(), color);
-
-        android.graphics.drawable.Drawable drawable = ContextCompat.getDrawable(h.ivSubjectIcon.getContext(), iconRes);
-        if (drawable != null) {
-            drawable = drawable.mutate();
-            drawable.setTint(color);
-            h.ivSubjectIcon.setImageDrawable(drawable);
-        } else {
-            h.ivSubjectIcon.setImageResource(iconRes);
-            h.ivSubjectIcon.setColorFilter(color, PorterDuff.Mode.SRC_IN);
-        }
-        h.ivSubjectIcon.setVisibility(View.VISIBLE);
-
-        h.tvWhen.setText(timeFmt.format(new Date(e.dueAt)));
-
-        if (e.cost != null) {
-            String costText = h.tvCost.getContext().getString(R.string.event_cost_format, e.cost);
-            h.tvCost.setText(costText);
+        if (view.cost != null) {
+            h.tvCost.setText(view.cost);
             h.tvCost.setVisibility(View.VISIBLE);
         } else {
             h.tvCost.setVisibility(View.GONE);
         }
 
-        if ("cars".equals(appType) && e.kilometersAtEvent != null) {
-            if (h.tvKilometers != null) {
-                String kmText = h.tvKilometers.getContext().getString(R.string.event_kilometers, Math.round(e.kilometersAtEvent));
-                h.tvKilometers.setText(kmText);
+        if (h.tvKilometers != null) {
+            if (view.km != null) {
+                h.tvKilometers.setText(view.km);
                 h.tvKilometers.setVisibility(View.VISIBLE);
-            }
-        } else {
-            if (h.tvKilometers != null) {
+            } else {
                 h.tvKilometers.setVisibility(View.GONE);
             }
         }
 
         h.cbDone.setOnCheckedChangeListener(null);
         h.cbDone.setChecked(e.realized == 1);
+        h.cbDone.setOnCheckedChangeListener(h.onChecked);
 
-        h.cbDone.setOnCheckedChangeListener((btn, checked) -> {
-            if (listener != null) listener.onToggleRealized(e, checked);
-        });
-
-        h.itemView.setOnClickListener(v -> {
-            if (listener != null) listener.onEdit(e);
-        });
-
-        h.btnEdit.setOnClickListener(v -> {
-            if (listener != null) listener.onEdit(e);
-        });
-
-        h.btnEdit.setOnTouchListener((v, event) -> {
-            if (event.getAction() == android.view.MotionEvent.ACTION_UP) {
-                v.performClick();
-            }
-            return true;
-        });
-
-        h.btnDelete.setOnClickListener(v -> {
-            if (listener != null) listener.onDelete(e);
-        });
-
-        h.btnDelete.setOnTouchListener((v, event) -> {
-            if (event.getAction() == android.view.MotionEvent.ACTION_UP) {
-                v.performClick();
-            }
-            return true;
-        });
-
-        // Set background color based on event status
-        setEventBackgroundColor(h.itemView, e);
+        // Borde según estado (vencido / hoy / futuro)
+        h.border.apply(h.itemView, view.border);
     }
 
-    /**
-     * Sets border color for event item:
-     * - Red border: defeated (past due and not realized)
-     * - Yellow border: due today (not realized)
-     * - Green border: future events (not realized)
-     * - Default: no border
-     */
-    private void setEventBackgroundColor(View itemView, EventEntity e) {
-        long now = System.currentTimeMillis();
-        boolean isDefeated = e.dueAt < now && e.realized == 0;
-        boolean isDueToday = isDueToday(e.dueAt, now) && e.realized == 0;
-        boolean isFuture = e.dueAt > now && e.realized == 0;
-
-        int borderColor;
-        int borderWidth;
-        if (isDefeated) {
-            // Red border for defeated events
-            borderColor = Color.parseColor("#F44336"); // Red
-            borderWidth = 4; // dp
-        } else if (isDueToday) {
-            // Yellow border for events due today
-            borderColor = Color.parseColor("#FFEB3B"); // Yellow
-            borderWidth = 4; // dp
-        } else if (isFuture) {
-            // Green border for future events
-            borderColor = Color.parseColor("#4CAF50"); // Green
-            borderWidth = 2; // dp (thinner for future events)
-        } else {
-            // No border
-            borderColor = Color.TRANSPARENT;
-            borderWidth = 0;
+    @Override
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position,
+                                 @NonNull List<Object> payloads) {
+        Row row = differ.getCurrentList().get(position);
+        if (payloads.isEmpty() || row.isHeader) {
+            onBindViewHolder(holder, position);
+            return;
         }
-
-        // Apply border to the CardView using a drawable
-        if (itemView instanceof androidx.cardview.widget.CardView) {
-            androidx.cardview.widget.CardView cardView = (androidx.cardview.widget.CardView) itemView;
-            float density = itemView.getContext().getResources().getDisplayMetrics().density;
-            int borderWidthPx = (int) (borderWidth * density);
-            
-            if (borderWidth > 0) {
-                // Create a drawable with border
-                android.graphics.drawable.GradientDrawable drawable = new android.graphics.drawable.GradientDrawable();
-                drawable.setShape(android.graphics.drawable.GradientDrawable.RECTANGLE);
-                drawable.setColor(Color.TRANSPARENT); // Transparent background
-                drawable.setStroke(borderWidthPx, borderColor);
-                drawable.setCornerRadius(8 * density); // Match CardView corner radius
-                
-                // Set the drawable as background
-                cardView.setBackground(drawable);
-            } else {
-                // Reset to default if no border
-                cardView.setBackground(null);
+        for (Object p : payloads) {
+            if (p != EventDiff.PAYLOAD_SUBJECT) {
+                onBindViewHolder(holder, position);
+                return;
             }
         }
+        // Solo cambió la metadata del sujeto: no tocar título, hora, costo ni listeners
+        bindSubject((EventVH) holder, row.event);
     }
 
-    /**
-     * Checks if the event is due today (same calendar day)
-     */
-    private boolean isDueToday(long eventDueAt, long now) {
-        java.util.Calendar eventCal = java.util.Calendar.getInstance();
-        eventCal.setTimeInMillis(eventDueAt);
-        java.util.Calendar todayCal = java.util.Calendar.getInstance();
-        todayCal.setTimeInMillis(now);
-
-        return eventCal.get(java.util.Calendar.YEAR) == todayCal.get(java.util.Calendar.YEAR) &&
-               eventCal.get(java.util.Calendar.DAY_OF_YEAR) == todayCal.get(java.util.Calendar.DAY_OF_YEAR);
+    private void bindSubject(@NonNull EventVH h, EventListItem e) {
+        SubjectBadges.Badge b = badges.get(h.itemView.getContext(), e.subjectId);
+        h.tvSubjectName.setText(b.name);
+        if (b.icon != null) {
+            h.ivSubjectIcon.clearColorFilter();
+            h.ivSubjectIcon.setImageDrawable(b.icon);
+        } else {
+            h.ivSubjectIcon.setImageResource(b.iconRes);
+            h.ivSubjectIcon.setColorFilter(b.color, PorterDuff.Mode.SRC_IN);
+        }
+        h.ivSubjectIcon.setVisibility(View.VISIBLE);
     }
 
-    @Override public int getItemCount() { return rows.size(); }
+    @Override public int getItemCount() { return differ.getCurrentList().size(); }
+
+    @Override
+    public long getItemId(int position) {
+        return stableIds.idFor(differ.getCurrentList().get(position).key);
+    }
 
     // ==== ViewHolders ====
     static class HeaderVH extends RecyclerView.ViewHolder {
@@ -286,6 +256,9 @@ public class AgendaAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
         CheckBox cbDone;
         com.google.android.material.button.MaterialButton btnEdit;
         com.google.android.material.button.MaterialButton btnDelete;
+        final EventRow.Border border = new EventRow.Border();
+        EventListItem bound;
+        CompoundButton.OnCheckedChangeListener onChecked;
         EventVH(@NonNull View itemView) {
             super(itemView);
             ivSubjectIcon = itemView.findViewById(R.id.ivSubjectIcon);
@@ -301,15 +274,6 @@ public class AgendaAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
     }
 
     // ==== Helpers ====
-    private int getIconResForSubject(String iconKey) {
-        if (iconKey == null) return R.drawable.ic_header_flavor;
-        int resId = R.drawable.ic_header_flavor;
-        try {
-            resId = R.drawable.class.getField(iconKey).getInt(null);
-        } catch (Exception ignored) {}
-        return resId;
-    }
-
     private int adjustColorForTheme(android.content.Context context, int color) {
         int nightMode = context.getResources().getConfiguration().uiMode &
                 android.content.res.Configuration.UI_MODE_NIGHT_MASK;
@@ -333,13 +297,22 @@ public class AgendaAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
     public static class Row {
         public final boolean isHeader;
         public final String dayLabel;
-        public final EventEntity event;
-        private Row(boolean isHeader, String dayLabel, EventEntity event) {
+        public final EventListItem event;
+        // Clave estable para DiffUtil/getItemId: id del evento o día de la cabecera
+        final String key;
+        // Presentación precalculada (la arma el adapter en segundo plano)
+        final EventRow view;
+        private Row(boolean isHeader, String dayLabel, EventListItem event, String key, EventRow view) {
             this.isHeader = isHeader;
             this.dayLabel = dayLabel;
             this.event = event;
+            this.key = key;
+            this.view = view;
         }
-        public static Row header(String label) { return new Row(true, label, null); }
-        public static Row event(EventEntity e) { return new Row(false, null, e); }
+        public static Row header(String label) { return new Row(true, label, null, "h:" + label, null); }
+        /** Cabecera identificada por el inicio del día (el label puede repetirse entre años). */
+        public static Row header(long dayStart, String label) { return new Row(true, label, null, "h:" + dayStart, null); }
+        public static Row event(EventListItem e) { return new Row(false, null, e, "e:" + e.id, null); }
+        Row withView(EventRow v) { return new Row(isHeader, dayLabel, event, key, v); }
     }
 }
@@ -14,23 +14,33 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 
 import com.gastonlesbegueris.caretemplate.R;
 import com.gastonlesbegueris.caretemplate.data.local.AppDb;
+import com.gastonlesbegueris.caretemplate.data.local.DayTotalDao;
 import com.gastonlesbegueris.caretemplate.data.local.EventDao;
 import com.gastonlesbegueris.caretemplate.data.local.EventEntity;
+import com.gastonlesbegueris.caretemplate.data.local.ExpenseDao;
+import com.gastonlesbegueris.caretemplate.data.local.Recurrence;
+import com.gastonlesbegueris.caretemplate.data.model.DayTotal;
 import com.gastonlesbegueris.caretemplate.data.model.DaySummary;
+import com.gastonlesbegueris.caretemplate.data.model.ExpenseDayTotal;
+import com.gastonlesbegueris.caretemplate.util.DayBuckets;
 import com.gastonlesbegueris.caretemplate.util.FabHelper;
+import com.gastonlesbegueris.caretemplate.util.TaskScheduler;
 import com.google.android.material.appbar.MaterialToolbar;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.TreeSet;
 
 public class AgendaMonthActivity extends AppCompatActivity {
 
     private EventDao eventDao;
+    private DayTotalDao dayTotalDao;
+    private ExpenseDao expenseDao;
     private String appType;
     private com.gastonlesbegueris.caretemplate.util.MenuHelper menuHelper;
 
@@ -45,6 +55,8 @@ public class AgendaMonthActivity extends AppCompatActivity {
 
         appType = getString(R.string.app_type);
         eventDao = AppDb.get(this).eventDao();
+        dayTotalDao = AppDb.get(this).dayTotalDao();
+        expenseDao = AppDb.get(this).expenseDao();
         menuHelper = new com.gastonlesbegueris.caretemplate.util.MenuHelper(this, appType);
 
         MaterialToolbar toolbar = findViewById(R.id.toolbarMonth);
@@ -103,44 +115,53 @@ public class AgendaMonthActivity extends AppCompatActivity {
     }
 
     private void loadMonth() {
-        new Thread(() -> {
-            long[] range = monthRange(System.currentTimeMillis());
+        TaskScheduler.get().db(AgendaMonthActivity.this, () -> {
+            DayBuckets buckets = DayBuckets.current();
+            long[] range = monthRange(buckets, System.currentTimeMillis());
             long start = range[0];
             long end   = range[1];
 
-            List<EventEntity> all = eventDao.listInRange(appType, start, end);
-
-            // Agrupar por día (inicio del día)
-            Map<Long, List<EventEntity>> byDay = new LinkedHashMap<>();
-            Calendar c = Calendar.getInstance();
-            for (EventEntity e : all) {
-                long k = dayStart(e.dueAt, c);
-                byDay.computeIfAbsent(k, kk -> new ArrayList<>()).add(e);
+            // Totales por día del rollup day_totals (O(días), no O(eventos))
+            AppDb.get(this).syncDayTotalsZone();
+            long fromDay = buckets.dayKey(start);
+            long toDay = buckets.dayKey(end);
+            Map<Long, DayTotal> byDay = new LinkedHashMap<>();
+            for (DayTotal t : dayTotalDao.listDays(appType, fromDay, toDay)) byDay.put(t.day, t);
+            // Gastos por día en que se hicieron, del libro de gastos
+            Map<Long, ExpenseDayTotal> spentByDay = new HashMap<>();
+            for (ExpenseDayTotal x : expenseDao.listDays(appType, fromDay, toDay)) spentByDay.put(x.day, x);
+
+            // Ocurrencias virtuales de las reglas de repetición: no están en events, así que se
+            // suman aparte. Las que ya pasaron cuentan como realizadas; no tienen costo
+            Map<Long, Integer> virtualByDay = new HashMap<>();
+            Map<Long, Integer> virtualDoneByDay = new HashMap<>();
+            long now = System.currentTimeMillis();
+            Recurrence.Rules rules = Recurrence.loadRules(eventDao, appType);
+            for (EventEntity o : rules.expandAll(start, end, now)) {
+                long day = buckets.dayKey(o.dueAt);
+                virtualByDay.merge(day, 1, Integer::sum);
+                if (o.realized == 1) virtualDoneByDay.merge(day, 1, Integer::sum);
             }
 
+            TreeSet<Long> days = new TreeSet<>(byDay.keySet());
+            days.addAll(virtualByDay.keySet());
+            days.addAll(spentByDay.keySet());
+
             List<DaySummary> summaries = new ArrayList<>();
             double plannedSum = 0.0;
             double realizedSum = 0.0;
 
-            for (Map.Entry<Long, List<EventEntity>> en : byDay.entrySet()) {
-                long day = en.getKey();
-                List<EventEntity> list = en.getValue();
-                int total = list.size();
-                int done  = 0;
-                Double expenses = null;
-
-                for (EventEntity e : list) {
-                    if (e.realized == 1) {
-                        done++;
-                        if (e.cost != null) {
-                            realizedSum += e.cost;
-                            expenses = (expenses == null ? 0.0 : expenses) + e.cost;
-                        }
-                    } else {
-                        if (e.cost != null) plannedSum += e.cost;
-                    }
-                }
-                summaries.add(new DaySummary(day, total, done, expenses));
+            for (long day : days) {
+                DayTotal t = byDay.get(day);
+                Integer virtual = virtualByDay.get(day);
+                int total = (t != null ? t.eventCount : 0) + (virtual != null ? virtual : 0);
+                Integer virtualDone = virtualDoneByDay.get(day);
+                int done  = (t != null ? t.realizedCount : 0) + (virtualDone != null ? virtualDone : 0);
+                ExpenseDayTotal spent = spentByDay.get(day);
+                Double expenses = spent != null ? spent.total : null;
+                if (t != null) plannedSum += t.plannedSum;
+                if (spent != null) realizedSum += spent.total;
+                summaries.add(new DaySummary(buckets.startOfDay(day), total, done, expenses));
             }
 
             String monthTitle = fmtMonth.format(start);
@@ -151,33 +172,16 @@ public class AgendaMonthActivity extends AppCompatActivity {
                 tvTotals.setText(totalsText);
                 tvTotals.setVisibility(View.VISIBLE);
             });
-        }).start();
+        });
     }
 
-    private long[] monthRange(long anyTimeMillis) {
-        Calendar c = Calendar.getInstance();
-        c.setTimeInMillis(anyTimeMillis);
-        c.set(Calendar.DAY_OF_MONTH, 1);
-        c.set(Calendar.HOUR_OF_DAY, 0);
-        c.set(Calendar.MINUTE, 0);
-        c.set(Calendar.SECOND, 0);
-        c.set(Calendar.MILLISECOND, 0);
-        long start = c.getTimeInMillis();
-
-        c.add(Calendar.MONTH, 1);
-        long end = c.getTimeInMillis() - 1;
+    private long[] monthRange(DayBuckets buckets, long anyTimeMillis) {
+        int month = buckets.monthKey(anyTimeMillis);
+        long start = buckets.startOfMonth(month);
+        long end = buckets.startOfMonth(month + 1) - 1;
         return new long[]{start, end};
     }
 
-    private long dayStart(long time, Calendar c) {
-        c.setTimeInMillis(time);
-        c.set(Calendar.HOUR_OF_DAY, 0);
-        c.set(Calendar.MINUTE, 0);
-        c.set(Calendar.SECOND, 0);
-        c.set(Calendar.MILLISECOND, 0);
-        return c.getTimeInMillis();
-    }
-
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.main_menu, menu);
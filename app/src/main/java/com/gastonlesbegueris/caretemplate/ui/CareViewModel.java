@@ -0,0 +1,91 @@
+package com.gastonlesbegueris.caretemplate.ui;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+
+import com.gastonlesbegueris.caretemplate.R;
+import com.gastonlesbegueris.caretemplate.data.local.CareRepository;
+import com.gastonlesbegueris.caretemplate.data.local.SearchIndex;
+import com.gastonlesbegueris.caretemplate.data.local.SubjectEntity;
+import com.gastonlesbegueris.caretemplate.data.model.EventListItem;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Streams de una pantalla, guardados en el ViewModel para que sobrevivan a la rotación: la
+ * Activity nueva observa las mismas instancias (y la misma ventana paginada, con las páginas
+ * ya cargadas) en lugar de abrir consultas nuevas. Los streams salen de CareRepository, así
+ * que dos pantallas con la misma consulta comparten uno solo.
+ */
+public class CareViewModel extends AndroidViewModel {
+
+    // Ventana paginada de la lista de eventos de la pantalla (ver PagedWindow)
+    final PagedWindow window = new PagedWindow();
+
+    private final CareRepository repo;
+    private final String appType;
+
+    private LiveData<List<SubjectEntity>> subjects;
+    private LiveData<List<EventListItem>> activePage;
+    private LiveData<List<EventListItem>> upcomingPage;
+    private long upcomingFrom;
+    private SearchIndex.Filter search; // null = sin búsqueda
+
+    public CareViewModel(@NonNull Application app) {
+        super(app);
+        repo = CareRepository.get(app);
+        appType = app.getString(R.string.app_type);
+    }
+
+    LiveData<List<SubjectEntity>> activeSubjects() {
+        if (subjects == null) subjects = repo.activeSubjects(appType);
+        return subjects;
+    }
+
+    /**
+     * Eventos pendientes, de a páginas de window. Con una búsqueda activa (setSearch) emite
+     * los resultados de la búsqueda en su lugar, sobre el mismo stream y la misma ventana.
+     */
+    LiveData<List<EventListItem>> activeEventsPage() {
+        if (activePage == null) {
+            activePage = window.source(limit -> {
+                SearchIndex.Filter q = search;
+                return q == null
+                        ? repo.activeEventsPage(appType, limit)
+                        : repo.searchEventsPage(appType, q, limit);
+            });
+        }
+        return activePage;
+    }
+
+    /** Cambia la búsqueda de activeEventsPage (null o sin términos = lista normal). */
+    void setSearch(SearchIndex.Filter q) {
+        if (q != null && !q.isValid()) q = null;
+        if (Objects.equals(q, search)) return;
+        search = q;
+        window.reset();
+    }
+
+    SearchIndex.Filter search() {
+        return search;
+    }
+
+    /** Eventos pendientes desde que se abrió la pantalla, de a páginas de window. */
+    LiveData<List<EventListItem>> upcomingEventsPage() {
+        if (upcomingPage == null) {
+            upcomingFrom = System.currentTimeMillis();
+            final long now = upcomingFrom;
+            upcomingPage = window.source(limit -> repo.upcomingEventsPage(appType, now, limit));
+        }
+        return upcomingPage;
+    }
+
+    /** Instante desde el que cuenta upcomingEventsPage. */
+    long upcomingFrom() {
+        return upcomingFrom;
+    }
+}
@@ -6,6 +6,8 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.gastonlesbegueris.caretemplate.R;
@@ -16,22 +18,39 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
 
 public class DaySummaryAdapter extends RecyclerView.Adapter<DaySummaryAdapter.VH> {
 
     public interface OnDayClick { void onClick(DaySummary summary); }
-    public DaySummaryAdapter() { this.listener = null; } // si no usas clicks
+    public DaySummaryAdapter() { this(null); } // si no usas clicks
 
-    private final List<DaySummary> items = new ArrayList<>();
+    private static final DiffUtil.ItemCallback<DaySummary> DIFF = new DiffUtil.ItemCallback<DaySummary>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull DaySummary a, @NonNull DaySummary b) {
+            return a.getDayStartMillis() == b.getDayStartMillis();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull DaySummary a, @NonNull DaySummary b) {
+            return a.getEventsCount() == b.getEventsCount()
+                    && a.getRealizedCount() == b.getRealizedCount()
+                    && Objects.equals(a.getExpensesSum(), b.getExpensesSum());
+        }
+    };
+
+    private final AsyncListDiffer<DaySummary> differ = new AsyncListDiffer<>(this, DIFF);
     private final OnDayClick listener;
     private final SimpleDateFormat fmtDay = new SimpleDateFormat("EEE dd", Locale.getDefault());
 
-    public DaySummaryAdapter(OnDayClick listener) { this.listener = listener; }
+    public DaySummaryAdapter(OnDayClick listener) {
+        this.listener = listener;
+        setHasStableIds(true);
+    }
 
     public void submit(List<DaySummary> data) {
-        items.clear();
-        if (data != null) items.addAll(data);
-        notifyDataSetChanged();
+        // AsyncListDiffer compara por identidad de lista: pasar siempre una copia
+        differ.submitList(data != null ? new ArrayList<>(data) : null);
     }
 
     @NonNull @Override
@@ -43,7 +62,7 @@ public class DaySummaryAdapter extends RecyclerView.Adapter<DaySummaryAdapter.VH
 
     @Override
     public void onBindViewHolder(@NonNull VH h, int position) {
-        DaySummary s = items.get(position);
+        DaySummary s = differ.getCurrentList().get(position);
 
         long   dayStart = s.getDayStartMillis();
         int    evCount  = s.getEventsCount();
@@ -63,7 +82,10 @@ public class DaySummaryAdapter extends RecyclerView.Adapter<DaySummaryAdapter.VH
         h.itemView.setOnClickListener(v -> { if (listener != null) listener.onClick(s); });
     }
 
-    @Override public int getItemCount() { return items.size(); }
+    @Override public int getItemCount() { return differ.getCurrentList().size(); }
+
+    // Un resumen por día: el inicio del día ya es un id estable
+    @Override public long getItemId(int position) { return differ.getCurrentList().get(position).getDayStartMillis(); }
 
     static class VH extends RecyclerView.ViewHolder {
         TextView tvDay, tvCounts, tvExpenses;
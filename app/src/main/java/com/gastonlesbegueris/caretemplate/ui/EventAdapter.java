@@ -7,256 +7,196 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.CheckBox;
+import android.widget.CompoundButton;
 import android.widget.ImageView;
 import android.widget.TextView;
 import com.google.android.material.button.MaterialButton;
 
 import androidx.annotation.NonNull;
-import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.AsyncListDiffer;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.gastonlesbegueris.caretemplate.R;
-import com.gastonlesbegueris.caretemplate.data.local.EventEntity;
+import com.gastonlesbegueris.caretemplate.data.model.EventListItem;
+import com.gastonlesbegueris.caretemplate.util.TaskScheduler;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
 
 public class EventAdapter extends RecyclerView.Adapter<EventAdapter.VH> {
 
     public interface OnEventClick {
-        void onEdit(EventEntity e);
-        void onDelete(EventEntity e);
-        default void onToggleRealized(EventEntity e, boolean realized) {}
+        void onEdit(EventListItem e);
+        void onDelete(EventListItem e);
+        default void onToggleRealized(EventListItem e, boolean realized) {}
     }
 
-    private final List<EventEntity> items = new ArrayList<>();
-    private final HashMap<String, String> subjectNames = new HashMap<>();
-    private final HashMap<String, String> subjectIconKeys = new HashMap<>();
-    private final HashMap<String, String> subjectColorHex = new HashMap<>();
+    // Textos de esta pantalla; se formatean al armar las filas, no en el bind
+    private static final EventRow.Texts TEXTS = new EventRow.Texts() {
+        @Override public String cost(double cost) {
+            return "Costo: $" + String.format(Locale.getDefault(), "%.2f", cost);
+        }
+        @Override public String km(long km) {
+            return "Kilómetros: " + km + " km";
+        }
+    };
+
+    // Diff en segundo plano: submit() ya no redibuja toda la lista
+    private final AsyncListDiffer<EventRow> differ = new AsyncListDiffer<>(this, EventRow.CALLBACK);
+    private final StableIds stableIds = new StableIds();
+    private final SubjectBadges badges =
+            new SubjectBadges(this::adjustColorForTheme);
     private final OnEventClick listener;
     private String appType; // Para saber si es "cars" y mostrar kilómetros
+    private List<EventListItem> events = new ArrayList<>();
+    // Descarta lotes armados en segundo plano que ya quedaron viejos
+    private int submitGeneration = 0;
 
-    public EventAdapter(OnEventClick l) { this.listener = l; }
+    public EventAdapter(OnEventClick l) {
+        this.listener = l;
+        setHasStableIds(true);
+    }
 
     public void setAppType(String appType) {
+        if (Objects.equals(this.appType, appType)) return;
         this.appType = appType;
-        notifyDataSetChanged();
-    }
-
-    public void submit(List<EventEntity> data) {
-        items.clear();
-        if (data != null) items.addAll(data);
-        notifyDataSetChanged();
-    }
-
-    public void setSubjectsMap(java.util.Map<String, String> map) {
-        subjectNames.clear();
-        if (map != null) subjectNames.putAll(map);
-        notifyDataSetChanged();
+        // Los km se muestran o no según el appType: rearmar las filas
+        submit(events);
     }
 
-    public void setSubjectIconKeys(java.util.Map<String, String> map) {
-        subjectIconKeys.clear();
-        if (map != null) subjectIconKeys.putAll(map);
-        notifyDataSetChanged();
+    /** Arma la presentación de cada fila en segundo plano y la entrega al differ. */
+    public void submit(List<EventListItem> data) {
+        final List<EventListItem> copy = data != null ? new ArrayList<>(data) : new ArrayList<>();
+        events = copy;
+        final int generation = ++submitGeneration;
+        final boolean showKm = "cars".equals(appType);
+        TaskScheduler.get().db(() -> {
+            List<EventRow> rows = new EventRow.Builder("dd/MM HH:mm", TEXTS, showKm).buildAll(copy);
+            TaskScheduler.get().main(() -> {
+                if (generation == submitGeneration) differ.submitList(rows);
+            });
+        });
     }
 
-    public void setSubjectColorHex(java.util.Map<String, String> map) {
-        subjectColorHex.clear();
-        if (map != null) subjectColorHex.putAll(map);
-        notifyDataSetChanged();
+    /**
+     * Nombre, ícono y color de cada sujeto (Snapshot de SubjectMetaCache): un solo rebind
+     * parcial (payload) de las filas visibles y nada si es el mismo Snapshot.
+     */
+    public void setSubjectMeta(com.gastonlesbegueris.caretemplate.util.SubjectMetaCache.Snapshot meta) {
+        if (!badges.update(meta)) return;
+        notifyItemRangeChanged(0, getItemCount(), EventDiff.PAYLOAD_SUBJECT);
     }
 
     @NonNull @Override
     public VH onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View v = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.item_event, parent, false);
-        return new VH(v);
+        VH h = new VH(v);
+
+        // Listeners una sola vez por ViewHolder: leen el evento enlazado en h.bound
+        h.onChecked = (btn, checked) -> {
+            if (listener != null && h.bound != null) listener.onToggleRealized(h.bound, checked);
+        };
+        h.itemView.setOnClickListener(view -> {
+            if (listener != null && h.bound != null) listener.onEdit(h.bound);
+        });
+        h.btnEdit.setOnClickListener(view -> {
+            // Consumir el evento para evitar propagación
+            if (listener != null && h.bound != null) listener.onEdit(h.bound);
+        });
+        h.btnDelete.setOnClickListener(view -> {
+            // Consumir el evento para evitar propagación
+            if (listener != null && h.bound != null) listener.onDelete(h.bound);
+        });
+        // Prevenir que el click del botón se propague al itemView
+        View.OnTouchListener consumeTouch = (view, event) -> {
+            if (event.getAction() == android.view.MotionEvent.ACTION_UP) {
+                view.performClick();
+            }
+            // Consumir el evento para evitar propagación
+            return true;
+        };
+        h.btnEdit.setOnTouchListener(consumeTouch);
+        h.btnDelete.setOnTouchListener(consumeTouch);
+        return h;
     }
 
     @SuppressLint("SetTextI18n")
     @Override
     public void onBindViewHolder(@NonNull VH h, int pos) {
-        EventEntity e = items.get(pos);
-        String subjName = subjectNames.getOrDefault(e.subjectId, "—");
-        String iconKey = subjectIconKeys.getOrDefault(e.subjectId, null);
+        EventRow row = differ.getCurrentList().get(pos);
+        EventListItem e = row.event;
+        h.bound = e;
 
         h.tvTitle.setText(e.title);
-        h.tvSubjectName.setText(subjName);
-
-        // Set subject icon with color (same as SubjectAdapter)
-        int iconRes = getIconResForSubject(iconKey);
-        
-        // Color dinámico (tint) - ajustar según tema
-        String hex = subjectColorHex.getOrDefault(e.subjectId, "#03DAC5");
-        int color;
-        try {
-            color = Color.parseColor(hex);
-        } catch (Exception ex) {
-            color = Color.parseColor("#03DAC5");
-        }
-        
-        // Ajustar color según el tema (claro/oscuro)
-        color = adjustColorForTheme(h.ivSubjectIcon.getContext(), color);
-        
-        // Obtener el drawable del recurso, aplicar tint y establecerlo
-        android.graphics.drawable.Drawable drawable = ContextCompat.getDrawable(h.ivSubjectIcon.getContext(), iconRes);
-        if (drawable != null) {
-            drawable = drawable.mutate();
-            drawable.setTint(color);
-            h.ivSubjectIcon.setImageDrawable(drawable);
-        } else {
-            // Fallback si no se puede obtener el drawable
-            h.ivSubjectIcon.setImageResource(iconRes);
-            h.ivSubjectIcon.setColorFilter(color, PorterDuff.Mode.SRC_IN);
-        }
-        h.ivSubjectIcon.setVisibility(View.VISIBLE);
-
-        SimpleDateFormat sdf = new SimpleDateFormat("dd/MM HH:mm", Locale.getDefault());
-        h.tvWhen.setText(sdf.format(new Date(e.dueAt)));
+        bindSubject(h, e);
+        h.tvWhen.setText(row.when);
 
         // Mostrar costo si existe
-        if (e.cost != null) {
-            h.tvCost.setText("Costo: $" + String.format(Locale.getDefault(), "%.2f", e.cost));
+        if (row.cost != null) {
+            h.tvCost.setText(row.cost);
             h.tvCost.setVisibility(View.VISIBLE);
         } else {
             h.tvCost.setVisibility(View.GONE);
         }
 
         // Mostrar kilómetros si es un auto y tiene kilómetros guardados
-        if ("cars".equals(appType) && e.kilometersAtEvent != null) {
-            if (h.tvKilometers != null) {
-                h.tvKilometers.setText("Kilómetros: " + Math.round(e.kilometersAtEvent) + " km");
+        if (h.tvKilometers != null) {
+            if (row.km != null) {
+                h.tvKilometers.setText(row.km);
                 h.tvKilometers.setVisibility(View.VISIBLE);
-            }
-        } else {
-            if (h.tvKilometers != null) {
+            } else {
                 h.tvKilometers.setVisibility(View.GONE);
             }
         }
 
         h.cbDone.setOnCheckedChangeListener(null);
         h.cbDone.setChecked(e.realized == 1);
+        h.cbDone.setOnCheckedChangeListener(h.onChecked);
 
-        h.cbDone.setOnCheckedChangeListener((btn, checked) -> {
-            if (listener != null) listener.onToggleRealized(e, checked);
-        });
-
-        h.itemView.setOnClickListener(v -> {
-            if (listener != null) listener.onEdit(e);
-        });
-
-        h.btnEdit.setOnClickListener(v -> {
-            // Consumir el evento para evitar propagación
-            if (listener != null) {
-                listener.onEdit(e);
-            }
-        });
-        
-        // Prevenir que el click del botón se propague al itemView
-        h.btnEdit.setOnTouchListener((v, event) -> {
-            if (event.getAction() == android.view.MotionEvent.ACTION_UP) {
-                v.performClick();
-            }
-            // Consumir el evento para evitar propagación
-            return true;
-        });
+        // Borde según estado (vencido / hoy / futuro)
+        h.border.apply(h.itemView, row.border);
+    }
 
-        h.btnDelete.setOnClickListener(v -> {
-            // Consumir el evento para evitar propagación
-            if (listener != null) {
-                listener.onDelete(e);
-            }
-        });
-        
-        // Prevenir que el click del botón se propague al itemView
-        h.btnDelete.setOnTouchListener((v, event) -> {
-            if (event.getAction() == android.view.MotionEvent.ACTION_UP) {
-                v.performClick();
+    @Override
+    public void onBindViewHolder(@NonNull VH h, int pos, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(h, pos);
+            return;
+        }
+        for (Object p : payloads) {
+            if (p != EventDiff.PAYLOAD_SUBJECT) {
+                onBindViewHolder(h, pos);
+                return;
             }
-            // Consumir el evento para evitar propagación
-            return true;
-        });
-
-        // Set background color based on event status
-        setEventBackgroundColor(h.itemView, e);
+        }
+        // Solo cambió la metadata del sujeto: no tocar título, fecha, costo ni listeners
+        bindSubject(h, differ.getCurrentList().get(pos).event);
     }
 
-    /**
-     * Sets border color for event item:
-     * - Red border: defeated (past due and not realized)
-     * - Yellow border: due today (not realized)
-     * - Green border: future events (not realized)
-     * - Default: no border
-     */
-    private void setEventBackgroundColor(View itemView, EventEntity e) {
-        long now = System.currentTimeMillis();
-        boolean isDefeated = e.dueAt < now && e.realized == 0;
-        boolean isDueToday = isDueToday(e.dueAt, now) && e.realized == 0;
-        boolean isFuture = e.dueAt > now && e.realized == 0;
-
-        int borderColor;
-        int borderWidth;
-        if (isDefeated) {
-            // Red border for defeated events
-            borderColor = Color.parseColor("#F44336"); // Red
-            borderWidth = 4; // dp
-        } else if (isDueToday) {
-            // Yellow border for events due today
-            borderColor = Color.parseColor("#FFEB3B"); // Yellow
-            borderWidth = 4; // dp
-        } else if (isFuture) {
-            // Green border for future events
-            borderColor = Color.parseColor("#4CAF50"); // Green
-            borderWidth = 2; // dp (thinner for future events)
+    private void bindSubject(@NonNull VH h, EventListItem e) {
+        SubjectBadges.Badge b = badges.get(h.itemView.getContext(), e.subjectId);
+        h.tvSubjectName.setText(b.name);
+        if (b.icon != null) {
+            h.ivSubjectIcon.clearColorFilter();
+            h.ivSubjectIcon.setImageDrawable(b.icon);
         } else {
-            // No border
-            borderColor = Color.TRANSPARENT;
-            borderWidth = 0;
-        }
-
-        // Apply border to the CardView using a drawable
-        if (itemView instanceof androidx.cardview.widget.CardView) {
-            androidx.cardview.widget.CardView cardView = (androidx.cardview.widget.CardView) itemView;
-            float density = itemView.getContext().getResources().getDisplayMetrics().density;
-            int borderWidthPx = (int) (borderWidth * density);
-            
-            if (borderWidth > 0) {
-                // Create a drawable with border
-                android.graphics.drawable.GradientDrawable drawable = new android.graphics.drawable.GradientDrawable();
-                drawable.setShape(android.graphics.drawable.GradientDrawable.RECTANGLE);
-                drawable.setColor(Color.TRANSPARENT); // Transparent background
-                drawable.setStroke(borderWidthPx, borderColor);
-                drawable.setCornerRadius(8 * density); // Match CardView corner radius
-                
-                // Set the drawable as background
-                cardView.setBackground(drawable);
-            } else {
-                // Reset to default if no border
-                cardView.setBackground(null);
-            }
+            // Fallback si no se puede obtener el drawable
+            h.ivSubjectIcon.setImageResource(b.iconRes);
+            h.ivSubjectIcon.setColorFilter(b.color, PorterDuff.Mode.SRC_IN);
         }
+        h.ivSubjectIcon.setVisibility(View.VISIBLE);
     }
 
-    /**
-     * Checks if the event is due today (same calendar day)
-     */
-    private boolean isDueToday(long eventDueAt, long now) {
-        java.util.Calendar eventCal = java.util.Calendar.getInstance();
-        eventCal.setTimeInMillis(eventDueAt);
-        java.util.Calendar todayCal = java.util.Calendar.getInstance();
-        todayCal.setTimeInMillis(now);
+    @Override public int getItemCount() { return differ.getCurrentList().size(); }
 
-        return eventCal.get(java.util.Calendar.YEAR) == todayCal.get(java.util.Calendar.YEAR) &&
-               eventCal.get(java.util.Calendar.DAY_OF_YEAR) == todayCal.get(java.util.Calendar.DAY_OF_YEAR);
+    @Override
+    public long getItemId(int position) {
+        return stableIds.idFor(differ.getCurrentList().get(position).event.id);
     }
 
-    @Override public int getItemCount() { return items.size(); }
-
     /**
      * Ajusta el color del icono según el tema actual (claro/oscuro).
      * En modo oscuro, aclara los colores oscuros para mejor contraste.
@@ -299,39 +239,14 @@ public class EventAdapter extends RecyclerView.Adapter<EventAdapter.VH> {
         return color;
     }
 
-    private int getIconResForSubject(String key) {
-        if (key == null) return R.drawable.ic_line_user;
-        switch (key) {
-            // Pets
-            case "cat":   return R.drawable.ic_line_cat;
-            case "dog":   return R.drawable.ic_line_dog;
-            // Family
-            case "man":   return R.drawable.ic_line_man;
-            case "woman": return R.drawable.ic_line_woman;
-            // House
-            case "apartment": return R.drawable.ic_line_apartment;
-            case "house": return R.drawable.ic_line_house;
-            case "office": return R.drawable.ic_line_office;
-            case "local": return R.drawable.ic_line_local;
-            case "store": return R.drawable.ic_line_store;
-            // Vehicles
-            case "car":   return R.drawable.ic_line_car;
-            case "bike":  return R.drawable.ic_line_bike;
-            case "motorbike": return R.drawable.ic_line_motorbike;
-            case "truck": return R.drawable.ic_line_truck;
-            case "pickup": return R.drawable.ic_line_pickup;
-            case "suv":   return R.drawable.ic_line_suv;
-            // Default
-            case "user":  return R.drawable.ic_line_user;
-            default:      return R.drawable.ic_line_user;
-        }
-    }
-
     static class VH extends RecyclerView.ViewHolder {
         TextView tvTitle, tvSubjectName, tvWhen, tvCost, tvKilometers;
         ImageView ivSubjectIcon;
         CheckBox cbDone;
         MaterialButton btnDelete, btnEdit;
+        final EventRow.Border border = new EventRow.Border();
+        EventListItem bound;
+        CompoundButton.OnCheckedChangeListener onChecked;
         VH(@NonNull View v) {
             super(v);
             tvTitle = v.findViewById(R.id.tvTitle);
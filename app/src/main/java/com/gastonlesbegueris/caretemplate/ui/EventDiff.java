@@ -0,0 +1,51 @@
+package com.gastonlesbegueris.caretemplate.ui;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+
+import com.gastonlesbegueris.caretemplate.data.local.EventEntity;
+import com.gastonlesbegueris.caretemplate.data.model.EventListItem;
+
+import java.util.Objects;
+
+/** DiffUtil compartido por los adapters de eventos: identidad por id, contenido por los campos visibles. */
+final class EventDiff {
+
+    private EventDiff() {}
+
+    /** Payload de rebind parcial: solo cambió la metadata del sujeto (nombre/ícono/color). */
+    static final Object PAYLOAD_SUBJECT = new Object();
+
+    static final DiffUtil.ItemCallback<EventEntity> CALLBACK = new DiffUtil.ItemCallback<EventEntity>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull EventEntity a, @NonNull EventEntity b) {
+            return a.id.equals(b.id);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull EventEntity a, @NonNull EventEntity b) {
+            return sameContent(a, b);
+        }
+    };
+
+    static boolean sameContent(EventEntity a, EventEntity b) {
+        return a.dueAt == b.dueAt
+                && a.realized == b.realized
+                && a.updatedAt == b.updatedAt
+                && Objects.equals(a.title, b.title)
+                && Objects.equals(a.subjectId, b.subjectId)
+                && Objects.equals(a.cost, b.cost)
+                && Objects.equals(a.kilometersAtEvent, b.kilometersAtEvent);
+    }
+
+    /** Mismos campos que sameContent(EventEntity, EventEntity), sobre la proyección de lista. */
+    static boolean sameContent(EventListItem a, EventListItem b) {
+        return a.dueAt == b.dueAt
+                && a.realized == b.realized
+                && a.updatedAt == b.updatedAt
+                && Objects.equals(a.title, b.title)
+                && Objects.equals(a.subjectId, b.subjectId)
+                && Objects.equals(a.cost, b.cost)
+                && Objects.equals(a.kilometersAtEvent, b.kilometersAtEvent);
+    }
+}
@@ -0,0 +1,165 @@
+package com.gastonlesbegueris.caretemplate.ui;
+
+import android.graphics.Color;
+import android.graphics.drawable.GradientDrawable;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+
+import com.gastonlesbegueris.caretemplate.data.model.EventListItem;
+import com.gastonlesbegueris.caretemplate.util.DayBuckets;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Presentación precalculada de una fila de evento (EventAdapter / AgendaAdapter).
+ *
+ * Los textos (fecha, costo, km) y el estado del borde se arman una vez por emisión en un
+ * hilo de fondo; onBindViewHolder solo asigna, sin formatear ni parsear nada.
+ */
+final class EventRow {
+
+    static final int BORDER_NONE = 0;
+    static final int BORDER_FUTURE = 1;
+    static final int BORDER_TODAY = 2;
+    static final int BORDER_DEFEATED = 3;
+
+    final EventListItem event;
+    final String when;
+    final String cost;   // null = ocultar
+    final String km;     // null = ocultar
+    final int border;
+
+    private EventRow(EventListItem event, String when, String cost, String km, int border) {
+        this.event = event;
+        this.when = when;
+        this.cost = cost;
+        this.km = km;
+        this.border = border;
+    }
+
+    static boolean sameContent(EventRow a, EventRow b) {
+        return a.border == b.border
+                && EventDiff.sameContent(a.event, b.event)
+                && Objects.equals(a.when, b.when)
+                && Objects.equals(a.cost, b.cost)
+                && Objects.equals(a.km, b.km);
+    }
+
+    static final DiffUtil.ItemCallback<EventRow> CALLBACK = new DiffUtil.ItemCallback<EventRow>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull EventRow a, @NonNull EventRow b) {
+            return a.event.id.equals(b.event.id);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull EventRow a, @NonNull EventRow b) {
+            return sameContent(a, b);
+        }
+    };
+
+    // ----------------------
+    // Armado (hilo de fondo)
+    // ----------------------
+
+    /** Textos que cambian según la pantalla (cada adapter conserva los suyos). */
+    interface Texts {
+        String cost(double cost);
+        String km(long km);
+    }
+
+    /**
+     * Arma las filas de un lote. Crear uno por lote: SimpleDateFormat no es thread-safe.
+     * El estado del borde se calcula contra "now" del momento del armado.
+     */
+    static final class Builder {
+        private final SimpleDateFormat whenFmt;
+        private final Texts texts;
+        private final boolean showKm;
+        private final long now;
+        private final long todayStart;
+        private final long tomorrowStart;
+
+        Builder(String datePattern, Texts texts, boolean showKm) {
+            this(datePattern, texts, showKm, System.currentTimeMillis(), DayBuckets.current());
+        }
+
+        // now y zona fijos (tests)
+        Builder(String datePattern, Texts texts, boolean showKm, long now, DayBuckets buckets) {
+            this.whenFmt = new SimpleDateFormat(datePattern, Locale.getDefault());
+            this.texts = texts;
+            this.showKm = showKm;
+            this.now = now;
+            long today = buckets.dayKey(now);
+            this.todayStart = buckets.startOfDay(today);
+            this.tomorrowStart = buckets.startOfDay(today + 1);
+        }
+
+        EventRow build(EventListItem e) {
+            String cost = e.cost != null ? texts.cost(e.cost) : null;
+            String km = (showKm && e.kilometersAtEvent != null)
+                    ? texts.km(Math.round(e.kilometersAtEvent)) : null;
+            return new EventRow(e, whenFmt.format(new Date(e.dueAt)), cost, km, borderFor(e));
+        }
+
+        List<EventRow> buildAll(List<EventListItem> events) {
+            List<EventRow> out = new ArrayList<>(events != null ? events.size() : 0);
+            if (events != null) for (EventListItem e : events) out.add(build(e));
+            return out;
+        }
+
+        // Mismas reglas que antes: vencido > hoy > futuro; realizados sin borde
+        private int borderFor(EventListItem e) {
+            if (e.realized != 0) return BORDER_NONE;
+            if (e.dueAt < now) return BORDER_DEFEATED;
+            if (e.dueAt >= todayStart && e.dueAt < tomorrowStart) return BORDER_TODAY;
+            if (e.dueAt > now) return BORDER_FUTURE;
+            return BORDER_NONE;
+        }
+    }
+
+    // ----------------------
+    // Borde (uno por ViewHolder)
+    // ----------------------
+
+    /**
+     * Borde de la card según el estado del evento. Cada ViewHolder tiene el suyo y solo
+     * se toca cuando el estado cambia: no se crea un GradientDrawable por bind.
+     */
+    static final class Border {
+        private static final int RED = 0xFFF44336;
+        private static final int YELLOW = 0xFFFFEB3B;
+        private static final int GREEN = 0xFF4CAF50;
+
+        private int state = -1;
+        private GradientDrawable drawable;
+
+        void apply(View itemView, int newState) {
+            if (newState == state) return;
+            state = newState;
+            if (!(itemView instanceof androidx.cardview.widget.CardView)) return;
+            androidx.cardview.widget.CardView cardView = (androidx.cardview.widget.CardView) itemView;
+            if (newState == BORDER_NONE) {
+                cardView.setBackground(null);
+                return;
+            }
+            float density = itemView.getContext().getResources().getDisplayMetrics().density;
+            if (drawable == null) {
+                drawable = new GradientDrawable();
+                drawable.setShape(GradientDrawable.RECTANGLE);
+                drawable.setColor(Color.TRANSPARENT);
+                drawable.setCornerRadius(8 * density); // mismo radio que la CardView
+            }
+            int widthDp = newState == BORDER_FUTURE ? 2 : 4; // más fino para futuros
+            int color = newState == BORDER_DEFEATED ? RED : newState == BORDER_TODAY ? YELLOW : GREEN;
+            drawable.setStroke((int) (widthDp * density), color);
+            if (cardView.getBackground() != drawable) cardView.setBackground(drawable);
+        }
+    }
+}
@@ -14,18 +14,19 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.gastonlesbegueris.caretemplate.R;
 import com.gastonlesbegueris.caretemplate.data.local.AppDb;
-import com.gastonlesbegueris.caretemplate.data.local.EventDao;
+import com.gastonlesbegueris.caretemplate.data.local.ExpenseDao;
 import com.gastonlesbegueris.caretemplate.data.model.MonthTotal;
 import com.gastonlesbegueris.caretemplate.util.FabHelper;
 import com.google.android.material.appbar.MaterialToolbar;
 import com.gastonlesbegueris.caretemplate.util.AppodealHelper;
+import com.gastonlesbegueris.caretemplate.util.TaskScheduler;
 
 import java.util.List;
 import java.util.Locale;
 
 public class ExpensesActivity extends AppCompatActivity {
 
-    private EventDao eventDao;
+    private ExpenseDao expenseDao;
     private String appType;
     private com.gastonlesbegueris.caretemplate.util.MenuHelper menuHelper;
 
@@ -39,7 +40,7 @@ public class ExpensesActivity extends AppCompatActivity {
         setContentView(R.layout.activity_expenses);
 
         appType = getString(R.string.app_type);
-        eventDao = AppDb.get(this).eventDao();
+        expenseDao = AppDb.get(this).expenseDao();
         menuHelper = new com.gastonlesbegueris.caretemplate.util.MenuHelper(this, appType);
 
         MaterialToolbar toolbar = findViewById(R.id.toolbarExpenses);
@@ -103,8 +104,10 @@ public class ExpensesActivity extends AppCompatActivity {
 
 
     private void loadData() {
-        new Thread(() -> {
-            List<MonthTotal> rows = eventDao.listMonthTotals(appType);
+        TaskScheduler.get().db(ExpensesActivity.this, () -> {
+            // Leído del libro de gastos: solo los gastos, no la tabla events
+            AppDb.get(ExpensesActivity.this).syncDayTotalsZone(); // day de cada gasto en la zona actual
+            List<MonthTotal> rows = expenseDao.listMonthTotals(appType);
 
             double total = 0.0;
             if (rows != null) {
@@ -118,7 +121,7 @@ public class ExpensesActivity extends AppCompatActivity {
                 adapter.submit(rows);
                 tvTotal.setText(getString(R.string.expenses_total, finalTotal));
             });
-        }).start();
+        });
     }
 
     @Override
@@ -6,6 +6,8 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.gastonlesbegueris.caretemplate.R;
@@ -16,6 +18,7 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
 
 public class ExpensesAdapter extends RecyclerView.Adapter<ExpensesAdapter.VH> {
 
@@ -23,18 +26,34 @@ public class ExpensesAdapter extends RecyclerView.Adapter<ExpensesAdapter.VH> {
         void onMonthClick(MonthTotal month);
     }
 
-    private final List<MonthTotal> items = new ArrayList<>();
+    /** Un total por mes: identidad por monthStart. Compartido con ExpensesListAdapter. */
+    static final DiffUtil.ItemCallback<MonthTotal> DIFF = new DiffUtil.ItemCallback<MonthTotal>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull MonthTotal a, @NonNull MonthTotal b) {
+            return Objects.equals(a.monthStart, b.monthStart);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull MonthTotal a, @NonNull MonthTotal b) {
+            return Objects.equals(a.plannedSum, b.plannedSum)
+                    && Objects.equals(a.realizedSum, b.realizedSum);
+        }
+    };
+
+    private final AsyncListDiffer<MonthTotal> differ = new AsyncListDiffer<>(this, DIFF);
+    private final StableIds stableIds = new StableIds();
     private final SimpleDateFormat fmt = new SimpleDateFormat("MMMM yyyy", Locale.getDefault());
     private OnMonthClick listener;
 
+    public ExpensesAdapter() { setHasStableIds(true); }
+
     public void setOnMonthClickListener(OnMonthClick listener) {
         this.listener = listener;
     }
 
     public void submit(List<MonthTotal> data) {
-        items.clear();
-        if (data != null) items.addAll(data);
-        notifyDataSetChanged();
+        // AsyncListDiffer compara por identidad de lista: pasar siempre una copia
+        differ.submitList(data != null ? new ArrayList<>(data) : null);
     }
 
     @NonNull @Override
@@ -45,7 +64,7 @@ public class ExpensesAdapter extends RecyclerView.Adapter<ExpensesAdapter.VH> {
     }
 
     @Override public void onBindViewHolder(@NonNull VH h, int pos) {
-        MonthTotal m = items.get(pos);
+        MonthTotal m = differ.getCurrentList().get(pos);
         // monthStart is in format "YYYY-MM-01" (String from SQL query)
         try {
             SimpleDateFormat inputFmt = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
@@ -67,7 +86,9 @@ public class ExpensesAdapter extends RecyclerView.Adapter<ExpensesAdapter.VH> {
         });
     }
 
-    @Override public int getItemCount() { return items.size(); }
+    @Override public int getItemCount() { return differ.getCurrentList().size(); }
+
+    @Override public long getItemId(int pos) { return stableIds.idFor(String.valueOf(differ.getCurrentList().get(pos).monthStart)); }
 
     static class VH extends RecyclerView.ViewHolder {
         TextView tvMonth, tvPlanned, tvRealized;
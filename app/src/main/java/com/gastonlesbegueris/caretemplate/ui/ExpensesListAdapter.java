@@ -3,18 +3,21 @@ package com.gastonlesbegueris.caretemplate.ui;
 import android.view.*;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
 import androidx.recyclerview.widget.RecyclerView;
 import com.gastonlesbegueris.caretemplate.R;
 import com.gastonlesbegueris.caretemplate.data.model.MonthTotal;
 import java.util.*;
 
 public class ExpensesListAdapter extends RecyclerView.Adapter<ExpensesListAdapter.VH> {
-    private final List<MonthTotal> items = new ArrayList<>();
+    private final AsyncListDiffer<MonthTotal> differ = new AsyncListDiffer<>(this, ExpensesAdapter.DIFF);
+    private final StableIds stableIds = new StableIds();
+
+    public ExpensesListAdapter() { setHasStableIds(true); }
 
     public void submit(List<MonthTotal> data) {
-        items.clear();
-        if (data != null) items.addAll(data);
-        notifyDataSetChanged();
+        // AsyncListDiffer compara por identidad de lista: pasar siempre una copia
+        differ.submitList(data != null ? new ArrayList<>(data) : null);
     }
 
     @NonNull @Override public VH onCreateViewHolder(@NonNull ViewGroup p, int v) {
@@ -23,13 +26,15 @@ public class ExpensesListAdapter extends RecyclerView.Adapter<ExpensesListAdapte
     }
 
     @Override public void onBindViewHolder(@NonNull VH h, int pos) {
-        MonthTotal m = items.get(pos);
+        MonthTotal m = differ.getCurrentList().get(pos);
         h.tvMonth.setText(m.monthStart); // "YYYY-MM-01"
         h.tvPlanned.setText(String.format(Locale.getDefault(),"Planificado: $%.2f", m.plannedSum == null? 0.0 : m.plannedSum));
         h.tvRealized.setText(String.format(Locale.getDefault(),"Realizado: $%.2f", m.realizedSum == null? 0.0 : m.realizedSum));
     }
 
-    @Override public int getItemCount() { return items.size(); }
+    @Override public int getItemCount() { return differ.getCurrentList().size(); }
+
+    @Override public long getItemId(int pos) { return stableIds.idFor(String.valueOf(differ.getCurrentList().get(pos).monthStart)); }
 
     static class VH extends RecyclerView.ViewHolder {
         TextView tvMonth, tvPlanned, tvRealized;
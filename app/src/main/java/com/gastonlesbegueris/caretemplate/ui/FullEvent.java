@@ -0,0 +1,37 @@
+package com.gastonlesbegueris.caretemplate.ui;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.gastonlesbegueris.caretemplate.data.local.EventDao;
+import com.gastonlesbegueris.caretemplate.data.local.EventEntity;
+import com.gastonlesbegueris.caretemplate.data.model.EventListItem;
+import com.gastonlesbegueris.caretemplate.util.TaskScheduler;
+
+/**
+ * Fila completa de un item de lista, para editar/borrar/realizar. Las listas solo cargan la
+ * proyección (EventListItem): la fila entera se busca por id recién cuando se toca un item.
+ * Las ocurrencias virtuales no están en la base: se usa la que trae el item.
+ */
+final class FullEvent {
+
+    interface Then { void run(EventEntity e); }
+
+    private FullEvent() {}
+
+    /** Llama a then en el hilo principal con la fila completa (nada si ya no existe). */
+    static void load(LifecycleOwner owner, EventDao dao, EventListItem item, Then then) {
+        if (item.occurrence != null) {
+            then.run(item.occurrence);
+            return;
+        }
+        final String id = item.id;
+        TaskScheduler.get().db(owner, () -> {
+            EventEntity e = dao.findOne(id);
+            if (e == null) return;
+            TaskScheduler.get().main(() -> {
+                if (owner.getLifecycle().getCurrentState().isAtLeast(Lifecycle.State.CREATED)) then.run(e);
+            });
+        });
+    }
+}
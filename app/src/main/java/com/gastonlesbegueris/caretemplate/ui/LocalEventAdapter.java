@@ -7,6 +7,7 @@ import android.widget.TextView;
 import com.google.android.material.button.MaterialButton;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.gastonlesbegueris.caretemplate.R;
@@ -29,8 +30,9 @@ public class LocalEventAdapter extends RecyclerView.Adapter<LocalEventAdapter.VH
 
     private final OnEventClick listener;
 
-    // Lista de eventos que renderiza el adapter
-    private final List<EventEntity> items = new ArrayList<>();
+    // Lista de eventos que renderiza el adapter (diff en segundo plano)
+    private final AsyncListDiffer<EventEntity> differ = new AsyncListDiffer<>(this, EventDiff.CALLBACK);
+    private final StableIds stableIds = new StableIds();
 
     // Mapa sujetoId -> nombre sujeto, para prefijar "Sujeto — Evento"
     private Map<String, String> subjectsMap = Collections.emptyMap();
@@ -39,19 +41,22 @@ public class LocalEventAdapter extends RecyclerView.Adapter<LocalEventAdapter.VH
 
     public LocalEventAdapter(OnEventClick l) {
         this.listener = l;
+        setHasStableIds(true);
     }
 
     /** Cargar / refrescar eventos */
     public void submit(List<EventEntity> events) {
-        items.clear();
-        if (events != null) items.addAll(events);
-        notifyDataSetChanged();
+        // AsyncListDiffer compara por identidad de lista: pasar siempre una copia
+        differ.submitList(events != null ? new ArrayList<>(events) : null);
     }
 
     /** Setear el map de sujetos para el prefijo en título */
     public void setSubjectsMap(Map<String, String> map) {
-        this.subjectsMap = (map == null) ? Collections.emptyMap() : map;
-        notifyDataSetChanged();
+        Map<String, String> next = (map == null) ? Collections.emptyMap() : map;
+        if (next.equals(subjectsMap)) return;
+        this.subjectsMap = next;
+        // Solo cambia el prefijo del título: rebind parcial
+        notifyItemRangeChanged(0, getItemCount(), EventDiff.PAYLOAD_SUBJECT);
     }
 
     @NonNull @Override
@@ -63,15 +68,9 @@ public class LocalEventAdapter extends RecyclerView.Adapter<LocalEventAdapter.VH
 
     @Override
     public void onBindViewHolder(@NonNull VH h, int position) {
-        EventEntity e = items.get(position);
+        EventEntity e = differ.getCurrentList().get(position);
 
-        // Prefijo con nombre de sujeto
-        String subjectName = (subjectsMap == null) ? null : subjectsMap.get(e.subjectId);
-        String composedTitle = (subjectName == null || subjectName.isEmpty())
-                ? e.title
-                : subjectName + " — " + e.title;
-
-        h.tvTitle.setText(composedTitle);
+        bindTitle(h, e);
 
         // Fecha/hora
         h.tvWhen.setText(fmt.format(new Date(e.dueAt)));
@@ -105,9 +104,39 @@ public class LocalEventAdapter extends RecyclerView.Adapter<LocalEventAdapter.VH
         }
     }
 
+    @Override
+    public void onBindViewHolder(@NonNull VH h, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(h, position);
+            return;
+        }
+        for (Object p : payloads) {
+            if (p != EventDiff.PAYLOAD_SUBJECT) {
+                onBindViewHolder(h, position);
+                return;
+            }
+        }
+        bindTitle(h, differ.getCurrentList().get(position));
+    }
+
+    private void bindTitle(@NonNull VH h, EventEntity e) {
+        // Prefijo con nombre de sujeto
+        String subjectName = (subjectsMap == null) ? null : subjectsMap.get(e.subjectId);
+        String composedTitle = (subjectName == null || subjectName.isEmpty())
+                ? e.title
+                : subjectName + " — " + e.title;
+
+        h.tvTitle.setText(composedTitle);
+    }
+
     @Override
     public int getItemCount() {
-        return items.size();
+        return differ.getCurrentList().size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return stableIds.idFor(differ.getCurrentList().get(position).id);
     }
 
     static class VH extends RecyclerView.ViewHolder {
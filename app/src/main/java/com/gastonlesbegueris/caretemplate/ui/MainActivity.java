@@ -19,6 +19,9 @@ import com.gastonlesbegueris.caretemplate.R;
 import com.gastonlesbegueris.caretemplate.data.local.AppDb;
 import com.gastonlesbegueris.caretemplate.data.local.EventDao;
 import com.gastonlesbegueris.caretemplate.data.local.EventEntity;
+import com.gastonlesbegueris.caretemplate.data.model.EventListItem;
+import com.gastonlesbegueris.caretemplate.data.local.Recurrence;
+import com.gastonlesbegueris.caretemplate.data.local.RuleCache;
 import com.gastonlesbegueris.caretemplate.data.local.SubjectDao;
 import com.gastonlesbegueris.caretemplate.data.local.SubjectEntity;
 import com.gastonlesbegueris.caretemplate.data.sync.CloudSync;
@@ -29,6 +32,7 @@ import com.gastonlesbegueris.caretemplate.util.LimitGuard;
 import com.gastonlesbegueris.caretemplate.util.UserManager;
 import com.gastonlesbegueris.caretemplate.util.AppodealHelper;
 import com.gastonlesbegueris.caretemplate.util.AdMobHelper;
+import com.gastonlesbegueris.caretemplate.util.TaskScheduler;
 
 
 import java.util.List;
@@ -40,6 +44,14 @@ public class MainActivity extends AppCompatActivity {
     private EventDao eventDao;
     private SubjectDao subjectDao;
     private EventAdapter adapter;
+    // Streams de la pantalla (sobreviven a la rotación, ver CareViewModel)
+    private CareViewModel vm;
+    // Un solo observer por stream: observeLocal/observeSubjectsForAdapter se llaman después de cada sync
+    private Observer<List<EventListItem>> localObserver;
+    private Observer<com.gastonlesbegueris.caretemplate.util.SubjectMetaCache.Snapshot> subjectsObserver;
+    // Último pedido de la lista (sube en el hilo principal): un merge del pool que termina tarde
+    // no pisa la lista de un pedido más nuevo ni los resultados de una búsqueda
+    private volatile int listGeneration;
 
 
     //private LocalEventAdapter adapter;
@@ -67,6 +79,9 @@ public class MainActivity extends AppCompatActivity {
         db = AppDb.get(this);
         eventDao = db.eventDao();
         subjectDao = db.subjectDao();
+        vm = new androidx.lifecycle.ViewModelProvider(this).get(CareViewModel.class);
+        // Limpieza de events borrados ya sincronizados (una vez por día como mucho)
+        com.gastonlesbegueris.caretemplate.data.local.TombstoneCompactor.schedule(this);
 
         // 3) Toolbar
         MaterialToolbar toolbar = findViewById(R.id.toolbar);
@@ -101,7 +116,7 @@ public class MainActivity extends AppCompatActivity {
 
         // 7) Redirigir a Sujetos si es primera vez / no hay sujetos
         // También asignar uid a sujetos existentes que no lo tengan
-        new Thread(() -> {
+        TaskScheduler.get().db(() -> {
             // Asignar uid a sujetos existentes sin uid
             com.gastonlesbegueris.caretemplate.util.UserManager userManager = 
                 new com.gastonlesbegueris.caretemplate.util.UserManager(this);
@@ -120,14 +135,14 @@ public class MainActivity extends AppCompatActivity {
                     .getBoolean("first_run_done_" + appType, false);
 
             if (count == 0 && !firstRunDone) {
-                runOnUiThread(() -> {
+                TaskScheduler.get().ui(MainActivity.this, () -> {
                     getSharedPreferences("prefs", MODE_PRIVATE)
                             .edit().putBoolean("first_run_done_" + appType, true).apply();
                     startActivity(new android.content.Intent(this, SubjectListActivity.class));
                     Toast.makeText(this, getString(R.string.error_no_subjects), Toast.LENGTH_LONG).show();
                 });
             }
-        }).start();
+        });
 
         // 8) FAB speed-dial
         initFabSpeedDial();
@@ -280,9 +295,43 @@ public class MainActivity extends AppCompatActivity {
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.main_menu, menu);
         menuItemSync = menu.findItem(R.id.action_sync);
+        setupSearch(menu.findItem(R.id.action_search));
         return true;
     }
 
+    // Búsqueda full-text en la lista del Home (título, nota y sujeto; ver SearchIndex)
+    private void setupSearch(MenuItem item) {
+        if (item == null) return;
+        androidx.appcompat.widget.SearchView sv = (androidx.appcompat.widget.SearchView) item.getActionView();
+        if (sv == null) return;
+        sv.setQueryHint(getString(R.string.search_events_hint));
+        com.gastonlesbegueris.caretemplate.data.local.SearchIndex.Filter current = vm.search();
+        if (current != null) {
+            // Volver a mostrar la búsqueda que sobrevivió a la rotación
+            item.expandActionView();
+            sv.setQuery(current.text, false);
+        }
+        sv.setOnQueryTextListener(new androidx.appcompat.widget.SearchView.OnQueryTextListener() {
+            @Override public boolean onQueryTextSubmit(String query) {
+                sv.clearFocus();
+                return true;
+            }
+
+            @Override public boolean onQueryTextChange(String text) {
+                vm.setSearch(com.gastonlesbegueris.caretemplate.data.local.SearchIndex.Filter.of(text));
+                return true;
+            }
+        });
+        item.setOnActionExpandListener(new MenuItem.OnActionExpandListener() {
+            @Override public boolean onMenuItemActionExpand(MenuItem i) { return true; }
+
+            @Override public boolean onMenuItemActionCollapse(MenuItem i) {
+                vm.setSearch(null);
+                return true;
+            }
+        });
+    }
+
     @Override
     public boolean onPrepareOptionsMenu(Menu menu) {
         // Asegurar que los iconos estén asignados
@@ -725,6 +774,7 @@ public class MainActivity extends AppCompatActivity {
                             .putString("user_id", userId)
                             .putString("firebase_uid", userId)
                             .apply();
+                    com.gastonlesbegueris.caretemplate.data.sync.LiveSync.get(MainActivity.this).restart();
                     
                     Toast.makeText(MainActivity.this, getString(R.string.user_recovered), Toast.LENGTH_SHORT).show();
                     
@@ -761,6 +811,8 @@ public class MainActivity extends AppCompatActivity {
                 .putString("user_id", userId)
                 .putString("firebase_uid", userId)
                 .apply();
+        // Los listeners en vivo pasan al uid recuperado
+        com.gastonlesbegueris.caretemplate.data.sync.LiveSync.get(this).restart();
         
         // Intentar autenticarse con Firebase si el userId parece ser un Firebase UID
         // Si no, usar el userId directamente para sincronización
@@ -795,8 +847,7 @@ public class MainActivity extends AppCompatActivity {
     private void performSyncSilent(String uid, boolean silentErrors) {
         try {
             CloudSync sync = new CloudSync(
-                    eventDao,
-                    subjectDao,
+                    db,
                     FirebaseFirestore.getInstance(),
                     uid,
                     "CareTemplate",
@@ -808,6 +859,8 @@ public class MainActivity extends AppCompatActivity {
                     sync.pullSubjects(() -> {
                         sync.pull(
                                 () -> runOnUiThread(() -> {
+                                    // Lo bajado puede traer eventos con notificación: rearmar la ventana de alarmas
+                                    com.gastonlesbegueris.caretemplate.util.NotificationWindow.reconcileAsync(getApplicationContext());
                                     // Desactivar modo silencioso y cerrar diálogo
                                     isSilentRecoveryMode = false;
                                     closeRecoverDialog();
@@ -1159,8 +1212,7 @@ public class MainActivity extends AppCompatActivity {
     private void performSync(String uid) {
         try {
             CloudSync sync = new CloudSync(
-                    eventDao,
-                    subjectDao,
+                    db,
                     FirebaseFirestore.getInstance(),
                     uid,
                     "CareTemplate",   // nombre lógico de la app en Firestore
@@ -1173,6 +1225,8 @@ public class MainActivity extends AppCompatActivity {
                     sync.pullSubjects(() -> {
                         sync.pull(
                                 () -> runOnUiThread(() -> {
+                                    // Lo bajado puede traer eventos con notificación: rearmar la ventana de alarmas
+                                    com.gastonlesbegueris.caretemplate.util.NotificationWindow.reconcileAsync(getApplicationContext());
                                     stopSyncIconAnimation();
                                     refreshHeader();
                                     // Mostrar popup de sincronización realizada
@@ -1256,26 +1310,34 @@ public class MainActivity extends AppCompatActivity {
     // ===== Lista de eventos =====
     private void setupEventsList() {
         adapter = new EventAdapter(new EventAdapter.OnEventClick() {
-            @Override public void onEdit(com.gastonlesbegueris.caretemplate.data.local.EventEntity e) { showEditDialog(e); }
-            @Override public void onDelete(com.gastonlesbegueris.caretemplate.data.local.EventEntity e) { softDelete(e.id); }
-
-            @Override public void onToggleRealized(com.gastonlesbegueris.caretemplate.data.local.EventEntity e, boolean realized) {
-                if (realized) {
-                    if (e.cost == null) {
-                        // pedir costo si falta
-                        askCostThenRealize(e);
+            // La lista trae solo la proyección: la fila completa se carga al tocar (ver FullEvent)
+            @Override public void onEdit(EventListItem item) {
+                FullEvent.load(MainActivity.this, eventDao, item, e -> showEditDialog(e));
+            }
+            @Override public void onDelete(EventListItem item) {
+                FullEvent.load(MainActivity.this, eventDao, item, e -> softDelete(e));
+            }
+
+            @Override public void onToggleRealized(EventListItem item, boolean realized) {
+                FullEvent.load(MainActivity.this, eventDao, item, e -> {
+                    if (realized) {
+                        if (e.cost == null) {
+                            // pedir costo si falta
+                            askCostThenRealize(e);
+                        } else {
+                            setRealized(e, true, null);
+                        }
                     } else {
-                        setRealized(e.id, true, null);
+                        setRealized(e, false, null);
                     }
-                } else {
-                    setRealized(e.id, false, null);
-                }
+                });
             }
         });
         adapter.setAppType(appType); // Pasar el appType para mostrar kilómetros si es un auto
         RecyclerView rv = findViewById(R.id.rvEvents);
         rv.setLayoutManager(new androidx.recyclerview.widget.LinearLayoutManager(this));
         rv.setAdapter(adapter);
+        vm.window.attach(rv); // pedir la página siguiente al acercarse al final
     }
 
     private void askCostThenRealize(com.gastonlesbegueris.caretemplate.data.local.EventEntity e) {
@@ -1291,16 +1353,19 @@ public class MainActivity extends AppCompatActivity {
                     Double cost = null;
                     String t = et.getText().toString().trim();
                     try { if (!t.isEmpty()) cost = Double.parseDouble(t); } catch (Exception ignore) {}
-                    setRealized(e.id, true, cost);
+                    setRealized(e, true, cost);
                 })
-                .setNegativeButton(getString(R.string.button_mark_only), (d,w) -> setRealized(e.id, true, null))
+                .setNegativeButton(getString(R.string.button_mark_only), (d,w) -> setRealized(e, true, null))
                 .setNeutralButton(getString(R.string.button_cancel), null)
                 .show();
     }
 
-    private void setRealized(String id, boolean realized, Double costOrNull) {
-        new Thread(() -> {
+    private void setRealized(EventEntity e, boolean realized, Double costOrNull) {
+        final String id = e.id;
+        TaskScheduler.get().db(() -> {
             long now = System.currentTimeMillis();
+            // Una ocurrencia virtual se guarda como excepción antes de realizarla/costearla
+            Recurrence.materialize(eventDao, e);
             if (realized) {
                 // Cancelar todas las alarmas programadas para este evento
                 com.gastonlesbegueris.caretemplate.util.NotificationHelper.cancelNotification(this, id);
@@ -1309,45 +1374,60 @@ public class MainActivity extends AppCompatActivity {
             } else {
                 eventDao.markUnrealizedOne(id, now);
             }
-            runOnUiThread(() -> {
+            TaskScheduler.get().ui(MainActivity.this, () -> {
                 String msg = realized ? getString(R.string.marked_as_realized) : getString(R.string.marked_as_pending);
                 android.widget.Toast.makeText(this, msg, android.widget.Toast.LENGTH_SHORT).show();
             });
-        }).start();
+        });
     }
 
     private void observeLocal() {
-        eventDao.observeActive(appType).observe(this, new Observer<List<EventEntity>>() {
-            @Override public void onChanged(List<EventEntity> events) {
-                adapter.submit(events);
-                findViewById(R.id.emptyState)
-                        .setVisibility((events == null || events.isEmpty()) ? View.VISIBLE : View.GONE);
-                refreshHeader();
+        // Ya observado: Room re-emite solo cuando cambia la tabla, no hace falta otro observer
+        if (localObserver != null) return;
+        // Lista paginada: solo la ventana cargada (crece al scrollear), no todos los pendientes
+        localObserver = new Observer<List<EventListItem>>() {
+            @Override public void onChanged(List<EventListItem> events) {
+                vm.window.onLoaded(events);
+                final boolean hasMore = vm.window.hasMore();
+                final int generation = ++listGeneration;
+                if (vm.search() != null) {
+                    // Resultados de búsqueda: tal cual, sin ocurrencias virtuales
+                    List<EventListItem> found = events != null ? events : new java.util.ArrayList<>();
+                    adapter.submit(found);
+                    findViewById(R.id.emptyState).setVisibility(found.isEmpty() ? View.VISIBLE : View.GONE);
+                    return;
+                }
+                // Sumar las ocurrencias virtuales de las reglas de repetición (próximos 60 días)
+                TaskScheduler.get().db(MainActivity.this, () -> {
+                    if (generation != listGeneration) return; // ya hay un pedido más nuevo
+                    long now = System.currentTimeMillis();
+                    long to = now + Recurrence.DEFAULT_HORIZON_MS;
+                    if (hasMore && events != null && !events.isEmpty()) {
+                        // Hay más páginas: no adelantar ocurrencias más allá de la última fila cargada
+                        to = Math.min(to, events.get(events.size() - 1).dueAt);
+                    }
+                    List<EventListItem> merged = Recurrence.withOccurrenceItems(
+                            RuleCache.get(MainActivity.this).rules(appType), events, now, to);
+                    runOnUiThread(() -> {
+                        if (generation != listGeneration) return;
+                        adapter.submit(merged);
+                        findViewById(R.id.emptyState)
+                                .setVisibility(merged.isEmpty() ? View.VISIBLE : View.GONE);
+                        refreshHeader();
+                    });
+                });
             }
-        });
+        };
+        vm.activeEventsPage().observe(this, localObserver);
     }
 
     // 👇 Esto va afuera, no dentro de observeLocal()
     private void observeSubjectsForAdapter() {
-        subjectDao.observeActive(appType).observe(this, subjects -> {
-            java.util.Map<String, String> nameMap = new java.util.HashMap<>();
-            java.util.Map<String, String> iconKeyMap = new java.util.HashMap<>();
-            java.util.Map<String, String> colorHexMap = new java.util.HashMap<>();
-            if (subjects != null) {
-                for (com.gastonlesbegueris.caretemplate.data.local.SubjectEntity s : subjects) {
-                    nameMap.put(s.id, s.name);
-                    if (s.iconKey != null) {
-                        iconKeyMap.put(s.id, s.iconKey);
-                    }
-                    if (s.colorHex != null && !s.colorHex.isEmpty()) {
-                        colorHexMap.put(s.id, s.colorHex);
-                    }
-                }
-            }
-            adapter.setSubjectsMap(nameMap);
-            adapter.setSubjectIconKeys(iconKeyMap);
-            adapter.setSubjectColorHex(colorHexMap);
-        });
+        if (subjectsObserver != null) return;
+        // Snapshot compartido de la metadata de sujetos: solo emite cuando cambia la tabla
+        subjectsObserver = meta -> adapter.setSubjectMeta(meta);
+        com.gastonlesbegueris.caretemplate.util.SubjectMetaCache.get(this).live()
+                .observe(this, subjectsObserver);
     }
     // ===== Header simple en el Home =====
     private void refreshHeader() {
@@ -1570,7 +1650,7 @@ public class MainActivity extends AppCompatActivity {
         }
 
         // cargar sujetos en background
-        new Thread(() -> {
+        TaskScheduler.get().db(MainActivity.this, () -> {
             final java.util.List<SubjectEntity> loaded = subjectDao.listActiveNow(appType);
             runOnUiThread(() -> {
                 final java.util.List<SubjectEntity> subjects =
@@ -1730,7 +1810,7 @@ public class MainActivity extends AppCompatActivity {
                 
                 dialog.show();
             });
-        }).start();
+        });
     }
 
     private Double safeParseDouble(String s) {
@@ -1742,7 +1822,7 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void insertLocal(String title, String subjectId, Double cost, long dueAt, Double kilometersAtEvent) {
-        new Thread(() -> {
+        TaskScheduler.get().db(() -> {
             // Verificar si es el primer evento ANTES de insertar
             int eventCountBefore = eventDao.countEventsForApp(appType);
             boolean isFirstEvent = (eventCountBefore == 0);
@@ -1764,13 +1844,14 @@ public class MainActivity extends AppCompatActivity {
             e.updatedAt = System.currentTimeMillis();
             e.deleted = 0;
             e.dirty = 1;
+            e.dirtyFields = com.gastonlesbegueris.caretemplate.data.local.EventFields.ALL; // documento nuevo
             eventDao.insert(e);
             com.gastonlesbegueris.caretemplate.util.LimitGuard.onEventCreated(this, appType);
 
             // Verificar si se debe solicitar reseña (después del primer evento o gasto)
             boolean isExpense = (cost != null && cost > 0);
             String appName = getString(R.string.app_name);
-            runOnUiThread(() -> {
+            TaskScheduler.get().ui(MainActivity.this, () -> {
                 Toast.makeText(this, getString(R.string.event_saved), Toast.LENGTH_SHORT).show();
                 com.gastonlesbegueris.caretemplate.util.ReviewHelper.checkAndRequestReview(this, appName, isExpense);
                 
@@ -1779,7 +1860,7 @@ public class MainActivity extends AppCompatActivity {
                     com.gastonlesbegueris.caretemplate.util.FirstEventCelebrationHelper.checkAndShowCelebration(this, appType);
                 }
             });
-        }).start();
+        });
     }
     
     /**
@@ -1919,7 +2000,7 @@ public class MainActivity extends AppCompatActivity {
         if (ibDelete != null) {
             ibDelete.setOnClickListener(v -> {
                 dialog.dismiss();
-                softDelete(e.id);
+                softDelete(e);
             });
         }
         
@@ -1972,12 +2053,14 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void updateLocal(EventEntity e, String title, Double cost, long dueAt) {
-        new Thread(() -> {
+        TaskScheduler.get().db(() -> {
             // Determinar si es evento original o repetido
             EventEntity originalEvent = e;
             boolean isRepeatedEvent = e.originalEventId != null;
             
             if (isRepeatedEvent) {
+                // Si es una ocurrencia virtual, guardarla como excepción antes de editarla
+                Recurrence.materialize(eventDao, e);
                 // Si es un evento repetido, obtener el original
                 originalEvent = eventDao.findOriginalEvent(e.originalEventId);
                 if (originalEvent == null) {
@@ -1988,20 +2071,27 @@ public class MainActivity extends AppCompatActivity {
                     e.updatedAt = System.currentTimeMillis();
                     e.dirty = 1;
                     eventDao.update(e);
-                    runOnUiThread(() -> Toast.makeText(this, getString(R.string.event_updated), Toast.LENGTH_SHORT).show());
+                    TaskScheduler.get().ui(MainActivity.this, () -> Toast.makeText(this, getString(R.string.event_updated), Toast.LENGTH_SHORT).show());
                     return;
                 }
             }
             
             // Si el evento original tiene repetición, actualizar todas las repeticiones
             if (originalEvent.repeatType != null) {
-                // Actualizar el evento original
+                // Actualizar el evento original (regla). Si se editó una ocurrencia, su fecha y
+                // costo son solo de ella: no mover el ancla de la serie
+                EventEntity ruleBefore = Recurrence.copy(originalEvent);
                 originalEvent.title = title;
-                originalEvent.cost = cost;
-                originalEvent.dueAt = dueAt;
+                if (!isRepeatedEvent) {
+                    originalEvent.cost = cost;
+                    originalEvent.dueAt = dueAt;
+                }
                 originalEvent.updatedAt = System.currentTimeMillis();
                 originalEvent.dirty = 1;
                 eventDao.update(originalEvent);
+                // Si se movió el ancla, las excepciones futuras pasan a su nueva fecha (y una
+                // serie vieja con filas por repetición pasa a virtual)
+                Recurrence.scheduleChanged(eventDao, ruleBefore, originalEvent, originalEvent.updatedAt);
                 
                 // Obtener todas las repeticiones y actualizarlas
                 List<EventEntity> repeatedEvents = eventDao.findRepeatedEvents(originalEvent.id);
@@ -2012,11 +2102,17 @@ public class MainActivity extends AppCompatActivity {
                         // No actualizar dueAt de los repetidos (mantienen su fecha calculada)
                         repeated.updatedAt = System.currentTimeMillis();
                         repeated.dirty = 1;
-                        eventDao.update(repeated);
+                        if (isRepeatedEvent && repeated.id.equals(e.id)) {
+                            // La ocurrencia editada sí guarda su fecha y costo
+                            repeated.cost = cost;
+                            repeated.dueAt = dueAt;
+                        }
                     }
+                    // Toda la serie en una sola transacción
+                    eventDao.updateAll(repeatedEvents);
                 }
                 
-                runOnUiThread(() -> Toast.makeText(this, "Evento y todas sus repeticiones actualizadas ✅", Toast.LENGTH_SHORT).show());
+                TaskScheduler.get().ui(MainActivity.this, () -> Toast.makeText(this, "Evento y todas sus repeticiones actualizadas ✅", Toast.LENGTH_SHORT).show());
             } else {
                 // No tiene repetición, actualizar solo este evento
                 e.title = title;
@@ -2025,16 +2121,25 @@ public class MainActivity extends AppCompatActivity {
                 e.updatedAt = System.currentTimeMillis();
                 e.dirty = 1;
                 eventDao.update(e);
-                runOnUiThread(() -> Toast.makeText(this, getString(R.string.event_updated), Toast.LENGTH_SHORT).show());
+                TaskScheduler.get().ui(MainActivity.this, () -> Toast.makeText(this, getString(R.string.event_updated), Toast.LENGTH_SHORT).show());
             }
-        }).start();
+        });
     }
 
-    private void softDelete(String id) {
-        new Thread(() -> {
-            eventDao.softDelete(id, System.currentTimeMillis());
-            runOnUiThread(() -> Toast.makeText(this, getString(R.string.event_deleted), Toast.LENGTH_SHORT).show());
-        }).start();
+    private void softDelete(EventEntity e) {
+        final String id = e.id;
+        TaskScheduler.get().db(() -> {
+            long now = System.currentTimeMillis();
+            // Una ocurrencia virtual se guarda como excepción borrada (tombstone) para que no reaparezca
+            Recurrence.materialize(eventDao, e);
+            if (Recurrence.isRule(e)) {
+                // Borrar la regla borra la serie completa (sus excepciones guardadas y alarmas)
+                com.gastonlesbegueris.caretemplate.util.SeriesNotifications.cancelUpcoming(getApplicationContext(), e);
+                eventDao.softDeleteRepeatedEvents(id, now);
+            }
+            eventDao.softDelete(id, now);
+            TaskScheduler.get().ui(MainActivity.this, () -> Toast.makeText(this, getString(R.string.event_deleted), Toast.LENGTH_SHORT).show());
+        });
     }
 
     // ===== Picker de fecha/hora =====
@@ -2093,19 +2198,18 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void autoRealizePastEvents() {
-        new Thread(() -> {
+        TaskScheduler.get().db(() -> {
             long now = System.currentTimeMillis();
-            List<EventEntity> due = eventDao.listDueUnrealized(appType, now);
-            if (due == null || due.isEmpty()) return;
-
-            java.util.List<String> ids = new java.util.ArrayList<>();
-            for (EventEntity e : due) ids.add(e.id);
-
+            // Solo los ids: no hace falta traer las filas para marcarlas. Las ocurrencias
+            // virtuales que ya pasaron no se guardan: cuentan como realizadas desde la regla
+            List<String> ids = eventDao.listDueUnrealizedIds(appType, now);
+            if (ids == null || ids.isEmpty()) return;
             eventDao.markRealized(ids, now);
 
-            runOnUiThread(() ->
-                    Toast.makeText(this, "Marcados como realizados: " + ids.size(), Toast.LENGTH_SHORT).show());
-        }).start();
+            final int total = ids.size();
+            TaskScheduler.get().ui(MainActivity.this, () ->
+                    Toast.makeText(this, "Marcados como realizados: " + total, Toast.LENGTH_SHORT).show());
+        });
     }
 
     // ===== Crear sujeto rápido =====
@@ -2246,7 +2350,7 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void insertSubjectMinimal(String name, String iconKey, Long birthDate, Double currentMeasure) {
-        new Thread(() -> {
+        TaskScheduler.get().db(() -> {
             // Asegurar que el usuario esté identificado antes de crear el sujeto
             String userId = getCurrentUserId();
             
@@ -2270,11 +2374,11 @@ public class MainActivity extends AppCompatActivity {
                 // Ya está autenticado, crear directamente
                 createSubjectWithUserId(name, iconKey, birthDate, currentMeasure, userId);
             }
-        }).start();
+        });
     }
     
     private void createSubjectWithUserId(String name, String iconKey, Long birthDate, Double currentMeasure, String userId) {
-        new Thread(() -> {
+        TaskScheduler.get().db(() -> {
             SubjectEntity s = new SubjectEntity();
             // Generar ID único por usuario: {userId}_{timestamp}
             s.id = userId + "_" + System.currentTimeMillis();
@@ -2296,11 +2400,11 @@ public class MainActivity extends AppCompatActivity {
             getSharedPreferences("prefs", MODE_PRIVATE)
                     .edit().putString("currentSubjectId_" + appType, currentSubjectId).apply();
 
-            runOnUiThread(() -> {
+            TaskScheduler.get().ui(MainActivity.this, () -> {
                 Toast.makeText(this, "Sujeto creado ✅", Toast.LENGTH_SHORT).show();
                 refreshHeader();
             });
-        }).start();
+        });
     }
     
     private Long parseDateOrNull(String dateStr) {
@@ -2334,7 +2438,7 @@ public class MainActivity extends AppCompatActivity {
      */
     private void showSelectSubjectToShareDialog() {
         // Cargar sujetos en background
-        new Thread(() -> {
+        TaskScheduler.get().db(MainActivity.this, () -> {
             final java.util.List<SubjectEntity> subjects = subjectDao.listActiveNow(appType);
             runOnUiThread(() -> {
                 if (subjects == null || subjects.isEmpty()) {
@@ -2397,7 +2501,7 @@ public class MainActivity extends AppCompatActivity {
                     Toast.makeText(this, "Error al mostrar diálogo: " + e.getMessage(), Toast.LENGTH_SHORT).show();
                 }
             });
-        }).start();
+        });
     }
     
     /**
@@ -2569,7 +2673,7 @@ public class MainActivity extends AppCompatActivity {
                         Toast.makeText(MainActivity.this, getString(R.string.share_subject_imported), Toast.LENGTH_SHORT).show();
                         // Sincronizar automáticamente después de importar (en hilo de fondo)
                         Log.d("MainActivity", "Iniciando sincronización automática después de importar sujeto");
-                        new Thread(() -> {
+                        TaskScheduler.get().db(() -> {
                             // Obtener userId y sincronizar en hilo de fondo
                             String userId = getCurrentUserId();
                             if (userId != null) {
@@ -2578,7 +2682,7 @@ public class MainActivity extends AppCompatActivity {
                                 // Si no hay userId, intentar sincronizar de todas formas
                                 doSync();
                             }
-                        }).start();
+                        });
                         // Intersticial removido - refrescar lista directamente
                         runOnUiThread(() -> {
                             // Refrescar la lista de eventos
@@ -0,0 +1,72 @@
+package com.gastonlesbegueris.caretemplate.ui;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.List;
+
+/**
+ * Ventana paginada sobre una query LiveData con LIMIT (keyset por dueAt).
+ *
+ * Arranca con PAGE_SIZE filas y crece de a una página cuando el scroll se acerca al final,
+ * así el primer frame y la memoria no dependen de cuántos eventos haya en total.
+ * Room re-emite la ventana actual cuando cambia la tabla.
+ */
+final class PagedWindow {
+
+    interface PageQuery<T> { LiveData<List<T>> load(int limit); }
+
+    static final int PAGE_SIZE = 100;
+    // Pedir la página siguiente cuando faltan estas filas para llegar al final
+    private static final int PREFETCH_DISTANCE = 20;
+
+    private final MutableLiveData<Integer> limit = new MutableLiveData<>(PAGE_SIZE);
+    private int loadedCount = 0;
+
+    <T> LiveData<List<T>> source(PageQuery<T> query) {
+        return Transformations.switchMap(limit, query::load);
+    }
+
+    /** Registrar cuántas filas trajo la última emisión (para saber si hay más páginas). */
+    void onLoaded(List<?> rows) {
+        loadedCount = rows == null ? 0 : rows.size();
+    }
+
+    /** true si la última emisión llenó la ventana: puede haber más filas después. */
+    boolean hasMore() {
+        Integer l = limit.getValue();
+        return l != null && loadedCount >= l;
+    }
+
+    /** Vuelve a la primera página (p. ej. cambió el filtro de la query): re-emite source. */
+    void reset() {
+        loadedCount = 0;
+        limit.setValue(PAGE_SIZE);
+    }
+
+    void attach(@NonNull RecyclerView rv) {
+        rv.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy <= 0 || !hasMore()) return;
+                RecyclerView.LayoutManager lm = recyclerView.getLayoutManager();
+                if (!(lm instanceof LinearLayoutManager)) return;
+                int last = ((LinearLayoutManager) lm).findLastVisibleItemPosition();
+                int count = lm.getItemCount();
+                if (last >= count - PREFETCH_DISTANCE) loadMore();
+            }
+        });
+    }
+
+    private void loadMore() {
+        Integer l = limit.getValue();
+        int next = (l == null ? PAGE_SIZE : l) + PAGE_SIZE;
+        // Evitar pedir la misma página dos veces mientras llega la emisión anterior
+        loadedCount = 0;
+        limit.setValue(next);
+    }
+}
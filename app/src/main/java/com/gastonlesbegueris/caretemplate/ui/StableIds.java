@@ -0,0 +1,23 @@
+package com.gastonlesbegueris.caretemplate.ui;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Traduce claves String (EventEntity.id, SubjectEntity.id, ...) a ids long estables para
+ * RecyclerView.Adapter#getItemId. Se usa solo desde el main thread.
+ */
+final class StableIds {
+
+    private final Map<String, Long> ids = new HashMap<>();
+    private long next = 1;
+
+    long idFor(String key) {
+        Long id = ids.get(key);
+        if (id == null) {
+            id = next++;
+            ids.put(key, id);
+        }
+        return id;
+    }
+}
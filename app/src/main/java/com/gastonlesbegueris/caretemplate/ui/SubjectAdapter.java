@@ -10,6 +10,8 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.gastonlesbegueris.caretemplate.R;
@@ -17,6 +19,7 @@ import com.gastonlesbegueris.caretemplate.data.local.SubjectEntity;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 public class SubjectAdapter extends RecyclerView.Adapter<SubjectAdapter.VH> {
 
@@ -48,14 +51,38 @@ public class SubjectAdapter extends RecyclerView.Adapter<SubjectAdapter.VH> {
         }
     }
 
-    private final List<SubjectRow> rows = new ArrayList<>();
+    private static final DiffUtil.ItemCallback<SubjectRow> DIFF = new DiffUtil.ItemCallback<SubjectRow>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull SubjectRow a, @NonNull SubjectRow b) {
+            return a.subject.id.equals(b.subject.id);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull SubjectRow a, @NonNull SubjectRow b) {
+            return a.subject.updatedAt == b.subject.updatedAt
+                    && Objects.equals(a.subject.name, b.subject.name)
+                    && Objects.equals(a.subject.iconKey, b.subject.iconKey)
+                    && Objects.equals(a.subject.colorHex, b.subject.colorHex)
+                    && Objects.equals(a.info, b.info)
+                    && Objects.equals(a.extra, b.extra)
+                    && a.hasDefeatedEvent == b.hasDefeatedEvent
+                    && a.hasEventDueToday == b.hasEventDueToday;
+        }
+    };
+
+    // Diff en segundo plano: submitRows() ya no redibuja toda la lista
+    private final AsyncListDiffer<SubjectRow> differ = new AsyncListDiffer<>(this, DIFF);
+    private final StableIds stableIds = new StableIds();
     private final OnClick listener;
 
-    public SubjectAdapter(OnClick l){ this.listener = l; }
+    public SubjectAdapter(OnClick l){
+        this.listener = l;
+        setHasStableIds(true);
+    }
 
     public void submitRows(List<SubjectRow> data){
-        rows.clear(); if (data != null) rows.addAll(data);
-        notifyDataSetChanged();
+        // AsyncListDiffer compara por identidad de lista: pasar siempre una copia
+        differ.submitList(data != null ? new ArrayList<>(data) : null);
     }
 
     @NonNull @Override
@@ -66,20 +93,18 @@ public class SubjectAdapter extends RecyclerView.Adapter<SubjectAdapter.VH> {
 
     @Override
     public void onBindViewHolder(@NonNull VH h, int position) {
-        SubjectRow row = rows.get(position);
+        SubjectRow row = differ.getCurrentList().get(position);
         SubjectEntity s = row.subject;
 
-        // Ícono según key
-        int iconRes = getIconRes(s.iconKey);
-        
-        // Color dinámico (tint) - ajustar según tema
-        String hex = (s.colorHex == null || s.colorHex.isEmpty()) ? "#03DAC5" : s.colorHex;
-        int color;
-        try {
-            color = Color.parseColor(hex);
-        } catch (Exception e) {
-            color = Color.parseColor("#03DAC5");
-        }
+        // Ícono y color ya resueltos en SubjectMetaCache (si el Snapshot está al día con la fila)
+        com.gastonlesbegueris.caretemplate.util.SubjectMetaCache.Meta meta =
+                com.gastonlesbegueris.caretemplate.util.SubjectMetaCache.get(h.ivIcon.getContext())
+                        .snapshot().get(s.id);
+        boolean fresh = meta != null && meta.matches(s);
+        int iconRes = fresh ? meta.iconRes
+                : com.gastonlesbegueris.caretemplate.util.SubjectMetaCache.iconRes(s.iconKey);
+        int color = fresh ? meta.color
+                : com.gastonlesbegueris.caretemplate.util.SubjectMetaCache.parseColor(s.colorHex);
         
         // Ajustar color según el tema (claro/oscuro)
         color = adjustColorForTheme(h.ivIcon.getContext(), color);
@@ -129,7 +154,12 @@ public class SubjectAdapter extends RecyclerView.Adapter<SubjectAdapter.VH> {
         }
     }
 
-    @Override public int getItemCount() { return rows.size(); }
+    @Override public int getItemCount() { return differ.getCurrentList().size(); }
+
+    @Override
+    public long getItemId(int position) {
+        return stableIds.idFor(differ.getCurrentList().get(position).subject.id);
+    }
 
     /**
      * Sets border color for subject item:
@@ -212,34 +242,6 @@ public class SubjectAdapter extends RecyclerView.Adapter<SubjectAdapter.VH> {
         return color;
     }
 
-    private int getIconRes(String key) {
-        if (key == null) return R.drawable.ic_line_user;
-        switch (key) {
-            // Pets
-            case "cat":   return R.drawable.ic_line_cat;
-            case "dog":   return R.drawable.ic_line_dog;
-            // Family
-            case "man":   return R.drawable.ic_line_man;
-            case "woman": return R.drawable.ic_line_woman;
-            // House
-            case "apartment": return R.drawable.ic_line_apartment;
-            case "house": return R.drawable.ic_line_house;
-            case "office": return R.drawable.ic_line_office;
-            case "local": return R.drawable.ic_line_local;
-            case "store": return R.drawable.ic_line_store;
-            // Vehicles
-            case "car":   return R.drawable.ic_line_car;
-            case "bike":  return R.drawable.ic_line_bike;
-            case "motorbike": return R.drawable.ic_line_motorbike;
-            case "truck": return R.drawable.ic_line_truck;
-            case "pickup": return R.drawable.ic_line_pickup;
-            case "suv":   return R.drawable.ic_line_suv;
-            // Default
-            case "user":  return R.drawable.ic_line_user;
-            default:      return R.drawable.ic_line_user;
-        }
-    }
-
     static class VH extends RecyclerView.ViewHolder {
         ImageView ivIcon;
         TextView tvName, tvInfo, tvExtra;
@@ -0,0 +1,93 @@
+package com.gastonlesbegueris.caretemplate.ui;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.util.LruCache;
+
+import androidx.core.content.ContextCompat;
+
+import com.gastonlesbegueris.caretemplate.util.SubjectMetaCache;
+
+import java.util.HashMap;
+
+/**
+ * Nombre e ícono teñido de cada sujeto para las filas de eventos.
+ *
+ * Color e ícono vienen ya resueltos en el Snapshot de SubjectMetaCache; el badge de un
+ * sujeto se arma la primera vez que se lo pide (ajuste por tema y tinte del drawable) y
+ * después el bind solo hace un get del mapa. Los drawables
+ * teñidos se cachean por (ícono, color) y se comparten entre filas: son vectores estáticos
+ * del mismo tamaño en todas las filas, así que una sola instancia alcanza.
+ */
+final class SubjectBadges {
+
+    interface ColorAdjuster { int adjust(Context ctx, int color); }
+
+    static final class Badge {
+        final String name;
+        final int iconRes;
+        final int color;
+        final Drawable icon; // null si no se pudo cargar el recurso
+
+        Badge(String name, int iconRes, int color, Drawable icon) {
+            this.name = name;
+            this.iconRes = iconRes;
+            this.color = color;
+            this.icon = icon;
+        }
+    }
+
+    private static final String UNKNOWN_NAME = "—";
+
+    private SubjectMetaCache.Snapshot meta = SubjectMetaCache.Snapshot.EMPTY;
+    private final HashMap<String, Badge> badges = new HashMap<>();
+    private final LruCache<Long, Drawable> tinted = new LruCache<>(64);
+    private final ColorAdjuster adjuster;
+
+    SubjectBadges(ColorAdjuster adjuster) {
+        this.adjuster = adjuster;
+    }
+
+    /**
+     * Reemplaza la metadata. Devuelve false si es el mismo Snapshot (no hace falta rebind):
+     * SubjectMetaCache conserva la instancia mientras no cambie nada.
+     */
+    boolean update(SubjectMetaCache.Snapshot next) {
+        if (next == null) next = SubjectMetaCache.Snapshot.EMPTY;
+        if (next == meta) return false;
+        meta = next;
+        badges.clear();
+        return true;
+    }
+
+    /** Badge del sujeto (main thread). Solo arma y tiñe la primera vez. */
+    Badge get(Context ctx, String subjectId) {
+        Badge b = badges.get(subjectId);
+        if (b == null) {
+            b = build(ctx, subjectId);
+            badges.put(subjectId, b);
+        }
+        return b;
+    }
+
+    private Badge build(Context ctx, String subjectId) {
+        SubjectMetaCache.Meta m = meta.get(subjectId);
+        String name = m != null ? m.name : null;
+        int iconRes = m != null ? m.iconRes : SubjectMetaCache.iconRes(null);
+        int color = adjuster.adjust(ctx, m != null ? m.color : SubjectMetaCache.DEFAULT_COLOR);
+        return new Badge(name != null ? name : UNKNOWN_NAME, iconRes, color, tinted(ctx, iconRes, color));
+    }
+
+    private Drawable tinted(Context ctx, int iconRes, int color) {
+        long key = ((long) iconRes << 32) | (color & 0xFFFFFFFFL);
+        Drawable d = tinted.get(key);
+        if (d == null) {
+            Drawable src = ContextCompat.getDrawable(ctx, iconRes);
+            if (src == null) return null;
+            d = src.mutate();
+            d.setTint(color);
+            tinted.put(key, d);
+        }
+        return d;
+    }
+}
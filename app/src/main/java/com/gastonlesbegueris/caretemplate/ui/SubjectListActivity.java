@@ -30,6 +30,7 @@ import com.gastonlesbegueris.caretemplate.data.sync.CloudSync;
 import com.google.android.material.appbar.MaterialToolbar;
 import com.gastonlesbegueris.caretemplate.util.AppodealHelper;
 import com.gastonlesbegueris.caretemplate.util.AdMobHelper;
+import com.gastonlesbegueris.caretemplate.util.TaskScheduler;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.FirebaseFirestore;
 import android.util.Log;
@@ -46,6 +47,10 @@ public class SubjectListActivity extends AppCompatActivity {
     private EventDao eventDao;
     private SubjectAdapter adapter;
     private String appType;
+    // Streams de la pantalla (sobreviven a la rotación, ver CareViewModel)
+    private CareViewModel vm;
+    // Último pedido de filas de sujetos (ver submitSubjectRows)
+    private volatile int rowsGeneration;
     
     // Appodeal handles interstitial and rewarded ads automatically
     private Runnable syncCallback = null; // Callback para ejecutar después del anuncio
@@ -66,6 +71,7 @@ public class SubjectListActivity extends AppCompatActivity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_subjects);
+
         
         // Solicitar permiso de notificaciones para Android 13+ (API 33+)
         requestNotificationPermission();
@@ -93,6 +99,7 @@ public class SubjectListActivity extends AppCompatActivity {
 
         db  = AppDb.get(this);
         dao = db.subjectDao();
+        vm = new androidx.lifecycle.ViewModelProvider(this).get(CareViewModel.class);
         eventDao = db.eventDao();
         
         // Verificar si se debe abrir el diálogo de código de recuperación
@@ -167,8 +174,8 @@ public class SubjectListActivity extends AppCompatActivity {
             com.gastonlesbegueris.caretemplate.util.TutorialHelper.checkAndShowTutorial(this, appType);
         }, 2000); // Esperar 2 segundos para que la UI y la base de datos estén completamente listas
 
-        // observar lista de sujetos
-        dao.observeActive(appType).observe(this, (List<SubjectEntity> list) -> {
+        // observar lista de sujetos (un solo observer; refreshSubjectsList reusa el último valor)
+        vm.activeSubjects().observe(this, (List<SubjectEntity> list) -> {
             // Verificar si se debe mostrar el tutorial cuando la lista está vacía
             if (list == null || list.isEmpty()) {
                 // Esperar un poco para asegurar que la base de datos esté actualizada
@@ -176,73 +183,7 @@ public class SubjectListActivity extends AppCompatActivity {
                     com.gastonlesbegueris.caretemplate.util.TutorialHelper.checkAndShowTutorial(this, appType);
                 }, 500);
             }
-            new Thread(() -> {
-                // Obtener todos los próximos eventos de una vez (optimización para evitar múltiples consultas)
-                long now = System.currentTimeMillis();
-                EventDao eventDao = db.eventDao();
-                java.util.List<EventEntity> nextEvents = eventDao.nextEventsForAllSubjects(appType, now);
-                
-                // Crear mapa de subjectId -> próximo evento para acceso rápido
-                java.util.Map<String, EventEntity> nextEventMap = new java.util.HashMap<>();
-                if (nextEvents != null) {
-                    for (EventEntity event : nextEvents) {
-                        if (event.subjectId != null && !nextEventMap.containsKey(event.subjectId)) {
-                            nextEventMap.put(event.subjectId, event);
-                        }
-                    }
-                }
-                
-                // Obtener todos los eventos pendientes (no realizados) para verificar vencidos y de hoy
-                java.util.List<EventEntity> allPendingEvents = new java.util.ArrayList<>();
-                for (SubjectEntity subj : list) {
-                    java.util.List<EventEntity> subjectEvents = eventDao.listAllForSubject(appType, subj.id);
-                    if (subjectEvents != null) {
-                        for (EventEntity event : subjectEvents) {
-                            if (event.realized == 0 && event.deleted == 0) {
-                                allPendingEvents.add(event);
-                            }
-                        }
-                    }
-                }
-                
-                // Crear mapas para verificar estado de eventos por sujeto
-                java.util.Map<String, Boolean> hasDefeatedEventMap = new java.util.HashMap<>();
-                java.util.Map<String, Boolean> hasEventDueTodayMap = new java.util.HashMap<>();
-                
-                java.util.Calendar todayCal = java.util.Calendar.getInstance();
-                todayCal.setTimeInMillis(now);
-                int todayYear = todayCal.get(java.util.Calendar.YEAR);
-                int todayDayOfYear = todayCal.get(java.util.Calendar.DAY_OF_YEAR);
-                
-                for (EventEntity event : allPendingEvents) {
-                    if (event.subjectId == null) continue;
-                    
-                    // Check if defeated (past due)
-                    if (event.dueAt < now) {
-                        hasDefeatedEventMap.put(event.subjectId, true);
-                    }
-                    
-                    // Check if due today
-                    java.util.Calendar eventCal = java.util.Calendar.getInstance();
-                    eventCal.setTimeInMillis(event.dueAt);
-                    if (eventCal.get(java.util.Calendar.YEAR) == todayYear &&
-                        eventCal.get(java.util.Calendar.DAY_OF_YEAR) == todayDayOfYear) {
-                        hasEventDueTodayMap.put(event.subjectId, true);
-                    }
-                }
-                
-                java.util.List<SubjectAdapter.SubjectRow> rows = new java.util.ArrayList<>();
-                for (SubjectEntity subj : list) {
-                    String info  = buildInfoLine(subj);
-                    String extra = buildExtraLine(subj, nextEventMap.get(subj.id));
-                    boolean hasDefeated = hasDefeatedEventMap.getOrDefault(subj.id, false);
-                    boolean hasDueToday = hasEventDueTodayMap.getOrDefault(subj.id, false);
-                    rows.add(new SubjectAdapter.SubjectRow(subj, info, extra, hasDefeated, hasDueToday));
-                }
-                runOnUiThread(() -> {
-                    adapter.submitRows(rows);
-                });
-            }).start();
+            submitSubjectRows(list);
         });
     }
 
@@ -540,7 +481,7 @@ public class SubjectListActivity extends AppCompatActivity {
             @Override
             public void onUserId(String userId) {
                 // Ejecutar inserción en un hilo separado
-                new Thread(() -> {
+                TaskScheduler.get().db(() -> {
                     // Verificar si es el primer sujeto antes de insertar
                     int currentCount = dao.countForApp(appType);
                     boolean isFirstSubject = (currentCount == 0);
@@ -566,7 +507,7 @@ public class SubjectListActivity extends AppCompatActivity {
 
                     dao.insert(subj);
                     final boolean firstSubject = isFirstSubject;
-                    runOnUiThread(() -> {
+                    TaskScheduler.get().ui(SubjectListActivity.this, () -> {
                         Toast.makeText(SubjectListActivity.this, getString(R.string.subject_created), Toast.LENGTH_SHORT).show();
                         // Marcar tutorial como completado cuando se crea el primer sujeto
                         com.gastonlesbegueris.caretemplate.util.TutorialHelper.markTutorialCompleted(SubjectListActivity.this);
@@ -580,7 +521,7 @@ public class SubjectListActivity extends AppCompatActivity {
                             );
                         }
                     });
-                }).start();
+                });
             }
             
             @Override
@@ -738,11 +679,11 @@ public class SubjectListActivity extends AppCompatActivity {
                 dialog.dismiss();
                 
                 // actualizar en background
-                new Thread(() -> {
+                TaskScheduler.get().db(() -> {
                     // Obtener una copia fresca del sujeto desde la base de datos
                     SubjectEntity subjectToUpdate = AppDb.get(this).subjectDao().findOne(subjectId);
                     if (subjectToUpdate == null) {
-                        runOnUiThread(() -> {
+                        TaskScheduler.get().ui(SubjectListActivity.this, () -> {
                             android.widget.Toast.makeText(this, "Error: No se pudo encontrar el sujeto", android.widget.Toast.LENGTH_SHORT).show();
                         });
                         return;
@@ -762,10 +703,10 @@ public class SubjectListActivity extends AppCompatActivity {
                     // Guardar en base de datos
                     AppDb.get(this).subjectDao().update(subjectToUpdate);
 
-                    runOnUiThread(() -> {
+                    TaskScheduler.get().ui(SubjectListActivity.this, () -> {
                         android.widget.Toast.makeText(this, getString(R.string.subject_updated), android.widget.Toast.LENGTH_SHORT).show();
                     });
-                }).start();
+                });
             });
         }
         
@@ -779,7 +720,7 @@ public class SubjectListActivity extends AppCompatActivity {
     
 
     private void updateSubjectFull(SubjectEntity subj, String name, Long birthMillis, Double measure, String notes) {
-        new Thread(() -> {
+        TaskScheduler.get().db(() -> {
             subj.name = name;
             subj.birthDate = ("cars".equals(appType) || "house".equals(appType)) ? null : birthMillis;
             subj.currentMeasure = measure;
@@ -787,13 +728,13 @@ public class SubjectListActivity extends AppCompatActivity {
             subj.updatedAt = System.currentTimeMillis();
             subj.dirty = 1;
             dao.update(subj);
-            runOnUiThread(() -> Toast.makeText(this, getString(R.string.subject_updated_simple), Toast.LENGTH_SHORT).show());
-        }).start();
+            TaskScheduler.get().ui(SubjectListActivity.this, () -> Toast.makeText(this, getString(R.string.subject_updated_simple), Toast.LENGTH_SHORT).show());
+        });
     }
 
     private void softDelete(String id) {
         // Obtener el nombre del sujeto para el mensaje de confirmación
-        new Thread(() -> {
+        TaskScheduler.get().db(SubjectListActivity.this, () -> {
             SubjectEntity subject = dao.findOne(id);
             String subjectName = subject != null && subject.name != null ? subject.name : "este sujeto";
             
@@ -804,19 +745,19 @@ public class SubjectListActivity extends AppCompatActivity {
                         .setMessage(getString(R.string.delete_subject_confirmation_full, subjectName))
                         .setPositiveButton(getString(R.string.button_delete), (d, w) -> {
                             // Confirmar eliminación
-                            new Thread(() -> {
+                            TaskScheduler.get().db(() -> {
                                 long now = System.currentTimeMillis();
                                 // Eliminar el sujeto
                                 dao.softDelete(id, now);
                                 // Eliminar todos los eventos relacionados con este sujeto
                                 eventDao.softDeleteEventsBySubjectId(id, now);
-                                runOnUiThread(() -> Toast.makeText(this, getString(R.string.subject_deleted), Toast.LENGTH_SHORT).show());
-                            }).start();
+                                TaskScheduler.get().ui(SubjectListActivity.this, () -> Toast.makeText(this, getString(R.string.subject_deleted), Toast.LENGTH_SHORT).show());
+                            });
                         })
                         .setNegativeButton(getString(R.string.button_cancel), null)
                         .show();
             });
-        }).start();
+        });
     }
 
     // ---------- Helpers visuales ----------
@@ -902,11 +843,16 @@ public class SubjectListActivity extends AppCompatActivity {
 
     private String buildExtraLine(SubjectEntity subj, EventEntity next) {
         if (next == null) return getString(R.string.next_event_none);
-        String when = new java.text.SimpleDateFormat(getString(R.string.event_date_format)).format(new java.util.Date(next.dueAt));
-        if (next.title == null || next.title.isEmpty()) {
+        return buildExtraLine(next.dueAt, next.title);
+    }
+
+    // Variante a partir de la fila agregada (listSubjectStatuses), sin cargar el EventEntity
+    private String buildExtraLine(long dueAt, String title) {
+        String when = new java.text.SimpleDateFormat(getString(R.string.event_date_format)).format(new java.util.Date(dueAt));
+        if (title == null || title.isEmpty()) {
             return getString(R.string.next_event_label, when);
         } else {
-            return getString(R.string.next_event_with_title, when, next.title);
+            return getString(R.string.next_event_with_title, when, title);
         }
     }
     
@@ -1033,75 +979,84 @@ public class SubjectListActivity extends AppCompatActivity {
     
     // ===== Helper Methods =====
     
+    // Arma las filas de la lista en O(sujetos): una sola query agregada trae, por sujeto,
+    // el próximo vencimiento y cuántos pendientes están vencidos o vencen hoy.
+    // Se llama desde un hilo de fondo.
+    private java.util.List<SubjectAdapter.SubjectRow> buildSubjectRows(List<SubjectEntity> list) {
+        long now = System.currentTimeMillis();
+        com.gastonlesbegueris.caretemplate.util.DayBuckets buckets =
+                com.gastonlesbegueris.caretemplate.util.DayBuckets.current();
+        long today = buckets.dayKey(now);
+        long dayStart = buckets.startOfDay(today);
+        long dayEnd = buckets.startOfDay(today + 1);
+
+        java.util.List<com.gastonlesbegueris.caretemplate.data.model.SubjectEventStatus> statuses =
+                db.eventDao().listSubjectStatuses(appType, now, dayStart, dayEnd);
+        java.util.Map<String, com.gastonlesbegueris.caretemplate.data.model.SubjectEventStatus> statusMap =
+                new java.util.HashMap<>();
+        if (statuses != null) {
+            for (com.gastonlesbegueris.caretemplate.data.model.SubjectEventStatus st : statuses) {
+                statusMap.put(st.subjectId, st);
+            }
+        }
+
+        // Las ocurrencias virtuales de las reglas de repetición no están en la tabla:
+        // tomar la próxima de cada regla y ver si adelanta el próximo vencimiento del sujeto
+        com.gastonlesbegueris.caretemplate.data.local.Recurrence.Rules rules =
+                com.gastonlesbegueris.caretemplate.data.local.Recurrence.loadRules(db.eventDao(), appType);
+        for (EventEntity rule : rules.rules) {
+            if (rule.subjectId == null) continue;
+            EventEntity next = rules.firstAtOrAfter(rule, now,
+                    com.gastonlesbegueris.caretemplate.data.local.Recurrence.DEFAULT_HORIZON_MS);
+            if (next == null) continue;
+            com.gastonlesbegueris.caretemplate.data.model.SubjectEventStatus st = statusMap.get(rule.subjectId);
+            if (st == null) {
+                st = new com.gastonlesbegueris.caretemplate.data.model.SubjectEventStatus();
+                st.subjectId = rule.subjectId;
+                statusMap.put(rule.subjectId, st);
+            }
+            if (st.nextDueAt == null || next.dueAt < st.nextDueAt) {
+                st.nextDueAt = next.dueAt;
+                st.nextTitle = next.title;
+            }
+            if (next.dueAt >= dayStart && next.dueAt < dayEnd) st.dueTodayCount++;
+        }
+
+        java.util.List<SubjectAdapter.SubjectRow> rows = new java.util.ArrayList<>();
+        if (list == null) return rows;
+        for (SubjectEntity subj : list) {
+            com.gastonlesbegueris.caretemplate.data.model.SubjectEventStatus st = statusMap.get(subj.id);
+            String info  = buildInfoLine(subj);
+            String extra = (st == null || st.nextDueAt == null)
+                    ? buildExtraLine(subj, (EventEntity) null)
+                    : buildExtraLine(st.nextDueAt, st.nextTitle);
+            boolean hasDefeated = st != null && st.overdueCount > 0;
+            boolean hasDueToday = st != null && st.dueTodayCount > 0;
+            rows.add(new SubjectAdapter.SubjectRow(subj, info, extra, hasDefeated, hasDueToday));
+        }
+        return rows;
+    }
+
+    /**
+     * Recalcula las filas con la lista ya observada (los badges dependen de events, que no
+     * re-emiten el stream de subjects). No registra otro observer.
+     */
     private void refreshSubjectsList() {
-        dao.observeActive(appType).observe(this, (List<SubjectEntity> list) -> {
-            new Thread(() -> {
-                // Obtener todos los próximos eventos de una vez (optimización para evitar múltiples consultas)
-                long now = System.currentTimeMillis();
-                EventDao eventDao = db.eventDao();
-                java.util.List<EventEntity> nextEvents = eventDao.nextEventsForAllSubjects(appType, now);
-                
-                // Crear mapa de subjectId -> próximo evento para acceso rápido
-                java.util.Map<String, EventEntity> nextEventMap = new java.util.HashMap<>();
-                if (nextEvents != null) {
-                    for (EventEntity event : nextEvents) {
-                        if (event.subjectId != null && !nextEventMap.containsKey(event.subjectId)) {
-                            nextEventMap.put(event.subjectId, event);
-                        }
-                    }
-                }
-                
-                // Obtener todos los eventos pendientes para verificar vencidos y de hoy
-                java.util.List<EventEntity> allPendingEvents2 = new java.util.ArrayList<>();
-                for (SubjectEntity subj : list) {
-                    java.util.List<EventEntity> subjectEvents = eventDao.listAllForSubject(appType, subj.id);
-                    if (subjectEvents != null) {
-                        for (EventEntity event : subjectEvents) {
-                            if (event.realized == 0 && event.deleted == 0) {
-                                allPendingEvents2.add(event);
-                            }
-                        }
-                    }
-                }
-                
-                // Crear mapas para verificar estado de eventos por sujeto
-                java.util.Map<String, Boolean> hasDefeatedEventMap2 = new java.util.HashMap<>();
-                java.util.Map<String, Boolean> hasEventDueTodayMap2 = new java.util.HashMap<>();
-                
-                java.util.Calendar todayCal2 = java.util.Calendar.getInstance();
-                todayCal2.setTimeInMillis(now);
-                int todayYear2 = todayCal2.get(java.util.Calendar.YEAR);
-                int todayDayOfYear2 = todayCal2.get(java.util.Calendar.DAY_OF_YEAR);
-                
-                for (EventEntity event : allPendingEvents2) {
-                    if (event.subjectId == null) continue;
-                    
-                    // Check if defeated (past due)
-                    if (event.dueAt < now) {
-                        hasDefeatedEventMap2.put(event.subjectId, true);
-                    }
-                    
-                    // Check if due today
-                    java.util.Calendar eventCal = java.util.Calendar.getInstance();
-                    eventCal.setTimeInMillis(event.dueAt);
-                    if (eventCal.get(java.util.Calendar.YEAR) == todayYear2 &&
-                        eventCal.get(java.util.Calendar.DAY_OF_YEAR) == todayDayOfYear2) {
-                        hasEventDueTodayMap2.put(event.subjectId, true);
-                    }
-                }
-                
-                java.util.List<SubjectAdapter.SubjectRow> rows = new java.util.ArrayList<>();
-                for (SubjectEntity subj : list) {
-                    String info  = buildInfoLine(subj);
-                    String extra = buildExtraLine(subj, nextEventMap.get(subj.id));
-                    boolean hasDefeated = hasDefeatedEventMap2.getOrDefault(subj.id, false);
-                    boolean hasDueToday = hasEventDueTodayMap2.getOrDefault(subj.id, false);
-                    rows.add(new SubjectAdapter.SubjectRow(subj, info, extra, hasDefeated, hasDueToday));
-                }
-                runOnUiThread(() -> {
-                    adapter.submitRows(rows);
-                });
-            }).start();
+        List<SubjectEntity> list = vm.activeSubjects().getValue();
+        if (list != null) submitSubjectRows(list);
+    }
+
+    // Arma las filas en el pool. Solo publica el último pedido (el contador sube en el hilo
+    // principal): dos refrescos seguidos pueden terminar al revés y los badges viejos no
+    // tienen que pisar a los nuevos
+    private void submitSubjectRows(List<SubjectEntity> list) {
+        final int generation = ++rowsGeneration;
+        TaskScheduler.get().db(SubjectListActivity.this, () -> {
+            if (generation != rowsGeneration) return; // ya hay un pedido más nuevo
+            java.util.List<SubjectAdapter.SubjectRow> rows = buildSubjectRows(list);
+            runOnUiThread(() -> {
+                if (generation == rowsGeneration) adapter.submitRows(rows);
+            });
         });
     }
     
@@ -1565,18 +1520,17 @@ public class SubjectListActivity extends AppCompatActivity {
         Log.d("SubjectListActivity", "performSyncSilent: uid=" + uid + ", appType=" + appType + ", silentErrors=" + silentErrors);
         try {
             // Primero, asignar uid a todos los sujetos existentes que no lo tengan
-            new Thread(() -> {
+            TaskScheduler.get().db(() -> {
                 int countWithoutUid = dao.countSubjectsWithoutUid(appType);
                 if (countWithoutUid > 0) {
                     Log.d("SubjectListActivity", "Asignando uid a " + countWithoutUid + " sujetos existentes sin uid");
                     dao.assignUidToSubjectsWithoutUid(uid, appType);
                     Log.d("SubjectListActivity", "✅ Uid asignado a " + countWithoutUid + " sujetos existentes");
                 }
-            }).start();
+            });
             
             CloudSync sync = new CloudSync(
-                    eventDao,
-                    dao,
+                    db,
                     FirebaseFirestore.getInstance(),
                     uid,
                     "CareTemplate",
@@ -1593,6 +1547,8 @@ public class SubjectListActivity extends AppCompatActivity {
                         Log.d("SubjectListActivity", "pullSubjects completado, iniciando pull...");
                         sync.pull(
                                 () -> runOnUiThread(() -> {
+                                    // Lo bajado puede traer eventos con notificación: rearmar la ventana de alarmas
+                                    com.gastonlesbegueris.caretemplate.util.NotificationWindow.reconcileAsync(getApplicationContext());
                                     Log.d("SubjectListActivity", "pull completado exitosamente");
                                     // Desactivar modo silencioso y cerrar diálogo
                                     isSilentRecoveryMode = false;
@@ -1780,8 +1736,7 @@ public class SubjectListActivity extends AppCompatActivity {
     private void performSync(String uid) {
         try {
             CloudSync sync = new CloudSync(
-                    eventDao,
-                    dao,
+                    db,
                     FirebaseFirestore.getInstance(),
                     uid,
                     "CareTemplate",
@@ -1793,6 +1748,8 @@ public class SubjectListActivity extends AppCompatActivity {
                     sync.pullSubjects(() -> {
                         sync.pull(
                                 () -> runOnUiThread(() -> {
+                                    // Lo bajado puede traer eventos con notificación: rearmar la ventana de alarmas
+                                    com.gastonlesbegueris.caretemplate.util.NotificationWindow.reconcileAsync(getApplicationContext());
                                     refreshSubjectsList();
                                     // Mostrar popup de sincronización realizada
                                     showSyncCompletedDialog();
@@ -2164,7 +2121,7 @@ public class SubjectListActivity extends AppCompatActivity {
         }
 
         // cargar sujetos en background
-        new Thread(() -> {
+        TaskScheduler.get().db(SubjectListActivity.this, () -> {
             final java.util.List<SubjectEntity> loaded = dao.listActiveNow(appType);
             runOnUiThread(() -> {
                 final java.util.List<SubjectEntity> subjects =
@@ -2350,7 +2307,7 @@ public class SubjectListActivity extends AppCompatActivity {
                 
                 dialog.show();
             });
-        }).start();
+        });
     }
 
     private void insertLocal(String title, String subjectId, Double cost, long dueAt, Double kilometersAtEvent) {
@@ -2360,7 +2317,7 @@ public class SubjectListActivity extends AppCompatActivity {
     private void insertLocalWithRepeat(String title, String subjectId, Double cost, long dueAt, Double kilometersAtEvent,
                                        String repeatType, Integer repeatInterval, Long repeatEndDate, Integer repeatCount,
                                        Integer notificationMinutesBefore) {
-        new Thread(() -> {
+        TaskScheduler.get().db(() -> {
             // Verificar si es el primer evento ANTES de insertar
             int eventCountBefore = eventDao.countEventsForApp(appType);
             boolean isFirstEvent = (eventCountBefore == 0);
@@ -2384,6 +2341,7 @@ public class SubjectListActivity extends AppCompatActivity {
             originalEvent.updatedAt = System.currentTimeMillis();
             originalEvent.deleted = 0;
             originalEvent.dirty = 1;
+            originalEvent.dirtyFields = com.gastonlesbegueris.caretemplate.data.local.EventFields.ALL; // documento nuevo
             originalEvent.repeatType = repeatType;
             originalEvent.repeatInterval = repeatInterval;
             originalEvent.repeatEndDate = repeatEndDate;
@@ -2391,10 +2349,12 @@ public class SubjectListActivity extends AppCompatActivity {
             originalEvent.originalEventId = null; // El original no tiene originalEventId
             originalEvent.notificationMinutesBefore = notificationMinutesBefore;
             
-            eventDao.insert(originalEvent);
+            // Alta de la serie en una sola transacción (hoy la serie es solo la regla: las
+            // repeticiones son virtuales) y conteo de límites con los ids devueltos
+            List<String> insertedIds = eventDao.insertSeries(java.util.Collections.singletonList(originalEvent));
             
             // Marcar tutorial de eventos como completado cuando se crea el primer evento
-            runOnUiThread(() -> {
+            TaskScheduler.get().ui(SubjectListActivity.this, () -> {
                 com.gastonlesbegueris.caretemplate.util.TutorialHelper.markEventTutorialCompleted(SubjectListActivity.this);
                 
                 // Mostrar celebración si es el primer evento
@@ -2402,110 +2362,16 @@ public class SubjectListActivity extends AppCompatActivity {
                     com.gastonlesbegueris.caretemplate.util.FirstEventCelebrationHelper.checkAndShowCelebration(SubjectListActivity.this, appType);
                 }
             });
-            com.gastonlesbegueris.caretemplate.util.LimitGuard.onEventCreated(this, appType);
+            com.gastonlesbegueris.caretemplate.util.LimitGuard.onEventsCreated(this, appType, insertedIds.size());
             
-            // Programar notificación para el evento original
+            // Las repeticiones no se guardan como filas: el original es la regla y las
+            // ocurrencias se calculan al consultar (Recurrence). El original y las próximas
+            // ocurrencias entran a la ventana de alarmas (NotificationWindow)
             if (notificationMinutesBefore != null && notificationMinutesBefore > 0) {
-                com.gastonlesbegueris.caretemplate.util.NotificationHelper.scheduleNotification(this, originalEvent);
-            }
-            
-            // Si hay repetición, crear los eventos repetidos
-            if (repeatType != null && repeatInterval != null && repeatInterval > 0) {
-                java.util.Calendar cal = java.util.Calendar.getInstance();
-                cal.setTimeInMillis(dueAt);
-                
-                int eventsCreated = 1; // Ya creamos el original
-                long nextDueAt = dueAt;
-                
-                // Límites para evitar exceder el límite de alarmas de Android (500)
-                final int MAX_REPEATED_EVENTS = 100; // Máximo de eventos repetidos a crear
-                final long MAX_NOTIFICATION_RANGE_MS = 60L * 24 * 60 * 60 * 1000; // 60 días en milisegundos
-                long now = System.currentTimeMillis();
-                long maxNotificationTime = now + MAX_NOTIFICATION_RANGE_MS;
-                
-                // Calcular el siguiente evento
-                while (eventsCreated < MAX_REPEATED_EVENTS) {
-                    // Calcular la próxima fecha según el tipo de repetición
-                    java.util.Calendar nextCal = java.util.Calendar.getInstance();
-                    nextCal.setTimeInMillis(nextDueAt);
-                    
-                    switch (repeatType) {
-                        case "hourly":
-                            nextCal.add(java.util.Calendar.HOUR_OF_DAY, repeatInterval);
-                            break;
-                        case "daily":
-                            nextCal.add(java.util.Calendar.DAY_OF_MONTH, repeatInterval);
-                            break;
-                        case "monthly":
-                            nextCal.add(java.util.Calendar.MONTH, repeatInterval);
-                            break;
-                        case "yearly":
-                            nextCal.add(java.util.Calendar.YEAR, repeatInterval);
-                            break;
-                    }
-                    
-                    nextDueAt = nextCal.getTimeInMillis();
-                    
-                    // Verificar si debemos parar
-                    boolean shouldStop = false;
-                    
-                    if (repeatEndDate != null && nextDueAt > repeatEndDate) {
-                        shouldStop = true;
-                    } else if (repeatCount != null && eventsCreated >= repeatCount) {
-                        shouldStop = true;
-                    } else if (repeatEndDate == null && repeatCount == null) {
-                        // Si no hay límite, crear eventos por 2 años por defecto (reducido de 10 años)
-                        java.util.Calendar limitCal = java.util.Calendar.getInstance();
-                        limitCal.setTimeInMillis(dueAt);
-                        limitCal.add(java.util.Calendar.YEAR, 2);
-                        if (nextDueAt > limitCal.getTimeInMillis()) {
-                            shouldStop = true;
-                        }
-                    }
-                    
-                    if (shouldStop) break;
-                    
-                    // Crear el evento repetido
-                    EventEntity repeatedEvent = new EventEntity();
-                    repeatedEvent.id = UUID.randomUUID().toString();
-                    repeatedEvent.uid = uid;
-                    repeatedEvent.appType = appType;
-                    repeatedEvent.subjectId = subjectId;
-                    repeatedEvent.title = title;
-                    repeatedEvent.note = "";
-                    repeatedEvent.cost = null; // Los eventos repetidos no tienen costo hasta que se realizan
-                    repeatedEvent.kilometersAtEvent = null; // Los eventos repetidos no tienen km hasta que se realizan
-                    repeatedEvent.realized = 0;
-                    repeatedEvent.dueAt = nextDueAt;
-                    repeatedEvent.updatedAt = System.currentTimeMillis();
-                    repeatedEvent.deleted = 0;
-                    repeatedEvent.dirty = 1;
-                    repeatedEvent.repeatType = null; // Los eventos repetidos no tienen repetición propia
-                    repeatedEvent.repeatInterval = null;
-                    repeatedEvent.repeatEndDate = null;
-                    repeatedEvent.repeatCount = null;
-                    repeatedEvent.originalEventId = originalEventId; // Referencia al evento original
-                    repeatedEvent.notificationMinutesBefore = notificationMinutesBefore; // Los eventos repetidos también tienen notificación
-                    
-                    eventDao.insert(repeatedEvent);
-                    com.gastonlesbegueris.caretemplate.util.LimitGuard.onEventCreated(this, appType);
-                    
-                    // Solo programar notificación si el evento está dentro del rango permitido (próximos 60 días)
-                    // Esto evita exceder el límite de alarmas de Android
-                    if (notificationMinutesBefore != null && notificationMinutesBefore > 0 && nextDueAt <= maxNotificationTime) {
-                        try {
-                        com.gastonlesbegueris.caretemplate.util.NotificationHelper.scheduleNotification(this, repeatedEvent);
-                        } catch (Exception e) {
-                            // Si falla por límite de alarmas, continuar creando eventos pero sin notificaciones
-                            android.util.Log.w("SubjectListActivity", "No se pudo programar notificación para evento repetido (puede ser límite de alarmas): " + e.getMessage());
-                        }
-                    }
-                    
-                    eventsCreated++;
-                }
+                com.gastonlesbegueris.caretemplate.util.NotificationWindow.reconcile(this);
             }
 
-            runOnUiThread(() -> {
+            TaskScheduler.get().ui(SubjectListActivity.this, () -> {
                 String message = getString(R.string.event_saved);
                 if (repeatType != null) {
                     message += " (con repetición)";
@@ -2517,7 +2383,7 @@ public class SubjectListActivity extends AppCompatActivity {
                 String reviewAppName = getString(R.string.app_name);
                 com.gastonlesbegueris.caretemplate.util.ReviewHelper.checkAndRequestReview(this, reviewAppName, isExpense);
             });
-        }).start();
+        });
     }
     
     // ===== Picker de fecha/hora =====
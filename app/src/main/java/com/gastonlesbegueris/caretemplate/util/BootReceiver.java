@@ -0,0 +1,28 @@
+package com.gastonlesbegueris.caretemplate.util;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+/**
+ * Después de reiniciar el dispositivo no queda ninguna alarma: se arma de nuevo la ventana de
+ * NotificationWindow (las próximas MAX_ALARMS), no una alarma por cada evento pendiente.
+ */
+public class BootReceiver extends BroadcastReceiver {
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        final Context app = context.getApplicationContext();
+        final PendingResult pending = goAsync();
+        TaskScheduler.get().db(() -> {
+            try {
+                NotificationWindow.onBoot(app);
+            } catch (Exception e) {
+                Log.w("BootReceiver", "No se pudo rearmar la ventana de alarmas", e);
+            } finally {
+                pending.finish();
+            }
+        });
+    }
+}
@@ -0,0 +1,184 @@
+package com.gastonlesbegueris.caretemplate.util;
+
+import java.util.Arrays;
+import java.util.TimeZone;
+
+/**
+ * Días y meses locales a partir de epoch millis, sin Calendar.
+ *
+ * Al crearse recorre una vez las transiciones de offset de la zona (cambios de horario de
+ * verano, cambios de huso) dentro de la ventana [2000, 2060) y las guarda en dos arrays.
+ * Después dayKey / monthKey / startOfDay son una búsqueda binaria más aritmética, sin
+ * objetos por llamada: sirve para los loops que agrupan eventos por día.
+ *
+ * La misma tabla se copia a zone_offsets (ver DayTotals) para que el rollup en SQL agrupe
+ * exactamente igual que la UI. Fuera de la ventana se usa el offset del borde más cercano,
+ * tanto acá como en SQL.
+ */
+public final class DayBuckets {
+
+    public static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    // 2000-01-01 y 2060-01-01 UTC
+    private static final long WINDOW_START = 946684800000L;
+    private static final long WINDOW_END = 2840140800000L;
+    // Paso del escaneo: ninguna zona cambia de offset dos veces en menos de una semana
+    private static final long SCAN_STEP = 7 * DAY_MS;
+
+    private static volatile DayBuckets current;
+
+    /**
+     * Buckets de la zona por defecto. Se guardan hasta que cambia la zona: TimeZoneReceiver
+     * llama a invalidate con ACTION_TIMEZONE_CHANGED (TimeZone.getDefault clona la zona en
+     * cada llamada, no conviene consultarla en cada dayKey).
+     */
+    public static DayBuckets current() {
+        DayBuckets b = current;
+        if (b == null) {
+            b = of(TimeZone.getDefault());
+            current = b;
+        }
+        return b;
+    }
+
+    /** Descarta los buckets guardados: el próximo current() usa la zona por defecto nueva. */
+    public static void invalidate() {
+        current = null;
+    }
+
+    public static DayBuckets of(TimeZone tz) {
+        return new DayBuckets(tz);
+    }
+
+    private final String zoneId;
+    // starts[i] = desde qué instante (UTC) rige offsets[i]; starts[0] = Long.MIN_VALUE
+    private final long[] starts;
+    private final int[] offsets;
+
+    private DayBuckets(TimeZone tz) {
+        zoneId = tz.getID();
+        long[] s = new long[16];
+        int[] o = new int[16];
+        int n = 0;
+        s[n] = Long.MIN_VALUE;
+        o[n] = tz.getOffset(WINDOW_START);
+        n++;
+        long prev = WINDOW_START;
+        int prevOffset = o[0];
+        for (long t = WINDOW_START + SCAN_STEP; t < WINDOW_END + SCAN_STEP; t += SCAN_STEP) {
+            long probe = Math.min(t, WINDOW_END);
+            int off = tz.getOffset(probe);
+            if (off != prevOffset) {
+                // Búsqueda binaria del primer ms con el offset nuevo dentro de (prev, probe]
+                long lo = prev, hi = probe;
+                while (hi - lo > 1) {
+                    long mid = (lo + hi) >>> 1;
+                    if (tz.getOffset(mid) == prevOffset) lo = mid; else hi = mid;
+                }
+                if (n == s.length) {
+                    s = Arrays.copyOf(s, n * 2);
+                    o = Arrays.copyOf(o, n * 2);
+                }
+                s[n] = hi;
+                o[n] = off;
+                n++;
+                prevOffset = off;
+            }
+            prev = probe;
+        }
+        starts = Arrays.copyOf(s, n);
+        offsets = Arrays.copyOf(o, n);
+    }
+
+    public String zoneId() {
+        return zoneId;
+    }
+
+    /** Cantidad de tramos de offset (para copiar la tabla a SQL). */
+    public int size() {
+        return starts.length;
+    }
+
+    public long startAt(int i) {
+        return starts[i];
+    }
+
+    public int offsetOf(int i) {
+        return offsets[i];
+    }
+
+    /** Offset (ms) respecto de UTC vigente en ese instante. */
+    public int offsetAt(long millis) {
+        return offsets[indexAt(millis)];
+    }
+
+    private int indexAt(long millis) {
+        int i = Arrays.binarySearch(starts, millis);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    // ----------------------
+    // Días
+    // ----------------------
+
+    /** Día local (días desde 1970-01-01) de un instante. */
+    public long dayKey(long millis) {
+        return Math.floorDiv(millis + offsetAt(millis), DAY_MS);
+    }
+
+    /** Inicio (00:00 local) de un día local. */
+    public long startOfDay(long dayKey) {
+        long utcMidnight = dayKey * DAY_MS;
+        long guess = utcMidnight - offsetAt(utcMidnight);
+        long start = utcMidnight - offsetAt(guess);
+        if (dayKey(start) < dayKey) {
+            // La medianoche no existe (salto de horario a las 00:00): el día empieza con la transición
+            int i = indexAt(start) + 1;
+            if (i < starts.length) return starts[i];
+        }
+        return start;
+    }
+
+    /** Inicio del día local de un instante. */
+    public long startOfDayAt(long millis) {
+        return startOfDay(dayKey(millis));
+    }
+
+    // ----------------------
+    // Meses (clave = año * 12 + mes 0..11)
+    // ----------------------
+
+    public int monthKey(long millis) {
+        return monthKeyOfDay(dayKey(millis));
+    }
+
+    /** Mes de un día local (fechas civiles de H. Hinnant, sin tablas ni objetos). */
+    public static int monthKeyOfDay(long dayKey) {
+        long z = dayKey + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        long month = mp < 10 ? mp + 3 : mp - 9;       // 1..12
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+        return (int) (year * 12 + month - 1);
+    }
+
+    /** Primer día local del mes. */
+    public static long firstDayOfMonth(int monthKey) {
+        long year = Math.floorDiv(monthKey, 12);
+        long month = monthKey - year * 12 + 1;         // 1..12
+        if (month <= 2) year--;
+        long era = Math.floorDiv(year, 400);
+        long yoe = year - era * 400;
+        long doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    /** Inicio (00:00 local del día 1) de un mes. */
+    public long startOfMonth(int monthKey) {
+        return startOfDay(firstDayOfMonth(monthKey));
+    }
+}
@@ -29,6 +29,12 @@ public final class LimitGuard {
         inc(ctx, key("events_count_", appType));
     }
 
+    // Alta en lote (por ej. EventDao.insertSeries): una sola escritura de preferencias
+    public static void onEventsCreated(Context ctx, String appType, int count) {
+        if (count <= 0) return;
+        add(ctx, key("events_count_", appType), count);
+    }
+
     // --- Sujetos ---
     public static boolean canCreateSubject(Context ctx, AppDb db, String appType) {
         int used = getInt(ctx, key("subjects_count_", appType), 0);
@@ -49,7 +55,11 @@ public final class LimitGuard {
     }
 
     private static void inc(Context ctx, String k) {
-        int v = getInt(ctx, k, 0) + 1;
+        add(ctx, k, 1);
+    }
+
+    private static void add(Context ctx, String k, int delta) {
+        int v = getInt(ctx, k, 0) + delta;
         ctx.getSharedPreferences("limits", Context.MODE_PRIVATE).edit().putInt(k, v).apply();
     }
 }
@@ -0,0 +1,220 @@
+package com.gastonlesbegueris.caretemplate.util;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.gastonlesbegueris.caretemplate.R;
+import com.gastonlesbegueris.caretemplate.data.local.AppDb;
+import com.gastonlesbegueris.caretemplate.data.local.EventDao;
+import com.gastonlesbegueris.caretemplate.data.local.EventEntity;
+import com.gastonlesbegueris.caretemplate.data.local.Recurrence;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Ventana deslizante de alarmas: solo las próximas MAX_ALARMS notificaciones (de todos los
+ * sujetos, guardadas y ocurrencias virtuales) tienen alarma registrada en AlarmManager.
+ *
+ * reconcile arma la ventana deseada con una consulta LIMIT ordenada por dueAt (usa el índice
+ * appType, deleted, realized, dueAt) más las ocurrencias de las reglas hasta el mismo
+ * horizonte, y la compara con la registrada (ids guardados en preferencias): se programan las
+ * de la ventana y se cancelan las que salieron. El costo es O(MAX_ALARMS), no O(eventos), y
+ * nunca se acerca al límite de 500 alarmas de Android.
+ *
+ * Cuando se consume la mitad de la ventana, una alarma inexacta (NotificationWindowReceiver)
+ * vuelve a llamar a reconcile para rellenarla. Si la ventana no se llena pero alguna regla con
+ * notificación sigue después del horizonte de expansión (60 días), la alarma va en la última
+ * de la ventana (o en el horizonte, si está vacía): sin eso una serie diaria dejaría de sonar
+ * a los 60 días. También se llama después de editar eventos, del sync y del reinicio
+ * (BootReceiver). Llamar siempre desde un hilo de fondo.
+ */
+public final class NotificationWindow {
+
+    private static final String TAG = "NotificationWindow";
+    private static final String PREFS = "notification_window";
+    private static final String KEY_ENTRIES = "entries";
+
+    /** Alarmas registradas a la vez, como máximo. */
+    public static final int MAX_ALARMS = 64;
+
+    private static final long MINUTE_MS = 60_000L;
+    private static final long MIN_REFILL_DELAY_MS = 15 * MINUTE_MS;
+
+    private NotificationWindow() {}
+
+    /** Deja registradas exactamente las próximas MAX_ALARMS notificaciones. */
+    public static synchronized void reconcile(Context ctx) {
+        Context app = ctx.getApplicationContext();
+        long now = System.currentTimeMillis();
+        Desired desired = desired(app, now);
+        List<EventEntity> window = desired.entries;
+
+        Set<String> registered = load(app);
+        Set<String> next = new HashSet<>(window.size() * 2);
+        for (EventEntity e : window) {
+            next.add(e.id);
+            // Se reprograma aunque ya estuviera (la alarma del mismo id se reemplaza), así
+            // se recuperan las que la UI canceló por su cuenta (realizar, borrar...)
+            try {
+                NotificationHelper.scheduleNotification(app, e);
+            } catch (Exception ex) {
+                Log.w(TAG, "No se pudo programar notificación " + e.id + ": " + ex.getMessage());
+            }
+        }
+        int cancelled = 0;
+        for (String id : registered) {
+            if (next.contains(id)) continue;
+            try {
+                NotificationHelper.cancelNotification(app, id);
+                cancelled++;
+            } catch (Exception ex) {
+                Log.w(TAG, "No se pudo cancelar notificación " + id + ": " + ex.getMessage());
+            }
+        }
+        save(app, next);
+        scheduleRefill(app, desired);
+        Log.d(TAG, "Ventana: " + window.size() + " alarmas, " + cancelled + " canceladas");
+    }
+
+    /** reconcile en el pool de db (para llamar desde el hilo principal o callbacks de Firestore). */
+    public static void reconcileAsync(Context ctx) {
+        final Context app = ctx.getApplicationContext();
+        TaskScheduler.get().db(() -> {
+            try {
+                reconcile(app);
+            } catch (Exception e) {
+                Log.w(TAG, "No se pudo rearmar la ventana de alarmas", e);
+            }
+        });
+    }
+
+    /** Cancela las alarmas registradas de las ocurrencias de una regla. */
+    public static synchronized void cancelSeries(Context ctx, String ruleId) {
+        Context app = ctx.getApplicationContext();
+        Set<String> registered = load(app);
+        String prefix = Recurrence.occurrenceId(ruleId, 0L);
+        prefix = prefix.substring(0, prefix.length() - 1); // "ruleId@"
+        boolean changed = false;
+        for (Iterator<String> it = registered.iterator(); it.hasNext(); ) {
+            String id = it.next();
+            if (!id.startsWith(prefix)) continue;
+            try {
+                NotificationHelper.cancelNotification(app, id);
+            } catch (Exception ex) {
+                Log.w(TAG, "No se pudo cancelar notificación " + id + ": " + ex.getMessage());
+            }
+            it.remove();
+            changed = true;
+        }
+        if (changed) save(app, registered);
+    }
+
+    /** Después de reiniciar no queda ninguna alarma: se olvida la ventana y se arma de nuevo. */
+    public static synchronized void onBoot(Context ctx) {
+        Context app = ctx.getApplicationContext();
+        save(app, Collections.emptySet());
+        reconcile(app);
+    }
+
+    // ----------------------
+    // Ventana deseada
+    // ----------------------
+
+    /** Ventana deseada y hasta dónde se expandieron las reglas para armarla. */
+    private static final class Desired {
+        final List<EventEntity> entries;
+        final long horizon;
+        final boolean rulesContinue; // alguna regla con notificación sigue después de horizon
+
+        Desired(List<EventEntity> entries, long horizon, boolean rulesContinue) {
+            this.entries = entries;
+            this.horizon = horizon;
+            this.rulesContinue = rulesContinue;
+        }
+    }
+
+    private static Desired desired(Context app, long now) {
+        String appType = app.getString(R.string.app_type);
+        EventDao dao = AppDb.get(app).eventDao();
+        List<EventEntity> out = new ArrayList<>(dao.listUpcomingNotifiable(appType, now, MAX_ALARMS));
+        // Con la ventana llena, ninguna ocurrencia después de la última guardada puede entrar
+        long horizon = out.size() == MAX_ALARMS
+                ? out.get(out.size() - 1).dueAt
+                : now + Recurrence.DEFAULT_HORIZON_MS;
+        Recurrence.Rules rules = Recurrence.loadRules(dao, appType);
+        boolean rulesContinue = false;
+        for (EventEntity rule : rules.rules) {
+            if (!hasNotification(rule)) continue;
+            List<EventEntity> occ = Recurrence.expand(rule, now, horizon, rules.exceptionIds);
+            out.addAll(occ.size() > MAX_ALARMS ? occ.subList(0, MAX_ALARMS) : occ);
+            if (!rulesContinue) {
+                rulesContinue = !Recurrence.occurrenceTimes(rule, horizon + 1, Long.MAX_VALUE, 1).isEmpty();
+            }
+        }
+        Collections.sort(out, (a, b) -> Long.compare(a.dueAt, b.dueAt));
+        if (out.size() > MAX_ALARMS) out = new ArrayList<>(out.subList(0, MAX_ALARMS));
+        return new Desired(out, horizon, rulesContinue);
+    }
+
+    private static boolean hasNotification(EventEntity e) {
+        return e.notificationMinutesBefore != null && e.notificationMinutesBefore > 0;
+    }
+
+    private static long triggerAt(EventEntity e) {
+        return e.dueAt - e.notificationMinutesBefore * MINUTE_MS;
+    }
+
+    // ----------------------
+    // Relleno
+    // ----------------------
+
+    /**
+     * Alarma inexacta para rellenar la ventana: a la mitad si está llena; si no, en la última
+     * (o en el horizonte) cuando alguna regla sigue más allá de lo expandido.
+     */
+    private static void scheduleRefill(Context app, Desired desired) {
+        AlarmManager am = (AlarmManager) app.getSystemService(Context.ALARM_SERVICE);
+        if (am == null) return;
+        PendingIntent pi = PendingIntent.getBroadcast(app, 0,
+                new Intent(app, NotificationWindowReceiver.class).setAction(NotificationWindowReceiver.ACTION_REFILL),
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+        List<EventEntity> window = desired.entries;
+        long at;
+        if (window.size() >= MAX_ALARMS) {
+            at = triggerAt(window.get(MAX_ALARMS / 2));
+        } else if (desired.rulesContinue) {
+            // Las reglas se cortaron en el horizonte: volver a expandir antes de quedarse sin alarmas
+            at = window.isEmpty() ? desired.horizon : triggerAt(window.get(window.size() - 1));
+        } else {
+            // Entra todo lo pendiente: alcanza con los reconcile de las ediciones y del sync
+            am.cancel(pi);
+            return;
+        }
+        // Un aviso que ya tendría que haber sonado no puede disparar el relleno en bucle
+        am.set(AlarmManager.RTC, Math.max(at, System.currentTimeMillis() + MIN_REFILL_DELAY_MS), pi);
+    }
+
+    // ----------------------
+    // Ventana registrada (ids con alarma)
+    // ----------------------
+
+    private static Set<String> load(Context app) {
+        Set<String> raw = app.getSharedPreferences(PREFS, Context.MODE_PRIVATE)
+                .getStringSet(KEY_ENTRIES, Collections.emptySet());
+        return new HashSet<>(raw); // el Set de SharedPreferences no se puede modificar
+    }
+
+    private static void save(Context app, Set<String> ids) {
+        SharedPreferences prefs = app.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        prefs.edit().putStringSet(KEY_ENTRIES, new HashSet<>(ids)).apply();
+    }
+}
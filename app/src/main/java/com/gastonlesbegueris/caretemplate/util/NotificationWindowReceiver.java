@@ -0,0 +1,31 @@
+package com.gastonlesbegueris.caretemplate.util;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+/**
+ * Rellena la ventana de alarmas (ver NotificationWindow) cuando se consumió la mitad o se
+ * llega al final de lo expandido. El reinicio lo atiende BootReceiver.
+ */
+public class NotificationWindowReceiver extends BroadcastReceiver {
+
+    static final String ACTION_REFILL = "com.gastonlesbegueris.caretemplate.NOTIFICATION_WINDOW_REFILL";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (intent == null || !ACTION_REFILL.equals(intent.getAction())) return;
+        final Context app = context.getApplicationContext();
+        final PendingResult pending = goAsync();
+        TaskScheduler.get().db(() -> {
+            try {
+                NotificationWindow.reconcile(app);
+            } catch (Exception e) {
+                Log.w("NotificationWindow", "No se pudo rellenar la ventana de alarmas", e);
+            } finally {
+                pending.finish();
+            }
+        });
+    }
+}
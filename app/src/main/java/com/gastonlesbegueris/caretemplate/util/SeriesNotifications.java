@@ -0,0 +1,28 @@
+package com.gastonlesbegueris.caretemplate.util;
+
+import android.content.Context;
+
+import com.gastonlesbegueris.caretemplate.data.local.EventEntity;
+import com.gastonlesbegueris.caretemplate.data.local.Recurrence;
+
+/**
+ * Alarmas de las ocurrencias virtuales de una regla de repetición.
+ * Ya no se programa una alarma por ocurrencia: las de la serie entran a la ventana global de
+ * NotificationWindow (las próximas MAX_ALARMS de todos los sujetos) junto con el resto.
+ */
+public final class SeriesNotifications {
+
+    private SeriesNotifications() {}
+
+    /** La regla cambió o es nueva: rearma la ventana de alarmas. Llamar desde un hilo de fondo. */
+    public static void scheduleUpcoming(Context ctx, EventEntity rule) {
+        if (!Recurrence.isRule(rule)) return;
+        NotificationWindow.reconcile(ctx);
+    }
+
+    /** Cancela las alarmas registradas de las ocurrencias de la regla. */
+    public static void cancelUpcoming(Context ctx, EventEntity rule) {
+        if (!Recurrence.isRule(rule)) return;
+        NotificationWindow.cancelSeries(ctx, rule.id);
+    }
+}
@@ -0,0 +1,208 @@
+package com.gastonlesbegueris.caretemplate.util;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.room.InvalidationTracker;
+
+import com.gastonlesbegueris.caretemplate.R;
+import com.gastonlesbegueris.caretemplate.data.local.AppDb;
+import com.gastonlesbegueris.caretemplate.data.local.SubjectEntity;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metadata de los sujetos (nombre, ícono, color) para toda la app, en memoria.
+ *
+ * Se guarda como un Snapshot inmutable con el color ya parseado y el recurso del ícono ya
+ * resuelto. Cuando cambia la tabla subjects (Room avisa por InvalidationTracker) se arma un
+ * Snapshot nuevo en el pool de db y se reemplaza la referencia (copy-on-write): los lectores
+ * (adapters en el bind, notificaciones) leen snapshot() sin locks y nunca ven uno a medio
+ * armar. Si el contenido no cambió se conserva la instancia anterior, así los adapters
+ * pueden comparar por identidad y no rebindean. Cada recarga numera su lectura antes de
+ * consultar: una que empezó antes que la ya publicada (y vio datos más viejos) se descarta.
+ */
+public final class SubjectMetaCache {
+
+    private static final String TAG = "SubjectMetaCache";
+    public static final int DEFAULT_COLOR = 0xFF03DAC5; // #03DAC5
+
+    /** Metadata de un sujeto. */
+    public static final class Meta {
+        public final String id;
+        public final String name;
+        public final String iconKey;
+        public final String colorHex;
+        public final int iconRes;
+        public final int color; // sin ajuste de tema
+
+        Meta(SubjectEntity s) {
+            this.id = s.id;
+            this.name = s.name;
+            this.iconKey = s.iconKey;
+            this.colorHex = s.colorHex;
+            this.iconRes = iconRes(s.iconKey);
+            this.color = parseColor(s.colorHex);
+        }
+
+        boolean sameAs(Meta o) {
+            return Objects.equals(name, o.name) && iconRes == o.iconRes && color == o.color;
+        }
+
+        /** true si se armó con el mismo ícono y color que la entidad (el Snapshot puede ir atrás). */
+        public boolean matches(SubjectEntity s) {
+            return Objects.equals(iconKey, s.iconKey) && Objects.equals(colorHex, s.colorHex);
+        }
+    }
+
+    /** Foto inmutable de la metadata de todos los sujetos activos. */
+    public static final class Snapshot {
+        public static final Snapshot EMPTY = new Snapshot(Collections.emptyMap());
+
+        private final Map<String, Meta> byId;
+
+        private Snapshot(Map<String, Meta> byId) {
+            this.byId = byId;
+        }
+
+        /** null si el sujeto no existe (o está borrado). */
+        public Meta get(String subjectId) {
+            return subjectId == null ? null : byId.get(subjectId);
+        }
+
+        public int size() {
+            return byId.size();
+        }
+
+        boolean sameAs(Snapshot o) {
+            if (byId.size() != o.byId.size()) return false;
+            for (Meta m : byId.values()) {
+                Meta other = o.byId.get(m.id);
+                if (other == null || !m.sameAs(other)) return false;
+            }
+            return true;
+        }
+    }
+
+    private static volatile SubjectMetaCache I;
+
+    public static SubjectMetaCache get(Context c) {
+        if (I == null) {
+            synchronized (SubjectMetaCache.class) {
+                if (I == null) I = new SubjectMetaCache(c.getApplicationContext());
+            }
+        }
+        return I;
+    }
+
+    private final AppDb db;
+    private final String appType;
+    private final MutableLiveData<Snapshot> live = new MutableLiveData<>();
+    private volatile Snapshot current = Snapshot.EMPTY;
+    private final AtomicLong reads = new AtomicLong();
+    private long published; // número de la lectura publicada; bajo lock de this
+    private boolean loaded; // bajo lock de this
+
+    private SubjectMetaCache(Context app) {
+        this.db = AppDb.get(app);
+        this.appType = app.getString(R.string.app_type);
+        db.getInvalidationTracker().addObserver(new InvalidationTracker.Observer("subjects") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                reloadAsync();
+            }
+        });
+        reloadAsync();
+    }
+
+    /** Snapshot vigente. Sin locks, desde cualquier hilo; vacío hasta la primera carga. */
+    public Snapshot snapshot() {
+        return current;
+    }
+
+    /** Emite cada Snapshot nuevo (solo cuando cambió algo), para rebindear adapters. */
+    public LiveData<Snapshot> live() {
+        return live;
+    }
+
+    /** Recarga ya, en el hilo actual (de fondo): para notificaciones que corren antes de la primera carga. */
+    public Snapshot reload() {
+        final long seq = reads.incrementAndGet();
+        List<SubjectEntity> list = db.subjectDao().listActiveNow(appType);
+        Map<String, Meta> byId = new HashMap<>(list.size() * 2);
+        for (SubjectEntity s : list) byId.put(s.id, new Meta(s));
+        Snapshot next = new Snapshot(Collections.unmodifiableMap(byId));
+        synchronized (this) {
+            // Solo los que escriben se ordenan entre sí; la lectura sigue siendo libre
+            if (seq < published) return current; // una recarga posterior ya publicó datos más nuevos
+            published = seq;
+            if (loaded && next.sameAs(current)) return current;
+            loaded = true;
+            current = next;
+            live.postValue(next); // dentro del lock: las emisiones salen en el mismo orden
+        }
+        return next;
+    }
+
+    private void reloadAsync() {
+        TaskScheduler.get().db(() -> {
+            try {
+                reload();
+            } catch (Exception e) {
+                Log.w(TAG, "No se pudo cargar la metadata de sujetos", e);
+            }
+        });
+    }
+
+    // ----------------------
+    // Resolución (también para quien tenga solo la entidad)
+    // ----------------------
+
+    /** Color del sujeto; DEFAULT_COLOR si no tiene o no se puede parsear. */
+    public static int parseColor(String hex) {
+        if (hex == null || hex.isEmpty()) return DEFAULT_COLOR;
+        try {
+            return Color.parseColor(hex);
+        } catch (IllegalArgumentException e) {
+            return DEFAULT_COLOR;
+        }
+    }
+
+    /** Recurso del ícono según la key guardada en el sujeto. */
+    public static int iconRes(String key) {
+        if (key == null) return R.drawable.ic_line_user;
+        switch (key) {
+            // Pets
+            case "cat":   return R.drawable.ic_line_cat;
+            case "dog":   return R.drawable.ic_line_dog;
+            // Family
+            case "man":   return R.drawable.ic_line_man;
+            case "woman": return R.drawable.ic_line_woman;
+            // House
+            case "apartment": return R.drawable.ic_line_apartment;
+            case "house": return R.drawable.ic_line_house;
+            case "office": return R.drawable.ic_line_office;
+            case "local": return R.drawable.ic_line_local;
+            case "store": return R.drawable.ic_line_store;
+            // Vehicles
+            case "car":   return R.drawable.ic_line_car;
+            case "bike":  return R.drawable.ic_line_bike;
+            case "motorbike": return R.drawable.ic_line_motorbike;
+            case "truck": return R.drawable.ic_line_truck;
+            case "pickup": return R.drawable.ic_line_pickup;
+            case "suv":   return R.drawable.ic_line_suv;
+            // Default
+            default:      return R.drawable.ic_line_user;
+        }
+    }
+}
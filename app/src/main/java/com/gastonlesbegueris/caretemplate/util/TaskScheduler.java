@@ -0,0 +1,288 @@
+package com.gastonlesbegueris.caretemplate.util;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Planificador único de trabajo en segundo plano.
+ *
+ * - db: pool acotado para consultas/escrituras de Room desde la UI (reemplaza los
+ *   "new Thread(...).start()" sueltos de cada Activity).
+ * - sync: un solo hilo (con soporte de delays) para CloudSync, así el sync no compite
+ *   con la UI por el pool de db ni corre en paralelo consigo mismo.
+ *
+ * Las tareas encoladas con un LifecycleOwner se cancelan si la Activity se destruye
+ * antes de que empiecen: solo para lecturas y refrescos de UI. Las escrituras del usuario van
+ * sin dueño (rotar o hacer finish() al guardar no puede perder la edición) y avisan a la UI
+ * con ui(owner, ...). Cada pool lleva métricas de cola y latencia (ver Stats).
+ *
+ * Una tarea que tira una excepción no queda guardada en su Future (nadie hace get()): va al
+ * manejador de excepciones no capturadas del hilo, como con los Thread sueltos de antes.
+ */
+public final class TaskScheduler {
+
+    private static final String TAG = "TaskScheduler";
+
+    // Room en WAL admite varios lectores concurrentes; más hilos que eso solo agregan contención
+    private static final int DB_THREADS =
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    // Tareas que tardan más que esto se loguean
+    private static final long SLOW_TASK_MS = 500L;
+
+    private static volatile TaskScheduler I;
+
+    public static TaskScheduler get() {
+        if (I == null) {
+            synchronized (TaskScheduler.class) {
+                if (I == null) I = new TaskScheduler();
+            }
+        }
+        return I;
+    }
+
+    private final ThreadPoolExecutor db;
+    private final ScheduledThreadPoolExecutor sync;
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final Stats dbStats = new Stats("db");
+    private final Stats syncStats = new Stats("sync");
+
+    // Tareas pendientes por dueño (Activity), para cancelarlas en ON_DESTROY
+    private final Map<LifecycleOwner, Set<Future<?>>> byOwner = new WeakHashMap<>();
+
+    private TaskScheduler() {
+        db = new ThreadPoolExecutor(DB_THREADS, DB_THREADS, 30L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), namedFactory("ct-db"));
+        db.allowCoreThreadTimeOut(true);
+        sync = new ScheduledThreadPoolExecutor(1, namedFactory("ct-sync"));
+        sync.setRemoveOnCancelPolicy(true);
+    }
+
+    // ----------------------
+    // API
+    // ----------------------
+
+    /** Trabajo de base de datos sin dueño (no se cancela): escrituras del usuario. */
+    public Future<?> db(Runnable task) {
+        return db.submit(dbStats.wrap(task));
+    }
+
+    /**
+     * Lectura atada a la Activity: si se destruye antes de empezar, se descarta.
+     * No usar para escrituras (ver db(Runnable) + ui).
+     */
+    public Future<?> db(LifecycleOwner owner, Runnable task) {
+        Future<?> f = db.submit(dbStats.wrap(task));
+        bind(owner, f);
+        return f;
+    }
+
+    /** Trabajo de sincronización (un solo hilo, en orden). */
+    public Future<?> sync(Runnable task) {
+        return sync.submit(syncStats.wrap(task));
+    }
+
+    /** Trabajo de sincronización diferido (reintentos con backoff). */
+    public Future<?> syncDelayed(Runnable task, long delayMs) {
+        return sync.schedule(syncStats.wrap(task), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Ejecutor de sync para quien necesite pasarlo como Executor. */
+    public ScheduledExecutorService syncExecutor() {
+        return sync;
+    }
+
+    public void main(Runnable task) {
+        main.post(task);
+    }
+
+    /** Corre task en el hilo principal solo si owner sigue vivo (avisos de una escritura sin dueño). */
+    public void ui(LifecycleOwner owner, Runnable task) {
+        main.post(() -> {
+            if (owner.getLifecycle().getCurrentState() != Lifecycle.State.DESTROYED) task.run();
+        });
+    }
+
+    // ----------------------
+    // Métricas
+    // ----------------------
+
+    public Stats dbStats() { return dbStats.withQueue(db.getQueue().size(), db.getActiveCount()); }
+
+    public Stats syncStats() { return syncStats.withQueue(sync.getQueue().size(), sync.getActiveCount()); }
+
+    /**
+     * Métricas acumuladas de un pool: profundidad de cola, espera en cola y tiempo de ejecución.
+     * completed y failed no se pisan: terminadas = completed + failed, y los promedios son
+     * sobre todas las terminadas.
+     */
+    public static final class Stats {
+        public final String name;
+        private final AtomicLong submitted = new AtomicLong();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong totalWaitMs = new AtomicLong();
+        private final AtomicLong totalRunMs = new AtomicLong();
+        private final AtomicLong maxWaitMs = new AtomicLong();
+        private final AtomicLong maxRunMs = new AtomicLong();
+        private volatile int queueDepth;
+        private volatile int active;
+
+        Stats(String name) { this.name = name; }
+
+        public long submitted() { return submitted.get(); }
+        public long completed() { return completed.get(); }
+        public long failed() { return failed.get(); }
+        public int queueDepth() { return queueDepth; }
+        public int active() { return active; }
+        public long maxWaitMs() { return maxWaitMs.get(); }
+        public long maxRunMs() { return maxRunMs.get(); }
+
+        public long avgWaitMs() {
+            long n = completed.get() + failed.get();
+            return n == 0 ? 0 : totalWaitMs.get() / n;
+        }
+
+        public long avgRunMs() {
+            long n = completed.get() + failed.get();
+            return n == 0 ? 0 : totalRunMs.get() / n;
+        }
+
+        Stats withQueue(int depth, int active) {
+            this.queueDepth = depth;
+            this.active = active;
+            return this;
+        }
+
+        Runnable wrap(Runnable task) {
+            submitted.incrementAndGet();
+            final long enqueuedAt = SystemClock.elapsedRealtime();
+            return () -> {
+                long start = SystemClock.elapsedRealtime();
+                long wait = start - enqueuedAt;
+                boolean ok = false;
+                try {
+                    task.run();
+                    ok = true;
+                } catch (RuntimeException | Error e) {
+                    Log.e(TAG, "Tarea " + name + " falló", e);
+                    // El Future la guardaría sin que nadie la lea
+                    Thread t = Thread.currentThread();
+                    t.getUncaughtExceptionHandler().uncaughtException(t, e);
+                    throw e;
+                } finally {
+                    long run = SystemClock.elapsedRealtime() - start;
+                    (ok ? completed : failed).incrementAndGet();
+                    totalWaitMs.addAndGet(wait);
+                    totalRunMs.addAndGet(run);
+                    updateMax(maxWaitMs, wait);
+                    updateMax(maxRunMs, run);
+                    if (run > SLOW_TASK_MS) {
+                        Log.w(TAG, "Tarea " + name + " lenta: " + run + "ms (esperó " + wait + "ms en cola)");
+                    }
+                }
+            };
+        }
+
+        private static void updateMax(AtomicLong max, long value) {
+            long prev;
+            while (value > (prev = max.get()) && !max.compareAndSet(prev, value)) { /* reintentar */ }
+        }
+
+        @Override
+        public String toString() {
+            return name + "{queue=" + queueDepth + ", active=" + active
+                    + ", submitted=" + submitted.get() + ", completed=" + completed.get()
+                    + ", failed=" + failed.get()
+                    + ", avgWait=" + avgWaitMs() + "ms, maxWait=" + maxWaitMs.get()
+                    + "ms, avgRun=" + avgRunMs() + "ms, maxRun=" + maxRunMs.get() + "ms}";
+        }
+    }
+
+    // ----------------------
+    // Cancelación por ciclo de vida
+    // ----------------------
+
+    private void bind(LifecycleOwner owner, Future<?> f) {
+        if (owner == null) return;
+        boolean firstForOwner;
+        synchronized (byOwner) {
+            Set<Future<?>> set = byOwner.get(owner);
+            firstForOwner = (set == null);
+            if (set == null) {
+                set = Collections.newSetFromMap(new ConcurrentHashMap<>());
+                byOwner.put(owner, set);
+            }
+            // Limpiar las que ya terminaron para que el set no crezca
+            for (java.util.Iterator<Future<?>> it = set.iterator(); it.hasNext(); ) {
+                if (it.next().isDone()) it.remove();
+            }
+            set.add(f);
+        }
+        if (firstForOwner) {
+            // addObserver tiene que llamarse en el main thread
+            if (Looper.myLooper() == Looper.getMainLooper()) observe(owner);
+            else main.post(() -> observe(owner));
+        }
+    }
+
+    private void observe(LifecycleOwner owner) {
+        if (owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) {
+            cancelAll(owner);
+            return;
+        }
+        owner.getLifecycle().addObserver(new DefaultLifecycleObserver() {
+            @Override
+            public void onDestroy(@NonNull LifecycleOwner o) {
+                o.getLifecycle().removeObserver(this);
+                cancelAll(o);
+            }
+        });
+    }
+
+    /** Descarta las tareas de owner que todavía no empezaron (las que corren terminan normalmente). */
+    private void cancelAll(LifecycleOwner owner) {
+        Set<Future<?>> set;
+        synchronized (byOwner) {
+            set = byOwner.remove(owner);
+        }
+        if (set == null) return;
+        int cancelled = 0;
+        for (Future<?> f : set) {
+            // false: no interrumpir una transacción de Room a mitad de camino
+            if (f.cancel(false)) cancelled++;
+        }
+        if (cancelled > 0) Log.d(TAG, "Tareas canceladas al destruir " + owner.getClass().getSimpleName() + ": " + cancelled);
+        db.purge();
+    }
+
+    private static ThreadFactory namedFactory(String prefix) {
+        final AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + n.incrementAndGet());
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,32 @@
+package com.gastonlesbegueris.caretemplate.util;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import com.gastonlesbegueris.caretemplate.data.local.AppDb;
+
+/**
+ * Cambio de zona horaria: descarta los DayBuckets guardados y alinea el rollup (day_totals y
+ * el día de cada gasto) con la zona nueva.
+ */
+public class TimeZoneReceiver extends BroadcastReceiver {
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (intent == null || !Intent.ACTION_TIMEZONE_CHANGED.equals(intent.getAction())) return;
+        DayBuckets.invalidate();
+        final Context app = context.getApplicationContext();
+        final PendingResult pending = goAsync();
+        TaskScheduler.get().db(() -> {
+            try {
+                AppDb.get(app).syncDayTotalsZone();
+            } catch (Exception e) {
+                Log.w("DayBuckets", "No se pudo recalcular el rollup con la zona nueva", e);
+            } finally {
+                pending.finish();
+            }
+        });
+    }
+}
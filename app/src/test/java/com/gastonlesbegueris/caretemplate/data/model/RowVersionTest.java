@@ -0,0 +1,40 @@
+package com.gastonlesbegueris.caretemplate.data.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Cuándo el pull reescribe una fila: no si es la misma versión ya guardada ni si hay un cambio
+ * local igual o más nuevo.
+ */
+public class RowVersionTest {
+
+    private static final long T = 1_700_000_000_000L;
+
+    @Test
+    public void cleanRowSkipsTheSameVersion() {
+        RowVersion v = version(T, 0);
+        assertFalse(v.shouldApply(T));
+        assertTrue(v.shouldApply(T + 1));
+        // Una versión remota más vieja también se escribe: la nube manda sobre una fila limpia
+        assertTrue(v.shouldApply(T - 1));
+    }
+
+    @Test
+    public void dirtyRowTakesOnlyANewerRemote() {
+        RowVersion v = version(T, 1);
+        assertFalse(v.shouldApply(T));
+        assertFalse(v.shouldApply(T - 1));
+        assertTrue(v.shouldApply(T + 1));
+    }
+
+    private static RowVersion version(long updatedAt, int dirty) {
+        RowVersion v = new RowVersion();
+        v.id = "e1";
+        v.updatedAt = updatedAt;
+        v.dirty = dirty;
+        return v;
+    }
+}
@@ -0,0 +1,192 @@
+package com.gastonlesbegueris.caretemplate.data.sync;
+
+import com.gastonlesbegueris.caretemplate.data.local.EventEntity;
+import com.gastonlesbegueris.caretemplate.data.local.EventFields;
+import com.gastonlesbegueris.caretemplate.data.local.SubjectEntity;
+import com.google.firebase.firestore.FieldValue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * encode / decode de FirestoreCodec ida y vuelta, con los números como los devuelve Firestore
+ * (Long y Double), y los deltas por grupo del push por campos.
+ */
+public class FirestoreCodecTest {
+
+    @Test
+    public void eventRoundTripKeepsEveryField() {
+        EventEntity e = fullEvent();
+        EventEntity back = new EventEntity();
+        FirestoreCodec.EVENTS.decode(asStored(FirestoreCodec.EVENTS.encode(e)), back);
+
+        assertEquals(e.id, back.id);
+        assertEquals(e.updatedAt, back.updatedAt);
+        assertEquals(0, EventFields.diff(e, back));
+        assertTrue(FirestoreCodec.EVENTS.differing(e, back, FirestoreCodec.ANY_GROUP).isEmpty());
+    }
+
+    @Test
+    public void eventEncodeSkipsLocalOnlyColumnsAndNullOptionals() {
+        EventEntity e = fullEvent();
+        e.cost = null;
+        e.repeatType = null;
+        e.notificationMinutesBefore = null;
+        Map<String, Object> doc = FirestoreCodec.EVENTS.encode(e);
+
+        assertFalse(doc.containsKey("dirty"));
+        assertFalse(doc.containsKey("dirtyFields"));
+        assertFalse(doc.containsKey("cost"));
+        assertFalse(doc.containsKey("repeatType"));
+        assertFalse(doc.containsKey("notificationMinutesBefore"));
+        // Los no opcionales van aunque sean null
+        e.note = null;
+        assertTrue(FirestoreCodec.EVENTS.encode(e).containsKey("note"));
+    }
+
+    @Test
+    public void eventDecodeOfMissingFieldsLeavesDefaults() {
+        Map<String, Object> doc = new HashMap<>();
+        doc.put("id", "e1");
+        doc.put("dueAt", 1_700_000_000_000L);
+        EventEntity back = new EventEntity();
+        FirestoreCodec.EVENTS.decode(doc, back);
+
+        assertEquals("e1", back.id);
+        assertEquals(1_700_000_000_000L, back.dueAt);
+        assertEquals(0, back.realized);
+        assertEquals(0, back.deleted);
+        assertNull(back.cost);
+        assertNull(back.realizedAt);
+        assertNull(back.repeatInterval);
+        assertNull(back.title);
+    }
+
+    @Test
+    public void eventDeltaWritesOnlyTheDirtyGroups() {
+        EventEntity e = fullEvent();
+        e.kilometersAtEvent = null;
+        Map<String, Object> delta = FirestoreCodec.EVENTS.encodeDelta(e, EventFields.TITLE | EventFields.KM);
+
+        assertEquals(new HashSet<>(Arrays.asList("id", "updatedAt", "title", "kilometersAtEvent")), delta.keySet());
+        assertEquals("Vacuna anual", delta.get("title"));
+        // Opcional que pasó a null: se borra del documento
+        assertTrue(delta.get("kilometersAtEvent") instanceof FieldValue);
+    }
+
+    @Test
+    public void eventCopyGroupsTouchesOnlyThoseGroups() {
+        EventEntity from = fullEvent();
+        EventEntity into = new EventEntity();
+        into.id = "other";
+        into.title = "Baño";
+        FirestoreCodec.EVENTS.copyGroups(from, into, EventFields.REPEAT);
+
+        assertEquals("other", into.id);
+        assertEquals("Baño", into.title);
+        assertEquals(from.repeatType, into.repeatType);
+        assertEquals(from.repeatInterval, into.repeatInterval);
+        assertEquals(from.repeatEndDate, into.repeatEndDate);
+        assertEquals(from.repeatCount, into.repeatCount);
+        assertEquals(from.originalEventId, into.originalEventId);
+    }
+
+    @Test
+    public void differingIgnoresUpdatedAt() {
+        EventEntity a = fullEvent();
+        EventEntity b = fullEvent();
+        b.updatedAt = a.updatedAt + 1;
+        b.cost = 900.0;
+        Map<String, Object> diff = FirestoreCodec.EVENTS.differing(a, b, FirestoreCodec.ANY_GROUP);
+
+        assertEquals(1, diff.size());
+        assertEquals(1500.0, diff.get("cost"));
+        assertTrue(FirestoreCodec.EVENTS.differing(a, b, EventFields.TITLE).isEmpty());
+    }
+
+    @Test
+    public void subjectRoundTripKeepsEveryField() {
+        SubjectEntity s = new SubjectEntity();
+        s.id = "s1";
+        s.uid = "u";
+        s.appType = "pets";
+        s.name = "Firulais";
+        s.birthDate = 1_500_000_000_000L;
+        s.currentMeasure = 12.5;
+        s.notes = "perro";
+        s.iconKey = "dog";
+        s.colorHex = "#03DAC5";
+        s.updatedAt = 1_700_000_000_000L;
+        s.deleted = 1;
+
+        SubjectEntity back = new SubjectEntity();
+        FirestoreCodec.SUBJECTS.decode(asStored(FirestoreCodec.SUBJECTS.encode(s)), back);
+
+        assertTrue(FirestoreCodec.SUBJECTS.differing(s, back, FirestoreCodec.ANY_GROUP).isEmpty());
+        assertEquals(s.updatedAt, back.updatedAt);
+    }
+
+    @Test
+    public void subjectNullsSurvive() {
+        SubjectEntity s = new SubjectEntity();
+        s.id = "s2";
+        SubjectEntity back = new SubjectEntity();
+        FirestoreCodec.SUBJECTS.decode(asStored(FirestoreCodec.SUBJECTS.encode(s)), back);
+
+        assertEquals("s2", back.id);
+        assertNull(back.birthDate);
+        assertNull(back.currentMeasure);
+        assertNull(back.name);
+    }
+
+    // ----------------------
+    // Helpers
+    // ----------------------
+
+    private static EventEntity fullEvent() {
+        EventEntity e = new EventEntity();
+        e.id = "r1@1700000000000";
+        e.uid = "u";
+        e.appType = "pets";
+        e.subjectId = "s1";
+        e.title = "Vacuna anual";
+        e.note = "traer libreta";
+        e.dueAt = 1_700_000_000_000L;
+        e.realized = 1;
+        e.realizedAt = 1_700_000_100_000L;
+        e.cost = 1500.0;
+        e.kilometersAtEvent = 42_000.5;
+        e.repeatType = "monthly";
+        e.repeatInterval = 2;
+        e.repeatEndDate = 1_800_000_000_000L;
+        e.repeatCount = 6;
+        e.originalEventId = "r1";
+        e.notificationMinutesBefore = 30;
+        e.updatedAt = 1_700_000_200_000L;
+        e.deleted = 0;
+        e.dirty = 1;
+        e.dirtyFields = EventFields.ALL;
+        return e;
+    }
+
+    // Lo que devuelve doc.getData(): enteros como Long y decimales como Double
+    private static Map<String, Object> asStored(Map<String, Object> doc) {
+        Map<String, Object> out = new HashMap<>();
+        for (Map.Entry<String, Object> x : doc.entrySet()) {
+            Object v = x.getValue();
+            if (v instanceof Integer) v = ((Integer) v).longValue();
+            else if (v instanceof Float) v = ((Float) v).doubleValue();
+            out.put(x.getKey(), v);
+        }
+        return out;
+    }
+}
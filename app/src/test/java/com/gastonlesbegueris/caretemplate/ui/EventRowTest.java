@@ -0,0 +1,96 @@
+package com.gastonlesbegueris.caretemplate.ui;
+
+import com.gastonlesbegueris.caretemplate.data.model.EventListItem;
+import com.gastonlesbegueris.caretemplate.util.DayBuckets;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Borde precalculado de EventRow: la ventana "hoy" sale de DayBuckets y tiene que coincidir
+ * con el día de Calendar también los días de cambio de horario (23 y 25 horas).
+ */
+public class EventRowTest {
+
+    private static final long MINUTE = 60L * 1000;
+
+    private static final EventRow.Texts TEXTS = new EventRow.Texts() {
+        @Override public String cost(double cost) { return "$" + cost; }
+        @Override public String km(long km) { return km + " km"; }
+    };
+
+    @Test
+    public void todayBorderFollowsCalendarDayAcrossDst() {
+        // Santiago: la medianoche no existe al adelantar; Madrid y Nueva York cambian de madrugada
+        check("America/Santiago", 2024, Calendar.SEPTEMBER, 7);
+        check("America/Santiago", 2024, Calendar.APRIL, 6);
+        check("Europe/Madrid", 2024, Calendar.MARCH, 31);
+        check("Europe/Madrid", 2024, Calendar.OCTOBER, 27);
+        check("America/New_York", 2024, Calendar.MARCH, 10);
+        check("America/New_York", 2024, Calendar.NOVEMBER, 3);
+    }
+
+    @Test
+    public void realizedAndPastEvents() {
+        TimeZone tz = TimeZone.getTimeZone("Europe/Madrid");
+        long now = localTime(tz, 2024, Calendar.MARCH, 31, 12, 0);
+        EventRow.Builder b = new EventRow.Builder("dd/MM HH:mm", TEXTS, false, now, DayBuckets.of(tz));
+
+        assertEquals(EventRow.BORDER_DEFEATED, b.build(item(now - MINUTE)).border);
+        EventListItem done = item(now + MINUTE);
+        done.realized = 1;
+        assertEquals(EventRow.BORDER_NONE, b.build(done).border);
+    }
+
+    @Test
+    public void costAndKmTexts() {
+        TimeZone tz = TimeZone.getTimeZone("UTC");
+        EventListItem e = item(0);
+        e.cost = 1500.0;
+        e.kilometersAtEvent = 42_000.6;
+
+        EventRow withKm = new EventRow.Builder("dd/MM", TEXTS, true, 0, DayBuckets.of(tz)).build(e);
+        assertEquals("$1500.0", withKm.cost);
+        assertEquals("42001 km", withKm.km);
+        assertNull(new EventRow.Builder("dd/MM", TEXTS, false, 0, DayBuckets.of(tz)).build(e).km);
+    }
+
+    // Desde el mediodía local, cada 15 minutos durante dos días: HOY mientras Calendar diga
+    // que es el mismo día, FUTURO después
+    private static void check(String zone, int year, int month, int day) {
+        TimeZone tz = TimeZone.getTimeZone(zone);
+        long now = localTime(tz, year, month, day, 12, 0);
+        EventRow.Builder b = new EventRow.Builder("dd/MM HH:mm", TEXTS, false, now, DayBuckets.of(tz));
+        int today = calendarDay(tz, now);
+        for (long t = now + MINUTE; t < now + 2 * DayBuckets.DAY_MS; t += 15 * MINUTE) {
+            int expected = calendarDay(tz, t) == today ? EventRow.BORDER_TODAY : EventRow.BORDER_FUTURE;
+            assertEquals(zone + " " + t, expected, b.build(item(t)).border);
+        }
+    }
+
+    private static EventListItem item(long dueAt) {
+        EventListItem e = new EventListItem();
+        e.id = "e" + dueAt;
+        e.dueAt = dueAt;
+        return e;
+    }
+
+    private static long localTime(TimeZone tz, int year, int month, int day, int hour, int minute) {
+        Calendar cal = new GregorianCalendar(tz);
+        cal.clear();
+        cal.set(year, month, day, hour, minute);
+        return cal.getTimeInMillis();
+    }
+
+    private static int calendarDay(TimeZone tz, long t) {
+        Calendar cal = new GregorianCalendar(tz);
+        cal.setTimeInMillis(t);
+        return cal.get(Calendar.YEAR) * 1000 + cal.get(Calendar.DAY_OF_YEAR);
+    }
+}
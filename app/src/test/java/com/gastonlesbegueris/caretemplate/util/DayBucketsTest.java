@@ -0,0 +1,125 @@
+package com.gastonlesbegueris.caretemplate.util;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * DayBuckets contra Calendar (la aritmética que reemplaza) en zonas con cambio de horario:
+ * Santiago (salto a las 00:00, la medianoche no existe), Madrid, Nueva York y Lord Howe
+ * (cambio de 30 minutos).
+ */
+public class DayBucketsTest {
+
+    private static final String[] ZONES = {
+            "America/Santiago", "Europe/Madrid", "America/New_York", "Australia/Lord_Howe", "UTC"
+    };
+    private static final long HOUR = 60L * 60 * 1000;
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    @Test
+    public void dayKeyAndStartOfDayMatchCalendarEveryHalfHour() {
+        for (String id : ZONES) {
+            TimeZone tz = TimeZone.getTimeZone(id);
+            DayBuckets b = DayBuckets.of(tz);
+            long from = utc(2023, Calendar.JANUARY, 1);
+            long to = utc(2025, Calendar.JANUARY, 1);
+            for (long t = from; t < to; t += HOUR / 2) {
+                long day = b.dayKey(t);
+                assertEquals(id + " dayKey " + t, calendarDay(tz, t), day);
+                assertEquals(id + " startOfDay " + t, calendarMidnight(tz, t), b.startOfDay(day));
+                assertEquals(id + " monthKey " + t, calendarMonth(tz, t), b.monthKey(t));
+            }
+        }
+    }
+
+    @Test
+    public void offsetChangesAtEachTransition() {
+        for (String id : ZONES) {
+            TimeZone tz = TimeZone.getTimeZone(id);
+            DayBuckets b = DayBuckets.of(tz);
+            for (int i = 1; i < b.size(); i++) {
+                long start = b.startAt(i);
+                assertEquals(id, tz.getOffset(start), b.offsetAt(start));
+                assertEquals(id, tz.getOffset(start - 1), b.offsetAt(start - 1));
+                assertTrue(id, b.offsetOf(i) != b.offsetOf(i - 1));
+            }
+        }
+    }
+
+    @Test
+    public void startOfMonthMatchesCalendar() {
+        for (String id : ZONES) {
+            TimeZone tz = TimeZone.getTimeZone(id);
+            DayBuckets b = DayBuckets.of(tz);
+            for (int year = 2023; year <= 2025; year++) {
+                for (int month = 0; month < 12; month++) {
+                    Calendar cal = new GregorianCalendar(tz);
+                    cal.clear();
+                    cal.set(year, month, 1, 0, 0, 0);
+                    assertEquals(id + " " + year + "-" + (month + 1),
+                            cal.getTimeInMillis(), b.startOfMonth(year * 12 + month));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void daysBefore1970AreFloored() {
+        DayBuckets b = DayBuckets.of(UTC);
+        assertEquals(-1, b.dayKey(-1));
+        assertEquals(-1, b.dayKey(-DayBuckets.DAY_MS));
+        assertEquals(-2, b.dayKey(-DayBuckets.DAY_MS - 1));
+        assertEquals(-DayBuckets.DAY_MS, b.startOfDayAt(-1));
+        assertEquals(1969 * 12 + Calendar.DECEMBER, b.monthKey(-1));
+    }
+
+    @Test
+    public void firstDayOfMonthInvertsMonthKeyOfDay() {
+        for (int key = 1900 * 12; key < 2100 * 12; key++) {
+            long first = DayBuckets.firstDayOfMonth(key);
+            assertEquals(key, DayBuckets.monthKeyOfDay(first));
+            assertEquals(key - 1, DayBuckets.monthKeyOfDay(first - 1));
+        }
+    }
+
+    // ----------------------
+    // Referencia con Calendar
+    // ----------------------
+
+    private static long utc(int year, int month, int day) {
+        Calendar cal = new GregorianCalendar(UTC);
+        cal.clear();
+        cal.set(year, month, day);
+        return cal.getTimeInMillis();
+    }
+
+    // Fecha local de t como días desde 1970-01-01
+    private static long calendarDay(TimeZone tz, long t) {
+        Calendar cal = new GregorianCalendar(tz);
+        cal.setTimeInMillis(t);
+        return utc(cal.get(Calendar.YEAR), cal.get(Calendar.MONTH), cal.get(Calendar.DAY_OF_MONTH)) / DayBuckets.DAY_MS;
+    }
+
+    // 00:00 local del día de t (Calendar la corre a la primera hora válida si no existe)
+    private static long calendarMidnight(TimeZone tz, long t) {
+        Calendar cal = new GregorianCalendar(tz);
+        cal.setTimeInMillis(t);
+        cal.set(Calendar.HOUR_OF_DAY, 0);
+        cal.set(Calendar.MINUTE, 0);
+        cal.set(Calendar.SECOND, 0);
+        cal.set(Calendar.MILLISECOND, 0);
+        return cal.getTimeInMillis();
+    }
+
+    private static int calendarMonth(TimeZone tz, long t) {
+        Calendar cal = new GregorianCalendar(tz);
+        cal.setTimeInMillis(t);
+        return cal.get(Calendar.YEAR) * 12 + cal.get(Calendar.MONTH);
+    }
+}